@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley;
+
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.ListingResult;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.VirtualResource;
+
+/**
+ * Non-blocking counterpart of {@link TransferManager}. Each operation has the same semantics as its synchronous
+ * twin, but returns immediately; failures complete the returned future exceptionally with a
+ * {@link TransferException} (possibly wrapped in a {@link java.util.concurrent.CompletionException}).
+ */
+public interface AsyncTransferManager
+{
+
+    CompletableFuture<Transfer> retrieve( ConcreteResource resource );
+
+    CompletableFuture<Transfer> retrieve( ConcreteResource resource, boolean suppressFailures );
+
+    CompletableFuture<Transfer> retrieve( ConcreteResource resource, boolean suppressFailures,
+                                          EventMetadata eventMetadata );
+
+    /**
+     * Try each member of the {@link VirtualResource} in order, starting the next retrieval only when the previous one
+     * completed without a hit. The first existing transfer wins; the future completes with null if none exists.
+     */
+    CompletableFuture<Transfer> retrieveFirst( VirtualResource resource );
+
+    CompletableFuture<Transfer> retrieveFirst( VirtualResource resource, EventMetadata eventMetadata );
+
+    CompletableFuture<Boolean> exists( ConcreteResource resource );
+
+    CompletableFuture<ConcreteResource> findFirstExisting( VirtualResource resource );
+
+    CompletableFuture<ListingResult> list( ConcreteResource resource );
+
+    CompletableFuture<ListingResult> list( ConcreteResource resource, EventMetadata metadata );
+
+    CompletableFuture<Transfer> store( ConcreteResource resource, InputStream stream );
+
+    CompletableFuture<Transfer> store( ConcreteResource resource, InputStream stream, EventMetadata eventMetadata );
+
+}
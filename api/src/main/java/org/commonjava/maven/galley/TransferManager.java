@@ -24,6 +24,7 @@ import org.commonjava.maven.galley.model.ListingResult;
 import org.commonjava.maven.galley.model.Location;
 import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.model.TransferBatch;
+import org.commonjava.maven.galley.model.TransferBatchListener;
 import org.commonjava.maven.galley.model.VirtualResource;
 
 public interface TransferManager
@@ -45,6 +46,35 @@ public interface TransferManager
     <T extends TransferBatch> T batchRetrieveAll( T batch , EventMetadata eventMetadata  )
         throws TransferException;
 
+    /**
+     * Same as {@link #batchRetrieve(TransferBatch, EventMetadata)}, but also reports each resource to the listener as
+     * soon as it is resolved, so callers can start on the results while the rest of the batch is still in flight.
+     * Implementations that can't stream report everything once the batch is complete.
+     */
+    default <T extends TransferBatch> T batchRetrieve( T batch, EventMetadata eventMetadata,
+                                                       TransferBatchListener listener )
+        throws TransferException
+    {
+        final T result = batchRetrieve( batch, eventMetadata );
+        result.getTransfers().forEach( ( resource, transfer ) -> listener.transferred( resource, resource, transfer ) );
+        result.getErrors().forEach( ( resource, error ) -> listener.failed( resource, resource, error ) );
+        return result;
+    }
+
+    /**
+     * Same as {@link #batchRetrieveAll(TransferBatch, EventMetadata)}, reporting each resource to the listener as in
+     * {@link #batchRetrieve(TransferBatch, EventMetadata, TransferBatchListener)}.
+     */
+    default <T extends TransferBatch> T batchRetrieveAll( T batch, EventMetadata eventMetadata,
+                                                          TransferBatchListener listener )
+        throws TransferException
+    {
+        final T result = batchRetrieveAll( batch, eventMetadata );
+        result.getTransfers().forEach( ( resource, transfer ) -> listener.transferred( resource, resource, transfer ) );
+        result.getErrors().forEach( ( resource, error ) -> listener.failed( resource, resource, error ) );
+        return result;
+    }
+
     Transfer retrieveFirst( VirtualResource resource )
         throws TransferException;
 
@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Creates aliases of cached files (see {@link org.commonjava.maven.galley.spi.cache.CacheProvider#createAlias}) for
+ * file-based cache providers, by hard-linking the alias to the original where the filesystem allows it, and falling
+ * back to the provider's own copy otherwise (e.g. across filesystems, or when linking is disabled).
+ * <p>
+ * Linked files share their content, so providers must not write into an alias in place: replacing it through a
+ * rename (as {@link org.commonjava.maven.galley.util.AtomicFileOutputStreamWrapper} does) is safe, and anything
+ * writing in place should call {@link #unshare(File)} first.
+ */
+public class AliasLinker
+{
+
+    public enum Strategy
+    {
+        HARD_LINK, COPY
+    }
+
+    public interface Copier
+    {
+        void copy( File from, File to )
+                throws IOException;
+    }
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final boolean linking;
+
+    private final LongAdder links = new LongAdder();
+
+    private final LongAdder copies = new LongAdder();
+
+    private final LongAdder bytesSaved = new LongAdder();
+
+    private volatile boolean linkingSupported = true;
+
+    public AliasLinker( final boolean linking )
+    {
+        this.linking = linking;
+    }
+
+    /**
+     * Make the alias file hold the same content as the original, replacing whatever the alias held before.
+     *
+     * @return how the alias was created
+     */
+    public Strategy alias( final File from, final File to, final Copier copier )
+            throws IOException
+    {
+        if ( linking && linkingSupported && link( from, to ) )
+        {
+            return Strategy.HARD_LINK;
+        }
+
+        copier.copy( from, to );
+        copies.increment();
+        return Strategy.COPY;
+    }
+
+    private boolean link( final File from, final File to )
+            throws IOException
+    {
+        final File dir = to.getParentFile();
+        if ( dir != null && !dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory() )
+        {
+            throw new IOException( "Cannot create directory: " + dir );
+        }
+
+        // already an alias of this original: renaming a link over another name for the same file is a no-op that
+        // would leave the temporary link behind.
+        if ( to.exists() && Files.isSameFile( from.toPath(), to.toPath() ) )
+        {
+            return true;
+        }
+
+        // link under a hidden name and move it into place, so an existing alias is replaced atomically.
+        final Path tmp = new File( dir, "." + to.getName() + "." + UUID.randomUUID() + ".link" ).toPath();
+        try
+        {
+            Files.createLink( tmp, from.toPath() );
+        }
+        catch ( final UnsupportedOperationException e )
+        {
+            logger.info( "Hard links are not supported here. Copying aliases from now on. Reason: {}",
+                         e.getMessage() );
+            linkingSupported = false;
+            return false;
+        }
+        catch ( final IOException e )
+        {
+            // e.g. the alias lives on another filesystem; other aliases may still be linkable.
+            logger.debug( "Cannot link: {} to: {}. Copying instead. Reason: {}", to, from, e.getMessage() );
+            return false;
+        }
+
+        try
+        {
+            Files.move( tmp, to.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+        }
+        finally
+        {
+            // normally gone after the move, unless the alias was linked to the original concurrently.
+            Files.deleteIfExists( tmp );
+        }
+
+        links.increment();
+        bytesSaved.add( to.length() );
+        return true;
+    }
+
+    /**
+     * Break the link between the file and any aliases sharing its content, by deleting it if more than one name
+     * refers to it. Call before writing into the file in place. Open readers keep the content they are reading.
+     */
+    public static void unshare( final File file )
+            throws IOException
+    {
+        final Path path = file.toPath();
+        if ( isShared( path ) )
+        {
+            Files.deleteIfExists( path );
+        }
+    }
+
+    /**
+     * Give the file its own copy of its content if other names refer to it, so changing its attributes (such as its
+     * timestamp) no longer changes the aliases. Unlike {@link #unshare(File)}, the content stays where it is.
+     */
+    public static void detach( final File file )
+            throws IOException
+    {
+        final Path path = file.toPath();
+        if ( !isShared( path ) )
+        {
+            return;
+        }
+
+        // copy under a hidden name and move it into place, so readers see either the shared or the private copy.
+        final Path tmp = path.resolveSibling( "." + path.getFileName() + "." + UUID.randomUUID() + ".detach" );
+        try
+        {
+            Files.copy( path, tmp, StandardCopyOption.COPY_ATTRIBUTES );
+            Files.move( tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+        }
+        finally
+        {
+            Files.deleteIfExists( tmp );
+        }
+    }
+
+    private static boolean isShared( final Path path )
+            throws IOException
+    {
+        try
+        {
+            final Object count = Files.getAttribute( path, "unix:nlink" );
+            return count instanceof Integer && (Integer) count > 1;
+        }
+        catch ( final UnsupportedOperationException | IllegalArgumentException | NoSuchFileException e )
+        {
+            // not a unix filesystem (so no links of ours), or nothing there.
+            return false;
+        }
+    }
+
+    public long getLinkCount()
+    {
+        return links.sum();
+    }
+
+    public long getCopyCount()
+    {
+        return copies.sum();
+    }
+
+    /**
+     * Disk bytes not written because aliases were linked rather than copied.
+     */
+    public long getBytesSaved()
+    {
+        return bytesSaved.sum();
+    }
+
+}
@@ -0,0 +1,306 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.cache;
+
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Background expiry of cached files for {@link org.commonjava.maven.galley.spi.cache.CacheProvider} implementations,
+ * so their read paths don't have to stat and compare timestamps on every access.
+ * <p>
+ * Providers schedule a deadline (epoch millis) for a resource when they store it, and a single daemon thread hands
+ * each resource to the provider's {@link Expirer} once its deadline passes. The expirer looks at the file as it is
+ * then, deletes it if it really expired, and returns the next deadline to check it again at (e.g. because it was
+ * rewritten or revalidated in the meantime), or 0 to stop tracking it.
+ * <p>
+ * Deadlines live in a {@link DelayQueue}, with the pending deadline of each resource kept in a map; queue entries
+ * that no longer match it (because the resource was cancelled or checked early) are skipped when they come due. The
+ * thread is started with the first scheduled deadline.
+ * <p>
+ * Resources the scheduler has seen (scheduled or tracked) are remembered, so lookups of them, including lookups of
+ * paths that turned out not to be cached at all, don't queue another check. Their writes schedule them again anyway.
+ * This memory is bounded; the resources seen longest ago are forgotten first, which costs them one more check.
+ * <p>
+ * Pending deadlines are not bounded: every resource written or revalidated within its cache timeout (24 hours by
+ * default) holds a map entry and a queue entry, a few hundred bytes with its resource, until its check runs. Size
+ * the heap for the write rate over that window; {@link #getScheduledCount()} shows the current number.
+ */
+public class ExpiryScheduler
+{
+
+    public interface Expirer
+    {
+        /**
+         * Expire the resource if its file is past its cache timeout.
+         *
+         * @return the deadline (epoch millis) to check the resource again at, or 0 to stop tracking it
+         */
+        long expire( ConcreteResource resource );
+    }
+
+    private static final int MAX_SEEN = 100_000;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final DelayQueue<Deadline> queue = new DelayQueue<>();
+
+    private final Map<ConcreteResource, Deadline> deadlines = new ConcurrentHashMap<>();
+
+    private final Set<ConcreteResource> seen = ConcurrentHashMap.newKeySet();
+
+    private final Queue<ConcreteResource> seenOrder = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger seenCount = new AtomicInteger();
+
+    private final int maxSeen;
+
+    private final LongAdder checks = new LongAdder();
+
+    private final String name;
+
+    private final Expirer expirer;
+
+    private final LongSupplier clock;
+
+    private final boolean background;
+
+    private Thread worker;
+
+    public ExpiryScheduler( final String name, final Expirer expirer )
+    {
+        this( name, expirer, System::currentTimeMillis, true, MAX_SEEN );
+    }
+
+    ExpiryScheduler( final String name, final Expirer expirer, final LongSupplier clock, final boolean background,
+                     final int maxSeen )
+    {
+        this.maxSeen = maxSeen;
+        this.name = name;
+        this.expirer = expirer;
+        this.clock = clock;
+        this.background = background;
+    }
+
+    /**
+     * Check the resource once the deadline passes. An earlier deadline already scheduled for it stands: the check
+     * finds the file's real deadline from the file itself, so checking early is harmless.
+     */
+    public void schedule( final ConcreteResource resource, final long deadlineMillis )
+    {
+        see( resource );
+        final Deadline deadline = new Deadline( resource, deadlineMillis );
+        if ( deadlines.merge( resource, deadline, ( old, mine ) -> old.millis <= mine.millis ? old : mine )
+                == deadline )
+        {
+            queue.add( deadline );
+            startIfNeeded();
+        }
+    }
+
+    /**
+     * Check the resource soon, unless the scheduler has seen it before. Costs a set lookup for resources it has.
+     */
+    public void track( final ConcreteResource resource )
+    {
+        if ( see( resource ) && !deadlines.containsKey( resource ) )
+        {
+            final Deadline deadline = new Deadline( resource, clock.getAsLong() );
+            if ( deadlines.putIfAbsent( resource, deadline ) == null )
+            {
+                queue.add( deadline );
+                startIfNeeded();
+            }
+        }
+    }
+
+    /**
+     * Check the resource right away, on the calling thread, and schedule whatever deadline that yields.
+     */
+    public void check( final ConcreteResource resource )
+    {
+        final Deadline current = deadlines.get( resource );
+        if ( current != null )
+        {
+            deadlines.remove( resource, current );
+        }
+
+        expire( resource );
+    }
+
+    public void cancel( final ConcreteResource resource )
+    {
+        deadlines.remove( resource );
+    }
+
+    public boolean isScheduled( final ConcreteResource resource )
+    {
+        return deadlines.containsKey( resource );
+    }
+
+    public int getScheduledCount()
+    {
+        return deadlines.size();
+    }
+
+    public long getCheckCount()
+    {
+        return checks.sum();
+    }
+
+    /**
+     * Remember the resource as seen, forgetting the one seen longest ago if that makes too many.
+     *
+     * @return true if the resource wasn't seen before
+     */
+    private boolean see( final ConcreteResource resource )
+    {
+        if ( seen.contains( resource ) || !seen.add( resource ) )
+        {
+            return false;
+        }
+
+        seenOrder.add( resource );
+        if ( seenCount.incrementAndGet() > maxSeen )
+        {
+            final ConcreteResource oldest = seenOrder.poll();
+            if ( oldest != null && seen.remove( oldest ) )
+            {
+                seenCount.decrementAndGet();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check every resource whose deadline has passed. The background thread does this as deadlines come due; this
+     * only exists for callers driving the scheduler themselves.
+     */
+    void expireDue()
+    {
+        Deadline deadline;
+        while ( ( deadline = queue.poll() ) != null )
+        {
+            process( deadline );
+        }
+    }
+
+    public synchronized void shutdown()
+    {
+        if ( worker != null )
+        {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    private synchronized void startIfNeeded()
+    {
+        if ( !background || worker != null )
+        {
+            return;
+        }
+
+        worker = new Thread( this::run, name );
+        worker.setDaemon( true );
+        worker.start();
+    }
+
+    private void run()
+    {
+        try
+        {
+            while ( !Thread.currentThread().isInterrupted() )
+            {
+                process( queue.take() );
+            }
+        }
+        catch ( final InterruptedException e )
+        {
+            logger.debug( "{} stopped.", name );
+        }
+    }
+
+    private void process( final Deadline deadline )
+    {
+        // skip deadlines that were replaced or cancelled after they were queued.
+        if ( deadlines.remove( deadline.resource, deadline ) )
+        {
+            expire( deadline.resource );
+        }
+    }
+
+    private void expire( final ConcreteResource resource )
+    {
+        final long next;
+        try
+        {
+            checks.increment();
+            next = expirer.expire( resource );
+        }
+        catch ( final RuntimeException e )
+        {
+            logger.error( String.format( "Failed to expire: %s.", resource ), e );
+            return;
+        }
+
+        if ( next > 0 )
+        {
+            schedule( resource, next );
+        }
+    }
+
+    private final class Deadline
+            implements Delayed
+    {
+        private final ConcreteResource resource;
+
+        private final long millis;
+
+        Deadline( final ConcreteResource resource, final long millis )
+        {
+            this.resource = resource;
+            this.millis = millis;
+        }
+
+        @Override
+        public long getDelay( final TimeUnit unit )
+        {
+            return unit.convert( millis - clock.getAsLong(), TimeUnit.MILLISECONDS );
+        }
+
+        @Override
+        public int compareTo( final Delayed other )
+        {
+            return Long.compare( millis, ( (Deadline) other ).millis );
+        }
+    }
+
+}
@@ -0,0 +1,572 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.cache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-resource shared/exclusive locks for {@link org.commonjava.maven.galley.spi.cache.CacheProvider}
+ * implementations. Any number of threads may hold the read lock of a resource at once; the write lock excludes
+ * readers and other writers.
+ * <p>
+ * Locks keep the ownership rules of {@link SimpleLockingSupport}: they belong to threads, re-locking from the owning
+ * thread is a no-op rather than a nested hold, an unlock from any other thread is ignored, and the is*Locked / waitFor*
+ * methods only consider locks held by <em>other</em> threads. A thread holding the write lock may also read, and a
+ * reader may upgrade to writing once the other readers are gone. Only one reader can wait to upgrade at a time: two
+ * would wait for each other forever, so the second one fails with an {@link IllegalStateException} instead. Locks
+ * left behind by threads that have died are treated as released.
+ * <p>
+ * Writers waiting for a resource keep new readers out until they have had their turn, so a steady stream of reads
+ * cannot starve a write. Threads already reading can still re-lock.
+ * <p>
+ * Lock state lives in a concurrent map entry per resource, created on first use and removed again as soon as nobody
+ * holds or waits for it. Waiters block on a per-resource {@link Condition} and are signalled on every release. Owners
+ * that die without unlocking can't signal, so once anyone has had to wait, a background task looks for dead owners
+ * of contended locks and signals their waiters.
+ */
+@ApplicationScoped
+public class ReadWriteLockingSupport
+{
+
+    /**
+     * How often contended locks are checked for owners that died without unlocking, which nobody will signal.
+     */
+    private static final long DEAD_OWNER_CHECK_MILLIS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final Map<ConcreteResource, LockState> locks = new ConcurrentHashMap<>();
+
+    private ReportingTask reporter;
+
+    private final Timer timer = new Timer( true );
+
+    private final AtomicBoolean checkingDeadOwners = new AtomicBoolean();
+
+    public void lockRead( final ConcreteResource resource )
+    {
+        final Thread me = Thread.currentThread();
+        final LockState state = acquireState( resource );
+        try
+        {
+            if ( state.isWriter( me ) || state.readers.contains( me ) )
+            {
+                return;
+            }
+
+            await( resource, state, s -> s.hasOtherWriter( me ) || s.writersWaiting > 0 );
+
+            logger.trace( "Read-locking: {} in: {}.", resource, me.getName() );
+            state.readers.add( me );
+        }
+        finally
+        {
+            releaseState( resource, state );
+        }
+    }
+
+    public void lockWrite( final ConcreteResource resource )
+    {
+        final Thread me = Thread.currentThread();
+        final LockState state = acquireState( resource );
+        try
+        {
+            if ( state.isWriter( me ) )
+            {
+                logger.trace( "{} already locked by: {}. Returning.", resource, me.getName() );
+                return;
+            }
+
+            final boolean upgrading = state.readers.contains( me );
+            if ( upgrading )
+            {
+                if ( state.upgrader != null )
+                {
+                    throw new IllegalStateException(
+                            String.format( "%s is waiting to upgrade its read lock of %s; %s would deadlock with it.",
+                                           state.upgrader.getName(), resource, me.getName() ) );
+                }
+
+                state.upgrader = me;
+            }
+
+            state.writersWaiting++;
+            try
+            {
+                await( resource, state, s -> s.hasOtherWriter( me ) || s.hasOtherReader( me ) );
+            }
+            finally
+            {
+                state.writersWaiting--;
+                if ( upgrading )
+                {
+                    state.upgrader = null;
+                }
+            }
+
+            logger.trace( "Write-locking: {} in: {}.", resource, me.getName() );
+            state.writer = me;
+        }
+        finally
+        {
+            releaseState( resource, state );
+        }
+    }
+
+    public void unlockRead( final ConcreteResource resource )
+    {
+        final LockState state = locks.get( resource );
+        if ( state == null )
+        {
+            return;
+        }
+
+        state.mutex.lock();
+        try
+        {
+            if ( state.readers.remove( Thread.currentThread() ) )
+            {
+                state.released.signalAll();
+            }
+        }
+        finally
+        {
+            releaseState( resource, state );
+        }
+    }
+
+    public void unlockWrite( final ConcreteResource resource )
+    {
+        final LockState state = locks.get( resource );
+        if ( state == null )
+        {
+            return;
+        }
+
+        final Thread me = Thread.currentThread();
+        state.mutex.lock();
+        try
+        {
+            if ( state.writer == me )
+            {
+                logger.trace( "Removing write lock: {} by: {}.", resource, me.getName() );
+                state.writer = null;
+                state.released.signalAll();
+            }
+            else if ( state.writer != null )
+            {
+                logger.debug( "{} locked by: {}. Ignoring unlock from: {}", resource, state.writer.getName(),
+                              me.getName() );
+            }
+        }
+        finally
+        {
+            releaseState( resource, state );
+        }
+    }
+
+    /**
+     * @return true if another live thread holds the read lock of the resource
+     */
+    public boolean isReadLocked( final ConcreteResource resource )
+    {
+        return check( resource, s -> s.hasOtherReader( Thread.currentThread() ) );
+    }
+
+    /**
+     * @return true if another live thread holds the write lock of the resource
+     */
+    public boolean isWriteLocked( final ConcreteResource resource )
+    {
+        return check( resource, s -> s.hasOtherWriter( Thread.currentThread() ) );
+    }
+
+    /**
+     * Block until no other thread is writing the resource, i.e. until it is safe to read.
+     */
+    public void waitForReadUnlock( final ConcreteResource resource )
+    {
+        final Thread me = Thread.currentThread();
+        waitFor( resource, s -> s.hasOtherWriter( me ) );
+    }
+
+    /**
+     * Block until no other thread is reading or writing the resource, i.e. until it is safe to write.
+     */
+    public void waitForWriteUnlock( final ConcreteResource resource )
+    {
+        final Thread me = Thread.currentThread();
+        waitFor( resource, s -> s.hasOtherWriter( me ) || s.hasOtherReader( me ) );
+    }
+
+    public void cleanupCurrentThread()
+    {
+        final Thread me = Thread.currentThread();
+        for ( final Map.Entry<ConcreteResource, LockState> entry : locks.entrySet() )
+        {
+            final LockState state = entry.getValue();
+            state.mutex.lock();
+            try
+            {
+                boolean released = state.readers.remove( me );
+                if ( state.writer == me )
+                {
+                    state.writer = null;
+                    released = true;
+                }
+
+                if ( released )
+                {
+                    logger.debug( "Cleaning up lock: {} for thread: {}", entry.getKey(), me.getName() );
+                    state.released.signalAll();
+                }
+            }
+            finally
+            {
+                releaseState( entry.getKey(), state );
+            }
+        }
+    }
+
+    public Map<ConcreteResource, CharSequence> getActiveLocks()
+    {
+        final Map<ConcreteResource, CharSequence> active = new HashMap<>();
+        locks.forEach( ( resource, state ) -> {
+            final StringBuilder owner = new StringBuilder();
+            state.mutex.lock();
+            try
+            {
+                if ( state.writer != null )
+                {
+                    owner.append( "writer: " );
+                    appendThread( owner, state.writer );
+                }
+
+                for ( final Thread reader : state.readers )
+                {
+                    owner.append( owner.length() == 0 ? "readers: " : ", " );
+                    appendThread( owner, reader );
+                }
+            }
+            finally
+            {
+                state.mutex.unlock();
+            }
+
+            if ( owner.length() > 0 )
+            {
+                active.put( resource, owner );
+            }
+        } );
+
+        return active;
+    }
+
+    public synchronized void startReporting()
+    {
+        startReporting( 0, 10000 );
+    }
+
+    public synchronized void startReporting( final long delay, final long period )
+    {
+        if ( reporter == null )
+        {
+            logger.info( "Starting file-lock statistics reporting with initial delay: {}ms and period: {}ms", delay,
+                         period );
+            reporter = new ReportingTask();
+            timer.schedule( reporter, delay, period );
+        }
+    }
+
+    public synchronized void stopReporting()
+    {
+        if ( reporter != null )
+        {
+            logger.info( "Stopping file-lock statistics reporting." );
+            reporter.cancel();
+            reporter = null;
+        }
+    }
+
+    private static void appendThread( final StringBuilder sb, final Thread thread )
+    {
+        sb.append( thread.getName() );
+        if ( !thread.isAlive() )
+        {
+            sb.append( " (DEAD)" );
+        }
+    }
+
+    /**
+     * Get the lock state for the resource with its mutex held, creating it if necessary. A state that was retired
+     * between lookup and locking is skipped in favour of a fresh one.
+     */
+    private LockState acquireState( final ConcreteResource resource )
+    {
+        while ( true )
+        {
+            final LockState state = locks.computeIfAbsent( resource, k -> new LockState() );
+            state.mutex.lock();
+            if ( !state.retired )
+            {
+                return state;
+            }
+
+            state.mutex.unlock();
+        }
+    }
+
+    /**
+     * Release the mutex, first retiring the state if nobody holds or waits for the lock anymore.
+     */
+    private void releaseState( final ConcreteResource resource, final LockState state )
+    {
+        try
+        {
+            if ( !state.retired && state.isIdle() )
+            {
+                state.retired = true;
+                locks.remove( resource, state );
+            }
+        }
+        finally
+        {
+            state.mutex.unlock();
+        }
+    }
+
+    private boolean check( final ConcreteResource resource, final Predicate<LockState> condition )
+    {
+        final LockState state = locks.get( resource );
+        if ( state == null )
+        {
+            return false;
+        }
+
+        state.mutex.lock();
+        try
+        {
+            return condition.test( state );
+        }
+        finally
+        {
+            state.mutex.unlock();
+        }
+    }
+
+    private void waitFor( final ConcreteResource resource, final Predicate<LockState> blocked )
+    {
+        final LockState state = locks.get( resource );
+        if ( state == null )
+        {
+            return;
+        }
+
+        state.mutex.lock();
+        try
+        {
+            if ( !state.retired )
+            {
+                await( resource, state, blocked );
+            }
+        }
+        finally
+        {
+            releaseState( resource, state );
+        }
+    }
+
+    /**
+     * Caller must hold the state's mutex. As with {@link SimpleLockingSupport}, an interrupt ends the wait early; the
+     * interrupt flag is restored for the caller to act on.
+     */
+    private void await( final ConcreteResource resource, final LockState state, final Predicate<LockState> blocked )
+    {
+        if ( !blocked.test( state ) )
+        {
+            return;
+        }
+
+        if ( checkingDeadOwners.compareAndSet( false, true ) )
+        {
+            timer.schedule( new DeadOwnerTask(), DEAD_OWNER_CHECK_MILLIS, DEAD_OWNER_CHECK_MILLIS );
+        }
+
+        state.waiters++;
+        try
+        {
+            while ( blocked.test( state ) )
+            {
+                logger.debug( "{} waiting for unlock of {}", Thread.currentThread().getName(), resource );
+                state.released.await();
+            }
+        }
+        catch ( final InterruptedException e )
+        {
+            logger.debug( "{} interrupted while waiting for unlock of: {}", Thread.currentThread().getName(),
+                          resource );
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            state.waiters--;
+        }
+    }
+
+    private static final class LockState
+    {
+        private final ReentrantLock mutex = new ReentrantLock();
+
+        private final Condition released = mutex.newCondition();
+
+        private final Set<Thread> readers = new HashSet<>( 4 );
+
+        private Thread writer;
+
+        private int waiters;
+
+        private int writersWaiting;
+
+        private Thread upgrader;
+
+        private boolean retired;
+
+        private boolean isWriter( final Thread thread )
+        {
+            return writer == thread;
+        }
+
+        private boolean hasOtherWriter( final Thread me )
+        {
+            if ( writer != null && !writer.isAlive() )
+            {
+                writer = null;
+            }
+
+            return writer != null && writer != me;
+        }
+
+        private boolean hasOtherReader( final Thread me )
+        {
+            readers.removeIf( reader -> !reader.isAlive() );
+            for ( final Thread reader : readers )
+            {
+                if ( reader != me )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private boolean hasDeadOwner()
+        {
+            if ( writer != null && !writer.isAlive() )
+            {
+                return true;
+            }
+
+            for ( final Thread reader : readers )
+            {
+                if ( !reader.isAlive() )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private boolean isIdle()
+        {
+            return writer == null && readers.isEmpty() && waiters == 0;
+        }
+    }
+
+    /**
+     * Wakes the waiters of locks whose owners died without unlocking. They find the lock released when they look.
+     */
+    private final class DeadOwnerTask
+        extends TimerTask
+    {
+        @Override
+        public void run()
+        {
+            locks.forEach( ( resource, state ) -> {
+                state.mutex.lock();
+                try
+                {
+                    if ( state.waiters > 0 && state.hasDeadOwner() )
+                    {
+                        logger.debug( "Owner of lock: {} died without unlocking. Waking its waiters.", resource );
+                        state.released.signalAll();
+                    }
+                }
+                finally
+                {
+                    state.mutex.unlock();
+                }
+            } );
+        }
+    }
+
+    private final class ReportingTask
+        extends TimerTask
+    {
+        @Override
+        public void run()
+        {
+            final Map<ConcreteResource, CharSequence> activeLocks = getActiveLocks();
+            if ( activeLocks.isEmpty() )
+            {
+                logger.debug( "No file locks to report." );
+                return;
+            }
+
+            final StringBuilder sb = new StringBuilder();
+            sb.append( "\n\nThe following file locks are still active:" );
+            for ( final ConcreteResource file : activeLocks.keySet() )
+            {
+                sb.append( "\n" )
+                  .append( file )
+                  .append( " is owned by " )
+                  .append( activeLocks.get( file ) );
+            }
+
+            sb.append( "\n\n" );
+
+            logger.info( sb.toString() );
+        }
+    }
+
+}
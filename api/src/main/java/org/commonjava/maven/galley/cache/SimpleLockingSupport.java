@@ -28,6 +28,10 @@ import org.commonjava.maven.galley.model.ConcreteResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * @deprecated treats reads and writes alike and polls for unlocks; use {@link ReadWriteLockingSupport} instead.
+ */
+@Deprecated
 @ApplicationScoped
 public class SimpleLockingSupport
 {
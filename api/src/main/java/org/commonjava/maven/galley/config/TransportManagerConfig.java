@@ -33,12 +33,37 @@ public class TransportManagerConfig
     final float DEFAULT_TIMEOUT_OVEREXTENSION_FACTOR = 2.25f;
             // Use proxy retry will probably exceed one default request timeout, at least twice as much time to the first request timeout.
 
+    final int DEFAULT_HEDGED_RETRIEVE_FANOUT = 0;
+            // retrieveFirst() walks the locations strictly one at a time unless this is raised above 1.
+
+    final int DEFAULT_HEDGED_RETRIEVE_LOCATION_LIMIT = 4;
+            // speculative existence probes allowed in flight against any single location.
+
+    final int DEFAULT_BATCH_RETRIEVE_LOCATION_WINDOW = 8;
+            // batch retrieval tries allowed in flight against any single location.
+
+    final int DEFAULT_EXISTENCE_CACHE_SECONDS = 30;
+            // how long a positive existence check is trusted before the upstream is asked again.
+
+    final int DEFAULT_REVALIDATION_RETRY_SECONDS = 30;
+            // how long a stale copy is served as is after its revalidation failed, before the upstream is asked again.
+
     private final long thresholdWaitRetrySize;
 
     private final long waitRetryScalingIncrement;
 
     private float timeoutOverextensionFactor;
 
+    private int hedgedRetrieveFanout = DEFAULT_HEDGED_RETRIEVE_FANOUT;
+
+    private int hedgedRetrieveLocationLimit = DEFAULT_HEDGED_RETRIEVE_LOCATION_LIMIT;
+
+    private int batchRetrieveLocationWindow = DEFAULT_BATCH_RETRIEVE_LOCATION_WINDOW;
+
+    private int existenceCacheSeconds = DEFAULT_EXISTENCE_CACHE_SECONDS;
+
+    private int revalidationRetrySeconds = DEFAULT_REVALIDATION_RETRY_SECONDS;
+
     public TransportManagerConfig()
     {
         thresholdWaitRetrySize = DEFAULT_THRESHOLD_WAIT_RETRY_SIZE;
@@ -66,4 +91,76 @@ public class TransportManagerConfig
     {
         return timeoutOverextensionFactor;
     }
+
+    /**
+     * Number of {@link org.commonjava.maven.galley.model.VirtualResource} members that retrieveFirst() probes
+     * concurrently. The highest-priority hit still wins; values of 1 or less keep the strictly sequential walk.
+     */
+    public int getHedgedRetrieveFanout()
+    {
+        return hedgedRetrieveFanout;
+    }
+
+    public void setHedgedRetrieveFanout( final int hedgedRetrieveFanout )
+    {
+        this.hedgedRetrieveFanout = hedgedRetrieveFanout;
+    }
+
+    /**
+     * Maximum number of speculative existence probes in flight against a single location. Members beyond the limit
+     * are checked in order, on the calling thread, once they are reached.
+     */
+    public int getHedgedRetrieveLocationLimit()
+    {
+        return hedgedRetrieveLocationLimit;
+    }
+
+    public void setHedgedRetrieveLocationLimit( final int hedgedRetrieveLocationLimit )
+    {
+        this.hedgedRetrieveLocationLimit = hedgedRetrieveLocationLimit;
+    }
+
+    /**
+     * Maximum number of batch retrieval tries in flight against a single location. Resources whose next candidate is
+     * on a saturated location wait for one of its tries to finish; values of 0 or less remove the limit.
+     */
+    public int getBatchRetrieveLocationWindow()
+    {
+        return batchRetrieveLocationWindow;
+    }
+
+    public void setBatchRetrieveLocationWindow( final int batchRetrieveLocationWindow )
+    {
+        this.batchRetrieveLocationWindow = batchRetrieveLocationWindow;
+    }
+
+    /**
+     * Seconds a remote resource found by an existence check is assumed to still exist, so repeated checks don't hit
+     * the upstream again. Misses are handled by the {@link org.commonjava.maven.galley.spi.nfc.NotFoundCache}; values
+     * of 0 or less disable the cache.
+     */
+    public int getExistenceCacheSeconds()
+    {
+        return existenceCacheSeconds;
+    }
+
+    public void setExistenceCacheSeconds( final int existenceCacheSeconds )
+    {
+        this.existenceCacheSeconds = existenceCacheSeconds;
+    }
+
+    /**
+     * Seconds after a failed revalidation (an error or timeout, not a miss) during which the stale copy is served
+     * without asking the upstream again, so a struggling origin isn't hit on every request for it. Values of 0 or
+     * less retry right away.
+     */
+    public int getRevalidationRetrySeconds()
+    {
+        return revalidationRetrySeconds;
+    }
+
+    public void setRevalidationRetrySeconds( final int revalidationRetrySeconds )
+    {
+        this.revalidationRetrySeconds = revalidationRetrySeconds;
+    }
 }
@@ -15,6 +15,9 @@
  */
 package org.commonjava.maven.galley.io;
 
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.model.Transfer;
+
 import javax.enterprise.inject.Alternative;
 import javax.inject.Named;
 
@@ -24,4 +27,10 @@ public class NoOpTransferDecorator
     extends AbstractTransferDecorator
 {
 
+    @Override
+    public boolean needsReadDecoration( final Transfer transfer, final EventMetadata metadata )
+    {
+        return false;
+    }
+
 }
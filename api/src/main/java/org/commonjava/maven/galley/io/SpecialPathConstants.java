@@ -37,6 +37,12 @@ public class SpecialPathConstants
 
     public static final String HTTP_METADATA_EXT = ".http-metadata.json";
 
+    /**
+     * Side file holding the time (epoch millis) an expired resource was last confirmed unchanged by its origin, for
+     * caches that can't reset the resource's own timestamp.
+     */
+    public static final String REVALIDATED_EXT = ".revalidated";
+
     public static final List<SpecialPathInfo> STANDARD_SPECIAL_PATHS;
 
     public static final SpecialPathInfo DEFAULT_FILE = SpecialPathInfo.from( new PathPatternMatcher( ".*[^/]" ) )
@@ -89,6 +95,18 @@ public class SpecialPathConstants
 
         standardSp.add( pi );
 
+        pi = SpecialPathInfo.from( new FilePatternMatcher( ".*\\.revalidated$" ) )
+                            .setDecoratable( false )
+                            .setListable( false )
+                            .setPublishable( false )
+                            .setRetrievable( false )
+                            .setStorable( true )
+                            .setMetadata( true )
+                            .setMergable( false )
+                            .build();
+
+        standardSp.add( pi );
+
         STANDARD_SPECIAL_PATHS = standardSp;
     }
 
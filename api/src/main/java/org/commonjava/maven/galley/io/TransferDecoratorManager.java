@@ -98,6 +98,23 @@ public class TransferDecoratorManager
         return result;
     }
 
+    /**
+     * True if any managed decorator needs to see the content of this read; see
+     * {@link TransferDecorator#needsReadDecoration(Transfer, EventMetadata)}.
+     */
+    public boolean needsReadDecoration( final Transfer transfer, final EventMetadata metadata )
+    {
+        for ( TransferDecorator decorator : decorators )
+        {
+            if ( decorator.needsReadDecoration( transfer, metadata ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     public void decorateTouch( final Transfer transfer, final EventMetadata metadata )
     {
         for ( TransferDecorator decorator : decorators )
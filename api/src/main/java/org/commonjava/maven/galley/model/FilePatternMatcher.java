@@ -15,7 +15,9 @@
  */
 package org.commonjava.maven.galley.model;
 
-import java.io.File;
+import java.util.regex.Pattern;
+
+import static org.commonjava.maven.galley.util.PathUtils.fileName;
 
 /**
  * Created by jdcasey on 1/27/16.
@@ -25,15 +27,23 @@ public class FilePatternMatcher
 {
     private final String pattern;
 
+    private final Pattern compiled;
+
     public FilePatternMatcher( String pattern )
     {
         this.pattern = pattern;
+        this.compiled = Pattern.compile( pattern );
+    }
+
+    public String getPattern()
+    {
+        return pattern;
     }
 
     @Override
     public boolean matches( Location location, String path )
     {
-        return path != null && new File( path ).getName().matches( pattern );
+        return path != null && compiled.matcher( fileName( path ) ).matches();
     }
 
     @Override
@@ -30,6 +30,20 @@ public interface Location
 
     String MAX_CONNECTIONS = "max-connections";
 
+    String NFC_TIMEOUT_SECONDS = "nfc-timeout";
+
+    /**
+     * Boolean attribute. When set, expired cached files that carry HTTP validators (ETag / Last-Modified) are kept
+     * and refreshed with a conditional request, instead of being deleted and downloaded again in full.
+     */
+    String CACHE_REVALIDATE = "cache-revalidate";
+
+    /**
+     * Integer attribute. For this many seconds past its cache timeout, an expired file is still served as-is while a
+     * single background refresh replaces it. 0 (the default) turns this off.
+     */
+    String STALE_WHILE_REVALIDATE_SECONDS = "stale-while-revalidate";
+
     int DEFAULT_CONNECTION_TIMEOUT_SECONDS = 30;
 
     int DEFAULT_CACHE_TIMEOUT_SECONDS = 86400;
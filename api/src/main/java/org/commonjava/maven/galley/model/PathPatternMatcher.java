@@ -15,6 +15,8 @@
  */
 package org.commonjava.maven.galley.model;
 
+import java.util.regex.Pattern;
+
 /**
  * Created by jdcasey on 1/27/16.
  */
@@ -23,15 +25,23 @@ public class PathPatternMatcher
 {
     private final String pattern;
 
+    private final Pattern compiled;
+
     public PathPatternMatcher( String pattern )
     {
         this.pattern = pattern;
+        this.compiled = Pattern.compile( pattern );
+    }
+
+    public String getPattern()
+    {
+        return pattern;
     }
 
     @Override
     public boolean matches( Location location, String path )
     {
-        return path != null && path.matches( pattern );
+        return path != null && compiled.matcher( path ).matches();
     }
 
     @Override
@@ -24,6 +24,7 @@ import org.commonjava.maven.galley.io.OverriddenBooleanValue;
 import org.commonjava.maven.galley.io.TransferDecoratorManager;
 import org.commonjava.maven.galley.spi.cache.CacheProvider;
 import org.commonjava.maven.galley.spi.event.FileEventManager;
+import org.commonjava.maven.galley.util.ChannelUtils;
 import org.commonjava.maven.galley.util.TransferInputStream;
 import org.commonjava.maven.galley.util.TransferOutputStream;
 import org.slf4j.Logger;
@@ -33,6 +34,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 
 import static org.apache.commons.lang3.StringUtils.join;
 
@@ -179,6 +181,54 @@ public class Transfer
         }
     }
 
+    public long transferTo( final WritableByteChannel target )
+        throws IOException
+    {
+        return transferTo( target, true, new EventMetadata() );
+    }
+
+    /**
+     * Write this transfer's content to the given channel. If none of the {@link TransferDecoratorManager decorators}
+     * needs to see the content, the cache provider writes it directly (for file-backed providers this is a zero-copy
+     * {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}); otherwise the decorated
+     * {@link #openInputStream(boolean, EventMetadata)} stream is copied to the channel.
+     *
+     * @return the number of bytes written, or -1 if there is no content
+     */
+    public long transferTo( final WritableByteChannel target, final boolean fireEvents,
+                            final EventMetadata eventMetadata )
+        throws IOException
+    {
+        if ( decorator != null && decorator.needsReadDecoration( this, eventMetadata ) )
+        {
+            try (InputStream stream = openInputStream( fireEvents, eventMetadata ))
+            {
+                return stream == null ? -1 : ChannelUtils.copy( stream, target );
+            }
+        }
+
+        provider.waitForReadUnlock( resource );
+        try
+        {
+            final long written = provider.transferTo( resource, target );
+            if ( fireEvents && written > -1 )
+            {
+                fileEventManager.fire( new FileAccessEvent( this, eventMetadata ) );
+            }
+
+            logger.trace( "Transferred {} bytes undecorated for transfer: {}", written, this );
+            return written;
+        }
+        catch ( final IOException e )
+        {
+            if ( fireEvents )
+            {
+                fileEventManager.fire( new FileErrorEvent( this, e, eventMetadata ) );
+            }
+            throw e;
+        }
+    }
+
     public OutputStream openOutputStream( final TransferOperation accessType )
         throws IOException
     {
@@ -449,6 +499,43 @@ public class Transfer
         return provider.lastModified( resource );
     }
 
+    /**
+     * True if the content is past its timeout but was kept so it can be revalidated.
+     *
+     * @see CacheProvider#getStaleness(ConcreteResource)
+     */
+    public boolean isStale()
+    {
+        return getStaleness() != Staleness.NOT_STALE;
+    }
+
+    /**
+     * True if the content is stale but still inside its location's stale-while-revalidate window, so it can be served
+     * right away while it is refreshed in the background.
+     *
+     * @see CacheProvider#getStaleness(ConcreteResource)
+     */
+    public boolean isServableStale()
+    {
+        return getStaleness() == Staleness.SERVABLE_STALE;
+    }
+
+    /**
+     * @see CacheProvider#getStaleness(ConcreteResource)
+     */
+    public Staleness getStaleness()
+    {
+        return provider.getStaleness( resource );
+    }
+
+    /**
+     * @see CacheProvider#markRevalidated(ConcreteResource)
+     */
+    public void markRevalidated()
+    {
+        provider.markRevalidated( resource );
+    }
+
     public Transfer getSibling( final String named )
     {
         if ( resource.isRoot() )
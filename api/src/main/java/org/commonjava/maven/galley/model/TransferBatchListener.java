@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.model;
+
+import org.commonjava.maven.galley.TransferException;
+
+/**
+ * Receives the outcome of each resource in a {@link TransferBatch} as soon as it is known, rather than when the whole
+ * batch is done. Callbacks are made one at a time, from the thread that called
+ * {@link org.commonjava.maven.galley.TransferManager#batchRetrieve(TransferBatch, org.commonjava.maven.galley.event.EventMetadata, TransferBatchListener)},
+ * so implementations need no synchronization of their own.
+ */
+public interface TransferBatchListener
+{
+
+    /**
+     * One of the batch's resources was retrieved. For a {@link VirtualResource}, <code>resource</code> is the member
+     * that was found.
+     */
+    void transferred( Resource root, ConcreteResource resource, Transfer transfer );
+
+    /**
+     * Retrieving <code>resource</code> failed; no further members of <code>root</code> are tried.
+     */
+    void failed( Resource root, ConcreteResource resource, TransferException error );
+
+    /**
+     * Every member of <code>root</code> was tried and none of them exists.
+     */
+    default void missing( Resource root )
+    {
+    }
+}
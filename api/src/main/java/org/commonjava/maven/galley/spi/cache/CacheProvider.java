@@ -16,12 +16,15 @@
 package org.commonjava.maven.galley.spi.cache;
 
 import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Staleness;
 import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.util.ChannelUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -64,6 +67,22 @@ public interface CacheProvider
     OutputStream openOutputStream( ConcreteResource resource )
         throws IOException;
 
+    /**
+     * Write the raw (undecorated) content of the resource to the given channel. File-backed providers should override
+     * this to hand the file straight to the channel, so the bytes never pass through the Java heap; the default just
+     * copies from {@link #openInputStream(ConcreteResource)}.
+     *
+     * @return the number of bytes written, or -1 if the resource doesn't exist
+     */
+    default long transferTo( ConcreteResource resource, WritableByteChannel target )
+        throws IOException
+    {
+        try (InputStream in = openInputStream( resource ))
+        {
+            return in == null ? -1 : ChannelUtils.copy( in, target );
+        }
+    }
+
     boolean exists( ConcreteResource resource );
 
     void copy( ConcreteResource from, ConcreteResource to )
@@ -106,6 +125,27 @@ public interface CacheProvider
 
     long lastModified( ConcreteResource resource );
 
+    /**
+     * Whether the resource is cached but past its timeout, and was kept (rather than deleted) so it can be revalidated
+     * against its origin, possibly being served stale meanwhile. See
+     * {@link org.commonjava.maven.galley.model.Location#CACHE_REVALIDATE} and
+     * {@link org.commonjava.maven.galley.model.Location#STALE_WHILE_REVALIDATE_SECONDS}. Providers that keep expired
+     * content should answer with {@link org.commonjava.maven.galley.util.LocationUtils#getStaleness}, so a cache hit
+     * costs a single stat (or none, for locations that neither revalidate nor serve stale content).
+     */
+    default Staleness getStaleness( ConcreteResource resource )
+    {
+        return Staleness.NOT_STALE;
+    }
+
+    /**
+     * Record that the origin confirmed the cached content is unchanged, restarting its cache timeout without
+     * rewriting it.
+     */
+    default void markRevalidated( ConcreteResource resource )
+    {
+    }
+
     boolean isReadLocked( ConcreteResource resource );
 
     boolean isWriteLocked( ConcreteResource resource );
@@ -135,6 +175,23 @@ public interface CacheProvider
          */
         default void gc() {}
 
+        /**
+         * Number of {@link Transfer} instances the provider currently keeps for reuse, or -1 if it doesn't keep any.
+         */
+        default long getCachedTransferCount() { return -1; }
+
+        /**
+         * Number of {@link Transfer} instances the provider dropped from its cache since it started (not counting
+         * {@link #clearTransferCache()}), or -1 if it doesn't keep any.
+         */
+        default long getEvictedTransferCount() { return -1; }
+
+        /**
+         * Disk bytes the provider didn't have to write because {@link #createAlias(ConcreteResource, ConcreteResource)}
+         * linked the alias to the original instead of copying it.
+         */
+        default long getAliasBytesSaved() { return 0; }
+
         default void close() {}
     }
 }
@@ -65,6 +65,18 @@ public interface TransferDecorator
     InputStream decorateRead( InputStream stream, Transfer transfer, EventMetadata metadata )
         throws IOException;
 
+    /**
+     * Whether {@link #decorateRead(InputStream, Transfer, EventMetadata)} would actually wrap the stream for this read.
+     * When no decorator needs to see the content, {@link Transfer#transferTo(java.nio.channels.WritableByteChannel)}
+     * can hand the cached file straight to the target channel instead of copying it through the heap.
+     * 
+     * The default is true, which is always safe; override it only if the answer matches what decorateRead() does.
+     */
+    default boolean needsReadDecoration( Transfer transfer, EventMetadata metadata )
+    {
+        return true;
+    }
+
     void decorateTouch( Transfer transfer, EventMetadata metadata );
 
     OverriddenBooleanValue decorateExists( Transfer transfer, EventMetadata metadata );
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Helpers for moving cached content onto a {@link WritableByteChannel}, either straight from the file (letting the OS
+ * do the copy where it can, e.g. via sendfile) or through a buffer when all we have is a stream.
+ */
+public final class ChannelUtils
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ChannelUtils()
+    {
+    }
+
+    /**
+     * Write the whole of the given file to the target channel using {@link FileChannel#transferTo(long, long,
+     * WritableByteChannel)}, so the content never has to be copied onto the Java heap.
+     *
+     * @return the number of bytes written
+     */
+    public static long transferFile( final File file, final WritableByteChannel target )
+            throws IOException
+    {
+        try (FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ))
+        {
+            final long size = channel.size();
+            long position = 0;
+            while ( position < size )
+            {
+                final long written = channel.transferTo( position, size - position, target );
+                if ( written <= 0 )
+                {
+                    // the file shrank under us, or the target can't take any more; either way we're done.
+                    break;
+                }
+
+                position += written;
+            }
+
+            return position;
+        }
+    }
+
+    /**
+     * Copy the remainder of the stream to the target channel through a single reusable buffer. This is the fallback
+     * when the content has to pass through a decorated {@link InputStream}.
+     *
+     * @return the number of bytes written
+     */
+    public static long copy( final InputStream in, final WritableByteChannel target )
+            throws IOException
+    {
+        final byte[] bytes = new byte[BUFFER_SIZE];
+        final ByteBuffer buffer = ByteBuffer.wrap( bytes );
+
+        long total = 0;
+        int read;
+        while ( ( read = in.read( bytes ) ) > -1 )
+        {
+            buffer.clear().limit( read );
+            while ( buffer.hasRemaining() )
+            {
+                target.write( buffer );
+            }
+
+            total += read;
+        }
+
+        return total;
+    }
+}
@@ -17,9 +17,14 @@ package org.commonjava.maven.galley.util;
 
 import org.commonjava.maven.galley.model.ConcreteResource;
 import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.Staleness;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
 public final class LocationUtils
 {
 
@@ -60,4 +65,66 @@ public final class LocationUtils
         return location.getAttribute( Location.METADATA_TIMEOUT_SECONDS, Integer.class,
                                       Location.DEFAULT_CACHE_TIMEOUT_SECONDS );
     }
+
+    public static boolean isCacheRevalidating( final Location location )
+    {
+        return location.getAttribute( Location.CACHE_REVALIDATE, Boolean.class, Boolean.FALSE );
+    }
+
+    public static int getStaleWhileRevalidateSeconds( final Location location )
+    {
+        return location.getAttribute( Location.STALE_WHILE_REVALIDATE_SECONDS, Integer.class, 0 );
+    }
+
+    /**
+     * True if the location keeps expired content around, either to revalidate it or to serve it stale. Expired
+     * content from other locations is never stale, so cache providers need not look at it.
+     */
+    public static boolean isKeepingExpired( final Location location )
+    {
+        return isCacheRevalidating( location ) || getStaleWhileRevalidateSeconds( location ) > 0;
+    }
+
+    /**
+     * True if content that expired the given number of milliseconds ago may still be served stale.
+     */
+    public static boolean isWithinStaleWindow( final Location location, final long expiredMillis )
+    {
+        return expiredMillis <= TimeUnit.SECONDS.toMillis( getStaleWhileRevalidateSeconds( location ) );
+    }
+
+    /**
+     * True if expired content can be revalidated: its location asks for it, and the HTTP exchange metadata with its
+     * validators was stored next to it. The metadata is only looked for if the location revalidates.
+     */
+    public static boolean isRevalidatable( final Location location, final BooleanSupplier metadataExists )
+    {
+        return isCacheRevalidating( location ) && metadataExists.getAsBoolean();
+    }
+
+    /**
+     * Staleness of cached content from this location, for cache providers. expiredMillis is how long ago the
+     * content's timeout passed (0 or less if it hasn't); it is only asked for if the location keeps expired content.
+     */
+    public static Staleness getStaleness( final Location location, final LongSupplier expiredMillis,
+                                          final BooleanSupplier metadataExists )
+    {
+        if ( !isKeepingExpired( location ) )
+        {
+            return Staleness.NOT_STALE;
+        }
+
+        final long expired = expiredMillis.getAsLong();
+        if ( expired <= 0 )
+        {
+            return Staleness.NOT_STALE;
+        }
+
+        if ( isWithinStaleWindow( location, expired ) )
+        {
+            return Staleness.SERVABLE_STALE;
+        }
+
+        return isRevalidatable( location, metadataExists ) ? Staleness.STALE : Staleness.NOT_STALE;
+    }
 }
@@ -17,6 +17,8 @@ package org.commonjava.maven.galley.util;
 
 import org.commonjava.maven.galley.event.EventMetadata;
 
+import java.io.File;
+
 import static org.commonjava.maven.galley.spi.cache.CacheProvider.STORAGE_PATH;
 
 public final class PathUtils
@@ -112,6 +114,32 @@ public final class PathUtils
         return sb.toString();
     }
 
+    /**
+     * Same result as <code>new File( path ).getName()</code>, without the allocation or the path normalization: the
+     * last segment of the path, ignoring any trailing separators.
+     */
+    public static String fileName( final String path )
+    {
+        int end = path.length();
+        while ( end > 0 && isSeparator( path.charAt( end - 1 ) ) )
+        {
+            end--;
+        }
+
+        int start = end;
+        while ( start > 0 && !isSeparator( path.charAt( start - 1 ) ) )
+        {
+            start--;
+        }
+
+        return path.substring( start, end );
+    }
+
+    private static boolean isSeparator( final char c )
+    {
+        return c == '/' || c == File.separatorChar;
+    }
+
     @Deprecated
     public static String storagePath ( final String path, final EventMetadata eventMetadata )
     {
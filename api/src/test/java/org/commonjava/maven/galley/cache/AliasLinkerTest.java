@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.cache;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs each alias scenario with linking enabled and disabled, on the local filesystem the temp folder lives on.
+ */
+public class AliasLinkerTest
+{
+    private static final String CONTENT = "this is the jar";
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void aliasHasTheOriginalContent()
+            throws Exception
+    {
+        for ( final boolean linking : new boolean[] { true, false } )
+        {
+            final File from = write( "remote-" + linking + "/org/foo/bar-1.jar", CONTENT );
+            final File to = new File( temp.getRoot(), "group-" + linking + "/org/foo/bar-1.jar" );
+
+            final AliasLinker linker = new AliasLinker( linking );
+            final AliasLinker.Strategy strategy = linker.alias( from, to, FileUtils::copyFile );
+
+            assertThat( read( to ), equalTo( CONTENT ) );
+            assertThat( strategy, equalTo( linking ? AliasLinker.Strategy.HARD_LINK : AliasLinker.Strategy.COPY ) );
+            assertThat( linker.getBytesSaved(), equalTo( linking ? (long) CONTENT.length() : 0L ) );
+
+            logger.info( "Aliasing with linking={}: {}, saved {} bytes on disk", linking, strategy,
+                         linker.getBytesSaved() );
+        }
+    }
+
+    @Test
+    public void existingAliasIsReplaced()
+            throws Exception
+    {
+        for ( final boolean linking : new boolean[] { true, false } )
+        {
+            final File from = write( "remote-" + linking + "/org/foo/bar-1.pom", CONTENT );
+            final File to = write( "group-" + linking + "/org/foo/bar-1.pom", "old" );
+
+            new AliasLinker( linking ).alias( from, to, FileUtils::copyFile );
+
+            assertThat( read( to ), equalTo( CONTENT ) );
+        }
+    }
+
+    @Test
+    public void aliasingTheSamePairTwiceLeavesNoExtraLinks()
+            throws Exception
+    {
+        final File from = write( "remote/org/foo/bar-2.jar", CONTENT );
+        final File to = new File( temp.getRoot(), "group/org/foo/bar-2.jar" );
+
+        final AliasLinker linker = new AliasLinker( true );
+        linker.alias( from, to, FileUtils::copyFile );
+        linker.alias( from, to, FileUtils::copyFile );
+
+        assertThat( read( to ), equalTo( CONTENT ) );
+
+        final String[] names = to.getParentFile().list();
+        assertThat( names == null ? 0 : names.length, equalTo( 1 ) );
+
+        final Object nlink = nlink( from );
+        if ( nlink != null )
+        {
+            assertThat( nlink, equalTo( linker.getLinkCount() > 0 ? 2 : 1 ) );
+        }
+    }
+
+    @Test
+    public void renamingNewContentOverTheOriginalLeavesTheAliasAlone()
+            throws Exception
+    {
+        for ( final boolean linking : new boolean[] { true, false } )
+        {
+            final File from = write( "remote-" + linking + "/org/foo/maven-metadata.xml", CONTENT );
+            final File to = new File( temp.getRoot(), "group-" + linking + "/org/foo/maven-metadata.xml" );
+            new AliasLinker( linking ).alias( from, to, FileUtils::copyFile );
+
+            // how FileCacheProvider writes: into a side file, renamed into place on close.
+            final File next = write( "remote-" + linking + "/org/foo/maven-metadata.xml.to-write", "changed" );
+            Files.move( next.toPath(), from.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING );
+
+            assertThat( read( from ), equalTo( "changed" ) );
+            assertThat( read( to ), equalTo( CONTENT ) );
+        }
+    }
+
+    @Test
+    public void unsharedAliasCanBeWrittenInPlace()
+            throws Exception
+    {
+        for ( final boolean linking : new boolean[] { true, false } )
+        {
+            final File from = write( "remote-" + linking + "/org/foo/bar-1.jar", CONTENT );
+            final File to = new File( temp.getRoot(), "group-" + linking + "/org/foo/bar-1.jar" );
+            new AliasLinker( linking ).alias( from, to, FileUtils::copyFile );
+
+            AliasLinker.unshare( to );
+            FileUtils.writeStringToFile( to, "changed", StandardCharsets.UTF_8 );
+
+            assertThat( read( from ), equalTo( CONTENT ) );
+            assertThat( read( to ), equalTo( "changed" ) );
+        }
+    }
+
+    @Test
+    public void detachedAliasKeepsItsContentButNotTheOriginalsTimestamp()
+            throws Exception
+    {
+        for ( final boolean linking : new boolean[] { true, false } )
+        {
+            final File from = write( "remote-" + linking + "/org/foo/bar-3.jar", CONTENT );
+            final File to = new File( temp.getRoot(), "group-" + linking + "/org/foo/bar-3.jar" );
+            new AliasLinker( linking ).alias( from, to, FileUtils::copyFile );
+
+            final long original = from.lastModified();
+            AliasLinker.detach( to );
+            to.setLastModified( original + 60_000 );
+
+            assertThat( read( to ), equalTo( CONTENT ) );
+            assertThat( from.lastModified(), equalTo( original ) );
+
+            final String[] names = to.getParentFile().list();
+            assertThat( names == null ? 0 : names.length, equalTo( 1 ) );
+        }
+    }
+
+    @Test
+    public void missingOriginalFailsLikeACopy()
+            throws Exception
+    {
+        final File from = new File( temp.getRoot(), "remote/org/foo/missing-1.jar" );
+        final File to = new File( temp.getRoot(), "group/org/foo/missing-1.jar" );
+
+        final AliasLinker linker = new AliasLinker( true );
+        try
+        {
+            linker.alias( from, to, FileUtils::copyFile );
+            fail( "Aliasing a missing file should fail" );
+        }
+        catch ( final IOException e )
+        {
+            logger.info( "Expected failure: {}", e.getMessage() );
+        }
+
+        assertThat( to.exists(), equalTo( false ) );
+        assertThat( linker.getLinkCount(), equalTo( 0L ) );
+    }
+
+    private Object nlink( final File f )
+            throws IOException
+    {
+        try
+        {
+            return Files.getAttribute( f.toPath(), "unix:nlink" );
+        }
+        catch ( final UnsupportedOperationException | IllegalArgumentException e )
+        {
+            return null;
+        }
+    }
+
+    private File write( final String path, final String content )
+            throws Exception
+    {
+        final File f = new File( temp.getRoot(), path );
+        FileUtils.writeStringToFile( f, content, StandardCharsets.UTF_8 );
+        return f;
+    }
+
+    private String read( final File f )
+            throws Exception
+    {
+        return FileUtils.readFileToString( f, StandardCharsets.UTF_8 );
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.cache;
+
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ExpirySchedulerTest
+{
+    private final ConcreteResource resource =
+            new ConcreteResource( new SimpleLocation( "test", "http://test.com/repo" ), "org/foo/bar/maven-metadata.xml" );
+
+    private final AtomicLong clock = new AtomicLong( 1000 );
+
+    private final List<ConcreteResource> expired = Collections.synchronizedList( new ArrayList<>() );
+
+    private long nextDeadline;
+
+    private final ExpiryScheduler scheduler = new ExpiryScheduler( "test-expiry", r -> {
+        expired.add( r );
+        return nextDeadline;
+    }, clock::get, false, 2 );
+
+    @Test
+    public void resourceIsCheckedOnceItsDeadlinePasses()
+    {
+        scheduler.schedule( resource, 2000 );
+
+        clock.set( 1999 );
+        scheduler.expireDue();
+        assertThat( expired.size(), equalTo( 0 ) );
+
+        clock.set( 2000 );
+        scheduler.expireDue();
+        assertThat( expired.size(), equalTo( 1 ) );
+        assertThat( scheduler.isScheduled( resource ), equalTo( false ) );
+    }
+
+    @Test
+    public void deadlineReturnedByTheExpirerIsScheduled()
+    {
+        nextDeadline = 3000;
+        scheduler.schedule( resource, 2000 );
+
+        clock.set( 2000 );
+        scheduler.expireDue();
+        assertThat( scheduler.isScheduled( resource ), equalTo( true ) );
+
+        nextDeadline = 0;
+        clock.set( 3000 );
+        scheduler.expireDue();
+        assertThat( expired.size(), equalTo( 2 ) );
+        assertThat( scheduler.getScheduledCount(), equalTo( 0 ) );
+    }
+
+    @Test
+    public void earlierDeadlineStands()
+    {
+        scheduler.schedule( resource, 2000 );
+        scheduler.schedule( resource, 5000 );
+
+        clock.set( 2000 );
+        scheduler.expireDue();
+        assertThat( expired.size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void cancelledResourceIsNotChecked()
+    {
+        scheduler.schedule( resource, 2000 );
+        scheduler.cancel( resource );
+
+        clock.set( 2000 );
+        scheduler.expireDue();
+        assertThat( expired.size(), equalTo( 0 ) );
+    }
+
+    @Test
+    public void trackedResourceIsCheckedOnce()
+    {
+        scheduler.track( resource );
+        scheduler.track( resource );
+
+        scheduler.expireDue();
+        assertThat( expired.size(), equalTo( 1 ) );
+        assertThat( scheduler.getCheckCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void resourceSeenBeforeIsNotTrackedAgain()
+    {
+        scheduler.track( resource );
+        scheduler.expireDue();
+
+        // e.g. a path that isn't cached: the check found nothing to track, and asking again shouldn't queue another.
+        scheduler.track( resource );
+        scheduler.expireDue();
+        assertThat( scheduler.getCheckCount(), equalTo( 1L ) );
+        assertThat( scheduler.getScheduledCount(), equalTo( 0 ) );
+    }
+
+    @Test
+    public void resourceSeenLongestAgoIsForgottenFirst()
+    {
+        final ConcreteResource second = new ConcreteResource( resource.getLocation(), "org/foo/bar/2/bar-2.pom" );
+        final ConcreteResource third = new ConcreteResource( resource.getLocation(), "org/foo/bar/3/bar-3.pom" );
+
+        // remembers two resources; the third one pushes out the first, and only the first.
+        scheduler.track( resource );
+        scheduler.track( second );
+        scheduler.track( third );
+        scheduler.expireDue();
+        assertThat( scheduler.getCheckCount(), equalTo( 3L ) );
+
+        scheduler.track( second );
+        scheduler.track( third );
+        scheduler.expireDue();
+        assertThat( scheduler.getCheckCount(), equalTo( 3L ) );
+
+        scheduler.track( resource );
+        scheduler.expireDue();
+        assertThat( scheduler.getCheckCount(), equalTo( 4L ) );
+    }
+
+    @Test
+    public void backgroundThreadChecksDueResources()
+            throws Exception
+    {
+        final CountDownLatch checked = new CountDownLatch( 1 );
+        final ExpiryScheduler background = new ExpiryScheduler( "test-expiry", r -> {
+            checked.countDown();
+            return 0;
+        } );
+
+        try
+        {
+            background.schedule( resource, System.currentTimeMillis() + 50 );
+            assertThat( checked.await( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        }
+        finally
+        {
+            background.shutdown();
+        }
+    }
+}
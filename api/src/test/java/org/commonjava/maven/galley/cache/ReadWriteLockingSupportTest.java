@@ -0,0 +1,299 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.cache;
+
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ReadWriteLockingSupportTest
+{
+    private final ReadWriteLockingSupport locks = new ReadWriteLockingSupport();
+
+    private final ConcreteResource resource =
+            new ConcreteResource( new SimpleLocation( "test", "http://test.com/repo" ), "org/foo/bar/1/bar-1.pom" );
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void readersShareTheLock()
+            throws Exception
+    {
+        locks.lockRead( resource );
+
+        final Future<Boolean> other = executor.submit( () -> {
+            locks.lockRead( resource );
+            try
+            {
+                return locks.isReadLocked( resource );
+            }
+            finally
+            {
+                locks.unlockRead( resource );
+            }
+        } );
+
+        // the other reader got in while we still hold our read lock, and it can see us.
+        assertThat( other.get( 5, TimeUnit.SECONDS ), equalTo( true ) );
+        locks.unlockRead( resource );
+    }
+
+    @Test
+    public void writerWaitsForReadersAndIsSignalledOnRelease()
+            throws Exception
+    {
+        locks.lockRead( resource );
+
+        final CountDownLatch attempting = new CountDownLatch( 1 );
+        final Future<?> writer = executor.submit( () -> {
+            attempting.countDown();
+            locks.lockWrite( resource );
+            locks.unlockWrite( resource );
+            return null;
+        } );
+
+        attempting.await();
+        try
+        {
+            writer.get( 200, TimeUnit.MILLISECONDS );
+            fail( "Writer acquired the lock while a reader held it" );
+        }
+        catch ( final TimeoutException e )
+        {
+            // expected
+        }
+
+        final long released = System.nanoTime();
+        locks.unlockRead( resource );
+        writer.get( 5, TimeUnit.SECONDS );
+
+        // woken by the release itself, not by the periodic dead-owner check.
+        assertThat( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - released ) < 500, equalTo( true ) );
+    }
+
+    @Test
+    public void waitingWriterGoesBeforeNewReaders()
+            throws Exception
+    {
+        locks.lockRead( resource );
+
+        final AtomicBoolean written = new AtomicBoolean();
+        final CountDownLatch attempting = new CountDownLatch( 1 );
+        final Future<?> writer = executor.submit( () -> {
+            attempting.countDown();
+            locks.lockWrite( resource );
+            written.set( true );
+            locks.unlockWrite( resource );
+            return null;
+        } );
+
+        attempting.await();
+        try
+        {
+            writer.get( 200, TimeUnit.MILLISECONDS );
+            fail( "Writer acquired the lock while a reader held it" );
+        }
+        catch ( final TimeoutException e )
+        {
+            // expected
+        }
+
+        final Future<Boolean> reader = executor.submit( () -> {
+            locks.lockRead( resource );
+            try
+            {
+                return written.get();
+            }
+            finally
+            {
+                locks.unlockRead( resource );
+            }
+        } );
+
+        try
+        {
+            reader.get( 200, TimeUnit.MILLISECONDS );
+            fail( "New reader got in ahead of the waiting writer" );
+        }
+        catch ( final TimeoutException e )
+        {
+            // expected
+        }
+
+        // the existing reader can still re-lock without queueing behind the writer; locks don't nest, so one unlock
+        // releases it.
+        locks.lockRead( resource );
+        locks.unlockRead( resource );
+
+        writer.get( 5, TimeUnit.SECONDS );
+        assertThat( reader.get( 5, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( locks.getActiveLocks().isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void sameThreadRelockAndUpgradeDoNotBlock()
+    {
+        locks.lockWrite( resource );
+        locks.lockWrite( resource );
+        locks.lockRead( resource );
+        locks.waitForWriteUnlock( resource );
+        assertThat( locks.isWriteLocked( resource ), equalTo( false ) );
+        locks.unlockWrite( resource );
+
+        locks.lockRead( resource );
+        locks.lockWrite( resource );
+        locks.unlockWrite( resource );
+        locks.unlockRead( resource );
+
+        assertThat( locks.getActiveLocks().isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void secondUpgradingReaderFailsInsteadOfDeadlocking()
+            throws Exception
+    {
+        locks.lockRead( resource );
+
+        final CountDownLatch reading = new CountDownLatch( 1 );
+        final Future<?> upgrader = executor.submit( () -> {
+            locks.lockRead( resource );
+            reading.countDown();
+            locks.lockWrite( resource );
+            locks.unlockWrite( resource );
+            locks.unlockRead( resource );
+            return null;
+        } );
+
+        reading.await();
+        try
+        {
+            upgrader.get( 200, TimeUnit.MILLISECONDS );
+            fail( "Upgrade succeeded while another reader held the lock" );
+        }
+        catch ( final TimeoutException e )
+        {
+            // expected
+        }
+
+        try
+        {
+            locks.lockWrite( resource );
+            fail( "Second upgrade should have failed" );
+        }
+        catch ( final IllegalStateException e )
+        {
+            // expected
+        }
+
+        // our read lock is untouched, and giving it up lets the first upgrade through.
+        assertThat( locks.getActiveLocks().get( resource ).toString().contains( Thread.currentThread().getName() ),
+                    equalTo( true ) );
+        locks.unlockRead( resource );
+        upgrader.get( 5, TimeUnit.SECONDS );
+        assertThat( locks.getActiveLocks().isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void waiterIsWokenWhenTheOwnerDies()
+            throws Exception
+    {
+        final CountDownLatch locked = new CountDownLatch( 1 );
+        final CountDownLatch die = new CountDownLatch( 1 );
+        final Thread owner = new Thread( () -> {
+            locks.lockWrite( resource );
+            locked.countDown();
+            try
+            {
+                die.await();
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        } );
+        owner.start();
+        locked.await();
+
+        final Future<?> reader = executor.submit( () -> {
+            locks.lockRead( resource );
+            locks.unlockRead( resource );
+            return null;
+        } );
+
+        try
+        {
+            reader.get( 200, TimeUnit.MILLISECONDS );
+            fail( "Reader got in while the writer was alive" );
+        }
+        catch ( final TimeoutException e )
+        {
+            // expected
+        }
+
+        die.countDown();
+        owner.join();
+        reader.get( 5, TimeUnit.SECONDS );
+    }
+
+    @Test
+    public void locksOfDeadThreadsAreReleased()
+            throws Exception
+    {
+        final Thread owner = new Thread( () -> locks.lockWrite( resource ) );
+        owner.start();
+        owner.join();
+
+        assertThat( locks.getActiveLocks().get( resource ).toString().contains( "DEAD" ), equalTo( true ) );
+        assertThat( locks.isWriteLocked( resource ), equalTo( false ) );
+
+        locks.lockWrite( resource );
+        locks.unlockWrite( resource );
+        assertThat( locks.getActiveLocks().isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void unlockFromOtherThreadIsIgnored()
+            throws Exception
+    {
+        locks.lockWrite( resource );
+        executor.submit( () -> locks.unlockWrite( resource ) ).get( 5, TimeUnit.SECONDS );
+
+        final Future<Boolean> locked = executor.submit( () -> locks.isWriteLocked( resource ) );
+        assertThat( locked.get( 5, TimeUnit.SECONDS ), equalTo( true ) );
+
+        locks.cleanupCurrentThread();
+        assertThat( locks.getActiveLocks().isEmpty(), equalTo( true ) );
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Staleness;
+import org.junit.Test;
+
+public class LocationUtilsTest
+{
+    @Test
+    public void expiredContentOfPlainLocationIsNeverLookedAt()
+    {
+        final Location loc = new SimpleLocation( "test", "http://test.com/repo" );
+
+        assertThat( LocationUtils.getStaleness( loc, () -> {
+            throw new AssertionError( "expiry was checked" );
+        }, () -> {
+            throw new AssertionError( "metadata was checked" );
+        } ), equalTo( Staleness.NOT_STALE ) );
+    }
+
+    @Test
+    public void expiredContentIsServableStaleInsideWindowOnly()
+    {
+        final Location loc = new SimpleLocation( "test", "http://test.com/repo" );
+        loc.setAttribute( Location.STALE_WHILE_REVALIDATE_SECONDS, 10 );
+
+        assertThat( LocationUtils.getStaleness( loc, () -> 0, () -> true ), equalTo( Staleness.NOT_STALE ) );
+        assertThat( LocationUtils.getStaleness( loc, () -> 10_000, () -> true ), equalTo( Staleness.SERVABLE_STALE ) );
+        assertThat( LocationUtils.getStaleness( loc, () -> 10_001, () -> true ), equalTo( Staleness.NOT_STALE ) );
+    }
+
+    @Test
+    public void expiredContentIsStaleOnlyWithMetadataToRevalidateWith()
+    {
+        final Location loc = new SimpleLocation( "test", "http://test.com/repo" );
+        loc.setAttribute( Location.CACHE_REVALIDATE, true );
+
+        assertThat( LocationUtils.getStaleness( loc, () -> 1, () -> true ), equalTo( Staleness.STALE ) );
+        assertThat( LocationUtils.getStaleness( loc, () -> 1, () -> false ), equalTo( Staleness.NOT_STALE ) );
+    }
+}
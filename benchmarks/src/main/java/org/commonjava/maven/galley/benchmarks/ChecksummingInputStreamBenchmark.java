@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.io.NoOpTransferDecorator;
+import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.io.checksum.AbstractChecksumGeneratorFactory;
+import org.commonjava.maven.galley.io.checksum.ChecksummingInputStream;
+import org.commonjava.maven.galley.io.checksum.Md5GeneratorFactory;
+import org.commonjava.maven.galley.io.checksum.Sha1GeneratorFactory;
+import org.commonjava.maven.galley.io.checksum.Sha256GeneratorFactory;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.testing.core.cache.TestCacheProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a {@link #PAYLOAD_MB} MB payload through {@link ChecksummingInputStream} for each configured digest set, with
+ * the digests computed one after another or in parallel, plus a byte-at-a-time read as the baseline for bulk updates.
+ * Multiply ops/s by {@link #PAYLOAD_MB} for MB/s.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class ChecksummingInputStreamBenchmark
+{
+    static final int PAYLOAD_MB = 16;
+
+    @Param( { "md5", "md5,sha1", "md5,sha1,sha256" } )
+    public String digests;
+
+    @Param( { "false", "true" } )
+    public boolean parallel;
+
+    private final byte[] buffer = new byte[8192];
+
+    private byte[] payload;
+
+    private Set<AbstractChecksumGeneratorFactory<?>> factories;
+
+    private ExecutorService executor;
+
+    private File cacheDir;
+
+    private Transfer transfer;
+
+    @Setup
+    public void setup()
+            throws Exception
+    {
+        payload = new byte[PAYLOAD_MB * 1024 * 1024];
+        new Random( 42 ).nextBytes( payload );
+
+        factories = new HashSet<>();
+        for ( final String digest : digests.split( "," ) )
+        {
+            switch ( digest )
+            {
+                case "md5":
+                    factories.add( new Md5GeneratorFactory() );
+                    break;
+                case "sha1":
+                    factories.add( new Sha1GeneratorFactory() );
+                    break;
+                case "sha256":
+                    factories.add( new Sha256GeneratorFactory() );
+                    break;
+                default:
+                    throw new IllegalArgumentException( "Unknown digest: " + digest );
+            }
+        }
+
+        executor = parallel ? Executors.newFixedThreadPool( factories.size() ) : null;
+
+        cacheDir = Files.createTempDirectory( "galley-bench-checksum" ).toFile();
+        final TestCacheProvider cache = new TestCacheProvider( cacheDir, new NoOpFileEventManager(),
+                                                               new TransferDecoratorManager(
+                                                                       new NoOpTransferDecorator() ) );
+        transfer = cache.getTransfer(
+                new ConcreteResource( new SimpleLocation( "bench", "http://bench.local/repo" ), "payload.bin" ) );
+    }
+
+    @TearDown
+    public void teardown()
+            throws Exception
+    {
+        if ( executor != null )
+        {
+            executor.shutdownNow();
+        }
+
+        FileUtils.deleteDirectory( cacheDir );
+    }
+
+    @Benchmark
+    public long read()
+            throws Exception
+    {
+        long total = 0;
+        try (ChecksummingInputStream in = new ChecksummingInputStream( factories, new ByteArrayInputStream( payload ),
+                                                                       transfer, null, false, null, executor ))
+        {
+            int read;
+            while ( ( read = in.read( buffer ) ) > -1 )
+            {
+                total += read;
+            }
+        }
+
+        return total;
+    }
+
+    @Benchmark
+    public long readByteAtATime()
+            throws Exception
+    {
+        long total = 0;
+        try (ChecksummingInputStream in = new ChecksummingInputStream( factories, new ByteArrayInputStream( payload ),
+                                                                       transfer, null, false, null, executor ))
+        {
+            while ( in.read() > -1 )
+            {
+                total++;
+            }
+        }
+
+        return total;
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.commonjava.maven.galley.TransferException;
+import org.commonjava.maven.galley.config.TransportManagerConfig;
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.internal.xfer.DownloadHandler;
+import org.commonjava.maven.galley.io.NoOpTransferDecorator;
+import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.nfc.MemoryNotFoundCache;
+import org.commonjava.maven.galley.spi.transport.DownloadJob;
+import org.commonjava.maven.galley.testing.core.cache.TestCacheProvider;
+import org.commonjava.maven.galley.testing.core.transport.TestTransport;
+import org.commonjava.maven.galley.testing.core.transport.job.TestDownload;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link DownloadHandler} with many threads at once: all of them hitting one already-cached target, and all of them
+ * racing for a stream of fresh targets, where every group of {@link #THREADS} consecutive calls asks for the same path
+ * and so should coalesce onto one download. The latter reports its requests and the downloads they started as
+ * auxiliary counters next to its throughput.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@Threads( DownloadHandlerBenchmark.THREADS )
+@State( Scope.Benchmark )
+public class DownloadHandlerBenchmark
+{
+    static final int THREADS = 8;
+
+    private static final int TIMEOUT_SECONDS = 30;
+
+    private final Location location = new SimpleLocation( "bench", "http://bench.local/repo" );
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Counters of the benchmark thread; downloads are started on the thread whose request missed.
+     */
+    private static final ThreadLocal<Counters> COUNTERS = new ThreadLocal<>();
+
+    private File cacheDir;
+
+    private ExecutorService executor;
+
+    private TestCacheProvider cache;
+
+    private TestTransport transport;
+
+    private DownloadHandler handler;
+
+    private ConcreteResource shared;
+
+    private Transfer sharedTarget;
+
+    @Setup
+    public void setup()
+            throws Exception
+    {
+        cacheDir = Files.createTempDirectory( "galley-bench-download" ).toFile();
+        executor = Executors.newFixedThreadPool( THREADS );
+        cache = new TestCacheProvider( cacheDir, new NoOpFileEventManager(),
+                                       new TransferDecoratorManager( new NoOpTransferDecorator() ) );
+
+        transport = new TestTransport()
+        {
+            @Override
+            public DownloadJob createDownloadJob( final ConcreteResource resource, final Transfer target,
+                                                  final Map<Transfer, Long> transferSizes, final int timeoutSeconds,
+                                                  final EventMetadata eventMetadata )
+                    throws TransferException
+            {
+                final Counters counters = COUNTERS.get();
+                if ( counters != null )
+                {
+                    counters.downloads++;
+                }
+
+                final TestDownload job = new TestDownload( resource.getPath().getBytes() );
+                job.setTransfer( target );
+                job.setEventMetadata( eventMetadata );
+                return job;
+            }
+        };
+
+        handler = new DownloadHandler( new MemoryNotFoundCache(), new TransportManagerConfig(), executor );
+
+        shared = new ConcreteResource( location, "org/foo/shared/1.0/shared-1.0.jar" );
+        sharedTarget = handler.download( shared, cache.getTransfer( shared ), TIMEOUT_SECONDS, transport, false,
+                                         new EventMetadata() );
+    }
+
+    @TearDown
+    public void teardown()
+            throws Exception
+    {
+        executor.shutdownNow();
+        FileUtils.deleteDirectory( cacheDir );
+    }
+
+    @Benchmark
+    public Transfer cachedTarget()
+            throws Exception
+    {
+        return handler.download( shared, sharedTarget, TIMEOUT_SECONDS, transport, false, new EventMetadata() );
+    }
+
+    @Benchmark
+    public Transfer coalescedMiss( final Counters counters )
+            throws Exception
+    {
+        counters.requests++;
+        final long group = sequence.getAndIncrement() / THREADS;
+        final ConcreteResource resource =
+                new ConcreteResource( location, "org/foo/p" + group + "/1.0/p" + group + "-1.0.jar" );
+
+        return handler.download( resource, cache.getTransfer( resource ), TIMEOUT_SECONDS, transport, false,
+                                 new EventMetadata() );
+    }
+
+    @State( Scope.Thread )
+    @AuxCounters( AuxCounters.Type.EVENTS )
+    public static class Counters
+    {
+        public long requests;
+
+        public long downloads;
+
+        @Setup( Level.Iteration )
+        public void reset()
+        {
+            requests = 0;
+            downloads = 0;
+            COUNTERS.set( this );
+        }
+    }
+}
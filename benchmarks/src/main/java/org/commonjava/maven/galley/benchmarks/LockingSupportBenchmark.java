@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.benchmarks;
+
+import org.commonjava.maven.galley.cache.ReadWriteLockingSupport;
+import org.commonjava.maven.galley.cache.SimpleLockingSupport;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock / unlock round trips through {@link SimpleLockingSupport} and the {@link ReadWriteLockingSupport} that replaced
+ * it, with several threads either reading one shared resource or each working on a resource of its own.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@Threads( 4 )
+@SuppressWarnings( "deprecation" )
+public class LockingSupportBenchmark
+{
+    private static final Location LOCATION = new SimpleLocation( "bench", "http://bench.local/repo" );
+
+    @State( Scope.Benchmark )
+    public static class Locks
+    {
+        final SimpleLockingSupport simple = new SimpleLockingSupport();
+
+        final ReadWriteLockingSupport readWrite = new ReadWriteLockingSupport();
+
+        final ConcreteResource shared = new ConcreteResource( LOCATION, "org/foo/shared/1.0/shared-1.0.pom" );
+
+        final AtomicInteger threads = new AtomicInteger();
+    }
+
+    @State( Scope.Thread )
+    public static class Own
+    {
+        ConcreteResource resource;
+
+        @Setup
+        public void setup( final Locks locks )
+        {
+            final int i = locks.threads.getAndIncrement();
+            resource = new ConcreteResource( LOCATION, "org/foo/p" + i + "/1.0/p" + i + "-1.0.pom" );
+        }
+    }
+
+    @Benchmark
+    public void simpleSharedRead( final Locks locks )
+    {
+        // SimpleLockingSupport has no shared mode; readers serialize on the one lock.
+        locks.simple.lock( locks.shared );
+        locks.simple.unlock( locks.shared );
+    }
+
+    @Benchmark
+    public void readWriteSharedRead( final Locks locks )
+    {
+        locks.readWrite.lockRead( locks.shared );
+        locks.readWrite.unlockRead( locks.shared );
+    }
+
+    @Benchmark
+    public void simpleOwnWrite( final Locks locks, final Own own )
+    {
+        locks.simple.lock( own.resource );
+        locks.simple.unlock( own.resource );
+    }
+
+    @Benchmark
+    public void readWriteOwnWrite( final Locks locks, final Own own )
+    {
+        locks.readWrite.lockWrite( own.resource );
+        locks.readWrite.unlockWrite( own.resource );
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.benchmarks;
+
+import org.commonjava.atlas.maven.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.galley.maven.internal.defaults.StandardMaven350PluginDefaults;
+import org.commonjava.maven.galley.maven.internal.defaults.StandardMavenPluginImplications;
+import org.commonjava.maven.galley.maven.model.view.DependencyView;
+import org.commonjava.maven.galley.maven.model.view.DocRef;
+import org.commonjava.maven.galley.maven.model.view.MavenPomView;
+import org.commonjava.maven.galley.maven.model.view.XPathManager;
+import org.commonjava.maven.galley.maven.parse.XMLInfrastructure;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.commonjava.maven.galley.benchmarks.XmlParseBenchmark.readResource;
+
+/**
+ * XPath-backed lookups on a two-level (child + parent) {@link MavenPomView}: a plain inherited value, a property
+ * expression overridden in the child, and the full direct-dependency list with managed versions filled in.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class MavenPomViewBenchmark
+{
+    private MavenPomView view;
+
+    @Setup
+    public void setup()
+            throws Exception
+    {
+        final XMLInfrastructure xml = new XMLInfrastructure();
+        final Location location = new SimpleLocation( "bench", "http://bench.local/repo" );
+
+        final List<DocRef<ProjectVersionRef>> stack = new ArrayList<>();
+        ProjectVersionRef ref = null;
+        for ( final String pom : new String[] { "poms/bench-child.xml", "poms/bench-parent.xml" } )
+        {
+            final Document doc = xml.parseDocument( pom, new ByteArrayInputStream( readResource( pom ) ) );
+            final ProjectVersionRef pvr = xml.getProjectVersionRef( doc );
+            if ( ref == null )
+            {
+                ref = pvr;
+            }
+
+            stack.add( new DocRef<>( pvr, location, doc ) );
+        }
+
+        view = new MavenPomView( ref, stack, new XPathManager(), new StandardMaven350PluginDefaults(),
+                                 new StandardMavenPluginImplications( xml ), xml );
+    }
+
+    @Benchmark
+    public String inheritedXPath()
+    {
+        return view.resolveXPathExpression( "/project/properties/project.build.sourceEncoding/text()", false );
+    }
+
+    @Benchmark
+    public String overriddenPropertyExpression()
+    {
+        return view.resolveExpressions( "${jacksonVersion}" );
+    }
+
+    @Benchmark
+    public List<DependencyView> allDirectDependencies()
+            throws Exception
+    {
+        final List<DependencyView> deps = view.getAllDirectDependencies();
+        // force resolution of the managed versions, which is where most of the XPath work happens.
+        for ( final DependencyView dep : deps )
+        {
+            dep.getVersion();
+        }
+
+        return deps;
+    }
+}
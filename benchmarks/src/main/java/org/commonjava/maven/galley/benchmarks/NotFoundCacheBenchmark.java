@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.benchmarks;
+
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.nfc.CompactNotFoundCache;
+import org.commonjava.maven.galley.nfc.ConcurrentNotFoundCache;
+import org.commonjava.maven.galley.nfc.MemoryNotFoundCache;
+import org.commonjava.maven.galley.spi.nfc.NotFoundCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link NotFoundCache#isMissing(ConcreteResource)} lookups, both for paths that were marked missing and for paths that
+ * weren't, across the in-tree implementations.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@Threads( 4 )
+@State( Scope.Benchmark )
+public class NotFoundCacheBenchmark
+{
+    @Param( { "memory", "concurrent", "compact" } )
+    public String impl;
+
+    @Param( { "10000" } )
+    public int entries;
+
+    private NotFoundCache nfc;
+
+    private ConcreteResource[] missing;
+
+    private ConcreteResource[] present;
+
+    @Setup
+    public void setup()
+    {
+        switch ( impl )
+        {
+            case "concurrent":
+                nfc = new ConcurrentNotFoundCache();
+                break;
+            case "compact":
+                nfc = new CompactNotFoundCache();
+                break;
+            default:
+                nfc = new MemoryNotFoundCache();
+        }
+
+        final Location[] locations = new Location[8];
+        for ( int i = 0; i < locations.length; i++ )
+        {
+            locations[i] = new SimpleLocation( "repo" + i, "http://bench.local/repo" + i );
+        }
+
+        missing = new ConcreteResource[entries];
+        present = new ConcreteResource[entries];
+        for ( int i = 0; i < entries; i++ )
+        {
+            final Location location = locations[i % locations.length];
+            missing[i] = new ConcreteResource( location, "org/foo/missing" + i + "/1.0/missing" + i + "-1.0.pom" );
+            present[i] = new ConcreteResource( location, "org/foo/present" + i + "/1.0/present" + i + "-1.0.pom" );
+            nfc.addMissing( missing[i] );
+        }
+    }
+
+    @Benchmark
+    public boolean lookupMissing()
+    {
+        return nfc.isMissing( missing[ThreadLocalRandom.current().nextInt( entries )] );
+    }
+
+    @Benchmark
+    public boolean lookupPresent()
+    {
+        return nfc.isMissing( present[ThreadLocalRandom.current().nextInt( entries )] );
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.benchmarks;
+
+import org.commonjava.maven.galley.io.SpecialPathManagerImpl;
+import org.commonjava.maven.galley.model.FilePatternMatcher;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.SpecialPathInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.commonjava.maven.galley.io.SpecialPathConstants.PKG_TYPE_MAVEN;
+import static org.commonjava.maven.galley.io.SpecialPathConstants.PKG_TYPE_NPM;
+
+/**
+ * {@link SpecialPathManagerImpl#getSpecialPathInfo(Location, String, String)}, which runs on nearly every read and
+ * write through the decorators, for a spread of special and ordinary paths and a growing number of extra registered
+ * rules. {@link #getSpecialPathInfo()} repeats one path, so it measures the memoized result; {@link #distinctPaths()}
+ * cycles through more paths than the manager memoizes, so every call goes through the rule index.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class SpecialPathManagerBenchmark
+{
+    @Param( { "org/foo/bar/1.0/bar-1.0.jar", "org/foo/bar/1.0/bar-1.0.pom.sha1",
+                    "org/foo/bar/maven-metadata.xml", "org/foo/bar/1.0/", "jquery/-/jquery-3.6.0.tgz" } )
+    public String path;
+
+    @Param( { "0", "100", "1000" } )
+    public int extraRules;
+
+    private SpecialPathManagerImpl specialPathManager;
+
+    private String[] distinct;
+
+    private int next;
+
+    private Location location;
+
+    private String pkgType;
+
+    @Setup
+    public void setup()
+    {
+        specialPathManager = new SpecialPathManagerImpl();
+        for ( int i = 0; i < extraRules; i++ )
+        {
+            // alternate between rules the index can key on a literal suffix and rules it always has to evaluate.
+            final String pattern = i % 2 == 0 ? ".+\\.ext" + i + "$" : ".+\\.ext" + i + "[0-9]?";
+            specialPathManager.registerSpecialPathInfo( SpecialPathInfo.from( new FilePatternMatcher( pattern ) )
+                                                                       .build() );
+        }
+
+        location = new SimpleLocation( "bench", "http://bench.local/repo" );
+        pkgType = path.endsWith( ".tgz" ) ? PKG_TYPE_NPM : PKG_TYPE_MAVEN;
+
+        distinct = new String[SpecialPathManagerImpl.MAX_CACHED_RESULTS * 2];
+        for ( int i = 0; i < distinct.length; i++ )
+        {
+            distinct[i] = "d" + i + "/" + path;
+        }
+    }
+
+    @Benchmark
+    public SpecialPathInfo getSpecialPathInfo()
+    {
+        return specialPathManager.getSpecialPathInfo( location, path, pkgType );
+    }
+
+    @Benchmark
+    public SpecialPathInfo distinctPaths()
+    {
+        final String p = distinct[next];
+        next = ( next + 1 ) % distinct.length;
+        return specialPathManager.getSpecialPathInfo( location, p, pkgType );
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.commonjava.maven.galley.GalleyCore;
+import org.commonjava.maven.galley.GalleyCoreBuilder;
+import org.commonjava.maven.galley.TransferManager;
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.io.NoOpTransferDecorator;
+import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.testing.core.cache.TestCacheProvider;
+import org.commonjava.maven.galley.testing.core.transport.TestTransport;
+import org.commonjava.maven.galley.testing.core.transport.job.TestDownload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TransferManager#retrieve(ConcreteResource, boolean, EventMetadata)} when the content is already in the cache,
+ * which is by far the most common call in a running Galley.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class TransferManagerRetrieveBenchmark
+{
+    @Param( { "16", "1024" } )
+    public int paths;
+
+    private File cacheDir;
+
+    private GalleyCore core;
+
+    private ConcreteResource[] resources;
+
+    @Setup
+    public void setup()
+            throws Exception
+    {
+        cacheDir = Files.createTempDirectory( "galley-bench-retrieve" ).toFile();
+
+        final TestTransport transport = new TestTransport();
+        final Location location = new SimpleLocation( "bench", "http://bench.local/repo" );
+
+        core = new GalleyCoreBuilder().withCache(
+                new TestCacheProvider( cacheDir, new NoOpFileEventManager(),
+                                       new TransferDecoratorManager( new NoOpTransferDecorator() ) ) )
+                                      .withEnabledTransports( transport )
+                                      .build();
+
+        resources = new ConcreteResource[paths];
+        for ( int i = 0; i < paths; i++ )
+        {
+            resources[i] = new ConcreteResource( location, "org/foo/bar" + i + "/1.0/bar" + i + "-1.0.jar" );
+            transport.registerDownload( resources[i], new TestDownload( ( "content of " + i ).getBytes() ) );
+
+            // prime the cache; every measured retrieve is a hit.
+            core.getTransferManager().retrieve( resources[i] );
+        }
+    }
+
+    @TearDown
+    public void teardown()
+            throws Exception
+    {
+        FileUtils.deleteDirectory( cacheDir );
+    }
+
+    @Benchmark
+    public Transfer retrieveCacheHit()
+            throws Exception
+    {
+        return core.getTransferManager()
+                   .retrieve( resources[ThreadLocalRandom.current().nextInt( paths )], false, new EventMetadata() );
+    }
+
+    @Benchmark
+    @Threads( 8 )
+    public Transfer retrieveCacheHitContended()
+            throws Exception
+    {
+        return retrieveCacheHit();
+    }
+}
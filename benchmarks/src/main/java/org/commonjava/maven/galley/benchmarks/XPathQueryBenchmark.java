@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.benchmarks;
+
+import org.apache.commons.jxpath.JXPathContext;
+import org.commonjava.maven.galley.maven.model.view.XPathManager;
+import org.commonjava.maven.galley.maven.parse.JXPathUtils;
+import org.commonjava.maven.galley.maven.parse.XMLInfrastructure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.commonjava.maven.galley.benchmarks.XmlParseBenchmark.readResource;
+
+/**
+ * Evaluating the view queries through {@link JXPathContext}'s string API, which parses (or looks up, under a global
+ * lock) the expression on every call, against the precompiled and cached expressions from {@link XPathManager}. Runs
+ * on four threads, since the lock is what the cache is meant to take off the path; each thread queries its own
+ * document, as DOM reads aren't guaranteed to be thread-safe.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@Threads( 4 )
+@State( Scope.Thread )
+public class XPathQueryBenchmark
+{
+    private static final String ARBITRARY_PATH = "/project/dependencyManagement/dependencies/dependency[1]/version";
+
+    private final XPathManager xpath = new XPathManager();
+
+    private Document doc;
+
+    @Setup
+    public void setup()
+            throws Exception
+    {
+        final XMLInfrastructure xml = new XMLInfrastructure();
+        doc = xml.parseDocument( "poms/bench-parent.xml",
+                                 new ByteArrayInputStream( readResource( "poms/bench-parent.xml" ) ) );
+    }
+
+    @Benchmark
+    public Object uncompiledValue()
+    {
+        return JXPathUtils.newContext( doc ).getValue( ARBITRARY_PATH );
+    }
+
+    @Benchmark
+    public Object compiledValue()
+    {
+        return xpath.getCompiled( ARBITRARY_PATH, true ).getValue( JXPathUtils.newContext( doc ) );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    @Benchmark
+    public List<Node> uncompiledDirectDependencies()
+    {
+        return JXPathUtils.newContext( doc ).selectNodes( XPathManager.DIRECT_DEPENDENCIES );
+    }
+
+    @Benchmark
+    public List<Node> compiledDirectDependencies()
+    {
+        return XPathManager.selectNodes( xpath.getCompiled( XPathManager.DIRECT_DEPENDENCIES, true ),
+                                         JXPathUtils.newContext( doc ) );
+    }
+}
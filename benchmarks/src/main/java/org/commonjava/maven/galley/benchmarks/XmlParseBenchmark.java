@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.benchmarks;
+
+import org.apache.commons.io.IOUtils;
+import org.commonjava.maven.galley.maven.parse.XMLInfrastructure;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link XMLInfrastructure#parseDocument(Object, InputStream)} on typical POMs, the first step of every POM read.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+@State( Scope.Benchmark )
+public class XmlParseBenchmark
+{
+    @Param( { "poms/bench-parent.xml", "poms/bench-child.xml" } )
+    public String pom;
+
+    private XMLInfrastructure xml;
+
+    private byte[] content;
+
+    @Setup
+    public void setup()
+            throws IOException
+    {
+        xml = new XMLInfrastructure();
+        content = readResource( pom );
+    }
+
+    @Benchmark
+    public Document parseDocument()
+            throws Exception
+    {
+        return xml.parseDocument( pom, new ByteArrayInputStream( content ) );
+    }
+
+    static byte[] readResource( final String resource )
+            throws IOException
+    {
+        try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream( resource ))
+        {
+            if ( in == null )
+            {
+                throw new IOException( "Missing benchmark resource: " + resource );
+            }
+
+            return IOUtils.toByteArray( in );
+        }
+    }
+}
@@ -0,0 +1,1023 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.cache.dedup;
+
+import org.apache.commons.io.FileUtils;
+import org.commonjava.maven.galley.cache.AliasLinker;
+import org.commonjava.maven.galley.cache.ExpiryScheduler;
+import org.commonjava.maven.galley.cache.ReadWriteLockingSupport;
+import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.io.checksum.ContentDigest;
+import org.commonjava.maven.galley.io.checksum.TransferMetadata;
+import org.commonjava.maven.galley.io.checksum.TransferMetadataConsumer;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.spi.cache.CacheProvider;
+import org.commonjava.maven.galley.spi.event.FileEventManager;
+import org.commonjava.maven.galley.spi.io.PathGenerator;
+import org.commonjava.maven.galley.util.ChannelUtils;
+import org.commonjava.maven.galley.util.IdempotentCloseInputStream;
+import org.commonjava.maven.galley.util.IdempotentCloseOutputStream;
+import org.commonjava.maven.galley.util.PathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.codec.binary.Hex.encodeHexString;
+
+/**
+ * Content-addressable cache provider. Each distinct file body is stored once, under its SHA-256, in the blob store
+ * ({@link DedupCacheProviderConfig#getBlobDir()}); the file cached for a location and path is a hard link to its
+ * blob. Reads, lengths and {@link #getDetachedFile(ConcreteResource)} see an ordinary file, while the same jar cached
+ * for several repositories costs its bytes on disk once, and copies, moves and aliases between repositories write no
+ * content at all.
+ * <p>
+ * The SHA-256 of a write comes from the {@link org.commonjava.maven.galley.io.ChecksummingTransferDecorator} when this
+ * provider is its {@link TransferMetadataConsumer} (the decorator reports its digests before it closes the cache
+ * stream), and is computed from the written file otherwise. Each link records its digest in a hidden side file, which
+ * also carries the time the link was written: linked files share their blob's timestamps, so
+ * {@link #lastModified(ConcreteResource)} and cache timeouts go by the side file. A blob's link count is its reference
+ * count, and the blob is deleted when its last link goes.
+ * <p>
+ * Files that can't be linked into the blob store (e.g. an alternative storage location on another filesystem) are
+ * stored as plain files.
+ */
+public class DedupCacheProvider
+        implements CacheProvider, CacheProvider.AdminView, TransferMetadataConsumer
+{
+    private static final String REF_SUFFIX = ".blob-ref";
+
+    private static final String DIGEST_ALGORITHM = ContentDigest.SHA_256.digestName();
+
+    private static final Pattern DIGEST_PATTERN = Pattern.compile( "[0-9a-f]{64}" );
+
+    private static final int BLOB_LOCK_STRIPES = 64;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final DedupCacheProviderConfig config;
+
+    private final PathGenerator pathGenerator;
+
+    private final FileEventManager fileEventManager;
+
+    private final TransferDecoratorManager transferDecorator;
+
+    private final ReadWriteLockingSupport lockingSupport = new ReadWriteLockingSupport();
+
+    private final AliasLinker linker = new AliasLinker( true );
+
+    private final ExpiryScheduler expiry = new ExpiryScheduler( "galley-dedup-cache-expiry", this::expire );
+
+    private final Map<ConcreteResource, DedupOutputStream> pendingWrites = new ConcurrentHashMap<>();
+
+    private final Object[] blobLocks = new Object[BLOB_LOCK_STRIPES];
+
+    private final LongAdder dedupHits = new LongAdder();
+
+    private final LongAdder dedupBytesSaved = new LongAdder();
+
+    private final LongAdder linkedBytes = new LongAdder();
+
+    private final LongAdder suppliedDigests = new LongAdder();
+
+    private final LongAdder reclaimedBlobs = new LongAdder();
+
+    public DedupCacheProvider( final File cacheBasedir, final PathGenerator pathGenerator,
+                               final FileEventManager fileEventManager,
+                               final TransferDecoratorManager transferDecorator )
+    {
+        this( new DedupCacheProviderConfig( cacheBasedir ), pathGenerator, fileEventManager, transferDecorator );
+    }
+
+    public DedupCacheProvider( final DedupCacheProviderConfig config, final PathGenerator pathGenerator,
+                               final FileEventManager fileEventManager,
+                               final TransferDecoratorManager transferDecorator )
+    {
+        this.config = config;
+        this.pathGenerator = pathGenerator;
+        this.fileEventManager = fileEventManager;
+        this.transferDecorator = transferDecorator;
+
+        for ( int i = 0; i < blobLocks.length; i++ )
+        {
+            blobLocks[i] = new Object();
+        }
+    }
+
+    public DedupCacheProviderConfig getConfig()
+    {
+        return config;
+    }
+
+    @Override
+    public boolean isFileBased()
+    {
+        return true;
+    }
+
+    @Override
+    public File getDetachedFile( final ConcreteResource resource )
+    {
+        final File f = getRawFile( resource );
+        if ( resource.isRoot() && !f.isDirectory() )
+        {
+            f.mkdirs();
+        }
+
+        return f;
+    }
+
+    private File getRawFile( final ConcreteResource resource )
+    {
+        return new File( getFilePath( resource ) );
+    }
+
+    @Override
+    public String getFilePath( final ConcreteResource resource )
+    {
+        String dir = resource.getLocation().getAttribute( Location.ATTR_ALT_STORAGE_LOCATION, String.class );
+
+        if ( dir == null )
+        {
+            dir = config.getCacheBasedir().getPath();
+        }
+
+        return PathUtils.normalize( dir, pathGenerator.getFilePath( resource ) );
+    }
+
+    @Override
+    public boolean isDirectory( final ConcreteResource resource )
+    {
+        return getDetachedFile( resource ).isDirectory();
+    }
+
+    @Override
+    public boolean isFile( final ConcreteResource resource )
+    {
+        return getDetachedFile( resource ).isFile();
+    }
+
+    @Override
+    public InputStream openInputStream( final ConcreteResource resource )
+            throws IOException
+    {
+        waitForReadUnlock( resource );
+        lockRead( resource );
+        final File targetFile = getDetachedFile( resource );
+        if ( !targetFile.exists() )
+        {
+            return null;
+        }
+
+        return new UnlockInputStream( resource, this, new FileInputStream( targetFile ) );
+    }
+
+    @Override
+    public long transferTo( final ConcreteResource resource, final WritableByteChannel target )
+            throws IOException
+    {
+        waitForReadUnlock( resource );
+        lockRead( resource );
+        try
+        {
+            final File targetFile = getDetachedFile( resource );
+            if ( !targetFile.exists() )
+            {
+                return -1;
+            }
+
+            return ChannelUtils.transferFile( targetFile, target );
+        }
+        finally
+        {
+            unlockRead( resource );
+        }
+    }
+
+    @Override
+    public OutputStream openOutputStream( final ConcreteResource resource )
+            throws IOException
+    {
+        waitForWriteUnlock( resource );
+        lockWrite( resource );
+        final File targetFile = getDetachedFile( resource );
+
+        final File dir = targetFile.getParentFile();
+        if ( !dir.isDirectory() && !dir.mkdirs() )
+        {
+            throw new IOException( "Cannot create directory: " + dir );
+        }
+
+        // written next to the target, so it can be moved into the blob store (or, failing that, into place).
+        final File downloadFile = new File( targetFile.getPath() + SUFFIX_TO_WRITE );
+        final DedupOutputStream stream = new DedupOutputStream( resource, downloadFile );
+        pendingWrites.put( resource, stream );
+
+        return stream;
+    }
+
+    @Override
+    public boolean needsMetadataFor( final Transfer transfer )
+    {
+        return pendingWrites.containsKey( transfer.getResource() );
+    }
+
+    /**
+     * Takes the SHA-256 the checksumming decorator computed for a write in progress, so closing it needn't read the
+     * file back to find its blob.
+     */
+    @Override
+    public void addMetadata( final Transfer transfer, final TransferMetadata transferData )
+    {
+        final DedupOutputStream stream = pendingWrites.get( transfer.getResource() );
+        if ( stream == null || transferData.getDigests() == null || transferData.getSize() == null )
+        {
+            return;
+        }
+
+        final String digest = transferData.getDigests().get( ContentDigest.SHA_256 );
+        if ( digest != null && DIGEST_PATTERN.matcher( digest ).matches() )
+        {
+            stream.supply( digest, transferData.getSize() );
+        }
+    }
+
+    @Override
+    public void removeMetadata( final Transfer transfer )
+    {
+    }
+
+    /**
+     * Make the written file the content of the resource: link the resource to the blob with the same digest if there
+     * is one, otherwise move the file into the blob store and link to that.
+     */
+    private void store( final ConcreteResource resource, final File written, final String digest )
+            throws IOException
+    {
+        final File target = getRawFile( resource );
+        final String previous = readRef( target );
+        final File blob = getBlobFile( digest );
+        final long length = written.length();
+
+        final boolean linked;
+        synchronized ( getBlobLock( digest ) )
+        {
+            if ( digest.equals( previous ) && isLinkedTo( target, blob ) )
+            {
+                // rewritten with unchanged content (e.g. metadata that didn't change upstream): keep the link.
+                Files.delete( written.toPath() );
+                linked = true;
+                dedupHits.increment();
+                dedupBytesSaved.add( length );
+            }
+            else if ( blob.isFile() )
+            {
+                linked = linkTo( blob, target );
+                if ( linked )
+                {
+                    Files.delete( written.toPath() );
+                    dedupHits.increment();
+                    dedupBytesSaved.add( length );
+                    logger.debug( "Linked: {} to existing blob: {}, saving {} bytes", target, digest, length );
+                }
+            }
+            else if ( moveToBlob( written, blob ) )
+            {
+                linked = linkTo( blob, target );
+                if ( !linked )
+                {
+                    // nothing else links to a blob this new, so it can simply become the target.
+                    Files.move( blob.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
+                }
+            }
+            else
+            {
+                linked = false;
+            }
+        }
+
+        if ( !linked && written.exists() )
+        {
+            logger.debug( "Cannot link: {} into the blob store. Storing it as a plain file.", target );
+            Files.move( written.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+
+        updateRef( target, linked ? digest : null, previous );
+    }
+
+    /**
+     * Link the resource to the existing blob with the given digest, without writing any content.
+     *
+     * @return false if there is no such blob, or it couldn't be linked
+     */
+    private boolean storeLinked( final ConcreteResource resource, final String digest )
+            throws IOException
+    {
+        final File target = getRawFile( resource );
+        final String previous = readRef( target );
+        final File blob = getBlobFile( digest );
+
+        synchronized ( getBlobLock( digest ) )
+        {
+            if ( digest.equals( previous ) && isLinkedTo( target, blob ) )
+            {
+                updateRef( target, digest, previous );
+                return true;
+            }
+
+            if ( !blob.isFile() || !linkTo( blob, target ) )
+            {
+                return false;
+            }
+        }
+
+        linkedBytes.add( target.length() );
+        updateRef( target, digest, previous );
+        return true;
+    }
+
+    private boolean moveToBlob( final File written, final File blob )
+            throws IOException
+    {
+        final File dir = blob.getParentFile();
+        if ( !dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory() )
+        {
+            throw new IOException( "Cannot create directory: " + dir );
+        }
+
+        try
+        {
+            Files.move( written.toPath(), blob.toPath(), StandardCopyOption.ATOMIC_MOVE );
+            return true;
+        }
+        catch ( final IOException e )
+        {
+            // most likely the blob store is on another filesystem.
+            logger.debug( "Cannot move: {} to: {}. Reason: {}", written, blob, e.getMessage() );
+            return false;
+        }
+    }
+
+    private static boolean isLinkedTo( final File target, final File blob )
+    {
+        try
+        {
+            return target.isFile() && blob.isFile() && Files.isSameFile( target.toPath(), blob.toPath() );
+        }
+        catch ( final IOException e )
+        {
+            return false;
+        }
+    }
+
+    private boolean linkTo( final File blob, final File target )
+            throws IOException
+    {
+        // no copy fallback: callers store the content some other way when it can't be linked.
+        return linker.alias( blob, target, ( from, to ) -> {
+        } ) == AliasLinker.Strategy.HARD_LINK;
+    }
+
+    /**
+     * Record the digest the target is linked to (or that it isn't linked any more), and let go of the blob it was
+     * linked to before.
+     */
+    private void updateRef( final File target, final String digest, final String previous )
+            throws IOException
+    {
+        final File ref = getRefFile( target );
+        if ( digest == null )
+        {
+            Files.deleteIfExists( ref.toPath() );
+        }
+        else
+        {
+            // rewritten even if unchanged: its timestamp is the target's.
+            Files.write( ref.toPath(), digest.getBytes( StandardCharsets.US_ASCII ) );
+        }
+
+        if ( previous != null && !previous.equals( digest ) )
+        {
+            release( previous );
+        }
+    }
+
+    private String readRef( final File target )
+    {
+        final File ref = getRefFile( target );
+        try
+        {
+            final String digest = new String( Files.readAllBytes( ref.toPath() ), StandardCharsets.US_ASCII ).trim();
+            return DIGEST_PATTERN.matcher( digest ).matches() ? digest : null;
+        }
+        catch ( final NoSuchFileException e )
+        {
+            return null;
+        }
+        catch ( final IOException e )
+        {
+            logger.warn( "Cannot read blob reference: {}. Reason: {}", ref, e.getMessage() );
+            return null;
+        }
+    }
+
+    private File getRefFile( final File target )
+    {
+        return new File( target.getParentFile(), "." + target.getName() + REF_SUFFIX );
+    }
+
+    private File getBlobFile( final String digest )
+    {
+        return new File( config.getBlobDir(),
+                         digest.substring( 0, 2 ) + File.separator + digest.substring( 2, 4 ) + File.separator
+                                 + digest );
+    }
+
+    private Object getBlobLock( final String digest )
+    {
+        return blobLocks[Integer.parseInt( digest.substring( 0, 2 ), 16 ) % blobLocks.length];
+    }
+
+    /**
+     * Drop a reference to the blob with the given digest, deleting the blob if that was its last one.
+     */
+    private void release( final String digest )
+    {
+        synchronized ( getBlobLock( digest ) )
+        {
+            reclaim( getBlobFile( digest ) );
+        }
+    }
+
+    /**
+     * Delete the blob if nothing links to it. Call holding its lock.
+     */
+    private void reclaim( final File blob )
+    {
+        final int links = getLinkCount( blob );
+        if ( links != 1 )
+        {
+            // 0: already gone; more: still referenced; -1: unknown, so keep it.
+            return;
+        }
+
+        try
+        {
+            Files.deleteIfExists( blob.toPath() );
+            reclaimedBlobs.increment();
+            logger.debug( "Reclaimed unreferenced blob: {}", blob );
+        }
+        catch ( final IOException e )
+        {
+            logger.warn( "Cannot delete unreferenced blob: {}. Reason: {}", blob, e.getMessage() );
+        }
+    }
+
+    private static int getLinkCount( final File file )
+    {
+        try
+        {
+            final Object count = Files.getAttribute( file.toPath(), "unix:nlink" );
+            return count instanceof Integer ? (Integer) count : -1;
+        }
+        catch ( final NoSuchFileException e )
+        {
+            return 0;
+        }
+        catch ( final UnsupportedOperationException | IllegalArgumentException | IOException e )
+        {
+            return -1;
+        }
+    }
+
+    private static String digest( final File file )
+            throws IOException
+    {
+        final MessageDigest digester;
+        try
+        {
+            digester = MessageDigest.getInstance( DIGEST_ALGORITHM );
+        }
+        catch ( final NoSuchAlgorithmException e )
+        {
+            throw new IOException( "Cannot compute " + DIGEST_ALGORITHM + " of: " + file, e );
+        }
+
+        final byte[] buf = new byte[65536];
+        try (InputStream in = new FileInputStream( file ))
+        {
+            int read;
+            while ( ( read = in.read( buf ) ) > -1 )
+            {
+                digester.update( buf, 0, read );
+            }
+        }
+
+        return encodeHexString( digester.digest() );
+    }
+
+    @Override
+    public boolean exists( final ConcreteResource resource )
+    {
+        return getRawFile( resource ).exists();
+    }
+
+    /**
+     * Links the target to the source's blob. Only a source that isn't in the blob store yet (e.g. a file stored
+     * before this provider was used) is copied, and its copy goes into the blob store.
+     */
+    @Override
+    public void copy( final ConcreteResource from, final ConcreteResource to )
+            throws IOException
+    {
+        final File source = getDetachedFile( from );
+        final String digest = readRef( source );
+        if ( digest != null && storeLinked( to, digest ) )
+        {
+            scheduleExpiry( to, System.currentTimeMillis() );
+            return;
+        }
+
+        final File target = getDetachedFile( to );
+        final File downloadFile = new File( target.getPath() + SUFFIX_TO_WRITE );
+        FileUtils.copyFile( source, downloadFile );
+        try
+        {
+            store( to, downloadFile, digest( downloadFile ) );
+        }
+        finally
+        {
+            Files.deleteIfExists( downloadFile.toPath() );
+        }
+
+        scheduleExpiry( to, System.currentTimeMillis() );
+    }
+
+    @Override
+    public boolean delete( final ConcreteResource resource )
+            throws IOException
+    {
+        expiry.cancel( resource );
+
+        final File f = getDetachedFile( resource );
+        final String digest = readRef( f );
+        final boolean deleted = f.delete();
+        if ( digest != null )
+        {
+            Files.deleteIfExists( getRefFile( f ).toPath() );
+            release( digest );
+        }
+
+        return deleted;
+    }
+
+    @Override
+    public String[] list( final ConcreteResource resource )
+    {
+        final String[] listing = getDetachedFile( resource ).list();
+        if ( listing == null )
+        {
+            return null;
+        }
+
+        // hides blob references, and the blob store itself at the top of the cache.
+        final List<String> list = new ArrayList<>( Arrays.asList( listing ) );
+        for ( final Iterator<String> it = list.iterator(); it.hasNext(); )
+        {
+            final String fname = it.next();
+            if ( fname.charAt( 0 ) == '.' )
+            {
+                it.remove();
+                continue;
+            }
+
+            for ( final String suffix : HIDDEN_SUFFIXES )
+            {
+                if ( fname.endsWith( suffix ) )
+                {
+                    it.remove();
+                }
+            }
+        }
+
+        return list.toArray( new String[0] );
+    }
+
+    @SuppressWarnings( "RedundantThrows" )
+    @Override
+    public void mkdirs( final ConcreteResource resource )
+            throws IOException
+    {
+        getDetachedFile( resource ).mkdirs();
+    }
+
+    @Override
+    public void createFile( final ConcreteResource resource )
+            throws IOException
+    {
+        getDetachedFile( resource ).createNewFile();
+    }
+
+    @Override
+    public void createAlias( final ConcreteResource from, final ConcreteResource to )
+            throws IOException
+    {
+        final Location fromKey = from.getLocation();
+        final Location toKey = to.getLocation();
+        final String fromPath = from.getPath();
+        final String toPath = to.getPath();
+
+        if ( fromKey != null && toKey != null && !fromKey.equals( toKey ) && fromPath != null && toPath != null
+                && !fromPath.equals( toPath ) )
+        {
+            copy( from, to );
+        }
+    }
+
+    @Override
+    public Transfer getTransfer( final ConcreteResource resource )
+    {
+        if ( !resource.isRoot() && config.isTimeoutProcessingEnabled() && getTimeoutSeconds( resource ) > 0 )
+        {
+            expiry.track( resource );
+        }
+
+        return new Transfer( resource, this, fileEventManager, transferDecorator );
+    }
+
+    @Override
+    public void clearTransferCache()
+    {
+    }
+
+    @Override
+    public long length( final ConcreteResource resource )
+    {
+        return getDetachedFile( resource ).length();
+    }
+
+    /**
+     * When the resource was written. For a file linked to a blob this is the time of the link, not of the blob,
+     * which other resources share.
+     */
+    @Override
+    public long lastModified( final ConcreteResource resource )
+    {
+        final File f = getDetachedFile( resource );
+        final File ref = getRefFile( f );
+        return ref.isFile() ? ref.lastModified() : f.lastModified();
+    }
+
+    private int getTimeoutSeconds( final ConcreteResource resource )
+    {
+        return resource.getLocation()
+                       .getAttribute( Location.CACHE_TIMEOUT_SECONDS, Integer.class, config.getDefaultTimeoutSeconds() );
+    }
+
+    private void scheduleExpiry( final ConcreteResource resource, final long writtenMillis )
+    {
+        final int timeoutSeconds = getTimeoutSeconds( resource );
+        if ( !resource.isRoot() && config.isTimeoutProcessingEnabled() && timeoutSeconds > 0 )
+        {
+            final int tos = Math.max( timeoutSeconds, Location.MIN_CACHE_TIMEOUT_SECONDS );
+            expiry.schedule( resource, writtenMillis + TimeUnit.SECONDS.toMillis( tos ) );
+        }
+    }
+
+    /**
+     * Called by the expiry scheduler once a file's deadline passes. Deletes the file (releasing its blob) if it really
+     * expired, otherwise works out when to look at it again.
+     */
+    private long expire( final ConcreteResource resource )
+    {
+        final int timeoutSeconds = getTimeoutSeconds( resource );
+        if ( resource.isRoot() || !config.isTimeoutProcessingEnabled() || timeoutSeconds < 1 )
+        {
+            return 0;
+        }
+
+        final File f = getRawFile( resource );
+        if ( !f.isFile() )
+        {
+            return 0;
+        }
+
+        final long current = System.currentTimeMillis();
+        final long timeout = TimeUnit.SECONDS.toMillis( Math.max( timeoutSeconds, Location.MIN_CACHE_TIMEOUT_SECONDS ) );
+        final long deadline = lastModified( resource ) + timeout;
+        if ( deadline > current )
+        {
+            return deadline;
+        }
+
+        if ( lockingSupport.isWriteLocked( resource ) )
+        {
+            // being replaced right now; the new content comes with a new deadline.
+            return current + timeout;
+        }
+
+        logger.info( "Deleting cached file: {} due to timeout after: {}", f, timeout );
+        try
+        {
+            delete( resource );
+        }
+        catch ( final IOException e )
+        {
+            logger.error( String.format( "Failed to delete: %s.", f ), e );
+        }
+
+        return 0;
+    }
+
+    /**
+     * Deletes blobs nothing links to any more, e.g. left behind when a cached file was removed from outside the
+     * provider.
+     */
+    @Override
+    public void gc()
+    {
+        final File blobDir = config.getBlobDir();
+        if ( !blobDir.isDirectory() )
+        {
+            return;
+        }
+
+        for ( final File blob : FileUtils.listFiles( blobDir, null, true ) )
+        {
+            final String digest = blob.getName();
+            if ( DIGEST_PATTERN.matcher( digest ).matches() )
+            {
+                release( digest );
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        expiry.shutdown();
+    }
+
+    /**
+     * Disk bytes not written because copies and aliases were linked to the source's blob.
+     */
+    @Override
+    public long getAliasBytesSaved()
+    {
+        return linkedBytes.sum();
+    }
+
+    /**
+     * Number of writes whose content was already in the blob store.
+     */
+    public long getDedupHitCount()
+    {
+        return dedupHits.sum();
+    }
+
+    /**
+     * Disk bytes not kept because written content was already in the blob store.
+     */
+    public long getDedupBytesSaved()
+    {
+        return dedupBytesSaved.sum();
+    }
+
+    /**
+     * Number of writes whose SHA-256 came from the checksumming decorator instead of reading the file back.
+     */
+    public long getSuppliedDigestCount()
+    {
+        return suppliedDigests.sum();
+    }
+
+    public long getReclaimedBlobCount()
+    {
+        return reclaimedBlobs.sum();
+    }
+
+    @Override
+    public boolean isReadLocked( final ConcreteResource resource )
+    {
+        return lockingSupport.isReadLocked( resource );
+    }
+
+    @Override
+    public boolean isWriteLocked( final ConcreteResource resource )
+    {
+        return lockingSupport.isWriteLocked( resource );
+    }
+
+    @Override
+    public void unlockRead( final ConcreteResource resource )
+    {
+        lockingSupport.unlockRead( resource );
+    }
+
+    @Override
+    public void unlockWrite( final ConcreteResource resource )
+    {
+        lockingSupport.unlockWrite( resource );
+    }
+
+    @Override
+    public void lockRead( final ConcreteResource resource )
+    {
+        lockingSupport.lockRead( resource );
+    }
+
+    @Override
+    public void lockWrite( final ConcreteResource resource )
+    {
+        lockingSupport.lockWrite( resource );
+    }
+
+    @Override
+    public void waitForWriteUnlock( final ConcreteResource resource )
+    {
+        lockingSupport.waitForWriteUnlock( resource );
+    }
+
+    @Override
+    public void waitForReadUnlock( final ConcreteResource resource )
+    {
+        lockingSupport.waitForReadUnlock( resource );
+    }
+
+    @Override
+    public AdminView asAdminView()
+    {
+        return this;
+    }
+
+    @Override
+    public void cleanupCurrentThread()
+    {
+        lockingSupport.cleanupCurrentThread();
+    }
+
+    @Override
+    public void startReporting()
+    {
+        lockingSupport.startReporting();
+    }
+
+    @Override
+    public void stopReporting()
+    {
+        lockingSupport.stopReporting();
+    }
+
+    /**
+     * Writes into a side file; on close, stores it by its digest.
+     */
+    private final class DedupOutputStream
+            extends IdempotentCloseOutputStream
+    {
+        private final ConcreteResource resource;
+
+        private final File downloadFile;
+
+        private final AtomicBoolean stored = new AtomicBoolean( false );
+
+        private long size;
+
+        private volatile String suppliedDigest;
+
+        private volatile long suppliedSize = -1;
+
+        DedupOutputStream( final ConcreteResource resource, final File downloadFile )
+                throws IOException
+        {
+            super( new FileOutputStream( downloadFile ) );
+            this.resource = resource;
+            this.downloadFile = downloadFile;
+        }
+
+        void supply( final String digest, final long size )
+        {
+            this.suppliedDigest = digest;
+            this.suppliedSize = size;
+        }
+
+        @Override
+        public void write( final int b )
+                throws IOException
+        {
+            super.write( b );
+            size++;
+        }
+
+        @Override
+        public void write( final byte[] b, final int off, final int len )
+                throws IOException
+        {
+            super.write( b, off, len );
+            size += len;
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            if ( stored.getAndSet( true ) )
+            {
+                super.close();
+                return;
+            }
+
+            pendingWrites.remove( resource, this );
+            try
+            {
+                super.close();
+
+                // a supplied digest is only trusted if it was taken over exactly the bytes that got here.
+                final String digest;
+                if ( suppliedDigest != null && suppliedSize == size )
+                {
+                    digest = suppliedDigest;
+                    suppliedDigests.increment();
+                }
+                else
+                {
+                    digest = digest( downloadFile );
+                }
+
+                store( resource, downloadFile, digest );
+                scheduleExpiry( resource, System.currentTimeMillis() );
+            }
+            finally
+            {
+                Files.deleteIfExists( downloadFile.toPath() );
+            }
+        }
+    }
+
+    private static class UnlockInputStream
+            extends IdempotentCloseInputStream
+    {
+        private final ConcreteResource resource;
+
+        private final DedupCacheProvider provider;
+
+        UnlockInputStream( final ConcreteResource resource, final DedupCacheProvider provider,
+                           final FileInputStream fileInputStream )
+        {
+            super( fileInputStream );
+            this.resource = resource;
+            this.provider = provider;
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            try
+            {
+                super.close();
+            }
+            finally
+            {
+                provider.unlockRead( resource );
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.cache.dedup;
+
+import java.io.File;
+
+public class DedupCacheProviderConfig
+{
+    private static final int DEFAULT_TIMEOUT_SECONDS = 86400;
+
+    private static final String DEFAULT_BLOB_DIR = ".blobs";
+
+    private final File cacheBasedir;
+
+    private File blobDir;
+
+    private Boolean timeoutProcessing;
+
+    private Integer defaultTimeoutSeconds;
+
+    public DedupCacheProviderConfig( final File cacheBasedir )
+    {
+        this.cacheBasedir = cacheBasedir;
+    }
+
+    public File getCacheBasedir()
+    {
+        return cacheBasedir;
+    }
+
+    /**
+     * Where file bodies are stored, by SHA-256. Must be on the same filesystem as the cached files, which are hard
+     * links into it. Defaults to a hidden directory under the cache basedir.
+     */
+    public DedupCacheProviderConfig withBlobDir( final File blobDir )
+    {
+        this.blobDir = blobDir;
+        return this;
+    }
+
+    public File getBlobDir()
+    {
+        return blobDir == null ? new File( cacheBasedir, DEFAULT_BLOB_DIR ) : blobDir;
+    }
+
+    public DedupCacheProviderConfig withTimeoutProcessingEnabled( final boolean timeoutProcessing )
+    {
+        this.timeoutProcessing = timeoutProcessing;
+        return this;
+    }
+
+    public boolean isTimeoutProcessingEnabled()
+    {
+        return timeoutProcessing != null && timeoutProcessing;
+    }
+
+    public DedupCacheProviderConfig withDefaultTimeoutSeconds( final int defaultTimeoutSeconds )
+    {
+        this.defaultTimeoutSeconds = defaultTimeoutSeconds;
+        return this;
+    }
+
+    public int getDefaultTimeoutSeconds()
+    {
+        return defaultTimeoutSeconds == null ? DEFAULT_TIMEOUT_SECONDS : defaultTimeoutSeconds;
+    }
+
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.cache.dedup;
+
+import org.commonjava.maven.galley.cache.CacheProviderFactory;
+import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.spi.cache.CacheProvider;
+import org.commonjava.maven.galley.spi.event.FileEventManager;
+import org.commonjava.maven.galley.spi.io.PathGenerator;
+
+import java.io.File;
+
+public class DedupCacheProviderFactory
+        implements CacheProviderFactory
+{
+    private final DedupCacheProviderConfig config;
+
+    private transient DedupCacheProvider provider;
+
+    public DedupCacheProviderFactory( final File cacheDir )
+    {
+        this( new DedupCacheProviderConfig( cacheDir ) );
+    }
+
+    public DedupCacheProviderFactory( final DedupCacheProviderConfig config )
+    {
+        this.config = config;
+    }
+
+    @Override
+    public synchronized CacheProvider create( final PathGenerator pathGenerator,
+                                              final TransferDecoratorManager transferDecorator,
+                                              final FileEventManager fileEventManager )
+    {
+        if ( provider == null )
+        {
+            provider = new DedupCacheProvider( config, pathGenerator, fileEventManager, transferDecorator );
+        }
+
+        return provider;
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.cache.dedup;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.commonjava.maven.galley.cache.CacheProviderTCK;
+import org.commonjava.maven.galley.cache.MockPathGenerator;
+import org.commonjava.maven.galley.cache.testutil.TestFileEventManager;
+import org.commonjava.maven.galley.cache.testutil.TestTransferDecorator;
+import org.commonjava.maven.galley.io.ChecksummingTransferDecorator;
+import org.commonjava.maven.galley.io.SpecialPathManagerImpl;
+import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.io.checksum.Sha256GeneratorFactory;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.TransferOperation;
+import org.commonjava.maven.galley.spi.cache.CacheProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.apache.commons.codec.digest.DigestUtils.sha256Hex;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class DedupCacheProviderTest
+    extends CacheProviderTCK
+{
+    private static final String CONTENT = "this is the jar";
+
+    private static final String PATH = "org/foo/bar/1/bar-1.jar";
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private final Location remote = new SimpleLocation( "remote", "http://foo.com/repo" );
+
+    private final Location hosted = new SimpleLocation( "hosted", "http://bar.com/repo" );
+
+    private File blobDir;
+
+    private DedupCacheProvider provider;
+
+    @Before
+    public void setup()
+        throws Exception
+    {
+        final DedupCacheProviderConfig config = new DedupCacheProviderConfig( temp.newFolder( "cache" ) );
+        blobDir = config.getBlobDir();
+        provider = new DedupCacheProvider( config, new MockPathGenerator(), new TestFileEventManager(),
+                                           new TransferDecoratorManager( new TestTransferDecorator() ) );
+    }
+
+    @After
+    public void shutdown()
+    {
+        provider.close();
+    }
+
+    @Override
+    protected CacheProvider getCacheProvider()
+    {
+        return provider;
+    }
+
+    @Test
+    public void sameContentIsStoredOnce()
+        throws Exception
+    {
+        write( new ConcreteResource( remote, PATH ), CONTENT );
+        write( new ConcreteResource( hosted, PATH ), CONTENT );
+
+        assertThat( read( new ConcreteResource( remote, PATH ) ), equalTo( CONTENT ) );
+        assertThat( read( new ConcreteResource( hosted, PATH ) ), equalTo( CONTENT ) );
+        assertThat( getBlobCount(), equalTo( 1 ) );
+        assertThat( provider.getDedupHitCount(), equalTo( 1L ) );
+        assertThat( provider.getDedupBytesSaved(), equalTo( (long) CONTENT.length() ) );
+    }
+
+    @Test
+    public void blobIsReclaimedWithItsLastReference()
+        throws Exception
+    {
+        write( new ConcreteResource( remote, PATH ), CONTENT );
+        write( new ConcreteResource( hosted, PATH ), CONTENT );
+
+        provider.delete( new ConcreteResource( remote, PATH ) );
+        assertThat( getBlobCount(), equalTo( 1 ) );
+        assertThat( read( new ConcreteResource( hosted, PATH ) ), equalTo( CONTENT ) );
+
+        provider.delete( new ConcreteResource( hosted, PATH ) );
+        assertThat( getBlobCount(), equalTo( 0 ) );
+        assertThat( provider.getReclaimedBlobCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void rewriteReleasesThePreviousContent()
+        throws Exception
+    {
+        final ConcreteResource resource = new ConcreteResource( remote, "org/foo/bar/maven-metadata.xml" );
+        write( resource, "first" );
+        write( resource, "second" );
+
+        assertThat( read( resource ), equalTo( "second" ) );
+        assertThat( getBlobCount(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void rewritingTheSameContentKeepsOneReference()
+        throws Exception
+    {
+        final ConcreteResource resource = new ConcreteResource( remote, "org/foo/bar/maven-metadata.xml" );
+        write( resource, CONTENT );
+        write( resource, CONTENT );
+
+        assertThat( read( resource ), equalTo( CONTENT ) );
+        assertThat( getBlobCount(), equalTo( 1 ) );
+        // the file and its blob reference, and no leftover links to the blob.
+        final String[] names = provider.getDetachedFile( resource ).getParentFile().list();
+        assertThat( names == null ? 0 : names.length, equalTo( 2 ) );
+
+        provider.delete( resource );
+        assertThat( getBlobCount(), equalTo( 0 ) );
+    }
+
+    @Test
+    public void copyAndMoveLinkInsteadOfWriting()
+        throws Exception
+    {
+        write( new ConcreteResource( remote, PATH ), CONTENT );
+
+        provider.copy( new ConcreteResource( remote, PATH ), new ConcreteResource( hosted, PATH ) );
+        provider.move( new ConcreteResource( hosted, PATH ), new ConcreteResource( hosted, PATH + ".moved" ) );
+
+        assertThat( read( new ConcreteResource( hosted, PATH + ".moved" ) ), equalTo( CONTENT ) );
+        assertThat( provider.exists( new ConcreteResource( hosted, PATH ) ), equalTo( false ) );
+        assertThat( getBlobCount(), equalTo( 1 ) );
+        assertThat( provider.getAliasBytesSaved(), equalTo( 2L * CONTENT.length() ) );
+    }
+
+    @Test
+    public void digestFromTheChecksummingDecoratorIsUsed()
+        throws Exception
+    {
+        final ChecksummingTransferDecorator decorator =
+                new ChecksummingTransferDecorator( Collections.emptySet(), new SpecialPathManagerImpl(), false, true,
+                                                   provider, new Sha256GeneratorFactory() );
+
+        final Transfer transfer = new Transfer( new ConcreteResource( remote, PATH ), provider, new TestFileEventManager(),
+                                                new TransferDecoratorManager( decorator ) );
+
+        try (OutputStream out = transfer.openOutputStream( TransferOperation.DOWNLOAD ))
+        {
+            IOUtils.write( CONTENT, out, StandardCharsets.UTF_8 );
+        }
+
+        final String digest = sha256Hex( CONTENT );
+        assertThat( provider.getSuppliedDigestCount(), equalTo( 1L ) );
+        assertThat( new File( blobDir, digest.substring( 0, 2 ) + "/" + digest.substring( 2, 4 ) + "/" + digest ).isFile(),
+                    equalTo( true ) );
+    }
+
+    private int getBlobCount()
+    {
+        return blobDir.isDirectory() ? FileUtils.listFiles( blobDir, null, true ).size() : 0;
+    }
+
+    private void write( final ConcreteResource resource, final String content )
+        throws Exception
+    {
+        try (OutputStream out = provider.openOutputStream( resource ))
+        {
+            IOUtils.write( content, out, StandardCharsets.UTF_8 );
+        }
+    }
+
+    private String read( final ConcreteResource resource )
+        throws Exception
+    {
+        try (InputStream in = provider.openInputStream( resource ))
+        {
+            return IOUtils.toString( in, StandardCharsets.UTF_8 );
+        }
+    }
+}
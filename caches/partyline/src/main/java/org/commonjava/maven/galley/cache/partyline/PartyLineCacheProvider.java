@@ -16,14 +16,18 @@
 package org.commonjava.maven.galley.cache.partyline;
 
 import org.apache.commons.io.IOUtils;
-import org.commonjava.cdi.util.weft.SingleThreadedExecutorService;
+import org.commonjava.maven.galley.cache.ExpiryScheduler;
+import org.commonjava.maven.galley.io.SpecialPathConstants;
 import org.commonjava.maven.galley.io.TransferDecoratorManager;
 import org.commonjava.maven.galley.model.ConcreteResource;
 import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.Staleness;
 import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.spi.cache.CacheProvider;
 import org.commonjava.maven.galley.spi.event.FileEventManager;
 import org.commonjava.maven.galley.spi.io.PathGenerator;
+import org.commonjava.maven.galley.util.ChannelUtils;
+import org.commonjava.maven.galley.util.LocationUtils;
 import org.commonjava.maven.galley.util.PathUtils;
 import org.commonjava.util.partyline.Partyline;
 import org.slf4j.Logger;
@@ -35,21 +39,21 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class PartyLineCacheProvider
     implements CacheProvider, CacheProvider.AdminView
 {
-    private static final long SWEEP_TIMEOUT_SECONDS = 30;
+    private static final long DELETE_RETRY_SECONDS = 30;
 
     private static final long DELETE_TIMEOUT_MILLIS = 2000;
 
@@ -65,7 +69,9 @@ public class PartyLineCacheProvider
 
     private final TransferDecoratorManager transferDecorator;
 
-    private final List<Transfer> toDelete = Collections.synchronizedList( new ArrayList<>() );
+    private final ScheduledExecutorService deleteExecutor;
+
+    private final ExpiryScheduler expiry = new ExpiryScheduler( "galley-partyline-expiry", this::expire );
 
     public PartyLineCacheProvider( final File cacheBasedir, final PathGenerator pathGenerator,
                                    final FileEventManager fileEventManager, final TransferDecoratorManager transferDecorator,
@@ -76,26 +82,9 @@ public class PartyLineCacheProvider
         this.fileEventManager = fileEventManager;
         this.transferDecorator = transferDecorator;
         this.config = new PartyLineCacheProviderConfig( cacheBasedir );
-        ScheduledExecutorService deleteExecutor1 =
-                deleteExecutor == null ? Executors.newScheduledThreadPool( 2 ) : deleteExecutor;
+        this.deleteExecutor = deleteExecutor == null ? Executors.newScheduledThreadPool( 2 ) : deleteExecutor;
         this.fileManager = fileManager;
 
-        int threads = 2;
-        if ( deleteExecutor instanceof ThreadPoolExecutor )
-        {
-            threads = ( (ThreadPoolExecutor) deleteExecutor ).getPoolSize();
-        }
-        else if ( deleteExecutor instanceof SingleThreadedExecutorService )
-        {
-            threads = 1;
-        }
-
-        for(int i=0; i<threads; i++)
-        {
-            Objects.requireNonNull( deleteExecutor )
-                   .schedule( newTransferDeleteSweeper(), SWEEP_TIMEOUT_SECONDS, TimeUnit.SECONDS );
-        }
-
         startReportingDaemon();
     }
 
@@ -109,6 +98,13 @@ public class PartyLineCacheProvider
     public void stopReportingDaemon()
     {
         fileManager.stopReporting();
+        close();
+    }
+
+    @Override
+    public void close()
+    {
+        expiry.shutdown();
     }
 
     public boolean isFileBased()
@@ -170,6 +166,32 @@ public class PartyLineCacheProvider
         return null;
     }
 
+    /**
+     * Holds a Partyline read stream for the duration so the file can't be replaced or deleted under us. If a write is
+     * still in progress the content has to come through that (joined) stream; otherwise the file is complete and is
+     * handed straight to the channel.
+     */
+    @Override
+    public long transferTo( final ConcreteResource resource, final WritableByteChannel target )
+        throws IOException
+    {
+        try (InputStream stream = openInputStream( resource ))
+        {
+            if ( stream == null )
+            {
+                return -1;
+            }
+
+            final File targetFile = getDetachedFile( resource );
+            if ( fileManager.isWriteLocked( targetFile ) )
+            {
+                return ChannelUtils.copy( stream, target );
+            }
+
+            return ChannelUtils.transferFile( targetFile, target );
+        }
+    }
+
     @Override
     public OutputStream openOutputStream( final ConcreteResource resource )
         throws IOException
@@ -185,7 +207,9 @@ public class PartyLineCacheProvider
 
         try
         {
-            return fileManager.openOutputStream( targetFile );
+            final OutputStream stream = fileManager.openOutputStream( targetFile );
+            scheduleExpiry( resource, System.currentTimeMillis() );
+            return stream;
         }
         catch ( InterruptedException e )
         {
@@ -236,6 +260,7 @@ public class PartyLineCacheProvider
     public boolean delete( final ConcreteResource resource )
         throws IOException
     {
+        expiry.cancel( resource );
         try
         {
             return fileManager.tryDelete( getDetachedFile( resource ) );
@@ -308,7 +333,9 @@ public class PartyLineCacheProvider
         if ( fromKey != null && toKey != null && !fromKey.equals( toKey ) && fromPath != null && toPath != null
             && !fromPath.equals( toPath ) )
         {
+            // copied rather than hard-linked: partyline writes files in place, and the copy goes through its locks.
             copy( from, to );
+            scheduleExpiry( to, System.currentTimeMillis() );
         }
     }
 
@@ -334,78 +361,161 @@ public class PartyLineCacheProvider
     @Override
     public Transfer getTransfer( final ConcreteResource resource )
     {
-        Transfer txfr = new Transfer( resource, this, fileEventManager, transferDecorator );
-        File f = new File( getFilePath( resource ) );
+        // no stat here: the expiry scheduler looks at the file in the background (once, until its deadline).
+        if ( !resource.isRoot() && config.isTimeoutProcessingEnabled() && getTimeoutSeconds( resource ) > 0 )
+        {
+            expiry.track( resource );
+        }
+
+        return new Transfer( resource, this, fileEventManager, transferDecorator );
+    }
+
+    private int getTimeoutSeconds( final ConcreteResource resource )
+    {
+        return resource.getLocation()
+                       .getAttribute( Location.CACHE_TIMEOUT_SECONDS, Integer.class, config.getDefaultTimeoutSeconds() );
+    }
+
+    private void scheduleExpiry( final ConcreteResource resource, final long writtenMillis )
+    {
+        final int timeoutSeconds = getTimeoutSeconds( resource );
+        if ( !resource.isRoot() && config.isTimeoutProcessingEnabled() && timeoutSeconds > 0 )
+        {
+            final int tos = Math.max( timeoutSeconds, Location.MIN_CACHE_TIMEOUT_SECONDS );
+            expiry.schedule( resource, writtenMillis + TimeUnit.SECONDS.toMillis( tos ) );
+        }
+    }
 
-        final int timeoutSeconds =
-                resource.getLocation()
-                        .getAttribute( Location.CACHE_TIMEOUT_SECONDS, Integer.class, config.getDefaultTimeoutSeconds() );
+    /**
+     * Called by the expiry scheduler once a file's deadline passes. Hands the file to the delete executor if it really
+     * expired and isn't kept for revalidation, otherwise works out when to look at it again.
+     */
+    private long expire( final ConcreteResource resource )
+    {
+        final int timeoutSeconds = getTimeoutSeconds( resource );
+        if ( resource.isRoot() || !config.isTimeoutProcessingEnabled() || timeoutSeconds < 1 )
+        {
+            return 0;
+        }
 
-        if ( !resource.isRoot() && f.exists() && !f.isDirectory() && config.isTimeoutProcessingEnabled()
-                && timeoutSeconds > 0 )
+        final File f = getDetachedFile( resource );
+        if ( !f.isFile() )
         {
-            if ( isTimedOut( txfr, timeoutSeconds ) )
-            {
-                toDelete.add( txfr );
-            }
+            return 0;
         }
 
-        return txfr;
+        final long lastModified = f.lastModified();
+        final long timeout = TimeUnit.SECONDS.toMillis( Math.max( timeoutSeconds, Location.MIN_CACHE_TIMEOUT_SECONDS ) );
+        final long expired = System.currentTimeMillis() - lastModified - timeout;
+        if ( expired <= 0 )
+        {
+            return lastModified + timeout;
+        }
+
+        if ( LocationUtils.isWithinStaleWindow( resource.getLocation(), expired ) )
+        {
+            return lastModified + timeout + TimeUnit.SECONDS.toMillis(
+                    LocationUtils.getStaleWhileRevalidateSeconds( resource.getLocation() ) ) + 1;
+        }
+
+        if ( !LocationUtils.isRevalidatable( resource.getLocation(), () -> hasHttpMetadata( resource ) ) )
+        {
+            // tryDelete() may wait on partyline locks, so keep it off the scheduler's thread.
+            deleteExecutor.execute( () -> deleteExpired( resource, f, lastModified ) );
+        }
+
+        return 0;
     }
 
-    private Runnable newTransferDeleteSweeper()
+    private void deleteExpired( final ConcreteResource resource, final File f, final long lastModified )
     {
-        return ()->
+        if ( f.lastModified() != lastModified )
         {
-            if ( toDelete.isEmpty() )
-            {
-                return;
-            }
+            // rewritten since it was found expired; the write scheduled a new deadline.
+            return;
+        }
 
-            Transfer transfer = toDelete.remove( 0 );
-            final int timeoutSeconds =
-                    transfer.getResource().getLocation()
-                            .getAttribute( Location.CACHE_TIMEOUT_SECONDS, Integer.class, config.getDefaultTimeoutSeconds() );
+        try
+        {
+            logger.info( "Deleting cached file: {}", f );
 
-            if ( !transfer.getResource().isRoot() && transfer.exists() && !transfer.isDirectory() && config.isTimeoutProcessingEnabled()
-                    && timeoutSeconds > 0 )
+            if ( f.exists() )
             {
-                if ( isTimedOut( transfer, timeoutSeconds ) )
+                boolean deleted = fileManager.tryDelete( f, DELETE_TIMEOUT_MILLIS );
+                if ( !deleted )
                 {
-                    final File f = new File( getFilePath( transfer.getResource() ) );
-                    try
-                    {
-                        logger.info( "Deleting cached file: {}", f );
-
-                        if ( f.exists() )
-                        {
-                            boolean deleted = fileManager.tryDelete( f, DELETE_TIMEOUT_MILLIS );
-                            //                                    FileUtils.forceDelete( mved );
-                            if ( !deleted )
-                            {
-                                logger.warn( "Deletion failed for: {}. Retrying.", f );
-                                toDelete.add( transfer );
-                            }
-                        }
-                    }
-                    catch ( final IOException | InterruptedException e )
-                    {
-                        logger.error( String.format( "Failed to tryDelete: %s.", f ), e );
-                    }
+                    logger.warn( "Deletion failed for: {}. Retrying.", f );
+                    expiry.schedule( resource,
+                                     System.currentTimeMillis() + TimeUnit.SECONDS.toMillis( DELETE_RETRY_SECONDS ) );
                 }
             }
-        };
+        }
+        catch ( final IOException | InterruptedException e )
+        {
+            logger.error( String.format( "Failed to tryDelete: %s.", f ), e );
+        }
+    }
+
+    @Override
+    public Staleness getStaleness( final ConcreteResource resource )
+    {
+        return LocationUtils.getStaleness( resource.getLocation(), () -> getExpiredMillis( resource ),
+                                           () -> hasHttpMetadata( resource ) );
+    }
+
+    /**
+     * How long ago the file's cache timeout passed, in milliseconds; 0 or less if it hasn't (or never will).
+     */
+    private long getExpiredMillis( final ConcreteResource resource )
+    {
+        final int timeoutSeconds = getTimeoutSeconds( resource );
+
+        if ( resource.isRoot() || !config.isTimeoutProcessingEnabled() || timeoutSeconds < 1 )
+        {
+            return 0;
+        }
+
+        final BasicFileAttributes attrs;
+        try
+        {
+            attrs = Files.readAttributes( getDetachedFile( resource ).toPath(), BasicFileAttributes.class );
+        }
+        catch ( final IOException e )
+        {
+            return 0;
+        }
+
+        if ( !attrs.isRegularFile() )
+        {
+            return 0;
+        }
+
+        final long timeout = TimeUnit.SECONDS.toMillis( Math.max( timeoutSeconds, Location.MIN_CACHE_TIMEOUT_SECONDS ) );
+        return System.currentTimeMillis() - attrs.lastModifiedTime().toMillis() - timeout;
     }
 
-    private boolean isTimedOut( final Transfer txfr, int timeoutSeconds )
+    @Override
+    public void markRevalidated( final ConcreteResource resource )
     {
+        final File f = getDetachedFile( resource );
         final long current = System.currentTimeMillis();
-        final long lastModified = txfr.lastModified();
-        final int tos = Math.max( timeoutSeconds, Location.MIN_CACHE_TIMEOUT_SECONDS );
+        if ( f.isFile() && !f.setLastModified( current ) )
+        {
+            logger.warn( "Failed to reset the cache timeout of: {}", f );
+        }
 
-        final long timeout = TimeUnit.MILLISECONDS.convert( tos, TimeUnit.SECONDS );
+        scheduleExpiry( resource, current );
+    }
+
+    /**
+     * True if the HTTP exchange metadata (with the validators needed to revalidate) was stored next to the file.
+     */
+    private boolean hasHttpMetadata( final ConcreteResource resource )
+    {
+        final ConcreteResource meta = new ConcreteResource( resource.getLocation(), getStoragePath( resource )
+                + SpecialPathConstants.HTTP_METADATA_EXT );
 
-        return current - lastModified > timeout;
+        return new File( getFilePath( meta ) ).isFile();
     }
 
     @Override
@@ -17,11 +17,13 @@ package org.commonjava.maven.galley.cache.pathmapped;
 
 import org.commonjava.maven.galley.model.SpecialPathInfo;
 import org.commonjava.maven.galley.spi.io.SpecialPathManager;
+import org.commonjava.maven.galley.util.LocationUtils;
 import org.commonjava.maven.galley.util.PathUtils;
 import org.commonjava.storage.pathmapped.core.PathMappedFileManager;
 import org.commonjava.maven.galley.io.TransferDecoratorManager;
 import org.commonjava.maven.galley.model.ConcreteResource;
 import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.Staleness;
 import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.spi.cache.CacheProvider;
 import org.commonjava.maven.galley.spi.event.FileEventManager;
@@ -35,13 +37,16 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.commonjava.maven.galley.io.SpecialPathConstants.HTTP_METADATA_EXT;
 import static org.commonjava.maven.galley.io.SpecialPathConstants.PKG_TYPE_MAVEN;
 import static org.commonjava.maven.galley.io.SpecialPathConstants.PKG_TYPE_NPM;
+import static org.commonjava.maven.galley.io.SpecialPathConstants.REVALIDATED_EXT;
 
 public class PathMappedCacheProvider
                 implements CacheProvider, CacheProvider.AdminView
@@ -178,6 +183,12 @@ public class PathMappedCacheProvider
     @Override
     public boolean delete( final ConcreteResource resource )
     {
+        final ConcreteResource revalidation = getRevalidationResource( resource );
+        if ( exists( revalidation ) )
+        {
+            handleResource( revalidation, fileManager::delete, "delete" );
+        }
+
         return handleResource( resource, fileManager::delete, "delete" );
     }
 
@@ -242,7 +253,8 @@ public class PathMappedCacheProvider
         Transfer txfr = new Transfer( resource, this, fileEventManager, transferDecorator );
         if ( resource.allowsDeletion() && !resource.isRoot() && config.isTimeoutProcessingEnabled() )
         {
-            if ( isTransferTimeout( txfr ) )
+            final long expired = getExpiredMillis( txfr );
+            if ( expired > 0 && !isKeptWhenExpired( resource, expired ) )
             {
 
                 logger.info("Removing resource {} as timeout.", resource);
@@ -272,6 +284,14 @@ public class PathMappedCacheProvider
      * getFileLastModified return -1 when file not exists or directory.
      */
     protected boolean isTransferTimeout( final Transfer txfr )
+    {
+        return getExpiredMillis( txfr ) > 0;
+    }
+
+    /**
+     * How long ago the transfer's cache timeout passed, in milliseconds; 0 or less if it hasn't, or if it is not a file.
+     */
+    private long getExpiredMillis( final Transfer txfr )
     {
         int timeoutSeconds = 0;
         SpecialPathInfo pathInfo = null;
@@ -299,16 +319,16 @@ public class PathMappedCacheProvider
 
         if ( timeoutSeconds <= 0 )
         {
-            return false;
+            return 0;
         }
 
         final long current = System.currentTimeMillis();
-        final long lastModified = txfr.lastModified();
+        long lastModified = txfr.lastModified();
         if ( lastModified <= 0 )
         {
             // not exist or not a file
             logger.debug("isTransferTimeout, lastModified: {}", lastModified);
-            return false;
+            return 0;
         }
 
         // final int tos = Math.max( timeoutSeconds, Location.MIN_CACHE_TIMEOUT_SECONDS );
@@ -319,7 +339,89 @@ public class PathMappedCacheProvider
         final int tos = timeoutSeconds;
         final long timeout = TimeUnit.MILLISECONDS.convert( tos, TimeUnit.SECONDS );
         logger.debug("isTransferTimeout, tos: {}, timeout: {}, current: {}, lastModified: {}", tos, timeout, current, lastModified);
-        return current - lastModified > timeout;
+        final long expired = current - lastModified - timeout;
+        if ( expired <= 0 )
+        {
+            return expired;
+        }
+
+        // only expired content can have been revalidated since it was written.
+        final long revalidatedAt = getRevalidatedAt( txfr.getResource() );
+        return revalidatedAt > lastModified ? current - revalidatedAt - timeout : expired;
+    }
+
+    @Override
+    public Staleness getStaleness( final ConcreteResource resource )
+    {
+        return LocationUtils.getStaleness( resource.getLocation(), () -> getExpiredMillis( resource ),
+                                           () -> hasHttpMetadata( resource ) );
+    }
+
+    private long getExpiredMillis( final ConcreteResource resource )
+    {
+        if ( resource.isRoot() || !config.isTimeoutProcessingEnabled() )
+        {
+            return 0;
+        }
+
+        return getExpiredMillis( new Transfer( resource, this, fileEventManager, transferDecorator ) );
+    }
+
+    private boolean isKeptWhenExpired( final ConcreteResource resource, final long expiredMillis )
+    {
+        final Location location = resource.getLocation();
+        return LocationUtils.isWithinStaleWindow( location, expiredMillis )
+                || LocationUtils.isRevalidatable( location, () -> hasHttpMetadata( resource ) );
+    }
+
+    /**
+     * The path-mapped store can't reset a file's timestamp in place, so the revalidation time goes into a side file
+     * next to the content, where every node sharing the store sees it. A rewrite of the content makes it moot, since
+     * the newer of the two times wins.
+     */
+    @Override
+    public void markRevalidated( final ConcreteResource resource )
+    {
+        try (OutputStream out = openOutputStream( getRevalidationResource( resource ) ))
+        {
+            out.write( Long.toString( System.currentTimeMillis() ).getBytes( StandardCharsets.UTF_8 ) );
+        }
+        catch ( final IOException e )
+        {
+            logger.warn( "Failed to record revalidation of: {}. Reason: {}", resource, e.getMessage() );
+        }
+    }
+
+    private long getRevalidatedAt( final ConcreteResource resource )
+    {
+        final ConcreteResource revalidation = getRevalidationResource( resource );
+        if ( !exists( revalidation ) )
+        {
+            return 0;
+        }
+
+        try (InputStream in = openInputStream( revalidation ))
+        {
+            return Long.parseLong( new String( in.readAllBytes(), StandardCharsets.UTF_8 ).trim() );
+        }
+        catch ( final IOException | NumberFormatException e )
+        {
+            logger.warn( "Failed to read revalidation time of: {}. Reason: {}", resource, e.getMessage() );
+            return 0;
+        }
+    }
+
+    private ConcreteResource getRevalidationResource( final ConcreteResource resource )
+    {
+        return new ConcreteResource( resource.getLocation(), getStoragePath( resource ) + REVALIDATED_EXT );
+    }
+
+    /**
+     * True if the HTTP exchange metadata (with the validators needed to revalidate) was stored next to the resource.
+     */
+    private boolean hasHttpMetadata( final ConcreteResource resource )
+    {
+        return exists( new ConcreteResource( resource.getLocation(), getStoragePath( resource ) + HTTP_METADATA_EXT ) );
     }
 
     @Override
@@ -18,6 +18,9 @@ package org.commonjava.maven.galley.cache;
 import org.apache.commons.io.IOUtils;
 import org.commonjava.maven.galley.cache.testutil.TestFileEventManager;
 import org.commonjava.maven.galley.cache.testutil.TestTransferDecorator;
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.io.AbstractTransferDecorator;
+import org.commonjava.maven.galley.io.NoOpTransferDecorator;
 import org.commonjava.maven.galley.io.TransferDecoratorManager;
 import org.commonjava.maven.galley.model.ConcreteResource;
 import org.commonjava.maven.galley.model.Location;
@@ -25,16 +28,27 @@ import org.commonjava.maven.galley.model.SimpleLocation;
 import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.model.TransferOperation;
 import org.commonjava.maven.galley.spi.cache.CacheProvider;
+import org.commonjava.maven.galley.spi.io.TransferDecorator;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.commons.lang3.StringUtils.join;
 import static org.hamcrest.CoreMatchers.is;
@@ -234,4 +248,143 @@ public abstract class CacheProviderTCK
         assertThat( result, is( content ) );
     }
 
+    @Test
+    public void concurrentReadersAndWritersOnlySeeWholeContent()
+        throws Exception
+    {
+        final Location loc = new SimpleLocation( "http://foo.com" );
+        final ConcreteResource res = new ConcreteResource( loc, "/path/to/my/contended.txt" );
+
+        final CacheProvider provider = getCacheProvider();
+        final Transfer txfr = new Transfer( res, provider, new TestFileEventManager(),
+                                            new TransferDecoratorManager( new TestTransferDecorator() ) );
+
+        final Set<String> versions = new HashSet<>();
+        for ( int v = 0; v < 4; v++ )
+        {
+            final StringBuilder sb = new StringBuilder();
+            for ( int i = 0; i < 2048; i++ )
+            {
+                sb.append( (char) ( 'a' + v ) );
+            }
+            versions.add( sb.toString() );
+        }
+
+        write( txfr, versions.iterator().next() );
+
+        final int threads = 8;
+        final int rounds = 50;
+        final ExecutorService executor = Executors.newFixedThreadPool( threads );
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final List<Future<?>> futures = new ArrayList<>();
+        try
+        {
+            for ( int t = 0; t < threads; t++ )
+            {
+                final boolean writer = t % 4 == 0;
+                final String mine = new ArrayList<>( versions ).get( t % versions.size() );
+                futures.add( executor.submit( () -> {
+                    start.await();
+                    for ( int i = 0; i < rounds; i++ )
+                    {
+                        if ( writer )
+                        {
+                            write( txfr, mine );
+                        }
+                        else
+                        {
+                            final String content;
+                            try (InputStream in = txfr.openInputStream( false ))
+                            {
+                                content = IOUtils.toString( in, StandardCharsets.UTF_8 );
+                            }
+
+                            assertThat( "Read partial content: " + content.length() + " chars",
+                                        versions.contains( content ), is( true ) );
+                        }
+                    }
+
+                    provider.cleanupCurrentThread();
+                    return null;
+                } ) );
+            }
+
+            start.countDown();
+            for ( final Future<?> future : futures )
+            {
+                future.get( 60, TimeUnit.SECONDS );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void transferToWritesRawContentOrSignalsMissing()
+        throws Exception
+    {
+        final Location loc = new SimpleLocation( "http://foo.com" );
+        final ConcreteResource res = new ConcreteResource( loc, "/path/to/my/file.txt" );
+        final ConcreteResource missing = new ConcreteResource( loc, "/path/to/my/missing.txt" );
+
+        final CacheProvider provider = getCacheProvider();
+        try (OutputStream out = provider.openOutputStream( res ))
+        {
+            IOUtils.write( "This is a test", out, StandardCharsets.UTF_8 );
+        }
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        assertThat( provider.transferTo( res, Channels.newChannel( baos ) ), is( 14L ) );
+        assertThat( new String( baos.toByteArray(), StandardCharsets.UTF_8 ), is( "This is a test" ) );
+
+        assertThat( provider.transferTo( missing, Channels.newChannel( new ByteArrayOutputStream() ) ), is( -1L ) );
+    }
+
+    @Test
+    public void transferToOnlyBypassesDecoratorsThatDoNotNeedTheContent()
+        throws Exception
+    {
+        final ConcreteResource res = new ConcreteResource( new SimpleLocation( "http://foo.com" ), "my/path.txt" );
+        final CacheProvider cache = getCacheProvider();
+
+        final TransferDecorator upperCasing = new AbstractTransferDecorator()
+        {
+            @Override
+            public InputStream decorateRead( final InputStream stream, final Transfer transfer,
+                                             final EventMetadata metadata )
+                throws IOException
+            {
+                final String content = IOUtils.toString( stream, StandardCharsets.UTF_8 );
+                stream.close();
+                return new ByteArrayInputStream( content.toUpperCase().getBytes( StandardCharsets.UTF_8 ) );
+            }
+        };
+
+        final Transfer plain =
+                new Transfer( res, cache, new TestFileEventManager(), new TransferDecoratorManager( new NoOpTransferDecorator() ) );
+        write( plain, "this is a test" );
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        plain.transferTo( Channels.newChannel( baos ) );
+        assertThat( new String( baos.toByteArray(), StandardCharsets.UTF_8 ), is( "this is a test" ) );
+
+        final Transfer decorated =
+                new Transfer( res, cache, new TestFileEventManager(), new TransferDecoratorManager( upperCasing ) );
+
+        baos = new ByteArrayOutputStream();
+        decorated.transferTo( Channels.newChannel( baos ) );
+        assertThat( new String( baos.toByteArray(), StandardCharsets.UTF_8 ), is( "THIS IS A TEST" ) );
+    }
+
+    private static void write( final Transfer txfr, final String content )
+        throws Exception
+    {
+        try (OutputStream out = txfr.openOutputStream( TransferOperation.UPLOAD, false ))
+        {
+            IOUtils.write( content, out, StandardCharsets.UTF_8 );
+        }
+    }
+
 }
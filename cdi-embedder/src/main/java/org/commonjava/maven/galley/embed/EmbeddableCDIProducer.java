@@ -25,6 +25,9 @@ import org.commonjava.maven.galley.io.NoOpTransferDecorator;
 import org.commonjava.maven.galley.maven.ArtifactManager;
 import org.commonjava.maven.galley.maven.internal.defaults.StandardMaven350PluginDefaults;
 import org.commonjava.maven.galley.maven.internal.defaults.StandardMavenPluginImplications;
+import org.commonjava.maven.galley.maven.parse.DocRefCacheInvalidator;
+import org.commonjava.maven.galley.maven.parse.MavenMetadataReader;
+import org.commonjava.maven.galley.maven.parse.MavenPomReader;
 import org.commonjava.maven.galley.maven.parse.XMLInfrastructure;
 import org.commonjava.maven.galley.maven.spi.defaults.MavenPluginDefaults;
 import org.commonjava.maven.galley.maven.spi.defaults.MavenPluginImplications;
@@ -59,6 +62,12 @@ public class EmbeddableCDIProducer
     @Inject
     private XMLInfrastructure xml;
 
+    @Inject
+    private MavenPomReader pomReader;
+
+    @Inject
+    private MavenMetadataReader metadataReader;
+
     private NotFoundCache nfc;
 
     private ProxySitesCache proxySitesCache;
@@ -86,7 +95,11 @@ public class EmbeddableCDIProducer
     @PostConstruct
     public void postConstruct()
     {
-        fileEventManager = new NoOpFileEventManager();
+        // drop the readers' parsed documents when the files they came from change.
+        final DocRefCacheInvalidator invalidator = new DocRefCacheInvalidator( new NoOpFileEventManager() );
+        invalidator.register( pomReader );
+        invalidator.register( metadataReader );
+        fileEventManager = invalidator;
         transferDecorator = new NoOpTransferDecorator();
         pathGenerator = new HashedLocationPathGenerator();
         nfc = new MemoryNotFoundCache();
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.embed;
+
+import org.commonjava.atlas.maven.ident.ref.ProjectVersionRef;
+import org.commonjava.atlas.maven.ident.ref.SimpleProjectVersionRef;
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.event.FileDeletionEvent;
+import org.commonjava.maven.galley.event.FileStorageEvent;
+import org.commonjava.maven.galley.maven.model.view.DocRef;
+import org.commonjava.maven.galley.maven.parse.DocRefCache;
+import org.commonjava.maven.galley.maven.parse.MavenPomReader;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.TransferOperation;
+import org.commonjava.maven.galley.spi.event.FileEventManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Checks that the injected {@link FileEventManager} drops the injected readers' parsed documents when the files they
+ * were parsed from change.
+ */
+@RunWith( WeldJUnit4Runner.class )
+@ApplicationScoped
+public class EmbeddableCDI_DocRefCacheInvalidation_Test
+        extends AbstractEmbeddableCDIProducerTest
+{
+    private final Location location = new SimpleLocation( "test", "http://test.com/repo" );
+
+    @Inject
+    private FileEventManager events;
+
+    @Inject
+    private MavenPomReader pomReader;
+
+    @Test
+    public void storedAndDeletedPomsAreDroppedFromReaderCache()
+            throws Exception
+    {
+        final DocRefCache<ProjectVersionRef> cache = pomReader.getDocCache();
+
+        final ProjectVersionRef stored = new SimpleProjectVersionRef( "org.foo", "stored", "1" );
+        final ConcreteResource storedResource = new ConcreteResource( location, "org/foo/stored/1/stored-1.pom" );
+        cache.put( docRef( stored ), storedResource );
+
+        final ProjectVersionRef deleted = new SimpleProjectVersionRef( "org.foo", "deleted", "1" );
+        final ConcreteResource deletedResource = new ConcreteResource( location, "org/foo/deleted/1/deleted-1.pom" );
+        cache.put( docRef( deleted ), deletedResource );
+
+        assertThat( cache.get( stored, location ), notNullValue() );
+        assertThat( cache.get( deleted, location ), notNullValue() );
+
+        events.fire( new FileStorageEvent( TransferOperation.DOWNLOAD, transfer( storedResource ),
+                                           new EventMetadata() ) );
+        assertThat( cache.get( stored, location ), nullValue() );
+        assertThat( cache.get( deleted, location ), notNullValue() );
+
+        events.fire( new FileDeletionEvent( transfer( deletedResource ), new EventMetadata() ) );
+        assertThat( cache.get( deleted, location ), nullValue() );
+    }
+
+    private Transfer transfer( final ConcreteResource resource )
+    {
+        return new Transfer( resource, null, events, null );
+    }
+
+    private DocRef<ProjectVersionRef> docRef( final ProjectVersionRef ref )
+            throws Exception
+    {
+        final String xml = "<project><groupId>" + ref.getGroupId() + "</groupId><artifactId>" + ref.getArtifactId()
+                + "</artifactId><version>" + ref.getVersionString() + "</version></project>";
+
+        final Document doc = DocumentBuilderFactory.newInstance()
+                                                   .newDocumentBuilder()
+                                                   .parse( new InputSource( new StringReader( xml ) ) );
+
+        return new DocRef<>( ref, location, doc );
+    }
+}
@@ -62,6 +62,9 @@ public class GalleyCore
     @Inject
     private TransferManager transferManager;
 
+    @Inject
+    private AsyncTransferManager asyncTransferManager;
+
     @Inject
     private Instance<Transport> injectedTransports;
 
@@ -105,6 +108,18 @@ public class GalleyCore
         this.passwordManager = passwordManager;
     }
 
+    public GalleyCore( final LocationExpander locationExpander, final LocationResolver locationResolver,
+                       final TransferDecoratorManager decorator, final FileEventManager events, final CacheProvider cache,
+                       final NotFoundCache nfc, final TransportManager transportManager,
+                       final TransferManager transferManager, final AsyncTransferManager asyncTransferManager,
+                       final List<Transport> transports, final ExecutorService handlerExecutor,
+                       final ExecutorService batchExecutor, final PasswordManager passwordManager )
+    {
+        this( locationExpander, locationResolver, decorator, events, cache, nfc, transportManager, transferManager,
+              transports, handlerExecutor, batchExecutor, passwordManager );
+        this.asyncTransferManager = asyncTransferManager;
+    }
+
     @PostConstruct
     public void initInjections()
     {
@@ -163,6 +178,11 @@ public class GalleyCore
         return transferManager;
     }
 
+    public AsyncTransferManager getAsyncTransferManager()
+    {
+        return asyncTransferManager;
+    }
+
     public List<Transport> getEnabledTransports()
     {
         return transports;
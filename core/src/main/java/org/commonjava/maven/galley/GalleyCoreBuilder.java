@@ -20,6 +20,7 @@ import org.commonjava.maven.galley.auth.MemoryPasswordManager;
 import org.commonjava.maven.galley.cache.CacheProviderFactory;
 import org.commonjava.maven.galley.config.TransportManagerConfig;
 import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.internal.AsyncTransferManagerImpl;
 import org.commonjava.maven.galley.internal.TransferManagerImpl;
 import org.commonjava.maven.galley.internal.xfer.DownloadHandler;
 import org.commonjava.maven.galley.internal.xfer.ExistenceHandler;
@@ -76,6 +77,8 @@ public class GalleyCoreBuilder
 
     private TransferManager transferManager;
 
+    private AsyncTransferManager asyncTransferManager;
+
     private List<Transport> transports;
 
     private SpecialPathManager specialPathManager;
@@ -84,6 +87,10 @@ public class GalleyCoreBuilder
 
     private ExecutorService batchExecutor;
 
+    private ExecutorService existenceExecutor;
+
+    private boolean ownsExistenceExecutor;
+
     private PasswordManager passwordManager;
 
     private PathGenerator pathGenerator;
@@ -111,7 +118,8 @@ public class GalleyCoreBuilder
         }
 
         return new GalleyCore( locationExpander, locationResolver, decorator, events, cache, nfc, transportManager,
-                               transferManager, transports, handlerExecutor, batchExecutor, passwordManager );
+                               transferManager, asyncTransferManager, transports, handlerExecutor, batchExecutor,
+                               passwordManager );
     }
 
     public void initMissingComponents()
@@ -128,6 +136,15 @@ public class GalleyCoreBuilder
                                                                                  new ThreadGroup( "transfer-batches" ),
                                                                                  true, 4 ) );
 
+        if ( existenceExecutor == null )
+        {
+            ownsExistenceExecutor = true;
+            existenceExecutor = Executors.newFixedThreadPool( 4, new NamedThreadFactory( "transfer-existence",
+                                                                                         new ThreadGroup(
+                                                                                                 "transfer-existence" ),
+                                                                                         true, 4 ) );
+        }
+
         if ( decorator == null )
         {
             decorator = new TransferDecoratorManager( new NoOpTransferDecorator() );
@@ -151,7 +168,7 @@ public class GalleyCoreBuilder
         final DownloadHandler dh = new DownloadHandler( getNfc(), transportManagerConfig, handlerExecutor );
         final UploadHandler uh = new UploadHandler( getNfc(), transportManagerConfig, handlerExecutor );
         final ListingHandler lh = new ListingHandler( getNfc() );
-        final ExistenceHandler eh = new ExistenceHandler( getNfc() );
+        final ExistenceHandler eh = new ExistenceHandler( getNfc(), transportManagerConfig, existenceExecutor );
 
         if ( specialPathManager == null )
         {
@@ -179,7 +196,14 @@ public class GalleyCoreBuilder
         {
             transferManager =
                     new TransferManagerImpl( transportManager, getCache(), getNfc(), getFileEvents(), dh, uh, lh, eh,
-                                             specialPathManager, batchExecutor );
+                                             specialPathManager, transportManagerConfig, batchExecutor );
+        }
+
+        if ( asyncTransferManager == null )
+        {
+            asyncTransferManager =
+                    new AsyncTransferManagerImpl( transferManager, transportManager, getCache(), getNfc(),
+                                                  getFileEvents(), dh, specialPathManager, batchExecutor );
         }
 
         if ( locationExpander == null )
@@ -298,6 +322,17 @@ public class GalleyCoreBuilder
         return transferManager;
     }
 
+    public AsyncTransferManager getAsyncTransferManager()
+    {
+        return asyncTransferManager;
+    }
+
+    public GalleyCoreBuilder withAsyncTransferManager( final AsyncTransferManager asyncTransferManager )
+    {
+        this.asyncTransferManager = asyncTransferManager;
+        return this;
+    }
+
     public GalleyCoreBuilder withTransportManager( final TransportManager transportManager )
     {
         this.transportManager = transportManager;
@@ -349,6 +384,30 @@ public class GalleyCoreBuilder
         return this;
     }
 
+    /**
+     * Stop the existence check threads, if {@link #initMissingComponents()} created them. An executor supplied through
+     * {@link #withExistenceExecutor(ExecutorService)} belongs to the caller and is left running.
+     */
+    public void close()
+    {
+        if ( ownsExistenceExecutor && existenceExecutor != null )
+        {
+            existenceExecutor.shutdown();
+        }
+    }
+
+    public ExecutorService getExistenceExecutor()
+    {
+        return existenceExecutor;
+    }
+
+    public GalleyCoreBuilder withExistenceExecutor( final ExecutorService existenceExecutor )
+    {
+        this.existenceExecutor = existenceExecutor;
+        this.ownsExistenceExecutor = false;
+        return this;
+    }
+
     public LocationResolver getLocationResolver()
     {
         return locationResolver;
@@ -16,15 +16,19 @@
 package org.commonjava.maven.galley.cache;
 
 import org.apache.commons.io.FileUtils;
+import org.commonjava.maven.galley.io.SpecialPathConstants;
 import org.commonjava.maven.galley.io.TransferDecoratorManager;
 import org.commonjava.maven.galley.model.ConcreteResource;
 import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.Staleness;
 import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.spi.cache.CacheProvider;
 import org.commonjava.maven.galley.spi.event.FileEventManager;
 import org.commonjava.maven.galley.spi.io.PathGenerator;
 import org.commonjava.maven.galley.util.AtomicFileOutputStreamWrapper;
 import org.commonjava.maven.galley.util.IdempotentCloseInputStream;
+import org.commonjava.maven.galley.util.LocationUtils;
+import org.commonjava.maven.galley.util.ChannelUtils;
 import org.commonjava.maven.galley.util.PathUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,12 +39,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class FileCacheProvider
@@ -49,7 +54,7 @@ public class FileCacheProvider
 
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
-    private final Map<ConcreteResource, Transfer> transferCache = new ConcurrentHashMap<>( 10000 );
+    private final WeakTransferCache transferCache = new WeakTransferCache();
 
     private final FileCacheProviderConfig config;
 
@@ -59,7 +64,11 @@ public class FileCacheProvider
 
     private final  TransferDecoratorManager transferDecorator;
 
-    private final SimpleLockingSupport lockingSupport = new SimpleLockingSupport();
+    private final ReadWriteLockingSupport lockingSupport = new ReadWriteLockingSupport();
+
+    private final AliasLinker aliasLinker;
+
+    private final ExpiryScheduler expiry = new ExpiryScheduler( "galley-file-cache-expiry", this::expire );
 
     public FileCacheProvider( final File cacheBasedir, final PathGenerator pathGenerator, final FileEventManager fileEventManager,
                               final TransferDecoratorManager transferDecorator, final boolean aliasLinking )
@@ -68,6 +77,7 @@ public class FileCacheProvider
         this.fileEventManager = fileEventManager;
         this.transferDecorator = transferDecorator;
         this.config = new FileCacheProviderConfig( cacheBasedir ).withAliasLinking( aliasLinking );
+        this.aliasLinker = new AliasLinker( config.isAliasLinking() );
     }
 
     public FileCacheProvider( final FileCacheProviderConfig config, final PathGenerator pathGenerator, final FileEventManager fileEventManager,
@@ -77,6 +87,7 @@ public class FileCacheProvider
         this.pathGenerator = pathGenerator;
         this.fileEventManager = fileEventManager;
         this.transferDecorator = transferDecorator;
+        this.aliasLinker = new AliasLinker( config.isAliasLinking() );
     }
 
     public FileCacheProvider( final File cacheBasedir, final PathGenerator pathGenerator, final FileEventManager fileEventManager,
@@ -93,56 +104,176 @@ public class FileCacheProvider
     @Override
     public File getDetachedFile( final ConcreteResource resource )
     {
-        // TODO: this might be a bit heavy-handed, but we need to be sure. 
-        // Maybe I can improve it later.
-        final Transfer txfr = getTransfer( resource );
-        synchronized ( txfr )
+        // expired files are deleted by the expiry scheduler, so this stays a plain path computation.
+        final File f = getRawFile( resource );
+        if ( resource.isRoot() && !f.isDirectory() )
+        {
+            f.mkdirs();
+        }
+
+        return f;
+    }
+
+    /**
+     * Called by the expiry scheduler once a file's deadline passes. Deletes the file if it really expired and isn't
+     * kept for revalidation, otherwise works out when to look at it again.
+     */
+    private long expire( final ConcreteResource resource )
+    {
+        final int tos = getTimeoutSeconds( resource );
+        final File f = getRawFile( resource );
+        if ( resource.isRoot() || tos < 1 || !f.isFile() )
+        {
+            return 0;
+        }
+
+        final long current = System.currentTimeMillis();
+        final long lastModified = f.lastModified();
+        final long timeout = TimeUnit.SECONDS.toMillis( tos );
+        final long expired = current - lastModified - timeout;
+        if ( expired <= 0 )
+        {
+            return lastModified + timeout;
+        }
+
+        if ( LocationUtils.isWithinStaleWindow( resource.getLocation(), expired ) )
+        {
+            logger.debug( "Keeping expired file: {} while it may be served stale. Elapsed: {}", f,
+                          ( current - lastModified ) );
+            return lastModified + timeout + TimeUnit.SECONDS.toMillis(
+                    LocationUtils.getStaleWhileRevalidateSeconds( resource.getLocation() ) ) + 1;
+        }
+
+        if ( LocationUtils.isRevalidatable( resource.getLocation(), () -> hasHttpMetadata( resource ) ) )
         {
-            File f = getRawFile( resource );
-            if ( resource.isRoot() && !f.isDirectory() )
+            // kept until it is revalidated or rewritten, both of which schedule it again.
+            logger.debug( "Keeping expired file: {} for revalidation. Elapsed: {}", f, ( current - lastModified ) );
+            return 0;
+        }
+
+        if ( lockingSupport.isWriteLocked( resource ) )
+        {
+            // being replaced right now; the new content comes with a new deadline.
+            return current + timeout;
+        }
+
+        final File mved = new File( f.getPath() + SUFFIX_TO_DELETE );
+        f.renameTo( mved );
+
+        try
+        {
+            logger.info( "Deleting cached file: {} (moved to: {})\n  due to timeout after: {}\n  elapsed: {}\n  original timeout in seconds: {}",
+                         f, mved, timeout, ( current - lastModified ), tos );
+
+            if ( mved.exists() )
             {
-                f.mkdirs();
+                FileUtils.forceDelete( mved );
             }
+        }
+        catch ( final IOException e )
+        {
+            logger.error( String.format( "Failed to delete: %s.", f ), e );
+        }
 
-            // TODO: configurable default timeout
-            final int timeoutSeconds = resource.getLocation()
-                        .getAttribute( Location.CACHE_TIMEOUT_SECONDS, Integer.class,
-                                       Location.DEFAULT_CACHE_TIMEOUT_SECONDS );
+        return 0;
+    }
 
-            if ( !resource.isRoot() && f.exists() && !f.isDirectory() && timeoutSeconds > 0 )
-            {
-                final long current = System.currentTimeMillis();
-                final long lastModified = f.lastModified();
-                final int tos = Math.max( timeoutSeconds, Location.MIN_CACHE_TIMEOUT_SECONDS );
+    @Override
+    public Staleness getStaleness( final ConcreteResource resource )
+    {
+        return LocationUtils.getStaleness( resource.getLocation(), () -> getExpiredMillis( resource ),
+                                           () -> hasHttpMetadata( resource ) );
+    }
 
-                final long timeout = TimeUnit.MILLISECONDS.convert( tos, TimeUnit.SECONDS );
+    @Override
+    public void markRevalidated( final ConcreteResource resource )
+    {
+        final File f = getRawFile( resource );
+        final long current = System.currentTimeMillis();
+        try
+        {
+            // the timestamp belongs to the file, not the name; reset it only for this location, not its aliases.
+            AliasLinker.detach( f );
+        }
+        catch ( final IOException e )
+        {
+            logger.warn( "Failed to separate: {} from its aliases; their cache timeouts restart too. Reason: {}", f,
+                         e.getMessage() );
+        }
 
-                if ( current - lastModified > timeout )
-                {
-                    final File mved = new File( f.getPath() + SUFFIX_TO_DELETE );
-                    f.renameTo( mved );
-
-                    try
-                    {
-                        logger.info( "Deleting cached file: {} (moved to: {})\n  due to timeout after: {}\n  elapsed: {}\n  original timeout in seconds: {}",
-                                     f, mved, timeout, ( current - lastModified ), tos );
-
-                        if ( mved.exists() )
-                        {
-                            FileUtils.forceDelete( mved );
-                        }
-                    }
-                    catch ( final IOException e )
-                    {
-                        logger.error( String.format( "Failed to delete: %s.", f ), e );
-                    }
-                }
-            }
+        if ( f.isFile() && !f.setLastModified( current ) )
+        {
+            logger.warn( "Failed to reset the cache timeout of: {}", f );
+        }
+
+        scheduleExpiry( resource, current );
+    }
 
-            return f;
+    /**
+     * Have the expiry scheduler look at a file written (or revalidated) at the given time once its timeout passes.
+     */
+    private void scheduleExpiry( final ConcreteResource resource, final long writtenMillis )
+    {
+        final int tos = getTimeoutSeconds( resource );
+        if ( !resource.isRoot() && tos > 0 )
+        {
+            expiry.schedule( resource, writtenMillis + TimeUnit.SECONDS.toMillis( tos ) );
         }
     }
 
+    /**
+     * Cache timeout of the resource in seconds, or 0 if it never expires.
+     */
+    private int getTimeoutSeconds( final ConcreteResource resource )
+    {
+        // TODO: configurable default timeout
+        final int timeoutSeconds = resource.getLocation()
+                                           .getAttribute( Location.CACHE_TIMEOUT_SECONDS, Integer.class,
+                                                          Location.DEFAULT_CACHE_TIMEOUT_SECONDS );
+
+        return timeoutSeconds > 0 ? Math.max( timeoutSeconds, Location.MIN_CACHE_TIMEOUT_SECONDS ) : 0;
+    }
+
+    /**
+     * How long ago the file's cache timeout passed, in milliseconds; 0 or less if it hasn't (or never will).
+     */
+    private long getExpiredMillis( final ConcreteResource resource )
+    {
+        final int tos = getTimeoutSeconds( resource );
+        if ( resource.isRoot() || tos < 1 )
+        {
+            return 0;
+        }
+
+        final BasicFileAttributes attrs;
+        try
+        {
+            attrs = Files.readAttributes( getRawFile( resource ).toPath(), BasicFileAttributes.class );
+        }
+        catch ( final IOException e )
+        {
+            return 0;
+        }
+
+        if ( !attrs.isRegularFile() )
+        {
+            return 0;
+        }
+
+        return System.currentTimeMillis() - attrs.lastModifiedTime().toMillis() - TimeUnit.SECONDS.toMillis( tos );
+    }
+
+    /**
+     * True if the HTTP exchange metadata (with the validators needed to revalidate) was stored next to the file.
+     */
+    private boolean hasHttpMetadata( final ConcreteResource resource )
+    {
+        final ConcreteResource meta = new ConcreteResource( resource.getLocation(), getStoragePath( resource )
+                + SpecialPathConstants.HTTP_METADATA_EXT );
+
+        return getRawFile( meta ).isFile();
+    }
+
     private File getRawFile( ConcreteResource resource )
     {
         resource.getLocation().getAttribute( Location.ATTR_ALT_STORAGE_LOCATION, String.class );
@@ -179,6 +310,28 @@ public class FileCacheProvider
         return new UnlockInputStream( resource, this, new FileInputStream( targetFile ) );
     }
 
+    @Override
+    public long transferTo( final ConcreteResource resource, final WritableByteChannel target )
+            throws IOException
+    {
+        waitForReadUnlock( resource );
+        lockRead( resource );
+        try
+        {
+            final File targetFile = getDetachedFile( resource );
+            if ( !targetFile.exists() )
+            {
+                return -1;
+            }
+
+            return ChannelUtils.transferFile( targetFile, target );
+        }
+        finally
+        {
+            unlockRead( resource );
+        }
+    }
+
     @Override
     public OutputStream openOutputStream( final ConcreteResource resource )
             throws IOException
@@ -186,6 +339,7 @@ public class FileCacheProvider
         waitForWriteUnlock( resource );
         lockWrite( resource );
         final File targetFile = getDetachedFile( resource );
+        scheduleExpiry( resource, System.currentTimeMillis() );
 
         final File dir = targetFile.getParentFile();
         if ( !dir.isDirectory() && !dir.mkdirs() )
@@ -211,7 +365,15 @@ public class FileCacheProvider
     public void copy( final ConcreteResource from, final ConcreteResource to )
         throws IOException
     {
-        FileUtils.copyFile( getDetachedFile( from ), getDetachedFile( to ) );
+        copy( getDetachedFile( from ), getDetachedFile( to ) );
+    }
+
+    private void copy( final File from, final File to )
+        throws IOException
+    {
+        // copyFile() writes in place, which would also change any alias linked to the target.
+        AliasLinker.unshare( to );
+        FileUtils.copyFile( from, to );
     }
 
     @SuppressWarnings( "RedundantThrows" )
@@ -219,6 +381,7 @@ public class FileCacheProvider
     public boolean delete( final ConcreteResource resource )
         throws IOException
     {
+        expiry.cancel( resource );
         return getDetachedFile( resource ).delete();
     }
 
@@ -281,18 +444,11 @@ public class FileCacheProvider
 
         if ( fromKey != null && toKey != null && !fromKey.equals( toKey ) && fromPath != null && toPath != null && !fromPath.equals( toPath ) )
         {
-            if ( config.isAliasLinking() )
-            {
-                final File fromFile = getDetachedFile( from );
-                final File toFile = getDetachedFile( to );
+            final AliasLinker.Strategy strategy =
+                    aliasLinker.alias( getDetachedFile( from ), getDetachedFile( to ), this::copy );
 
-                FileUtils.copyFile( fromFile, toFile );
-                //                Files.createLink( Paths.get( fromFile.toURI() ), Paths.get( toFile.toURI() ) );
-            }
-            else
-            {
-                copy( from, to );
-            }
+            logger.debug( "Aliased: {} to: {} ({})", to, from, strategy );
+            scheduleExpiry( to, System.currentTimeMillis() );
         }
     }
 
@@ -311,16 +467,29 @@ public class FileCacheProvider
     }
 
     @Override
-    public synchronized Transfer getTransfer( final ConcreteResource resource )
+    public Transfer getTransfer( final ConcreteResource resource )
     {
-        Transfer t = transferCache.get( resource );
-        if ( t == null )
+        final Transfer t = transferCache.get( resource );
+        if ( t != null )
         {
-            t = new Transfer( resource, this, fileEventManager, transferDecorator );
-            transferCache.put( resource, t );
+            return t;
         }
 
-        return t;
+        final Transfer created = new Transfer( resource, this, fileEventManager, transferDecorator );
+        final Transfer existing = transferCache.putIfAbsent( resource, created );
+        if ( existing != null )
+        {
+            return existing;
+        }
+
+        // a resource the scheduler never saw (e.g. a file cached before a restart): have it looked at in the
+        // background, as the other file-based providers do, so this lookup stays a plain path computation.
+        if ( !resource.isRoot() && getTimeoutSeconds( resource ) > 0 )
+        {
+            expiry.track( resource );
+        }
+
+        return created;
     }
 
     @Override
@@ -329,6 +498,30 @@ public class FileCacheProvider
         transferCache.clear();
     }
 
+    @Override
+    public void close()
+    {
+        expiry.shutdown();
+    }
+
+    @Override
+    public long getCachedTransferCount()
+    {
+        return transferCache.size();
+    }
+
+    @Override
+    public long getEvictedTransferCount()
+    {
+        return transferCache.getEvictionCount();
+    }
+
+    @Override
+    public long getAliasBytesSaved()
+    {
+        return aliasLinker.getBytesSaved();
+    }
+
     @Override
     public long length( final ConcreteResource resource )
     {
@@ -344,49 +537,49 @@ public class FileCacheProvider
     @Override
     public boolean isReadLocked( final ConcreteResource resource )
     {
-        return lockingSupport.isLocked( resource );
+        return lockingSupport.isReadLocked( resource );
     }
 
     @Override
     public boolean isWriteLocked( final ConcreteResource resource )
     {
-        return lockingSupport.isLocked( resource );
+        return lockingSupport.isWriteLocked( resource );
     }
 
     @Override
     public void unlockRead( final ConcreteResource resource )
     {
-        lockingSupport.unlock( resource );
+        lockingSupport.unlockRead( resource );
     }
 
     @Override
     public void unlockWrite( final ConcreteResource resource )
     {
-        lockingSupport.unlock( resource );
+        lockingSupport.unlockWrite( resource );
     }
 
     @Override
     public void lockRead( final ConcreteResource resource )
     {
-        lockingSupport.lock( resource );
+        lockingSupport.lockRead( resource );
     }
 
     @Override
     public void lockWrite( final ConcreteResource resource )
     {
-        lockingSupport.lock( resource );
+        lockingSupport.lockWrite( resource );
     }
 
     @Override
     public void waitForWriteUnlock( final ConcreteResource resource )
     {
-        lockingSupport.waitForUnlock( resource );
+        lockingSupport.waitForWriteUnlock( resource );
     }
 
     @Override
     public void waitForReadUnlock( final ConcreteResource resource )
     {
-        lockingSupport.waitForUnlock( resource );
+        lockingSupport.waitForReadUnlock( resource );
     }
 
     @Override
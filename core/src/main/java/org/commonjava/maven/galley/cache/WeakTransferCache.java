@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.cache;
+
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Transfer;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Interns {@link Transfer} instances per resource without keeping them alive: values are weakly held, so an entry
+ * goes away once nobody references its transfer any more, and the cache is bounded by the transfers actually in use
+ * rather than by every path ever touched.
+ * <p>
+ * While anyone holds a transfer, every lookup of its resource returns that same instance, which is all that code
+ * locking or waiting on a transfer needs. Lookups don't lock; entries of collected transfers are purged as their
+ * references are enqueued, and counted as evictions.
+ */
+final class WeakTransferCache
+{
+
+    private final Map<ConcreteResource, TransferRef> transfers = new ConcurrentHashMap<>();
+
+    private final ReferenceQueue<Transfer> collected = new ReferenceQueue<>();
+
+    private final LongAdder evictions = new LongAdder();
+
+    Transfer get( final ConcreteResource resource )
+    {
+        purge();
+
+        final TransferRef ref = transfers.get( resource );
+        return ref == null ? null : ref.get();
+    }
+
+    /**
+     * @return the transfer already interned for the resource, or null if the given one was interned
+     */
+    Transfer putIfAbsent( final ConcreteResource resource, final Transfer transfer )
+    {
+        purge();
+
+        final TransferRef mine = new TransferRef( resource, transfer, collected );
+        final TransferRef current = transfers.compute( resource, ( r, old ) -> {
+            if ( old != null && old.get() != null )
+            {
+                return old;
+            }
+            else if ( old != null )
+            {
+                // collected, but not purged yet.
+                evictions.increment();
+            }
+
+            return mine;
+        } );
+
+        // current is ours, or one whose transfer was alive inside compute(). If that one has been collected since,
+        // nobody holds it any more, so just try again.
+        final Transfer existing = current == mine ? null : current.get();
+        if ( current != mine && existing == null )
+        {
+            return putIfAbsent( resource, transfer );
+        }
+
+        return existing;
+    }
+
+    void clear()
+    {
+        transfers.clear();
+    }
+
+    int size()
+    {
+        purge();
+        return transfers.size();
+    }
+
+    long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    private void purge()
+    {
+        TransferRef ref;
+        while ( ( ref = (TransferRef) collected.poll() ) != null )
+        {
+            if ( transfers.remove( ref.resource, ref ) )
+            {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static final class TransferRef
+            extends WeakReference<Transfer>
+    {
+        private final ConcreteResource resource;
+
+        TransferRef( final ConcreteResource resource, final Transfer transfer, final ReferenceQueue<Transfer> queue )
+        {
+            super( transfer, queue );
+            this.resource = resource;
+        }
+    }
+
+}
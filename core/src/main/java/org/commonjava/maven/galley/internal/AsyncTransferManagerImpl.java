@@ -0,0 +1,379 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.internal;
+
+import org.commonjava.cdi.util.weft.ExecutorConfig;
+import org.commonjava.cdi.util.weft.WeftManaged;
+import org.commonjava.maven.galley.AsyncTransferManager;
+import org.commonjava.maven.galley.TransferException;
+import org.commonjava.maven.galley.TransferManager;
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.event.FileErrorEvent;
+import org.commonjava.maven.galley.event.FileNotFoundEvent;
+import org.commonjava.maven.galley.internal.xfer.DownloadHandler;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.ListingResult;
+import org.commonjava.maven.galley.model.SpecialPathInfo;
+import org.commonjava.maven.galley.model.Staleness;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.VirtualResource;
+import org.commonjava.maven.galley.spi.cache.CacheProvider;
+import org.commonjava.maven.galley.spi.event.FileEventManager;
+import org.commonjava.maven.galley.spi.io.SpecialPathManager;
+import org.commonjava.maven.galley.spi.nfc.NotFoundCache;
+import org.commonjava.maven.galley.spi.transport.Transport;
+import org.commonjava.maven.galley.spi.transport.TransportManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+import static org.commonjava.maven.galley.util.LocationUtils.getTimeoutSeconds;
+
+/**
+ * {@link AsyncTransferManager} built on the same handlers, NFC and cache as {@link TransferManagerImpl}. Retrievals
+ * go through {@link DownloadHandler#downloadAsync}, so no thread waits on a download in flight; operations with no
+ * non-blocking handler yet (existence, listing, store) run the synchronous {@link TransferManager} on the batch
+ * executor.
+ */
+@ApplicationScoped
+public class AsyncTransferManagerImpl
+    implements AsyncTransferManager
+{
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Inject
+    private TransferManager transferManager;
+
+    @Inject
+    private TransportManager transportManager;
+
+    @Inject
+    private CacheProvider cacheProvider;
+
+    @Inject
+    private NotFoundCache nfc;
+
+    @Inject
+    private FileEventManager fileEventManager;
+
+    @Inject
+    private DownloadHandler downloader;
+
+    @Inject
+    private SpecialPathManager specialPathManager;
+
+    @Inject
+    @WeftManaged
+    @ExecutorConfig( threads = 12, named = "galley-batching", priority = 8 )
+    private ExecutorService executorService;
+
+    @SuppressWarnings( "unused" )
+    protected AsyncTransferManagerImpl()
+    {
+    }
+
+    public AsyncTransferManagerImpl( final TransferManager transferManager, final TransportManager transportManager,
+                                     final CacheProvider cacheProvider, final NotFoundCache nfc,
+                                     final FileEventManager fileEventManager, final DownloadHandler downloader,
+                                     final SpecialPathManager specialPathManager,
+                                     final ExecutorService executorService )
+    {
+        this.transferManager = transferManager;
+        this.transportManager = transportManager;
+        this.cacheProvider = cacheProvider;
+        this.nfc = nfc;
+        this.fileEventManager = fileEventManager;
+        this.downloader = downloader;
+        this.specialPathManager = specialPathManager;
+        this.executorService = executorService;
+    }
+
+    @Override
+    public CompletableFuture<Transfer> retrieve( final ConcreteResource resource )
+    {
+        return retrieve( resource, false, new EventMetadata() );
+    }
+
+    @Override
+    public CompletableFuture<Transfer> retrieve( final ConcreteResource resource, final boolean suppressFailures )
+    {
+        return retrieve( resource, suppressFailures, new EventMetadata() );
+    }
+
+    @Override
+    public CompletableFuture<Transfer> retrieve( final ConcreteResource resource, final boolean suppressFailures,
+                                                 final EventMetadata eventMetadata )
+    {
+        final Transfer target = cacheProvider.getTransfer( resource );
+        if ( target.exists() )
+        {
+            final Staleness staleness = target.getStaleness();
+            if ( staleness != Staleness.NOT_STALE )
+            {
+                return revalidate( resource, target, staleness == Staleness.SERVABLE_STALE, eventMetadata );
+            }
+
+            logger.debug( "Using cached copy of: {}", target );
+            return CompletableFuture.completedFuture( target );
+        }
+
+        final SpecialPathInfo specialPathInfo =
+                specialPathManager.getSpecialPathInfo( resource, eventMetadata.getPackageType() );
+        if ( !resource.allowsDownloading() || ( specialPathInfo != null && !specialPathInfo.isRetrievable() ) )
+        {
+            logger.debug( "Download not allowed for: {}. Returning null transfer.", resource );
+            return CompletableFuture.completedFuture( null );
+        }
+
+        final Transport transport;
+        try
+        {
+            transport = getTransport( resource );
+        }
+        catch ( final TransferException e )
+        {
+            fileEventManager.fire( new FileErrorEvent( target, e, eventMetadata ) );
+            return CompletableFuture.failedFuture( e );
+        }
+
+        return downloader.downloadAsync( resource, target, getTimeoutSeconds( resource ), transport, suppressFailures,
+                                         eventMetadata ).thenApply( retrieved -> {
+            if ( retrieved != null && retrieved.exists() && !target.equals( retrieved ) )
+            {
+                if ( specialPathInfo == null || specialPathInfo.isCachable() )
+                {
+                    try
+                    {
+                        cacheProvider.createAlias( retrieved.getResource(), target.getResource() );
+                    }
+                    catch ( final IOException e )
+                    {
+                        throw new CompletionException(
+                                new TransferException( "Failed to download: {}. Reason: {}", e, resource,
+                                                       e.getMessage() ) );
+                    }
+                }
+            }
+
+            if ( target.exists() )
+            {
+                logger.debug( "DOWNLOADED: {}", resource );
+                return target;
+            }
+
+            logger.debug( "NOT DOWNLOADED: {}", resource );
+            return (Transfer) null;
+        } ).whenComplete( ( transfer, error ) -> {
+            if ( error != null )
+            {
+                fileEventManager.fire( new FileErrorEvent( target, unwrap( error ), eventMetadata ) );
+            }
+        } );
+    }
+
+    /**
+     * Refresh a stale cached target. Inside its stale-while-revalidate window the target is handed back right away
+     * and the refresh finishes in the background; otherwise the result waits for it.
+     */
+    private CompletableFuture<Transfer> revalidate( final ConcreteResource resource, final Transfer target,
+                                                    final boolean servable, final EventMetadata eventMetadata )
+    {
+        final Transport transport;
+        try
+        {
+            transport = getTransport( resource );
+        }
+        catch ( final TransferException e )
+        {
+            logger.warn( "Cannot revalidate: {}. Keeping the stale copy. Reason: {}", resource, e.getMessage() );
+            return CompletableFuture.completedFuture( target );
+        }
+
+        final CompletableFuture<Transfer> refresh =
+                downloader.revalidateAsync( resource, target, getTimeoutSeconds( resource ), transport,
+                                            eventMetadata );
+        if ( servable )
+        {
+            logger.debug( "Serving stale cached copy of: {} while it revalidates", target );
+            return CompletableFuture.completedFuture( target );
+        }
+
+        logger.debug( "Revalidating stale cached copy of: {}", target );
+        return refresh;
+    }
+
+    @Override
+    public CompletableFuture<Transfer> retrieveFirst( final VirtualResource virt )
+    {
+        return retrieveFirst( virt, new EventMetadata() );
+    }
+
+    @Override
+    public CompletableFuture<Transfer> retrieveFirst( final VirtualResource virt, final EventMetadata eventMetadata )
+    {
+        return retrieveNext( virt, virt.iterator(), 0, null, eventMetadata );
+    }
+
+    /**
+     * Chain one retrieval per member of the virtual resource. The next member is only tried once the previous one
+     * missed, so the first existing hit wins, just as in {@link TransferManager#retrieveFirst(VirtualResource)}.
+     */
+    private CompletableFuture<Transfer> retrieveNext( final VirtualResource virt,
+                                                      final Iterator<ConcreteResource> members, final int tries,
+                                                      final TransferException lastError,
+                                                      final EventMetadata eventMetadata )
+    {
+        int count = tries;
+        while ( members.hasNext() )
+        {
+            final ConcreteResource res = members.next();
+            count++;
+
+            if ( res == null )
+            {
+                continue;
+            }
+
+            final int attempted = count;
+            return retrieve( res, true, eventMetadata ).handle( ( target, error ) -> {
+                if ( error == null )
+                {
+                    if ( target != null && target.exists() )
+                    {
+                        return CompletableFuture.completedFuture( target );
+                    }
+
+                    return retrieveNext( virt, members, attempted, null, eventMetadata );
+                }
+
+                final TransferException e = unwrap( error );
+                logger.warn( "Failed to retrieve: {}. {} more tries. (Reason: {})", res,
+                             ( virt.toConcreteResources().size() - attempted ), e.getMessage() );
+
+                return retrieveNext( virt, members, attempted, e, eventMetadata );
+            } ).thenCompose( Function.identity() );
+        }
+
+        if ( lastError != null )
+        {
+            return CompletableFuture.failedFuture( lastError );
+        }
+
+        fileEventManager.fire( new FileNotFoundEvent( virt, eventMetadata ) );
+        return CompletableFuture.completedFuture( null );
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists( final ConcreteResource resource )
+    {
+        if ( cacheProvider.exists( resource ) )
+        {
+            return CompletableFuture.completedFuture( true );
+        }
+
+        return supply( () -> transferManager.exists( resource ) );
+    }
+
+    @Override
+    public CompletableFuture<ConcreteResource> findFirstExisting( final VirtualResource virt )
+    {
+        return supply( () -> transferManager.findFirstExisting( virt ) );
+    }
+
+    @Override
+    public CompletableFuture<ListingResult> list( final ConcreteResource resource )
+    {
+        return list( resource, new EventMetadata() );
+    }
+
+    @Override
+    public CompletableFuture<ListingResult> list( final ConcreteResource resource, final EventMetadata metadata )
+    {
+        return supply( () -> transferManager.list( resource, metadata ) );
+    }
+
+    @Override
+    public CompletableFuture<Transfer> store( final ConcreteResource resource, final InputStream stream )
+    {
+        return store( resource, stream, new EventMetadata() );
+    }
+
+    @Override
+    public CompletableFuture<Transfer> store( final ConcreteResource resource, final InputStream stream,
+                                              final EventMetadata eventMetadata )
+    {
+        return supply( () -> transferManager.store( resource, stream, eventMetadata ) );
+    }
+
+    private Transport getTransport( final ConcreteResource resource )
+        throws TransferException
+    {
+        final Transport transport = transportManager.getTransport( resource );
+        if ( transport == null && resource.getLocationUri() == null )
+        {
+            logger.debug( "NFC: No remote URI. Marking as missing: {}", resource );
+            nfc.addMissing( resource );
+        }
+
+        return transport;
+    }
+
+    private <T> CompletableFuture<T> supply( final TransferCall<T> operation )
+    {
+        return CompletableFuture.supplyAsync( () -> {
+            try
+            {
+                return operation.call();
+            }
+            catch ( final TransferException e )
+            {
+                throw new CompletionException( e );
+            }
+        }, executorService );
+    }
+
+    private static TransferException unwrap( final Throwable error )
+    {
+        final Throwable cause = error instanceof CompletionException && error.getCause() != null ?
+                error.getCause() :
+                error;
+
+        if ( cause instanceof TransferException )
+        {
+            return (TransferException) cause;
+        }
+
+        return new TransferException( "Transfer failed. Reason: {}", cause, cause.getMessage() );
+    }
+
+    @FunctionalInterface
+    private interface TransferCall<T>
+    {
+        T call()
+            throws TransferException;
+    }
+
+}
@@ -22,6 +22,7 @@ import org.commonjava.cdi.util.weft.WeftManaged;
 import org.commonjava.maven.galley.TransferException;
 import org.commonjava.maven.galley.TransferLocationException;
 import org.commonjava.maven.galley.TransferManager;
+import org.commonjava.maven.galley.config.TransportManagerConfig;
 import org.commonjava.maven.galley.event.EventMetadata;
 import org.commonjava.maven.galley.event.FileErrorEvent;
 import org.commonjava.maven.galley.event.FileNotFoundEvent;
@@ -36,8 +37,10 @@ import org.commonjava.maven.galley.model.ListingResult;
 import org.commonjava.maven.galley.model.Location;
 import org.commonjava.maven.galley.model.Resource;
 import org.commonjava.maven.galley.model.SpecialPathInfo;
+import org.commonjava.maven.galley.model.Staleness;
 import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.model.TransferBatch;
+import org.commonjava.maven.galley.model.TransferBatchListener;
 import org.commonjava.maven.galley.model.TransferOperation;
 import org.commonjava.maven.galley.model.VirtualResource;
 import org.commonjava.maven.galley.spi.cache.CacheProvider;
@@ -49,25 +52,29 @@ import org.commonjava.maven.galley.spi.transport.TransportManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.lang.Boolean.TRUE;
 import static org.apache.commons.io.IOUtils.closeQuietly;
@@ -110,12 +117,19 @@ public class TransferManagerImpl
     @Inject
     private SpecialPathManager specialPathManager;
 
+    @Inject
+    private TransportManagerConfig config;
+
     @Inject
     @WeftManaged
     @ExecutorConfig( threads = 12, named = "galley-batching", priority = 8 )
     private ExecutorService executorService;
 
-    private ExecutorCompletionService<BatchRetriever> batchExecutor;
+    /**
+     * Caps the speculative existence probes {@link #retrieveFirst(VirtualResource, EventMetadata)} keeps in flight
+     * against each location, keyed by location name.
+     */
+    private final Map<String, Semaphore> hedgePermits = new ConcurrentHashMap<>();
 
     @SuppressWarnings( "unused" )
     protected TransferManagerImpl()
@@ -127,6 +141,17 @@ public class TransferManagerImpl
                                 final DownloadHandler downloader, final UploadHandler uploader,
                                 final ListingHandler lister, final ExistenceHandler exister,
                                 final SpecialPathManager specialPathManager, final ExecutorService executorService )
+    {
+        this( transportManager, cacheProvider, nfc, fileEventManager, downloader, uploader, lister, exister,
+              specialPathManager, new TransportManagerConfig(), executorService );
+    }
+
+    public TransferManagerImpl( final TransportManager transportManager, final CacheProvider cacheProvider,
+                                final NotFoundCache nfc, final FileEventManager fileEventManager,
+                                final DownloadHandler downloader, final UploadHandler uploader,
+                                final ListingHandler lister, final ExistenceHandler exister,
+                                final SpecialPathManager specialPathManager, final TransportManagerConfig config,
+                                final ExecutorService executorService )
     {
         this.transportManager = transportManager;
         this.cacheProvider = cacheProvider;
@@ -137,14 +162,8 @@ public class TransferManagerImpl
         this.lister = lister;
         this.exister = exister;
         this.specialPathManager = specialPathManager;
+        this.config = config;
         this.executorService = executorService;
-        init();
-    }
-
-    @PostConstruct
-    public void init()
-    {
-        batchExecutor = new ExecutorCompletionService<>( executorService );
     }
 
     @Override
@@ -503,6 +522,12 @@ public class TransferManagerImpl
     public Transfer retrieveFirst( final VirtualResource virt, final EventMetadata eventMetadata )
         throws TransferException
     {
+        final int fanout = config == null ? 0 : config.getHedgedRetrieveFanout();
+        if ( fanout > 1 && virt.toConcreteResources().size() > 1 )
+        {
+            return hedgedRetrieveFirst( virt, fanout, eventMetadata );
+        }
+
         Transfer target;
 
         TransferException lastError = null;
@@ -543,6 +568,171 @@ public class TransferManagerImpl
         return null;
     }
 
+    /**
+     * Hedged variant of {@link #retrieveFirst(VirtualResource, EventMetadata)}: existence probes for the next
+     * <code>fanout</code> members run concurrently, but results are consumed strictly in priority order, so the
+     * highest-priority hit wins even when a lower-priority location answers first. Once a member is retrieved, any
+     * outstanding probes for lower-priority members are cancelled.
+     */
+    private Transfer hedgedRetrieveFirst( final VirtualResource virt, final int fanout,
+                                          final EventMetadata eventMetadata )
+        throws TransferException
+    {
+        final List<ConcreteResource> members = new ArrayList<>();
+        for ( final ConcreteResource res : virt )
+        {
+            if ( res != null )
+            {
+                members.add( res );
+            }
+        }
+
+        final List<ExistenceProbe> probes = new ArrayList<>( members.size() );
+        TransferException lastError = null;
+        try
+        {
+            for ( int i = 0; i < members.size(); i++ )
+            {
+                // keep the window full: probes for up to fanout members, starting with this one, are in flight.
+                while ( probes.size() < members.size() && probes.size() < i + fanout )
+                {
+                    probes.add( probe( members.get( probes.size() ) ) );
+                }
+
+                final ConcreteResource res = members.get( i );
+                final ExistenceProbe probe = probes.get( i );
+                if ( !awaitProbe( probe ) )
+                {
+                    // known to be missing: a sequential retrieve would find nothing too, which clears any earlier error.
+                    lastError = null;
+                    continue;
+                }
+
+                try
+                {
+                    final Transfer target = retrieve( res, true, eventMetadata );
+                    // a failed probe has usually marked the member missing, so this retrieve can't report the failure.
+                    lastError = probe.error;
+                    if ( target != null && target.exists() )
+                    {
+                        return target;
+                    }
+                }
+                catch ( final TransferException e )
+                {
+                    logger.warn( "Failed to retrieve: {}. {} more tries. (Reason: {})", res,
+                                 ( members.size() - i - 1 ), e.getMessage() );
+                    lastError = e;
+                }
+            }
+        }
+        finally
+        {
+            probes.forEach( probe -> probe.future.cancel( true ) );
+        }
+
+        if ( lastError != null )
+        {
+            throw lastError;
+        }
+
+        fileEventManager.fire( new FileNotFoundEvent( virt, eventMetadata ) );
+        return null;
+    }
+
+    private ExistenceProbe probe( final ConcreteResource resource )
+    {
+        final Semaphore permits = hedgePermits.computeIfAbsent( resource.getLocationName(), name -> new Semaphore(
+                Math.max( 1, config.getHedgedRetrieveLocationLimit() ) ) );
+
+        final ExistenceProbe probe = new ExistenceProbe( resource );
+        probe.future = executorService.submit( () -> {
+            // over the per-location limit, or already claimed by the caller: leave this member to the caller.
+            if ( !permits.tryAcquire() )
+            {
+                return null;
+            }
+
+            try
+            {
+                return probe.claim() ? exists( resource, false ) : null;
+            }
+            finally
+            {
+                permits.release();
+            }
+        } );
+
+        return probe;
+    }
+
+    /**
+     * Wait for the probe of a member. If the probe never started (or was skipped because its location was at the
+     * limit), check existence on the calling thread instead, so a saturated executor can't stall the walk.
+     *
+     * @return false only if the member is known to be missing. If the check failed, the failure is kept on the probe
+     * and the member is reported as worth retrieving, as the sequential walk would have tried it.
+     */
+    private boolean awaitProbe( final ExistenceProbe probe )
+        throws TransferException
+    {
+        try
+        {
+            if ( probe.claim() )
+            {
+                probe.future.cancel( false );
+                return exists( probe.resource, false );
+            }
+
+            final Boolean found = probe.future.get();
+            return found == null ? exists( probe.resource, false ) : found;
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new TransferException( "Interrupted while probing: {}", e, probe.resource );
+        }
+        catch ( final ExecutionException e )
+        {
+            final Throwable cause = e.getCause() == null ? e : e.getCause();
+            probe.error = cause instanceof TransferException ? (TransferException) cause : new TransferException(
+                    "Existence probe failed for: {}. Reason: {}", cause, probe.resource, cause.getMessage() );
+        }
+        catch ( final TransferException e )
+        {
+            probe.error = e;
+        }
+
+        logger.debug( "Existence probe failed for: {}. Retrieving it anyway. Reason: {}", probe.resource,
+                      probe.error.getMessage() );
+        return true;
+    }
+
+    /**
+     * Speculative existence check for one member of a hedged retrieveFirst(). Whoever claims it first, the executor
+     * or the waiting caller, performs the check; the other side never does.
+     */
+    private static final class ExistenceProbe
+    {
+        private final ConcreteResource resource;
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Future<Boolean> future;
+
+        private TransferException error;
+
+        private ExistenceProbe( final ConcreteResource resource )
+        {
+            this.resource = resource;
+        }
+
+        private boolean claim()
+        {
+            return claimed.compareAndSet( false, true );
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.commonjava.maven.galley.TransferManager#retrieveAll(java.util.List, java.lang.String)
      */
@@ -604,6 +794,22 @@ public class TransferManagerImpl
 
             if ( target.exists() )
             {
+                final Staleness staleness = target.getStaleness();
+                if ( staleness != Staleness.NOT_STALE )
+                {
+                    if ( staleness == Staleness.SERVABLE_STALE )
+                    {
+                        logger.debug( "Serving stale cached copy of: {} while it revalidates", target );
+                        downloader.revalidateAsync( resource, target, getTimeoutSeconds( resource ),
+                                                    getTransport( resource ), eventMetadata );
+                        return target;
+                    }
+
+                    logger.debug( "Revalidating stale cached copy of: {}", target );
+                    return downloader.revalidate( resource, target, getTimeoutSeconds( resource ),
+                                                  getTransport( resource ), eventMetadata );
+                }
+
                 logger.debug( "Using cached copy of: {}", target );
                 return target;
             }
@@ -681,6 +887,7 @@ public class TransferManagerImpl
             copy( stream, out );
 
             nfc.clearMissing( resource );
+            exister.invalidate( resource );
         }
         catch ( final IOException e )
         {
@@ -811,6 +1018,8 @@ public class TransferManagerImpl
                 {
                     throw new TransferException( "Failed to delete: {}.", item );
                 }
+
+                exister.invalidate( item.getResource() );
             }
             catch ( final IOException e )
             {
@@ -884,7 +1093,15 @@ public class TransferManagerImpl
     public <T extends TransferBatch> T batchRetrieve( final T batch , final EventMetadata eventMetadata  )
         throws TransferException
     {
-        return doBatch( batch.getResources(), batch, true, eventMetadata );
+        return doBatch( batch.getResources(), batch, true, eventMetadata, null );
+    }
+
+    @Override
+    public <T extends TransferBatch> T batchRetrieve( final T batch, final EventMetadata eventMetadata,
+                                                      final TransferBatchListener listener )
+        throws TransferException
+    {
+        return doBatch( batch.getResources(), batch, true, eventMetadata, listener );
     }
 
     @Override
@@ -897,6 +1114,14 @@ public class TransferManagerImpl
     @Override
     public <T extends TransferBatch> T batchRetrieveAll( final T batch , final EventMetadata eventMetadata  )
         throws TransferException
+    {
+        return batchRetrieveAll( batch, eventMetadata, null );
+    }
+
+    @Override
+    public <T extends TransferBatch> T batchRetrieveAll( final T batch, final EventMetadata eventMetadata,
+                                                         final TransferBatchListener listener )
+        throws TransferException
     {
         final Set<Resource> resources = batch.getResources();
         for ( final Resource resource : new HashSet<>( resources ) )
@@ -911,90 +1136,291 @@ public class TransferManagerImpl
             }
         }
 
-        return doBatch( resources, batch, false, eventMetadata );
+        return doBatch( resources, batch, false, eventMetadata, listener );
     }
 
+    /**
+     * Retrieve every resource of the batch, trying the members of each {@link VirtualResource} in order. Each resource
+     * moves on to its next member as soon as its current try comes back empty, independently of the others, and the
+     * number of tries in flight against any one location is capped by
+     * {@link TransportManagerConfig#getBatchRetrieveLocationWindow()}; resources waiting on a saturated location are
+     * started, in order, as its tries finish. All bookkeeping and listener callbacks happen on the calling thread.
+     */
     @SuppressWarnings( "RedundantThrows" )
     private <T extends TransferBatch> T doBatch( final Set<Resource> resources, final T batch,
-                                                 final boolean suppressFailures, final EventMetadata eventMetadata )
+                                                 final boolean suppressFailures, final EventMetadata eventMetadata,
+                                                 final TransferBatchListener listener )
         throws TransferException
     {
         logger.info( "Attempting to batch-retrieve {} resources:\n  {}", resources.size(), new JoinString( "\n  ",
                                                                                                            resources ) );
 
-        final Set<BatchRetriever> retrievers = new HashSet<>( resources.size() );
+        final BatchPipeline pipeline = new BatchPipeline( new ExecutorCompletionService<>( executorService ),
+                                                          config.getBatchRetrieveLocationWindow(), listener );
+
         for ( final Resource resource : resources )
         {
-            retrievers.add( new BatchRetriever( this, resource, suppressFailures, eventMetadata ) );
+            pipeline.schedule( new BatchRetriever( this, resource, suppressFailures, eventMetadata ) );
+        }
+
+        while ( pipeline.hasInFlight() )
+        {
+            final Future<BatchRetriever> pending;
+            try
+            {
+                pending = pipeline.completions.take();
+            }
+            catch ( final InterruptedException e )
+            {
+                logger.error( String.format( "Failed to wait for batch retrieval attempts to complete: %s",
+                                             e.getMessage() ), e );
+                Thread.currentThread().interrupt();
+                pipeline.cancel( e );
+                break;
+            }
+
+            final BatchRetriever retriever = pipeline.completed( pending );
+            try
+            {
+                pending.get();
+            }
+            catch ( final InterruptedException | ExecutionException e )
+            {
+                logger.error( String.format( "Failed to retrieve next completed retrieval: %s", e.getMessage() ), e );
+                pipeline.errored( retriever, e );
+                pipeline.schedule( retriever );
+                continue;
+            }
+
+            final ConcreteResource resource = retriever.getLastTry();
+            final TransferException error = retriever.getError();
+            if ( error != null )
+            {
+                logger.warn( String.format( "ERROR: %s...%s", resource, error.getMessage() ), error );
+                pipeline.failed( retriever, resource, error );
+                continue;
+            }
+
+            final Transfer transfer = retriever.getTransfer();
+            if ( transfer != null && transfer.exists() )
+            {
+                logger.debug( "Completed: {}", resource );
+                pipeline.transferred( retriever, resource, transfer );
+                continue;
+            }
+
+            pipeline.schedule( retriever );
         }
 
-        final Map<ConcreteResource, TransferException> errors = new HashMap<>();
-        final Map<ConcreteResource, Transfer> transfers = new HashMap<>();
+        batch.setErrors( pipeline.errors );
+        batch.setTransfers( pipeline.transfers );
 
-        do
+        return batch;
+    }
+
+    /**
+     * Scheduling state of one {@link #doBatch(Set, TransferBatch, boolean, EventMetadata, TransferBatchListener)} call.
+     * Only ever touched by the calling thread; the executor just runs the {@link BatchRetriever} tries.
+     */
+    private final class BatchPipeline
+    {
+        private final ExecutorCompletionService<BatchRetriever> completions;
+
+        private final int window;
+
+        private final TransferBatchListener listener;
+
+        private final Map<Future<BatchRetriever>, InFlightTry> inFlight = new HashMap<>();
+
+        private final Map<String, LocationWindow> windows = new HashMap<>();
+
+        private final Map<ConcreteResource, TransferException> errors = new HashMap<>();
+
+        private final Map<ConcreteResource, Transfer> transfers = new HashMap<>();
+
+        private BatchPipeline( final ExecutorCompletionService<BatchRetriever> completions, final int window,
+                               final TransferBatchListener listener )
+        {
+            this.completions = completions;
+            this.window = window;
+            this.listener = listener;
+        }
+
+        private boolean hasInFlight()
         {
-            for ( final BatchRetriever retriever : retrievers )
+            return !inFlight.isEmpty();
+        }
+
+        /**
+         * Start the retriever's next try now if its location has room, otherwise queue it behind that location's
+         * tries. A retriever that is out of tries is reported missing.
+         */
+        private void schedule( final BatchRetriever retriever )
+        {
+            final ConcreteResource next = retriever.getNextTry();
+            if ( next == null )
             {
-                batchExecutor.submit( retriever );
+                logger.debug( "Not completed, but out of tries: {}", retriever.getRootResource() );
+                notifyMissing( retriever );
+                return;
             }
 
-            int count = retrievers.size();
-            for ( int i = 0; i < count; i++ )
+            final LocationWindow locationWindow = windows.computeIfAbsent( next.getLocationName(),
+                                                                           name -> new LocationWindow() );
+            if ( window > 0 && locationWindow.inFlight >= window )
             {
-                try
-                {
-                    Future<BatchRetriever> pending = batchExecutor.take();
-                    BatchRetriever retriever = pending.get();
+                locationWindow.waiting.add( retriever );
+            }
+            else
+            {
+                submit( retriever, locationWindow );
+            }
+        }
 
-                    final ConcreteResource resource = retriever.getLastTry();
-                    final TransferException error = retriever.getError();
-                    if ( error != null )
-                    {
-                        logger.warn( String.format( "ERROR: %s...%s", resource, error.getMessage() ), error );
-                        retrievers.remove( retriever );
+        private void submit( final BatchRetriever retriever, final LocationWindow locationWindow )
+        {
+            final ConcreteResource resource = retriever.getNextTry();
+            final Future<BatchRetriever> future = completions.submit( retriever );
+            locationWindow.inFlight++;
+            inFlight.put( future, new InFlightTry( retriever, resource, locationWindow ) );
+        }
 
-                        if ( !( error instanceof TransferLocationException ) )
-                        {
-                            errors.put( resource, error );
-                        }
+        /**
+         * Release the window slot held by a finished try and hand it to the next retriever waiting on that location.
+         */
+        private BatchRetriever completed( final Future<BatchRetriever> future )
+        {
+            final InFlightTry done = inFlight.remove( future );
+            done.window.inFlight--;
 
-                        continue;
-                    }
+            final BatchRetriever next = done.window.waiting.poll();
+            if ( next != null )
+            {
+                submit( next, done.window );
+            }
 
-                    final Transfer transfer = retriever.getTransfer();
-                    if ( transfer != null && transfer.exists() )
-                    {
-                        transfers.put( resource, transfer );
-                        retrievers.remove( retriever );
-                        logger.debug( "Completed: {}", resource );
-                        continue;
-                    }
+            return done.retriever;
+        }
 
-                    if ( !retriever.hasMoreTries() )
-                    {
-                        logger.debug( "Not completed, but out of tries: {}", resource );
-                        retrievers.remove( retriever );
-                    }
+        private void transferred( final BatchRetriever retriever, final ConcreteResource resource,
+                                  final Transfer transfer )
+        {
+            transfers.put( resource, transfer );
+            if ( listener != null )
+            {
+                try
+                {
+                    listener.transferred( retriever.getRootResource(), resource, transfer );
                 }
-                catch ( final InterruptedException e )
+                catch ( final RuntimeException e )
                 {
-                    logger.error( String.format( "Failed to wait for batch retrieval attempts to complete: %s",
+                    logger.error( String.format( "Batch listener failed for: %s. Reason: %s", resource,
                                                  e.getMessage() ), e );
-                    break;
                 }
-                catch ( ExecutionException e )
+            }
+        }
+
+        private void failed( final BatchRetriever retriever, final ConcreteResource resource,
+                             final TransferException error )
+        {
+            if ( !( error instanceof TransferLocationException ) )
+            {
+                errors.put( resource, error );
+            }
+
+            if ( listener != null )
+            {
+                try
+                {
+                    listener.failed( retriever.getRootResource(), resource, error );
+                }
+                catch ( final RuntimeException e )
+                {
+                    logger.error( String.format( "Batch listener failed for: %s. Reason: %s", resource,
+                                                 e.getMessage() ), e );
+                }
+            }
+        }
+
+        /**
+         * Record a try that blew up instead of returning a result. Unlike {@link #failed}, the retriever goes on to
+         * its next try, so the listener isn't told yet.
+         */
+        private void errored( final BatchRetriever retriever, final Exception e )
+        {
+            final ConcreteResource resource = retriever.getLastTry();
+            if ( resource != null )
+            {
+                final Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                errors.put( resource, new TransferException( "Failed to retrieve: {}. Reason: {}", cause, resource,
+                                                             cause.getMessage() ) );
+            }
+        }
+
+        private void notifyMissing( final BatchRetriever retriever )
+        {
+            if ( listener != null )
+            {
+                try
+                {
+                    listener.missing( retriever.getRootResource() );
+                }
+                catch ( final RuntimeException e )
                 {
-                    logger.error( String.format( "Failed to retrieve next completed retrieval: %s", e.getMessage() ),
-                                  e );
+                    logger.error( String.format( "Batch listener failed for: %s. Reason: %s",
+                                                 retriever.getRootResource(), e.getMessage() ), e );
                 }
             }
         }
-        while( !retrievers.isEmpty() );
 
-        batch.setErrors( errors );
-        batch.setTransfers( transfers );
+        /**
+         * Stop the batch: cancel the tries in flight and report them, along with every retriever still waiting for a
+         * window slot, as failed.
+         */
+        private void cancel( final InterruptedException cause )
+        {
+            inFlight.forEach( ( future, running ) -> {
+                future.cancel( true );
+                interrupted( running.retriever, running.resource, cause );
+            } );
+            inFlight.clear();
+
+            windows.values()
+                   .forEach( locationWindow -> locationWindow.waiting.forEach(
+                           waiting -> interrupted( waiting, waiting.getNextTry(), cause ) ) );
+            windows.clear();
+        }
 
-        return batch;
+        private void interrupted( final BatchRetriever retriever, final ConcreteResource resource,
+                                  final InterruptedException cause )
+        {
+            failed( retriever, resource,
+                    new TransferException( "Batch retrieval interrupted before completing: {}", cause, resource ) );
+        }
+    }
+
+    private static final class InFlightTry
+    {
+        private final BatchRetriever retriever;
+
+        private final ConcreteResource resource;
+
+        private final LocationWindow window;
+
+        private InFlightTry( final BatchRetriever retriever, final ConcreteResource resource,
+                             final LocationWindow window )
+        {
+            this.retriever = retriever;
+            this.resource = resource;
+            this.window = window;
+        }
+    }
+
+    private static final class LocationWindow
+    {
+        private int inFlight;
+
+        private final Deque<BatchRetriever> waiting = new ArrayDeque<>();
     }
 
 }
@@ -108,6 +108,19 @@ public final class BatchRetriever
         return resources.size() > tries;
     }
 
+    /**
+     * The resource the next {@link #call()} will try, or null if there are no more tries.
+     */
+    public ConcreteResource getNextTry()
+    {
+        return hasMoreTries() ? resources.get( tries ) : null;
+    }
+
+    public Resource getRootResource()
+    {
+        return rootResource;
+    }
+
     public ConcreteResource getLastTry()
     {
         return lastTry;
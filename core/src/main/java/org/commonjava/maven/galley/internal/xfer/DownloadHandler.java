@@ -33,14 +33,17 @@ import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 @ApplicationScoped
 public class DownloadHandler
@@ -56,7 +59,16 @@ public class DownloadHandler
 
     private final Map<Transfer, Long> transferSizes = new ConcurrentHashMap<>();
 
-    private final Map<Transfer, Future<DownloadJob>> pending = new HashMap<>();
+    /**
+     * In-flight downloads, keyed by target. Joining and starting are both a single atomic map operation on the
+     * target's own key, so concurrent retrievals of unrelated paths never contend with each other.
+     */
+    private final Map<Transfer, CompletableFuture<DownloadJob>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Targets whose last revalidation failed, with the time until which their stale copy is served without retrying.
+     */
+    private final Map<Transfer, Long> failedRevalidations = new ConcurrentHashMap<>();
 
     @Inject
     @WeftManaged
@@ -105,38 +117,22 @@ public class DownloadHandler
         return joinOrStart( resource, target, timeoutSeconds, transport, suppressFailures, eventMetadata );
     }
 
-    private final Object DOWNLOAD_MUTEX = new Object(); // to prevent duplicate downloads
-
     private Transfer joinOrStart( final ConcreteResource resource, final Transfer target, final int timeoutSeconds,
                                   final Transport transport, final boolean suppressFailures,
                                   final EventMetadata eventMetadata )
             throws TransferException
     {
-        Future<DownloadJob> future;
-        boolean created = false;
-        synchronized ( DOWNLOAD_MUTEX )
+        // if the target file already exists, skip joining. This stat happens outside of any shared lock.
+        if ( target.exists() )
         {
-            // if the target file already exists, skip joining.
-            if ( target.exists() )
-            {
-                return target;
-            }
-
-            future = pending.get( target );
-            if ( future == null )
-            {
-                if ( transport == null )
-                {
-                    return null;
-                }
-
-                final DownloadJob job = transport.createDownloadJob( resource, target, transferSizes, timeoutSeconds, eventMetadata );
+            return target;
+        }
 
-                created = true;
-                future = executor.submit( job );
-                logger.debug( "Created download job for path {}: {}", resource, future );
-                pending.put( target, future );
-            }
+        final CompletableFuture<DownloadJob> future =
+                joinOrClaim( resource, target, timeoutSeconds, transport, eventMetadata );
+        if ( future == null )
+        {
+            return target;
         }
 
         int waitSeconds = (int) ( timeoutSeconds * config.getTimeoutOverextensionFactor() );
@@ -151,31 +147,7 @@ public class DownloadHandler
                 {
                     logger.debug( "Waiting for download job of path: {}: {}", resource, future );
                     final DownloadJob job = future.get( waitSeconds, TimeUnit.SECONDS );
-
-                    final Transfer downloaded = job.getTransfer();
-
-                    if ( job.getError() != null )
-                    {
-                        logger.debug( "NFC: Download error. Marking as missing: {}\nError was: {}", resource,
-                                      job.getError().getMessage() );
-                        
-                        if ( ! (job.getError() instanceof  TransferContentException ) && ! (job.getError() instanceof TransferTimeoutException ) )
-                        {
-                            nfc.addMissing( resource );
-                        }
-
-                        if ( !suppressFailures )
-                        {
-                            throw job.getError();
-                        }
-                    }
-                    else if ( downloaded == null || !downloaded.exists() )
-                    {
-                        logger.debug( "NFC: Download did not complete. Marking as missing: {}", resource );
-                        nfc.addMissing( resource );
-                    }
-
-                    return downloaded;
+                    return handleResult( resource, target, job, suppressFailures );
                 }
                 catch ( final InterruptedException e )
                 {
@@ -227,17 +199,388 @@ public class DownloadHandler
         finally
         {
             transferSizes.remove( target );
-            if ( created )
+        }
+
+        return null;
+    }
+
+    /**
+     * Refresh a stale cached target (see {@link Transfer#isStale()}). The transport sees that the target exists and may
+     * ask the origin whether it changed (e.g. with a conditional GET); new content replaces the old, while an
+     * unchanged answer just restarts the target's cache timeout. The stale copy is dropped only if the origin no
+     * longer has the resource: on errors and timeouts it is kept, and returned, as is.
+     * <p>
+     * Shares the per-target coalescing of {@link #download(ConcreteResource, Transfer, int, Transport, boolean,
+     * EventMetadata)}, so concurrent revalidations of one target cost a single upstream request.
+     *
+     * @return the target, or null if the origin no longer has the resource
+     */
+    public Transfer revalidate( final ConcreteResource resource, final Transfer target, final int timeoutSeconds,
+                                final Transport transport, final EventMetadata eventMetadata )
+    {
+        final int waitSeconds = (int) ( timeoutSeconds * config.getTimeoutOverextensionFactor() );
+        try
+        {
+            return revalidateAsync( resource, target, timeoutSeconds, transport, eventMetadata ).get( waitSeconds,
+                                                                                                       TimeUnit.SECONDS );
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            logger.warn( "Revalidation of: {} interrupted. Keeping the stale copy.", resource );
+        }
+        catch ( final ExecutionException | TimeoutException e )
+        {
+            logger.warn( "Failed to revalidate: {}. Keeping the stale copy. Reason: {}", resource, e.getMessage() );
+        }
+
+        return target;
+    }
+
+    /**
+     * Non-blocking variant of {@link #revalidate(ConcreteResource, Transfer, int, Transport, EventMetadata)}, used to
+     * refresh a target that is still being served stale (see {@link Transfer#isServableStale()}). The returned future
+     * never completes exceptionally; it yields the target, or null if the origin no longer has the resource. Callers
+     * that don't wait for it still get the single, coalesced refresh and its NFC handling.
+     */
+    public CompletableFuture<Transfer> revalidateAsync( final ConcreteResource resource, final Transfer target,
+                                                        final int timeoutSeconds, final Transport transport,
+                                                        final EventMetadata eventMetadata )
+    {
+        if ( !resource.allowsDownloading() || transport == null )
+        {
+            return CompletableFuture.completedFuture( target );
+        }
+
+        final Long retryAt = failedRevalidations.get( target );
+        if ( retryAt != null )
+        {
+            if ( System.currentTimeMillis() < retryAt )
             {
-                synchronized ( DOWNLOAD_MUTEX )
+                logger.debug( "Revalidation of: {} failed recently. Keeping the stale copy.", resource );
+                return CompletableFuture.completedFuture( target );
+            }
+
+            failedRevalidations.remove( target, retryAt );
+        }
+
+        logger.debug( "REVALIDATE {}", resource );
+
+        final CompletableFuture<DownloadJob> mine = new CompletableFuture<>();
+        final CompletableFuture<DownloadJob> existing = pending.putIfAbsent( target, mine );
+        final CompletableFuture<DownloadJob> future;
+        if ( existing != null )
+        {
+            logger.debug( "Joining download job for path {}: {}", resource, existing );
+            future = existing;
+        }
+        else
+        {
+            try
+            {
+                start( resource, target, timeoutSeconds, transport, eventMetadata, mine );
+            }
+            catch ( final TransferException e )
+            {
+                logger.warn( "Failed to revalidate: {}. Keeping the stale copy. Reason: {}", resource,
+                             e.getMessage() );
+                revalidationFailed( target );
+                return CompletableFuture.completedFuture( target );
+            }
+
+            future = mine;
+        }
+
+        return future.handle( ( job, error ) -> {
+            if ( error != null || job == null || job.getError() != null )
+            {
+                final Throwable cause = error != null ? error : job == null ? null : job.getError();
+                logger.warn( "Failed to revalidate: {}. Keeping the stale copy. Reason: {}", resource,
+                             cause == null ? "no result" : cause.getMessage() );
+                revalidationFailed( target );
+                return target;
+            }
+
+            if ( target.exists() && target.isStale() )
+            {
+                // the origin neither sent new content nor confirmed the old, so it doesn't have the resource anymore.
+                logger.debug( "NFC: Revalidation found nothing upstream. Marking as missing: {}", resource );
+                nfc.addMissing( resource );
+                if ( resource.allowsDeletion() )
                 {
-                    logger.debug( "Removing download job of path: {}: {}", resource, future );
-                    pending.remove( target );
+                    try
+                    {
+                        target.delete( true, eventMetadata );
+                    }
+                    catch ( final IOException e )
+                    {
+                        logger.warn( "Failed to delete stale copy of: {}. Reason: {}", resource, e.getMessage() );
+                    }
                 }
+
+                return null;
             }
+
+            return target;
+        } ).whenComplete( ( transfer, error ) -> transferSizes.remove( target ) );
+    }
+
+    private void revalidationFailed( final Transfer target )
+    {
+        final int retrySeconds = config.getRevalidationRetrySeconds();
+        if ( retrySeconds > 0 )
+        {
+            failedRevalidations.put( target, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis( retrySeconds ) );
         }
+    }
 
-        return null;
+    /**
+     * Non-blocking variant of {@link #download(ConcreteResource, Transfer, int, Transport, boolean, EventMetadata)}.
+     * The returned future shares the same per-target coalescing, NFC handling and timeout rules, but no thread is
+     * parked while the download runs. Failures complete the future exceptionally with a {@link TransferException}
+     * (or with null, if suppressFailures is set).
+     */
+    public CompletableFuture<Transfer> downloadAsync( final ConcreteResource resource, final Transfer target,
+                                                      final int timeoutSeconds, final Transport transport,
+                                                      final boolean suppressFailures,
+                                                      final EventMetadata eventMetadata )
+    {
+        if ( !resource.allowsDownloading() )
+        {
+            return CompletableFuture.completedFuture( null );
+        }
+
+        if ( transport == null )
+        {
+            return CompletableFuture.failedFuture(
+                    new TransferLocationException( resource.getLocation(),
+                                                   "No transports available to handle: {} with location type: {}",
+                                                   resource, resource.getLocation().getClass().getSimpleName() ) );
+        }
+
+        if ( nfc.isMissing( resource ) )
+        {
+            logger.debug( "NFC: Already marked as missing: {}", resource );
+            return CompletableFuture.completedFuture( null );
+        }
+
+        if ( target.exists() )
+        {
+            return CompletableFuture.completedFuture( target );
+        }
+
+        logger.debug( "RETRIEVE (async) {}", resource );
+
+        final CompletableFuture<DownloadJob> future;
+        try
+        {
+            future = joinOrClaim( resource, target, timeoutSeconds, transport, eventMetadata );
+        }
+        catch ( final TransferException e )
+        {
+            return suppressFailures ? CompletableFuture.completedFuture( null ) : CompletableFuture.failedFuture( e );
+        }
+
+        if ( future == null )
+        {
+            return CompletableFuture.completedFuture( target );
+        }
+
+        final int waitSeconds = (int) ( timeoutSeconds * config.getTimeoutOverextensionFactor() );
+        return withTimeout( future, target, waitSeconds, true ).handle( ( job, error ) -> {
+            try
+            {
+                if ( error == null )
+                {
+                    return handleResult( resource, target, job, suppressFailures );
+                }
+
+                final Throwable cause = error instanceof CompletionException && error.getCause() != null ?
+                        error.getCause() :
+                        error;
+
+                if ( cause instanceof TimeoutException )
+                {
+                    throw new TransferTimeoutException( target, "Timed out waiting for execution of: {}", cause,
+                                                        target );
+                }
+                else if ( cause instanceof TransferException )
+                {
+                    throw (TransferException) cause;
+                }
+
+                throw new TransferException( "Download failed: {}. Reason: {}", cause, resource, cause.getMessage() );
+            }
+            catch ( final TransferException e )
+            {
+                if ( suppressFailures )
+                {
+                    return null;
+                }
+
+                throw new CompletionException( e );
+            }
+        } ).whenComplete( ( transfer, error ) -> transferSizes.remove( target ) );
+    }
+
+    /**
+     * Join the in-flight download of the target, or claim the target and start one.
+     *
+     * @return the pending download, or null if the target turned up in the cache while claiming it
+     */
+    private CompletableFuture<DownloadJob> joinOrClaim( final ConcreteResource resource, final Transfer target,
+                                                        final int timeoutSeconds, final Transport transport,
+                                                        final EventMetadata eventMetadata )
+            throws TransferException
+    {
+        final CompletableFuture<DownloadJob> mine = new CompletableFuture<>();
+        final CompletableFuture<DownloadJob> existing = pending.putIfAbsent( target, mine );
+        if ( existing != null )
+        {
+            logger.debug( "Joining download job for path {}: {}", resource, existing );
+            return existing;
+        }
+
+        // A download of this target may have finished between our exists() check and claiming the slot. Check
+        // again now that we own it, so we don't fetch the same content twice.
+        if ( target.exists() )
+        {
+            pending.remove( target, mine );
+            mine.complete( null );
+            return null;
+        }
+
+        start( resource, target, timeoutSeconds, transport, eventMetadata, mine );
+        return mine;
+    }
+
+    /**
+     * Wait for a (possibly shared) download without completing it: the timeout only applies to this caller's view.
+     * Large downloads get the same one-time extension the blocking path grants via
+     * {@link TransportManagerConfig#getThresholdWaitRetrySize()}.
+     */
+    private CompletableFuture<DownloadJob> withTimeout( final CompletableFuture<DownloadJob> future,
+                                                        final Transfer target, final long seconds,
+                                                        final boolean mayExtend )
+    {
+        return future.copy().orTimeout( seconds, TimeUnit.SECONDS ).handle( ( job, error ) -> {
+            if ( error == null )
+            {
+                return CompletableFuture.completedFuture( job );
+            }
+
+            final Long size = transferSizes.get( target );
+            if ( mayExtend && error instanceof TimeoutException && size != null
+                    && size > config.getThresholdWaitRetrySize() )
+            {
+                final long tries = size / config.getWaitRetryScalingIncrement();
+                logger.debug( "Downloading a large file: {}. Extending wait by up to {} timeouts.", size, tries );
+                return withTimeout( future, target, seconds * tries, false );
+            }
+
+            return CompletableFuture.<DownloadJob>failedFuture( error );
+        } ).thenCompose( Function.identity() );
+    }
+
+    private Transfer handleResult( final ConcreteResource resource, final Transfer target, final DownloadJob job,
+                                   final boolean suppressFailures )
+            throws TransferException
+    {
+        if ( job == null )
+        {
+            if ( target.exists() )
+            {
+                // the leader found the content already cached when it claimed the download.
+                return target;
+            }
+
+            throw new TransferException( "Download failed: {}. Reason: download job returned no result", resource );
+        }
+
+        final Transfer downloaded = job.getTransfer();
+
+        if ( job.getError() != null )
+        {
+            logger.debug( "NFC: Download error. Marking as missing: {}\nError was: {}", resource,
+                          job.getError().getMessage() );
+
+            if ( !( job.getError() instanceof TransferContentException ) && !( job.getError() instanceof TransferTimeoutException ) )
+            {
+                nfc.addMissing( resource );
+            }
+
+            if ( !suppressFailures )
+            {
+                throw job.getError();
+            }
+        }
+        else if ( downloaded == null || !downloaded.exists() )
+        {
+            logger.debug( "NFC: Download did not complete. Marking as missing: {}", resource );
+            nfc.addMissing( resource );
+        }
+
+        return downloaded;
+    }
+
+    /**
+     * Create and submit the download job for a target whose pending slot is owned by the caller. The slot is released
+     * as soon as the job completes (not when the creating thread stops waiting), so late arrivals keep joining the
+     * running download instead of starting a duplicate one.
+     */
+    private void start( final ConcreteResource resource, final Transfer target, final int timeoutSeconds,
+                        final Transport transport, final EventMetadata eventMetadata,
+                        final CompletableFuture<DownloadJob> future )
+            throws TransferException
+    {
+        final DownloadJob job;
+        try
+        {
+            job = transport.createDownloadJob( resource, target, transferSizes, timeoutSeconds, eventMetadata );
+        }
+        catch ( final TransferException | RuntimeException e )
+        {
+            pending.remove( target, future );
+            future.completeExceptionally( e );
+            throw e;
+        }
+
+        try
+        {
+            executor.execute( () -> {
+                DownloadJob result = null;
+                Throwable error = null;
+                try
+                {
+                    result = job.call();
+                }
+                catch ( final Throwable e )
+                {
+                    error = e;
+                }
+
+                // free the slot before waking the waiters, so a retry right after a failure starts a new download
+                // instead of joining the finished one.
+                logger.debug( "Removing download job of path: {}: {}", resource, future );
+                pending.remove( target, future );
+                if ( error == null )
+                {
+                    future.complete( result );
+                }
+                else
+                {
+                    future.completeExceptionally( error );
+                }
+            } );
+        }
+        catch ( final RejectedExecutionException e )
+        {
+            pending.remove( target, future );
+            future.completeExceptionally( e );
+            throw new TransferException( "Cannot schedule download of: {}. Reason: {}", e, resource, e.getMessage() );
+        }
+
+        logger.debug( "Created download job for path {}: {}", resource, future );
     }
 
 }
@@ -15,13 +15,26 @@
  */
 package org.commonjava.maven.galley.internal.xfer;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
+import org.commonjava.cdi.util.weft.ExecutorConfig;
+import org.commonjava.cdi.util.weft.WeftManaged;
 import org.commonjava.maven.galley.TransferException;
 import org.commonjava.maven.galley.TransferTimeoutException;
+import org.commonjava.maven.galley.config.TransportManagerConfig;
 import org.commonjava.maven.galley.model.ConcreteResource;
 import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.spi.nfc.NotFoundCache;
@@ -31,23 +44,74 @@ import org.commonjava.maven.galley.util.TransferUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Runs remote existence checks on their own executor, so a slow upstream can't hold the caller past its timeout.
+ * Concurrent checks of the same resource share one job, and positive answers are remembered for
+ * {@link TransportManagerConfig#getExistenceCacheSeconds()}, the counterpart of the {@link NotFoundCache} for misses.
+ */
 @ApplicationScoped
 public class ExistenceHandler
 {
 
+    static final int MAX_CACHED_EXISTING = 10_000;
+
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
     @Inject
     private NotFoundCache nfc;
 
+    @Inject
+    private TransportManagerConfig config;
+
+    @Inject
+    @WeftManaged
+    @ExecutorConfig( threads = 8, named = "galley-existence", priority = 8 )
+    private ExecutorService executor;
+
+    /**
+     * In-flight existence checks, keyed by resource. Late callers join the running check instead of sending their own
+     * HEAD upstream.
+     */
+    private final Map<ConcreteResource, CompletableFuture<Boolean>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Expiry time (in clock ticks) of each resource recently found to exist.
+     */
+    private final Map<ConcreteResource, Long> existing = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder checks = new LongAdder();
+
+    private final LongSupplier clock;
+
     @SuppressWarnings( "unused" )
     public ExistenceHandler()
     {
+        this.clock = System::nanoTime;
     }
 
+    /**
+     * Checks run on the calling thread; still coalesced and cached, but without timeout enforcement.
+     */
     public ExistenceHandler( final NotFoundCache nfc )
+    {
+        this( nfc, new TransportManagerConfig(), null );
+    }
+
+    public ExistenceHandler( final NotFoundCache nfc, final TransportManagerConfig config,
+                             final ExecutorService executor )
+    {
+        this( nfc, config, executor, System::nanoTime );
+    }
+
+    ExistenceHandler( final NotFoundCache nfc, final TransportManagerConfig config, final ExecutorService executor,
+                      final LongSupplier clock )
     {
         this.nfc = nfc;
+        this.config = config;
+        this.executor = executor;
+        this.clock = clock;
     }
 
     public boolean exists( final ConcreteResource resource, final Transfer transfer, final int timeoutSeconds,
@@ -75,43 +139,54 @@ public class ExistenceHandler
             return false;
         }
 
-        logger.debug( "EXISTS {}", resource );
+        if ( isKnownToExist( resource ) )
+        {
+            logger.debug( "Existence cache: Already found: {}", resource );
+            hits.increment();
+            return true;
+        }
 
-        final ExistenceJob job = transport.createExistenceJob( resource, transfer, timeoutSeconds );
+        logger.debug( "EXISTS {}", resource );
 
-        // TODO: execute this stuff in a thread just like downloads/publishes. Requires cache storage...
         try
         {
-            final Boolean result = job.call();
-
-            if ( job.getError() != null )
+            final CompletableFuture<Boolean> future = joinOrStart( resource, transfer, timeoutSeconds, transport );
+            if ( executor == null )
             {
-                logger.debug( "NFC: Download error. Marking as missing: {}", resource );
-                nfc.addMissing( resource );
-
-                if ( !suppressFailures )
-                {
-                    throw job.getError();
-                }
+                return future.get();
             }
-            else if ( result == null )
+
+            final long waitSeconds = (long) ( timeoutSeconds * config.getTimeoutOverextensionFactor() );
+            return future.get( waitSeconds, TimeUnit.SECONDS );
+        }
+        catch ( final TimeoutException e )
+        {
+            if ( !suppressFailures )
             {
-                logger.debug( "NFC: Download did not complete. Marking as missing: {}", resource );
-                nfc.addMissing( resource );
+                throw new TransferTimeoutException( transfer, "Timed-out existence check: {}. Reason: {}", e, resource,
+                                                    e.getMessage() );
             }
-            else if ( !result )
+        }
+        catch ( final ExecutionException e )
+        {
+            final Throwable cause = e.getCause() == null ? e : e.getCause();
+            if ( !suppressFailures )
             {
-                logger.debug( "NFC: Existence check returned false. Marking as missing: {}", resource );
-                nfc.addMissing( resource );
-            }
+                if ( cause instanceof TransferException )
+                {
+                    throw (TransferException) cause;
+                }
 
-            return result != null && result;
+                throw new TransferException( "Failed existence check: {}. Reason: {}", cause, resource,
+                                             cause.getMessage() );
+            }
         }
-        catch ( final TimeoutException e )
+        catch ( final InterruptedException e )
         {
+            Thread.currentThread().interrupt();
             if ( !suppressFailures )
             {
-                throw new TransferTimeoutException( transfer, "Timed-out existence check: {}. Reason: {}", e, resource, e.getMessage() );
+                throw new TransferException( "Existence check interrupted: {}", e, resource );
             }
         }
         catch ( final TransferException e )
@@ -121,15 +196,179 @@ public class ExistenceHandler
                 throw e;
             }
         }
-        catch ( final Exception e )
+
+        return false;
+    }
+
+    /**
+     * Forget a cached positive answer, e.g. after the resource was deleted upstream.
+     */
+    public void invalidate( final ConcreteResource resource )
+    {
+        existing.remove( resource );
+    }
+
+    public void clear()
+    {
+        existing.clear();
+    }
+
+    public int getCachedExistingCount()
+    {
+        return existing.size();
+    }
+
+    public long getCacheHitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Number of existence jobs actually sent to a transport.
+     */
+    public long getCheckCount()
+    {
+        return checks.sum();
+    }
+
+    private boolean isKnownToExist( final ConcreteResource resource )
+    {
+        final Long expiresAt = existing.get( resource );
+        if ( expiresAt == null )
         {
-            if ( !suppressFailures )
+            return false;
+        }
+
+        if ( expiresAt - clock.getAsLong() > 0 )
+        {
+            return true;
+        }
+
+        existing.remove( resource, expiresAt );
+        return false;
+    }
+
+    private void markExisting( final ConcreteResource resource )
+    {
+        final int ttl = config.getExistenceCacheSeconds();
+        if ( ttl < 1 )
+        {
+            return;
+        }
+
+        final long now = clock.getAsLong();
+        if ( existing.size() >= MAX_CACHED_EXISTING )
+        {
+            existing.values().removeIf( expiresAt -> expiresAt - now <= 0 );
+            if ( existing.size() >= MAX_CACHED_EXISTING )
             {
-                throw new TransferException( "Failed existence check: {}. Reason: {}", e, resource, e.getMessage() );
+                // everything is still live; entries are cheap to recreate, so just start over.
+                existing.clear();
             }
         }
 
-        return false;
+        existing.put( resource, now + TimeUnit.SECONDS.toNanos( ttl ) );
+    }
+
+    private CompletableFuture<Boolean> joinOrStart( final ConcreteResource resource, final Transfer transfer,
+                                                    final int timeoutSeconds, final Transport transport )
+        throws TransferException
+    {
+        final CompletableFuture<Boolean> mine = new CompletableFuture<>();
+        final CompletableFuture<Boolean> running = pending.putIfAbsent( resource, mine );
+        if ( running != null )
+        {
+            logger.debug( "Joining existence check of: {}", resource );
+            return running;
+        }
+
+        final ExistenceJob job;
+        try
+        {
+            job = transport.createExistenceJob( resource, transfer, timeoutSeconds );
+        }
+        catch ( final TransferException | RuntimeException e )
+        {
+            pending.remove( resource, mine );
+            mine.completeExceptionally( e );
+            throw e;
+        }
+
+        checks.increment();
+        final Runnable check = () -> {
+            boolean result = false;
+            Throwable error = null;
+            try
+            {
+                result = handleResult( resource, job );
+            }
+            catch ( final Throwable e )
+            {
+                error = e;
+            }
+
+            // release the slot before completing, so nobody joins a check that has already answered.
+            pending.remove( resource, mine );
+            if ( error == null )
+            {
+                mine.complete( result );
+            }
+            else
+            {
+                mine.completeExceptionally( error );
+            }
+        };
+
+        if ( executor == null )
+        {
+            check.run();
+            return mine;
+        }
+
+        try
+        {
+            executor.execute( check );
+        }
+        catch ( final RejectedExecutionException e )
+        {
+            pending.remove( resource, mine );
+            mine.completeExceptionally( e );
+            throw new TransferException( "Cannot schedule existence check of: {}. Reason: {}", e, resource,
+                                         e.getMessage() );
+        }
+
+        return mine;
+    }
+
+    /**
+     * Runs once per shared check, so the NFC and the existence cache are updated once however many callers joined.
+     */
+    private boolean handleResult( final ConcreteResource resource, final ExistenceJob job )
+        throws Exception
+    {
+        final Boolean result = job.call();
+
+        if ( job.getError() != null )
+        {
+            logger.debug( "NFC: Download error. Marking as missing: {}", resource );
+            nfc.addMissing( resource );
+            throw job.getError();
+        }
+        else if ( result == null )
+        {
+            logger.debug( "NFC: Download did not complete. Marking as missing: {}", resource );
+            nfc.addMissing( resource );
+            return false;
+        }
+        else if ( !result )
+        {
+            logger.debug( "NFC: Existence check returned false. Marking as missing: {}", resource );
+            nfc.addMissing( resource );
+            return false;
+        }
+
+        markExisting( resource );
+        return true;
     }
 
 }
@@ -39,6 +39,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 import static org.commonjava.maven.galley.io.DeprecatedChecksummingFilter.calculateWriteOperations;
@@ -69,11 +70,28 @@ public final class ChecksummingTransferDecorator
 
     private final Function<String, TimingProvider> timerProviderFunction;
 
+    private final Executor digestExecutor;
+
     public ChecksummingTransferDecorator( final ChecksummingDecoratorAdvisor readerFilter,
                                           final ChecksummingDecoratorAdvisor writerFilter,
                                           SpecialPathManager specialPathManager, Function<String, TimingProvider> timerProviderFunction,
                                           TransferMetadataConsumer consumer,
                                           Set<AbstractChecksumGeneratorFactory<?>> checksumFactories )
+    {
+        this( readerFilter, writerFilter, specialPathManager, timerProviderFunction, consumer, checksumFactories,
+              null );
+    }
+
+    /**
+     * @param digestExecutor if non-null, large transfers compute their digests in parallel on this executor rather
+     * than one after another on the reading / writing thread.
+     */
+    public ChecksummingTransferDecorator( final ChecksummingDecoratorAdvisor readerFilter,
+                                          final ChecksummingDecoratorAdvisor writerFilter,
+                                          SpecialPathManager specialPathManager, Function<String, TimingProvider> timerProviderFunction,
+                                          TransferMetadataConsumer consumer,
+                                          Set<AbstractChecksumGeneratorFactory<?>> checksumFactories,
+                                          Executor digestExecutor )
     {
         this.readerFilter = readerFilter;
         this.writerFilter = writerFilter;
@@ -81,6 +99,7 @@ public final class ChecksummingTransferDecorator
         this.timerProviderFunction = timerProviderFunction == null ? ( s)->null : timerProviderFunction;
         this.consumer = consumer;
         this.checksumFactories = checksumFactories;
+        this.digestExecutor = digestExecutor;
     }
 
     public ChecksummingTransferDecorator( final ChecksummingDecoratorAdvisor readerFilter,
@@ -172,7 +191,8 @@ public final class ChecksummingTransferDecorator
             {
                 logger.trace( "Wrapping output stream to: {} for checksum generation.", transfer );
                 return new ChecksummingOutputStream( checksumFactories, stream, transfer, consumer,
-                                                     advice == CALCULATE_AND_WRITE, timerProviderFunction );
+                                                     advice == CALCULATE_AND_WRITE, timerProviderFunction,
+                                                     digestExecutor );
             }
         }
 
@@ -184,6 +204,27 @@ public final class ChecksummingTransferDecorator
     public InputStream decorateRead( final InputStream stream, final Transfer transfer,
                                      final EventMetadata eventMetadata )
             throws IOException
+    {
+        ChecksummingDecoratorAdvisor.ChecksumAdvice advice = getReadAdvice( transfer, eventMetadata );
+        if ( advice != NO_DECORATE )
+        {
+            return new ChecksummingInputStream( checksumFactories, stream, transfer, consumer,
+                                                advice == CALCULATE_AND_WRITE, timerProviderFunction,
+                                                digestExecutor );
+        }
+
+        logger.trace( "NOT decorating read with ChecksummingTransferDecorator for: {}", transfer );
+        return stream;
+    }
+
+    @Override
+    public boolean needsReadDecoration( final Transfer transfer, final EventMetadata eventMetadata )
+    {
+        return getReadAdvice( transfer, eventMetadata ) != NO_DECORATE;
+    }
+
+    private ChecksummingDecoratorAdvisor.ChecksumAdvice getReadAdvice( final Transfer transfer,
+                                                                      final EventMetadata eventMetadata )
     {
         Object forceObj = eventMetadata.get( FORCE_CHECKSUM );
         boolean force = Boolean.TRUE.equals( forceObj ) || Boolean.parseBoolean( String.valueOf( forceObj ) );
@@ -210,15 +251,13 @@ public final class ChecksummingTransferDecorator
             // 0. if we're forcing recalculation
             // 1. if we need to write checksum files for this
             // 2. if we have a metadata consumer AND the consumer needs metadata for this transfer
-            if ( advice != NO_DECORATE && ( consumer == null || consumer.needsMetadataFor( transfer ) ) )
+            if ( consumerNeedsIt )
             {
-                return new ChecksummingInputStream( checksumFactories, stream, transfer, consumer,
-                                                    advice == CALCULATE_AND_WRITE, timerProviderFunction );
+                return advice;
             }
         }
 
-        logger.trace( "NOT decorating read with ChecksummingTransferDecorator for: {}", transfer );
-        return stream;
+        return NO_DECORATE;
     }
 
     public void decorateDelete( final Transfer transfer, final EventMetadata eventMetadata )
@@ -51,12 +51,7 @@ public class NoCacheTransferDecorator
     public InputStream decorateRead( final InputStream stream, final Transfer transfer,
                                      final EventMetadata eventMetadata ) throws IOException
     {
-        SpecialPathInfo specialPathInfo = specialPathManager.getSpecialPathInfo( transfer, eventMetadata.getPackageType() );
-
-        logger.trace( "SpecialPathInfo for: {} is: {} (cachable? {})", transfer, specialPathInfo,
-                      ( specialPathInfo == null || specialPathInfo.isCachable() ) );
-
-        if ( specialPathInfo != null && !specialPathInfo.isCachable() )
+        if ( isNotCachable( transfer, eventMetadata ) )
         {
             logger.trace( "Decorating read with NoCacheTransferDecorator for: {}", transfer );
             return new NoCacheInputStream( stream, transfer );
@@ -64,4 +59,20 @@ public class NoCacheTransferDecorator
 
         return stream;
     }
+
+    @Override
+    public boolean needsReadDecoration( final Transfer transfer, final EventMetadata eventMetadata )
+    {
+        return isNotCachable( transfer, eventMetadata );
+    }
+
+    private boolean isNotCachable( final Transfer transfer, final EventMetadata eventMetadata )
+    {
+        SpecialPathInfo specialPathInfo = specialPathManager.getSpecialPathInfo( transfer, eventMetadata.getPackageType() );
+
+        logger.trace( "SpecialPathInfo for: {} is: {} (cachable? {})", transfer, specialPathInfo,
+                      ( specialPathInfo == null || specialPathInfo.isCachable() ) );
+
+        return specialPathInfo != null && !specialPathInfo.isCachable();
+    }
 }
@@ -0,0 +1,510 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.io;
+
+import org.commonjava.maven.galley.model.FilePatternMatcher;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.PathPatternMatcher;
+import org.commonjava.maven.galley.model.SpecialPathInfo;
+import org.commonjava.maven.galley.model.SpecialPathMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.regex.Pattern;
+
+import static org.commonjava.maven.galley.util.PathUtils.fileName;
+
+/**
+ * Immutable, compiled view of the standard special paths plus the paths of one package type, as used by
+ * {@link SpecialPathManagerImpl}. Every {@link FilePatternMatcher} and {@link PathPatternMatcher} regex that ends in a
+ * literal (e.g. <code>\.sha1$</code>) is indexed by that literal in a reversed-suffix trie, so one backward walk over
+ * the path yields the few rules that could possibly match; only those, plus the rules that have no usable literal
+ * suffix (or use a custom {@link SpecialPathMatcher}), are evaluated, in registration order.
+ * <br/>
+ * Results are memoized per path in a bounded map that is simply cleared when full. The index is never updated; the
+ * manager replaces it whenever the rules it was compiled from change.
+ */
+final class SpecialPathIndex
+{
+    private static final Logger logger = LoggerFactory.getLogger( SpecialPathIndex.class );
+
+    private static final String EXPLICIT_META = "<=!:>";
+
+    /**
+     * Escapes standing for exactly one character (or a boundary) and taking no further input, like {@code \d} or {@code \t}.
+     */
+    private static final String SINGLE_CHAR_ESCAPES = "dDwWsShHvVbBtnrfae";
+
+    private final int stdVersion;
+
+    private final List<SpecialPathInfo> pkgSource;
+
+    private final Rule[] rules;
+
+    private final int stdCount;
+
+    private final SuffixTrie fileSuffixes = new SuffixTrie();
+
+    private final SuffixTrie pathSuffixes = new SuffixTrie();
+
+    private final int[] unindexed;
+
+    private final boolean customMatchers;
+
+    private final int maxResults;
+
+    private final Map<ResultKey, Optional<SpecialPathInfo>> results = new ConcurrentHashMap<>();
+
+    SpecialPathIndex( final List<SpecialPathInfo> std, final int stdVersion, final List<SpecialPathInfo> pkg,
+                      final int maxResults )
+    {
+        this.stdVersion = stdVersion;
+        this.pkgSource = pkg;
+        this.maxResults = maxResults;
+
+        final List<SpecialPathInfo> all = new ArrayList<>( std );
+        stdCount = all.size();
+        if ( pkg != null )
+        {
+            all.addAll( pkg );
+        }
+
+        rules = new Rule[all.size()];
+        final List<Integer> always = new ArrayList<>();
+        boolean custom = false;
+        for ( int i = 0; i < rules.length; i++ )
+        {
+            final Rule rule = new Rule( all.get( i ) );
+            rules[i] = rule;
+
+            final String suffix = rule.pattern == null ? null : requiredSuffix( rule.pattern.pattern() );
+            if ( suffix == null )
+            {
+                always.add( i );
+            }
+            else if ( rule.fileName )
+            {
+                fileSuffixes.add( suffix, i );
+            }
+            else
+            {
+                pathSuffixes.add( suffix, i );
+            }
+
+            custom = custom || rule.pattern == null;
+        }
+
+        unindexed = always.stream().mapToInt( Integer::intValue ).toArray();
+        customMatchers = custom;
+    }
+
+    /**
+     * Whether this index still reflects the current rules. The standard paths are owned by the manager, which
+     * versions them, but package path sets can be shared and modified directly, so their contents are compared
+     * element by element.
+     */
+    boolean isCurrent( final int stdVersion, final List<SpecialPathInfo> pkg )
+    {
+        if ( stdVersion != this.stdVersion || pkg != pkgSource )
+        {
+            return false;
+        }
+
+        if ( pkg == null )
+        {
+            return true;
+        }
+
+        if ( pkg.size() != rules.length - stdCount )
+        {
+            return false;
+        }
+
+        for ( int i = stdCount; i < rules.length; i++ )
+        {
+            if ( rules[i].info != pkg.get( i - stdCount ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Whether any rule uses a matcher this index can't evaluate itself, which may depend on the location.
+     */
+    boolean hasCustomMatchers()
+    {
+        return customMatchers;
+    }
+
+    /**
+     * @param storagePaths maps a location and path to the path it is stored under, which is matched as well; only
+     * called when the result isn't memoized yet, and only with a non-null location
+     */
+    SpecialPathInfo lookup( final Location location, final String path, final boolean locationSensitive,
+                            final BiFunction<Location, String, String> storagePaths )
+    {
+        final ResultKey key = new ResultKey( locationSensitive ? location : null, path );
+        final Optional<SpecialPathInfo> cached = results.get( key );
+        if ( cached != null )
+        {
+            return cached.orElse( null );
+        }
+
+        final String storagePath = location == null ? null : storagePaths.apply( location, path );
+        final SpecialPathInfo info = match( location, path, storagePath );
+        if ( results.size() >= maxResults )
+        {
+            results.clear();
+        }
+
+        results.put( key, Optional.ofNullable( info ) );
+        return info;
+    }
+
+    int getCachedResultCount()
+    {
+        return results.size();
+    }
+
+    private SpecialPathInfo match( final Location location, final String path, final String storagePath )
+    {
+        final boolean checkStorage = storagePath != null && !storagePath.equals( path );
+        final String file = fileName( path );
+        final String storageFile = checkStorage ? fileName( storagePath ) : null;
+
+        final boolean[] candidates = new boolean[rules.length];
+        for ( final int i : unindexed )
+        {
+            candidates[i] = true;
+        }
+
+        fileSuffixes.collect( file, candidates );
+        pathSuffixes.collect( path, candidates );
+        if ( checkStorage )
+        {
+            fileSuffixes.collect( storageFile, candidates );
+            pathSuffixes.collect( storagePath, candidates );
+        }
+
+        int firstHit = -1;
+        for ( int i = 0; i < rules.length; i++ )
+        {
+            if ( i == stdCount && firstHit >= 0 )
+            {
+                // the standard paths win outright; package paths are only consulted when none of them match.
+                break;
+            }
+
+            if ( !candidates[i] )
+            {
+                continue;
+            }
+
+            final boolean hit = rules[i].matches( location, path, file ) || ( checkStorage && rules[i].matches(
+                    location, storagePath, storageFile ) );
+            if ( !hit )
+            {
+                continue;
+            }
+
+            if ( firstHit < 0 )
+            {
+                firstHit = i;
+            }
+            else
+            {
+                logger.error( "Duplicate special-path registration for: {}:{}. Using: {}", location, path,
+                              rules[firstHit].info );
+            }
+        }
+
+        return firstHit < 0 ? null : rules[firstHit].info;
+    }
+
+    /**
+     * Literal text every full match of the regex has to end with, or null if there is none that can be determined
+     * cheaply and safely. Anything unusual (top-level alternation, inline flags, quoting) disables indexing for the
+     * pattern rather than risk a wrong answer; an unindexed rule is just always evaluated.
+     */
+    static String requiredSuffix( final String regex )
+    {
+        final StringBuilder tail = new StringBuilder();
+        int depth = 0;
+        final int len = regex.length();
+        for ( int i = 0; i < len; i++ )
+        {
+            final char c = regex.charAt( i );
+            switch ( c )
+            {
+                case '\\':
+                {
+                    if ( i + 1 >= len )
+                    {
+                        return null;
+                    }
+
+                    final char next = regex.charAt( ++i );
+                    if ( next == 'Q' )
+                    {
+                        return null;
+                    }
+                    else if ( SINGLE_CHAR_ESCAPES.indexOf( next ) > -1 )
+                    {
+                        tail.setLength( 0 );
+                    }
+                    else if ( Character.isLetterOrDigit( next ) )
+                    {
+                        // hex, unicode, control and octal escapes, back-references, properties: what follows is not literal.
+                        return null;
+                    }
+                    else
+                    {
+                        tail.append( next );
+                    }
+                    break;
+                }
+                case '[':
+                {
+                    i = skipClass( regex, i );
+                    if ( i < 0 )
+                    {
+                        return null;
+                    }
+                    tail.setLength( 0 );
+                    break;
+                }
+                case '(':
+                {
+                    if ( i + 1 < len && regex.charAt( i + 1 ) == '?' && ( i + 2 >= len
+                            || EXPLICIT_META.indexOf( regex.charAt( i + 2 ) ) < 0 ) )
+                    {
+                        // inline flags, e.g. (?i)
+                        return null;
+                    }
+                    depth++;
+                    tail.setLength( 0 );
+                    break;
+                }
+                case ')':
+                {
+                    depth--;
+                    tail.setLength( 0 );
+                    break;
+                }
+                case '|':
+                {
+                    if ( depth == 0 )
+                    {
+                        return null;
+                    }
+                    tail.setLength( 0 );
+                    break;
+                }
+                case '{':
+                {
+                    i = regex.indexOf( '}', i );
+                    if ( i < 0 )
+                    {
+                        return null;
+                    }
+                    tail.setLength( 0 );
+                    break;
+                }
+                case '$':
+                {
+                    if ( i != len - 1 )
+                    {
+                        return null;
+                    }
+                    break;
+                }
+                case '*':
+                case '+':
+                case '?':
+                case '.':
+                case '^':
+                {
+                    tail.setLength( 0 );
+                    break;
+                }
+                default:
+                {
+                    tail.append( c );
+                }
+            }
+        }
+
+        return depth == 0 && tail.length() > 0 ? tail.toString() : null;
+    }
+
+    private static int skipClass( final String regex, final int start )
+    {
+        int depth = 0;
+        for ( int i = start; i < regex.length(); i++ )
+        {
+            final char c = regex.charAt( i );
+            if ( c == '\\' )
+            {
+                i++;
+            }
+            else if ( c == '[' )
+            {
+                depth++;
+            }
+            else if ( c == ']' && --depth == 0 )
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static final class Rule
+    {
+        private final SpecialPathInfo info;
+
+        private final SpecialPathMatcher matcher;
+
+        private final Pattern pattern;
+
+        private final boolean fileName;
+
+        Rule( final SpecialPathInfo info )
+        {
+            this.info = info;
+            this.matcher = info.getMatcher();
+
+            // subclasses may override matches(), so only the exact types are safe to evaluate directly.
+            final Class<?> type = matcher == null ? null : matcher.getClass();
+            if ( type == FilePatternMatcher.class )
+            {
+                pattern = Pattern.compile( ( (FilePatternMatcher) matcher ).getPattern() );
+                fileName = true;
+            }
+            else if ( type == PathPatternMatcher.class )
+            {
+                pattern = Pattern.compile( ( (PathPatternMatcher) matcher ).getPattern() );
+                fileName = false;
+            }
+            else
+            {
+                pattern = null;
+                fileName = false;
+            }
+        }
+
+        boolean matches( final Location location, final String path, final String file )
+        {
+            if ( pattern == null )
+            {
+                return matcher != null && matcher.matches( location, path );
+            }
+
+            return pattern.matcher( fileName ? file : path ).matches();
+        }
+    }
+
+    private static final class SuffixTrie
+    {
+        private final Node root = new Node();
+
+        void add( final String suffix, final int rule )
+        {
+            Node node = root;
+            for ( int i = suffix.length() - 1; i >= 0; i-- )
+            {
+                node = node.children.computeIfAbsent( suffix.charAt( i ), c -> new Node() );
+            }
+
+            node.rules.add( rule );
+        }
+
+        void collect( final String value, final boolean[] into )
+        {
+            Node node = root;
+            for ( int i = value.length() - 1; i >= 0 && !node.children.isEmpty(); i-- )
+            {
+                node = node.children.get( value.charAt( i ) );
+                if ( node == null )
+                {
+                    return;
+                }
+
+                for ( final int rule : node.rules )
+                {
+                    into[rule] = true;
+                }
+            }
+        }
+    }
+
+    private static final class Node
+    {
+        private final Map<Character, Node> children = new HashMap<>();
+
+        private final List<Integer> rules = new ArrayList<>();
+    }
+
+    private static final class ResultKey
+    {
+        private final Location location;
+
+        private final String path;
+
+        private final int hash;
+
+        ResultKey( final Location location, final String path )
+        {
+            this.location = location;
+            this.path = path;
+            this.hash = 31 * Objects.hashCode( location ) + path.hashCode();
+        }
+
+        @Override
+        public boolean equals( final Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( !( o instanceof ResultKey ) )
+            {
+                return false;
+            }
+
+            final ResultKey that = (ResultKey) o;
+            return path.equals( that.path ) && Objects.equals( location, that.location );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+}
@@ -29,10 +29,10 @@ import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
 
 import static org.apache.commons.lang3.StringUtils.join;
 import static org.commonjava.maven.galley.io.SpecialPathConstants.MVN_SP_PATH_SET;
@@ -48,10 +48,26 @@ public class SpecialPathManagerImpl
 {
     private static final Logger logger = LoggerFactory.getLogger( SpecialPathManagerImpl.class );
 
+    /**
+     * Upper bound on the lookup results memoized per package type; the memo is cleared when it fills up.
+     */
+    public static final int MAX_CACHED_RESULTS = 10000;
+
+    // stands in for a null package type, which has only the standard paths.
+    private static final String NO_PKG_TYPE = "";
+
     private List<SpecialPathInfo> stdSpecialPaths;
 
+    // bumped on every change to stdSpecialPaths, so indexes compiled from an older list are never reused.
+    private volatile int stdVersion;
+
     private Map<String, SpecialPathSet> pkgtypes;
 
+    private final Map<String, SpecialPathIndex> indexes = new ConcurrentHashMap<>();
+
+    private final BiFunction<Location, String, String> storagePaths =
+            ( location, path ) -> getStoragePath( new ConcreteResource( location, path ) );
+
     @Inject
     private PathGenerator pathGenerator;
 
@@ -74,30 +90,38 @@ public class SpecialPathManagerImpl
         pkgtypes = new ConcurrentHashMap<>();
         pkgtypes.put( MVN_SP_PATH_SET.getPackageType(), MVN_SP_PATH_SET );
         pkgtypes.put( NPM_SP_PATH_SET.getPackageType(), NPM_SP_PATH_SET );
+        stdVersion++;
+        indexes.clear();
     }
 
     @Override
     public synchronized void registerSpecialPathInfo( SpecialPathInfo pathInfo )
     {
         stdSpecialPaths.add( pathInfo );
+        stdVersion++;
+        indexes.clear();
     }
 
     @Override
     public void registerSpecialPathInfo( SpecialPathInfo pathInfo, final String pkgType )
     {
         pkgtypes.get( pkgType ).registerSpecialPathInfo( pathInfo );
+        indexes.clear();
     }
 
     @Override
     public synchronized void deregisterSpecialPathInfo( SpecialPathInfo pathInfo )
     {
         stdSpecialPaths.remove( pathInfo );
+        stdVersion++;
+        indexes.clear();
     }
 
     @Override
     public void deregisterSpecialPathInfo( SpecialPathInfo pathInfo, String pkgType )
     {
         pkgtypes.get( pkgType ).deregisterSpecialPathInfo( pathInfo );
+        indexes.clear();
     }
 
     @Override
@@ -111,6 +135,7 @@ public class SpecialPathManagerImpl
         }
 
         pkgtypes.put( pathSet.getPackageType(), pathSet );
+        indexes.clear();
 
         if ( logger.isTraceEnabled() )
         {
@@ -136,7 +161,9 @@ public class SpecialPathManagerImpl
                     pathSet.getPackageType() );
         }
 
-        return pkgtypes.remove( pathSet.getPackageType() );
+        final SpecialPathSet removed = pkgtypes.remove( pathSet.getPackageType() );
+        indexes.clear();
+        return removed;
     }
 
     @Deprecated
@@ -188,52 +215,41 @@ public class SpecialPathManagerImpl
     @Override
     public SpecialPathInfo getSpecialPathInfo( Location location, String path, String pkgType )
     {
-        SpecialPathInfo info = getPathInfo( location, path, stdSpecialPaths );
-        if ( info != null )
+        if ( path == null )
         {
-            return info;
+            // TODO: Return SpecialPathConstants.DEFAULT_FILE or SpecialPathConstants.DEFAULT_DIR or something non-null?
+            return null;
         }
 
-        if ( pkgtypes.containsKey( pkgType ) )
-        {
-            return getPathInfo( location, path, pkgtypes.get( pkgType ).getSpecialPathInfos() );
-        }
-        // TODO: Return SpecialPathConstants.DEFAULT_FILE or SpecialPathConstants.DEFAULT_DIR or something non-null?
-        return null;
+        final SpecialPathIndex index = getIndex( pkgType );
+        final boolean locationSensitive = location != null && ( pathGenerator != null || index.hasCustomMatchers() );
+
+        // TODO: Return SpecialPathConstants.DEFAULT_FILE or SpecialPathConstants.DEFAULT_DIR based on path if nothing matches!
+        return index.lookup( location, path, locationSensitive, storagePaths );
     }
 
-    private SpecialPathInfo getPathInfo( Location location, String path, Collection<SpecialPathInfo> from )
+    /**
+     * Compiled rules for the standard paths plus those of the given package type. Registration through this manager
+     * drops all indexes; path sets can also be modified directly, so a cached index is verified against the live
+     * set before use and recompiled if it has changed.
+     */
+    private SpecialPathIndex getIndex( final String pkgType )
     {
-        SpecialPathInfo firstHit = null;
-        if ( path != null )
+        final String key = pkgType == null ? NO_PKG_TYPE : pkgType;
+        final SpecialPathSet pathSet = pkgType == null ? null : pkgtypes.get( pkgType );
+        final List<SpecialPathInfo> pkgPaths = pathSet == null ? null : pathSet.getSpecialPathInfos();
+
+        SpecialPathIndex index = indexes.get( key );
+        if ( index == null || !index.isCurrent( stdVersion, pkgPaths ) )
         {
-            for ( SpecialPathInfo info : from )
+            synchronized ( this )
             {
-                final boolean originalMatched = info.getMatcher().matches( location, path );
-                boolean storagePathMatched = originalMatched;
-                if ( location != null )
-                {
-                    final ConcreteResource resource = new ConcreteResource( location, path );
-                    storagePathMatched = info.getMatcher().matches( location, getStoragePath( resource ) );
-                }
-                if ( originalMatched || storagePathMatched )
-                {
-                    if ( firstHit != null )
-                    {
-                        Logger logger = LoggerFactory.getLogger( getClass() );
-                        logger.error( "Duplicate special-path registration for: {}:{}. Using: {}", location, path,
-                                      firstHit );
-                    }
-                    else
-                    {
-                        firstHit = info;
-                    }
-                }
+                index = new SpecialPathIndex( stdSpecialPaths, stdVersion, pkgPaths, MAX_CACHED_RESULTS );
             }
+            indexes.put( key, index );
         }
 
-        // TODO: Return SpecialPathConstants.DEFAULT_FILE or SpecialPathConstants.DEFAULT_DIR based on path if firstHit is null!
-        return firstHit;
+        return index;
     }
 
     @Deprecated
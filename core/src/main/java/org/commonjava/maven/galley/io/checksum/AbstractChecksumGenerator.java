@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.function.Function;
@@ -97,6 +98,11 @@ public abstract class AbstractChecksumGenerator
         digester.update( data, offset, len );
     }
 
+    public final void update( final ByteBuffer data )
+    {
+        digester.update( data );
+    }
+
     public final void write()
             throws IOException
     {
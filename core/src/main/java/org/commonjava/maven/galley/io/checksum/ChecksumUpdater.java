@@ -0,0 +1,300 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.io.checksum;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Feeds the content passing through {@link ChecksummingInputStream} / {@link ChecksummingOutputStream} to a set of
+ * {@link AbstractChecksumGenerator}s, always in bulk (whole array ranges or buffers, never byte-by-byte).
+ * <br/>
+ * If an {@link Executor} is given and more than one digest is configured, then once a transfer grows past
+ * {@link #PARALLEL_THRESHOLD_BYTES} the digests are computed concurrently: content is gathered into
+ * {@link #CHUNK_SIZE} chunks, and each digest consumes the chunks in order on its own "lane", which drains on the
+ * executor. A lane that falls more than {@link #MAX_PENDING_CHUNKS} behind is drained by the calling thread instead,
+ * which bounds the memory held and keeps a saturated executor from stalling the stream.
+ * <br/>
+ * Not thread-safe; like the streams using it, it expects a single reading / writing thread.
+ * {@link #finish()} must be called before reading the digests.
+ */
+final class ChecksumUpdater
+{
+    static final long PARALLEL_THRESHOLD_BYTES = 1024 * 1024;
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    static final int MAX_PENDING_CHUNKS = 16;
+
+    private final List<AbstractChecksumGenerator> checksums;
+
+    private final Executor executor;
+
+    private final long parallelThreshold;
+
+    private List<Lane> lanes;
+
+    private byte[] chunk;
+
+    private int chunkLength;
+
+    private long count;
+
+    ChecksumUpdater( final Collection<AbstractChecksumGenerator> checksums, final Executor executor )
+    {
+        this( checksums, executor, PARALLEL_THRESHOLD_BYTES );
+    }
+
+    ChecksumUpdater( final Collection<AbstractChecksumGenerator> checksums, final Executor executor,
+                     final long parallelThreshold )
+    {
+        this.checksums = new ArrayList<>( checksums );
+        this.executor = executor;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    boolean isParallel()
+    {
+        return lanes != null;
+    }
+
+    void update( final byte data )
+    {
+        if ( goParallel( 1 ) )
+        {
+            append( new byte[] { data }, 0, 1 );
+            return;
+        }
+
+        for ( final AbstractChecksumGenerator checksum : checksums )
+        {
+            checksum.update( data );
+        }
+    }
+
+    void update( final byte[] data, final int offset, final int len )
+    {
+        if ( len < 1 )
+        {
+            return;
+        }
+
+        if ( goParallel( len ) )
+        {
+            append( data, offset, len );
+            return;
+        }
+
+        for ( final AbstractChecksumGenerator checksum : checksums )
+        {
+            checksum.update( data, offset, len );
+        }
+    }
+
+    /**
+     * Digest the buffer's remaining content. The buffer's position is advanced to its limit, as if it had been read.
+     */
+    void update( final ByteBuffer buffer )
+    {
+        final int len = buffer.remaining();
+        if ( len < 1 )
+        {
+            return;
+        }
+
+        if ( buffer.hasArray() )
+        {
+            update( buffer.array(), buffer.arrayOffset() + buffer.position(), len );
+        }
+        else if ( goParallel( len ) )
+        {
+            final byte[] copy = new byte[len];
+            buffer.duplicate().get( copy );
+            append( copy, 0, len );
+        }
+        else
+        {
+            for ( final AbstractChecksumGenerator checksum : checksums )
+            {
+                checksum.update( buffer.duplicate() );
+            }
+        }
+
+        buffer.position( buffer.limit() );
+    }
+
+    /**
+     * Wait for (or finish off) any digest work still pending on the executor. Afterward, the generators hold the
+     * digest of everything passed in, and are safe to read from the calling thread.
+     */
+    void finish()
+    {
+        if ( lanes == null )
+        {
+            return;
+        }
+
+        dispatch();
+        for ( final Lane lane : lanes )
+        {
+            lane.drainInline();
+        }
+    }
+
+    private boolean goParallel( final int len )
+    {
+        count += len;
+        if ( lanes == null && executor != null && checksums.size() > 1 && count > parallelThreshold )
+        {
+            final List<Lane> lanes = new ArrayList<>( checksums.size() );
+            checksums.forEach( checksum -> lanes.add( new Lane( checksum ) ) );
+            this.lanes = lanes;
+        }
+
+        return lanes != null;
+    }
+
+    private void append( final byte[] data, final int offset, final int len )
+    {
+        int off = offset;
+        int remaining = len;
+        while ( remaining > 0 )
+        {
+            if ( chunk == null )
+            {
+                chunk = new byte[CHUNK_SIZE];
+            }
+
+            final int n = Math.min( remaining, CHUNK_SIZE - chunkLength );
+            System.arraycopy( data, off, chunk, chunkLength, n );
+            chunkLength += n;
+            off += n;
+            remaining -= n;
+
+            if ( chunkLength == CHUNK_SIZE )
+            {
+                dispatch();
+            }
+        }
+    }
+
+    private void dispatch()
+    {
+        if ( chunkLength < 1 )
+        {
+            return;
+        }
+
+        // every lane reads the same chunk; nobody writes to it once it's dispatched.
+        final Chunk full = new Chunk( chunk, chunkLength );
+        chunk = null;
+        chunkLength = 0;
+
+        for ( final Lane lane : lanes )
+        {
+            lane.submit( full );
+        }
+    }
+
+    private static final class Chunk
+    {
+        private final byte[] data;
+
+        private final int length;
+
+        Chunk( final byte[] data, final int length )
+        {
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    private final class Lane
+            implements Runnable
+    {
+        private final AbstractChecksumGenerator checksum;
+
+        private final Queue<Chunk> pending = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger pendingCount = new AtomicInteger();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        // serializes access to the (non-thread-safe) digest between executor drains and the caller.
+        private final ReentrantLock digestLock = new ReentrantLock();
+
+        Lane( final AbstractChecksumGenerator checksum )
+        {
+            this.checksum = checksum;
+        }
+
+        void submit( final Chunk chunk )
+        {
+            pending.add( chunk );
+            if ( pendingCount.incrementAndGet() > MAX_PENDING_CHUNKS )
+            {
+                drainInline();
+            }
+            else if ( scheduled.compareAndSet( false, true ) )
+            {
+                try
+                {
+                    executor.execute( this );
+                }
+                catch ( final RejectedExecutionException e )
+                {
+                    scheduled.set( false );
+                    drainInline();
+                }
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            // clear the flag BEFORE draining, so a chunk added after our last poll schedules a fresh drain.
+            scheduled.set( false );
+            drainInline();
+        }
+
+        void drainInline()
+        {
+            digestLock.lock();
+            try
+            {
+                Chunk chunk;
+                while ( ( chunk = pending.poll() ) != null )
+                {
+                    checksum.update( chunk.data, 0, chunk.length );
+                    pendingCount.decrementAndGet();
+                }
+            }
+            finally
+            {
+                digestLock.unlock();
+            }
+        }
+    }
+}
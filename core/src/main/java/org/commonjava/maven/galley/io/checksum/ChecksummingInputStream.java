@@ -28,6 +28,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 public final class ChecksummingInputStream
@@ -40,6 +41,8 @@ public final class ChecksummingInputStream
 
     private final Set<AbstractChecksumGenerator> checksums;
 
+    private final ChecksumUpdater updater;
+
     private long size = 0;
 
     private final Transfer transfer;
@@ -55,6 +58,20 @@ public final class ChecksummingInputStream
                                     final TransferMetadataConsumer metadataConsumer, final boolean writeChecksumFiles,
                                     final Function<String, TimingProvider> timerProviderFunction )
             throws IOException
+    {
+        this( checksumFactories, stream, transfer, metadataConsumer, writeChecksumFiles, timerProviderFunction, null );
+    }
+
+    /**
+     * @param digestExecutor if non-null, used to compute the digests in parallel once the transfer is large enough
+     * (see ChecksumUpdater)
+     */
+    public ChecksummingInputStream( final Set<AbstractChecksumGeneratorFactory<?>> checksumFactories,
+                                    final InputStream stream, final Transfer transfer,
+                                    final TransferMetadataConsumer metadataConsumer, final boolean writeChecksumFiles,
+                                    final Function<String, TimingProvider> timerProviderFunction,
+                                    final Executor digestExecutor )
+            throws IOException
     {
         super( stream );
         this.transfer = transfer;
@@ -66,6 +83,8 @@ public final class ChecksummingInputStream
         {
             checksums.add( factory.createGenerator( transfer, writeChecksumFiles, timerProviderFunction ) );
         }
+
+        updater = new ChecksumUpdater( checksums, digestExecutor );
     }
 
     @Override
@@ -78,6 +97,8 @@ public final class ChecksummingInputStream
             logger.trace( "START CLOSE: {}", transfer );
             logger.trace( "Read done: {} in: {}. Now, creating checksums.", transfer.getPath(),
                           transfer.getLocation() );
+            updater.finish();
+
             Map<ContentDigest, String> hexDigests = new HashMap<>();
             for ( final AbstractChecksumGenerator checksum : checksums )
             {
@@ -131,10 +152,7 @@ public final class ChecksummingInputStream
         {
             size++;
             //            logger.trace( "Updating with: {} (raw: {})", ( (byte) data & 0xff ), data );
-            for ( final AbstractChecksumGenerator checksum : checksums )
-            {
-                checksum.update( (byte) data );
-            }
+            updater.update( (byte) data );
         }
 
         return data;
@@ -165,12 +183,6 @@ public final class ChecksummingInputStream
 
         size += read;
         //        logger.trace( "Updating with [buffer of size: {}]", read );
-        for ( final AbstractChecksumGenerator checksum : checksums )
-        {
-            for ( int i = off; i < off + read; i++ )
-            {
-                checksum.update( (byte) ( b[i] & 0xff ) );
-            }
-        }
+        updater.update( b, off, read );
     }
 }
\ No newline at end of file
@@ -27,6 +27,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 public final class ChecksummingOutputStream
@@ -39,6 +40,8 @@ public final class ChecksummingOutputStream
 
     private final Set<AbstractChecksumGenerator> checksums;
 
+    private final ChecksumUpdater updater;
+
     private long size = 0;
 
     private final Transfer transfer;
@@ -54,6 +57,20 @@ public final class ChecksummingOutputStream
                                      final TransferMetadataConsumer metadataConsumer, final boolean writeChecksumFiles,
                                      final Function<String, TimingProvider> timerProviderFunction )
             throws IOException
+    {
+        this( checksumFactories, stream, transfer, metadataConsumer, writeChecksumFiles, timerProviderFunction, null );
+    }
+
+    /**
+     * @param digestExecutor if non-null, used to compute the digests in parallel once the transfer is large enough
+     * (see ChecksumUpdater)
+     */
+    public ChecksummingOutputStream( final Set<AbstractChecksumGeneratorFactory<?>> checksumFactories,
+                                     final OutputStream stream, final Transfer transfer,
+                                     final TransferMetadataConsumer metadataConsumer, final boolean writeChecksumFiles,
+                                     final Function<String, TimingProvider> timerProviderFunction,
+                                     final Executor digestExecutor )
+            throws IOException
     {
         super( stream );
         this.transfer = transfer;
@@ -65,6 +82,8 @@ public final class ChecksummingOutputStream
         {
             checksums.add( factory.createGenerator( transfer, writeChecksumFiles, timerProviderFunction ) );
         }
+
+        updater = new ChecksumUpdater( checksums, digestExecutor );
     }
 
     @Override
@@ -78,6 +97,8 @@ public final class ChecksummingOutputStream
             super.flush();
             logger.trace( "Wrote: {} (size: {}) in: {}. Now, writing checksums.", transfer.getPath(), size,
                           transfer.getLocation() );
+            updater.finish();
+
             Map<ContentDigest, String> hexDigests = new HashMap<>();
             for ( final AbstractChecksumGenerator checksum : checksums )
             {
@@ -124,10 +145,7 @@ public final class ChecksummingOutputStream
 
         //        logger.trace( "Updating with: {} (raw: {})", b, data );
 
-        for ( final AbstractChecksumGenerator checksum : checksums )
-        {
-            checksum.update( b );
-        }
+        updater.update( b );
     }
 
     @Override
@@ -136,9 +154,6 @@ public final class ChecksummingOutputStream
     {
         super.write( b, off, len );
         size += len;
-        for ( final AbstractChecksumGenerator checksum : checksums )
-        {
-            checksum.update( b, off, len );
-        }
+        updater.update( b, off, len );
     }
 }
\ No newline at end of file
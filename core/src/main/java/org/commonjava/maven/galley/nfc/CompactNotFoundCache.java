@@ -0,0 +1,762 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.nfc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
+
+import javax.enterprise.inject.Alternative;
+import javax.inject.Named;
+
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.spi.nfc.NotFoundCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Memory-compact {@link NotFoundCache} for very large miss sets. Instead of path strings, each location keeps the
+ * 128-bit murmur3 fingerprints of its missing paths in a primitive open-addressing table: 16 bytes per slot, or
+ * roughly 25-45 bytes per miss depending on table load, against well over 100 for a String in a HashSet. Lookups use
+ * an optimistic read and don't block writers.
+ * <p>
+ * An optional Bloom filter answers most negative lookups without touching a table, and {@link #snapshot(Path)} /
+ * {@link #restore(Path)} let a restarted node come up with a warm cache.
+ * <p>
+ * Because paths are not retained, {@link #getMissing(Location)} and {@link #getAllMissing()} are best-effort: they
+ * only report the most recently added paths of each location that are still missing.
+ */
+@Named
+@Alternative
+public class CompactNotFoundCache
+    implements NotFoundCache
+{
+
+    public static final int DEFAULT_RECENT_PATHS = 256;
+
+    private static final int SNAPSHOT_MAGIC = 0x4E464331; // "NFC1"
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final Map<Location, PathTable> shards = new ConcurrentHashMap<>();
+
+    /**
+     * Tables read by {@link #restore(Path)}, keyed by location URI until a matching {@link Location} shows up.
+     */
+    private final Map<String, PathTable> restored = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> locationHashes = new ConcurrentHashMap<>();
+
+    private final int bloomExpectedEntries;
+
+    private final int recentPaths;
+
+    private volatile BloomFilter bloom;
+
+    public CompactNotFoundCache()
+    {
+        this( 0, DEFAULT_RECENT_PATHS );
+    }
+
+    /**
+     * @param bloomExpectedEntries size the Bloom filter front for this many misses (at a 1% false-positive rate), or 0
+     * to disable it
+     * @param recentPaths how many recently added paths each location remembers for {@link #getMissing(Location)}
+     */
+    public CompactNotFoundCache( final int bloomExpectedEntries, final int recentPaths )
+    {
+        this.bloomExpectedEntries = bloomExpectedEntries;
+        this.recentPaths = recentPaths;
+        this.bloom = bloomExpectedEntries > 0 ? new BloomFilter( bloomExpectedEntries ) : null;
+    }
+
+    @Override
+    public void addMissing( final ConcreteResource resource )
+    {
+        final Location location = resource.getLocation();
+        final String path = resource.getPath();
+        final long[] hash = hash( path );
+
+        shard( location, true ).add( hash[0], hash[1], path );
+
+        final BloomFilter bloom = this.bloom;
+        if ( bloom != null )
+        {
+            bloom.put( hash[0], hash[1], locationHash( location.getUri() ) );
+        }
+    }
+
+    @Override
+    public boolean isMissing( final ConcreteResource resource )
+    {
+        final Location location = resource.getLocation();
+        final PathTable table = shard( location, false );
+        if ( table == null )
+        {
+            return false;
+        }
+
+        final long[] hash = hash( resource.getPath() );
+        final BloomFilter bloom = this.bloom;
+        if ( bloom != null && !bloom.mightContain( hash[0], hash[1], locationHash( location.getUri() ) ) )
+        {
+            return false;
+        }
+
+        return table.contains( hash[0], hash[1] );
+    }
+
+    @Override
+    public void clearMissing( final Location location )
+    {
+        shards.remove( location );
+        restored.remove( uriOf( location ) );
+    }
+
+    @Override
+    public void clearMissing( final ConcreteResource resource )
+    {
+        // the Bloom filter can't forget; a stale bit only costs the table lookup that follows it.
+        final PathTable table = shard( resource.getLocation(), false );
+        if ( table != null )
+        {
+            final long[] hash = hash( resource.getPath() );
+            table.remove( hash[0], hash[1] );
+        }
+    }
+
+    @Override
+    public void clearAllMissing()
+    {
+        shards.clear();
+        restored.clear();
+        if ( bloomExpectedEntries > 0 )
+        {
+            bloom = new BloomFilter( bloomExpectedEntries );
+        }
+    }
+
+    /**
+     * Best-effort: see {@link #getMissing(Location)}.
+     */
+    @Override
+    public Map<Location, Set<String>> getAllMissing()
+    {
+        final Map<Location, Set<String>> result = new HashMap<>();
+        shards.forEach( ( location, table ) -> result.put( location, table.recent() ) );
+        return result;
+    }
+
+    /**
+     * Best-effort: only the most recently added paths that are still missing are reported. Use
+     * {@link #getMissingCount(Location)} for the real number of misses.
+     */
+    @Override
+    public Set<String> getMissing( final Location location )
+    {
+        final PathTable table = shard( location, false );
+        return table == null ? null : table.recent();
+    }
+
+    public int getMissingCount( final Location location )
+    {
+        final PathTable table = shard( location, false );
+        return table == null ? 0 : table.size();
+    }
+
+    public long size()
+    {
+        long size = 0;
+        for ( final PathTable table : shards.values() )
+        {
+            size += table.size();
+        }
+
+        for ( final PathTable table : restored.values() )
+        {
+            size += table.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Write every location's fingerprints to the given file. The file is written alongside and then moved into place,
+     * so a crash mid-snapshot leaves any previous snapshot intact.
+     */
+    public void snapshot( final Path file )
+        throws IOException
+    {
+        final Map<String, PathTable> tables = new HashMap<>( restored );
+        shards.forEach( ( location, table ) -> tables.put( uriOf( location ), table ) );
+
+        final Path tmp = file.resolveSibling( file.getFileName() + ".tmp" );
+        try (DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream( tmp ) ) ))
+        {
+            out.writeInt( SNAPSHOT_MAGIC );
+            out.writeInt( SNAPSHOT_VERSION );
+            out.writeInt( tables.size() );
+            for ( final Map.Entry<String, PathTable> entry : tables.entrySet() )
+            {
+                out.writeUTF( entry.getKey() );
+                entry.getValue().writeTo( out );
+            }
+        }
+
+        Files.move( tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        logger.debug( "Wrote NFC snapshot of {} locations to: {}", tables.size(), file );
+    }
+
+    /**
+     * Load fingerprints from a file written by {@link #snapshot(Path)}. Since {@link Location} instances can't be
+     * rebuilt from disk, each restored table is attached to the first location with a matching URI that the cache
+     * sees afterwards.
+     */
+    public void restore( final Path file )
+        throws IOException
+    {
+        try (DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( file ) ) ))
+        {
+            if ( in.readInt() != SNAPSHOT_MAGIC )
+            {
+                throw new IOException( "Not an NFC snapshot: " + file );
+            }
+
+            final int version = in.readInt();
+            if ( version != SNAPSHOT_VERSION )
+            {
+                throw new IOException( "Unsupported NFC snapshot version: " + version + " in: " + file );
+            }
+
+            final int count = in.readInt();
+            for ( int i = 0; i < count; i++ )
+            {
+                final String uri = in.readUTF();
+                final PathTable table = restored.computeIfAbsent( uri, k -> new PathTable( recentPaths ) );
+                final long locationHash = locationHash( uri );
+                table.readFrom( in, ( h1, h2 ) -> {
+                    final BloomFilter bloom = this.bloom;
+                    if ( bloom != null )
+                    {
+                        bloom.put( h1, h2, locationHash );
+                    }
+                } );
+            }
+
+            logger.debug( "Restored NFC snapshot of {} locations from: {}", count, file );
+        }
+    }
+
+    private PathTable shard( final Location location, final boolean create )
+    {
+        PathTable table = shards.get( location );
+        if ( table != null )
+        {
+            return table;
+        }
+
+        if ( !restored.isEmpty() )
+        {
+            final PathTable adopted = restored.remove( uriOf( location ) );
+            if ( adopted != null )
+            {
+                table = shards.putIfAbsent( location, adopted );
+                if ( table == null )
+                {
+                    return adopted;
+                }
+
+                table.addAll( adopted );
+                return table;
+            }
+        }
+
+        return create ? shards.computeIfAbsent( location, k -> new PathTable( recentPaths ) ) : null;
+    }
+
+    private static String uriOf( final Location location )
+    {
+        return location.getUri() == null ? "" : location.getUri();
+    }
+
+    private long locationHash( final String uri )
+    {
+        return locationHashes.computeIfAbsent( uri == null ? "" : uri, k -> hash( k )[0] );
+    }
+
+    /**
+     * MurmurHash3 (x64, 128-bit) over the UTF-16 code units of the string.
+     */
+    static long[] hash( final String value )
+    {
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+        final int len = value.length();
+
+        long h1 = 0;
+        long h2 = 0;
+
+        int i = 0;
+        for ( ; i + 8 <= len; i += 8 )
+        {
+            long k1 = pack( value, i, 4 );
+            long k2 = pack( value, i + 4, 4 );
+
+            k1 *= c1;
+            k1 = Long.rotateLeft( k1, 31 );
+            k1 *= c2;
+            h1 ^= k1;
+
+            h1 = Long.rotateLeft( h1, 27 );
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= c2;
+            k2 = Long.rotateLeft( k2, 33 );
+            k2 *= c1;
+            h2 ^= k2;
+
+            h2 = Long.rotateLeft( h2, 31 );
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        final int rem = len - i;
+        if ( rem > 4 )
+        {
+            long k2 = pack( value, i + 4, rem - 4 );
+            k2 *= c2;
+            k2 = Long.rotateLeft( k2, 33 );
+            k2 *= c1;
+            h2 ^= k2;
+        }
+
+        if ( rem > 0 )
+        {
+            long k1 = pack( value, i, Math.min( rem, 4 ) );
+            k1 *= c1;
+            k1 = Long.rotateLeft( k1, 31 );
+            k1 *= c2;
+            h1 ^= k1;
+        }
+
+        h1 ^= len * 2L;
+        h2 ^= len * 2L;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix( h1 );
+        h2 = fmix( h2 );
+
+        h1 += h2;
+        h2 += h1;
+
+        return new long[] { h1, h2 };
+    }
+
+    private static long pack( final String value, final int offset, final int chars )
+    {
+        long k = 0;
+        for ( int i = 0; i < chars; i++ )
+        {
+            k |= ( (long) value.charAt( offset + i ) ) << ( 16 * i );
+        }
+
+        return k;
+    }
+
+    private static long fmix( long k )
+    {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private interface FingerprintConsumer
+    {
+        void accept( long h1, long h2 );
+    }
+
+    /**
+     * Linear-probing set of 128-bit fingerprints, stored as interleaved longs in one array so a reader always sees a
+     * consistent table even while a writer resizes it. The all-zero fingerprint marks an empty slot.
+     */
+    private static final class PathTable
+    {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private static final float LOAD_FACTOR = 0.7f;
+
+        private final StampedLock lock = new StampedLock();
+
+        private final String[] recent;
+
+        private int recentNext;
+
+        private volatile long[] slots = new long[INITIAL_CAPACITY * 2];
+
+        private int size;
+
+        private PathTable( final int recentPaths )
+        {
+            this.recent = new String[Math.max( 0, recentPaths )];
+        }
+
+        boolean contains( final long h1, final long h2 )
+        {
+            final long a = h1;
+            final long b = nonZero( h1, h2 );
+
+            final long stamp = lock.tryOptimisticRead();
+            boolean found = find( slots, a, b ) >= 0;
+            if ( !lock.validate( stamp ) )
+            {
+                final long read = lock.readLock();
+                try
+                {
+                    found = find( slots, a, b ) >= 0;
+                }
+                finally
+                {
+                    lock.unlockRead( read );
+                }
+            }
+
+            return found;
+        }
+
+        void add( final long h1, final long h2, final String path )
+        {
+            final long stamp = lock.writeLock();
+            try
+            {
+                if ( insert( h1, nonZero( h1, h2 ) ) && recent.length > 0 )
+                {
+                    recent[recentNext] = path;
+                    recentNext = ( recentNext + 1 ) % recent.length;
+                }
+            }
+            finally
+            {
+                lock.unlockWrite( stamp );
+            }
+        }
+
+        void addAll( final PathTable other )
+        {
+            final long[] theirs = other.slots;
+            final long stamp = lock.writeLock();
+            try
+            {
+                for ( int i = 0; i < theirs.length; i += 2 )
+                {
+                    if ( theirs[i] != 0 || theirs[i + 1] != 0 )
+                    {
+                        insert( theirs[i], theirs[i + 1] );
+                    }
+                }
+            }
+            finally
+            {
+                lock.unlockWrite( stamp );
+            }
+        }
+
+        void remove( final long h1, final long h2 )
+        {
+            final long stamp = lock.writeLock();
+            try
+            {
+                final long[] table = slots;
+                final int mask = table.length / 2 - 1;
+                int hole = find( table, h1, nonZero( h1, h2 ) );
+                if ( hole < 0 )
+                {
+                    return;
+                }
+
+                // backward-shift deletion: pull later members of the probe run into the hole so lookups never need
+                // tombstones.
+                int next = hole;
+                while ( true )
+                {
+                    next = ( next + 1 ) & mask;
+                    final long a = table[next * 2];
+                    final long b = table[next * 2 + 1];
+                    if ( a == 0 && b == 0 )
+                    {
+                        break;
+                    }
+
+                    final int home = (int) a & mask;
+                    final boolean movable = hole <= next ? ( home <= hole || home > next ) : ( home <= hole && home > next );
+                    if ( movable )
+                    {
+                        table[hole * 2] = a;
+                        table[hole * 2 + 1] = b;
+                        hole = next;
+                    }
+                }
+
+                table[hole * 2] = 0;
+                table[hole * 2 + 1] = 0;
+                size--;
+            }
+            finally
+            {
+                lock.unlockWrite( stamp );
+            }
+        }
+
+        int size()
+        {
+            final long stamp = lock.readLock();
+            try
+            {
+                return size;
+            }
+            finally
+            {
+                lock.unlockRead( stamp );
+            }
+        }
+
+        Set<String> recent()
+        {
+            final Set<String> result = new HashSet<>();
+            final long stamp = lock.readLock();
+            try
+            {
+                for ( final String path : recent )
+                {
+                    if ( path != null )
+                    {
+                        final long[] hash = hash( path );
+                        if ( find( slots, hash[0], nonZero( hash[0], hash[1] ) ) >= 0 )
+                        {
+                            result.add( path );
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                lock.unlockRead( stamp );
+            }
+
+            return result;
+        }
+
+        void writeTo( final DataOutputStream out )
+            throws IOException
+        {
+            final long stamp = lock.readLock();
+            try
+            {
+                final long[] table = slots;
+                out.writeInt( size );
+                for ( int i = 0; i < table.length; i += 2 )
+                {
+                    if ( table[i] != 0 || table[i + 1] != 0 )
+                    {
+                        out.writeLong( table[i] );
+                        out.writeLong( table[i + 1] );
+                    }
+                }
+            }
+            finally
+            {
+                lock.unlockRead( stamp );
+            }
+        }
+
+        void readFrom( final DataInputStream in, final FingerprintConsumer consumer )
+            throws IOException
+        {
+            final int count = in.readInt();
+            final long stamp = lock.writeLock();
+            try
+            {
+                for ( int i = 0; i < count; i++ )
+                {
+                    final long h1 = in.readLong();
+                    final long h2 = in.readLong();
+                    insert( h1, h2 );
+                    consumer.accept( h1, h2 );
+                }
+            }
+            finally
+            {
+                lock.unlockWrite( stamp );
+            }
+        }
+
+        /**
+         * Caller must hold the write lock.
+         */
+        private boolean insert( final long a, final long b )
+        {
+            if ( find( slots, a, b ) >= 0 )
+            {
+                return false;
+            }
+
+            if ( size + 1 > ( slots.length / 2 ) * LOAD_FACTOR )
+            {
+                resize();
+            }
+
+            place( slots, a, b );
+            size++;
+            return true;
+        }
+
+        private void resize()
+        {
+            final long[] old = slots;
+            final long[] table = new long[old.length * 2];
+            for ( int i = 0; i < old.length; i += 2 )
+            {
+                if ( old[i] != 0 || old[i + 1] != 0 )
+                {
+                    place( table, old[i], old[i + 1] );
+                }
+            }
+
+            slots = table;
+        }
+
+        private static void place( final long[] table, final long a, final long b )
+        {
+            final int mask = table.length / 2 - 1;
+            int idx = (int) a & mask;
+            while ( table[idx * 2] != 0 || table[idx * 2 + 1] != 0 )
+            {
+                idx = ( idx + 1 ) & mask;
+            }
+
+            table[idx * 2] = a;
+            table[idx * 2 + 1] = b;
+        }
+
+        /**
+         * Bounded by the table capacity, so an optimistic read racing a writer can't spin forever.
+         */
+        private static int find( final long[] table, final long a, final long b )
+        {
+            final int capacity = table.length / 2;
+            final int mask = capacity - 1;
+            int idx = (int) a & mask;
+            for ( int probes = 0; probes < capacity; probes++ )
+            {
+                final long x = table[idx * 2];
+                final long y = table[idx * 2 + 1];
+                if ( x == a && y == b )
+                {
+                    return idx;
+                }
+                else if ( x == 0 && y == 0 )
+                {
+                    return -1;
+                }
+
+                idx = ( idx + 1 ) & mask;
+            }
+
+            return -1;
+        }
+
+        private static long nonZero( final long h1, final long h2 )
+        {
+            return h1 == 0 && h2 == 0 ? 1 : h2;
+        }
+    }
+
+    /**
+     * Lock-free Bloom filter keyed by (fingerprint, location), using double hashing to derive its probe positions.
+     */
+    private static final class BloomFilter
+    {
+        private final AtomicLongArray bits;
+
+        private final long bitCount;
+
+        private final int hashes;
+
+        BloomFilter( final int expectedEntries )
+        {
+            final double ln2 = Math.log( 2 );
+            final long m = (long) Math.ceil( -expectedEntries * Math.log( BLOOM_FALSE_POSITIVE_RATE ) / ( ln2 * ln2 ) );
+            this.bits = new AtomicLongArray( (int) Math.max( 1, ( m + 63 ) / 64 ) );
+            this.bitCount = bits.length() * 64L;
+            this.hashes = Math.max( 1, (int) Math.round( (double) m / expectedEntries * ln2 ) );
+        }
+
+        void put( final long h1, final long h2, final long locationHash )
+        {
+            final long a = h1 ^ locationHash;
+            final long b = h2 + fmix( locationHash );
+            for ( int i = 0; i < hashes; i++ )
+            {
+                final long bit = Math.floorMod( a + i * b, bitCount );
+                final long mask = 1L << ( bit & 63 );
+                final int word = (int) ( bit >>> 6 );
+                if ( ( bits.get( word ) & mask ) == 0 )
+                {
+                    bits.getAndAccumulate( word, mask, ( x, y ) -> x | y );
+                }
+            }
+        }
+
+        boolean mightContain( final long h1, final long h2, final long locationHash )
+        {
+            final long a = h1 ^ locationHash;
+            final long b = h2 + fmix( locationHash );
+            for ( int i = 0; i < hashes; i++ )
+            {
+                final long bit = Math.floorMod( a + i * b, bitCount );
+                if ( ( bits.get( (int) ( bit >>> 6 ) ) & ( 1L << ( bit & 63 ) ) ) == 0 )
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+}
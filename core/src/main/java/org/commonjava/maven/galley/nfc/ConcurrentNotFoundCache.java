@@ -0,0 +1,388 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.nfc;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import javax.enterprise.inject.Alternative;
+import javax.inject.Named;
+
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.spi.nfc.NotFoundCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread-safe, bounded {@link NotFoundCache}. Misses are sharded per {@link Location}, and lookups never take a
+ * lock.
+ * <p>
+ * Entries expire after the location's {@link Location#NFC_TIMEOUT_SECONDS} attribute, or the default timeout if the
+ * location doesn't set one (0 means misses never expire). Once the cache holds more than maxEntries misses, one
+ * writer evicts expired entries and then the least recently used ones, down to {@link #EVICTION_TARGET} of the
+ * limit. Recency is approximated from a random sample of access times, so eviction costs a single scan per batch
+ * rather than a lock on every read.
+ */
+@Named
+@Alternative
+public class ConcurrentNotFoundCache
+    implements NotFoundCache
+{
+
+    public static final int DEFAULT_MAX_ENTRIES = 1_000_000;
+
+    public static final int DEFAULT_TIMEOUT_SECONDS = 0;
+
+    static final float EVICTION_TARGET = 0.9f;
+
+    private static final int EVICTION_SAMPLE_SIZE = 1024;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final Map<Location, Map<String, Entry>> shards = new ConcurrentHashMap<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final int maxEntries;
+
+    private final int defaultTimeoutSeconds;
+
+    private final LongSupplier clock;
+
+    public ConcurrentNotFoundCache()
+    {
+        this( DEFAULT_MAX_ENTRIES, DEFAULT_TIMEOUT_SECONDS );
+    }
+
+    public ConcurrentNotFoundCache( final int maxEntries, final int defaultTimeoutSeconds )
+    {
+        this( maxEntries, defaultTimeoutSeconds, System::nanoTime );
+    }
+
+    ConcurrentNotFoundCache( final int maxEntries, final int defaultTimeoutSeconds, final LongSupplier clock )
+    {
+        if ( maxEntries < 1 )
+        {
+            throw new IllegalArgumentException( "maxEntries must be positive: " + maxEntries );
+        }
+
+        this.maxEntries = maxEntries;
+        this.defaultTimeoutSeconds = defaultTimeoutSeconds;
+        this.clock = clock;
+    }
+
+    @Override
+    public void addMissing( final ConcreteResource resource )
+    {
+        final Location location = resource.getLocation();
+        final long now = clock.getAsLong();
+        final Integer timeout =
+                location.getAttribute( Location.NFC_TIMEOUT_SECONDS, Integer.class, defaultTimeoutSeconds );
+        final long expiresAt =
+                timeout == null || timeout < 1 ? Long.MAX_VALUE : now + TimeUnit.SECONDS.toNanos( timeout );
+
+        final Map<String, Entry> shard = shards.computeIfAbsent( location, k -> new ConcurrentHashMap<>() );
+        final Entry entry = new Entry( expiresAt, now );
+        if ( shard.put( resource.getPath(), entry ) == null )
+        {
+            // raced with clearMissing( location ), so the shard we wrote into is already detached. If our entry is
+            // still there, take it back out uncounted; if clearMissing got to it first, it has counted it down.
+            if ( shards.get( location ) != shard && shard.remove( resource.getPath(), entry ) )
+            {
+                return;
+            }
+
+            if ( size.incrementAndGet() > maxEntries )
+            {
+                evict();
+            }
+        }
+    }
+
+    @Override
+    public boolean isMissing( final ConcreteResource resource )
+    {
+        final Map<String, Entry> shard = shards.get( resource.getLocation() );
+        final Entry entry = shard == null ? null : shard.get( resource.getPath() );
+        if ( entry != null )
+        {
+            final long now = clock.getAsLong();
+            if ( !entry.isExpired( now ) )
+            {
+                entry.lastAccess = now;
+                hits.increment();
+                return true;
+            }
+
+            if ( shard.remove( resource.getPath(), entry ) )
+            {
+                size.decrementAndGet();
+                expirations.increment();
+            }
+        }
+
+        misses.increment();
+        return false;
+    }
+
+    @Override
+    public void clearMissing( final Location location )
+    {
+        final Map<String, Entry> shard = shards.remove( location );
+        if ( shard != null )
+        {
+            // entries may still be landing in the detached shard; count only what we actually take out.
+            shard.keySet().forEach( path -> {
+                if ( shard.remove( path ) != null )
+                {
+                    size.decrementAndGet();
+                }
+            } );
+        }
+    }
+
+    @Override
+    public void clearMissing( final ConcreteResource resource )
+    {
+        final Map<String, Entry> shard = shards.get( resource.getLocation() );
+        if ( shard != null && shard.remove( resource.getPath() ) != null )
+        {
+            size.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void clearAllMissing()
+    {
+        new HashSet<>( shards.keySet() ).forEach( this::clearMissing );
+    }
+
+    /**
+     * @return a snapshot of the unexpired misses; later changes to the cache are not reflected in it.
+     */
+    @Override
+    public Map<Location, Set<String>> getAllMissing()
+    {
+        final Map<Location, Set<String>> result = new HashMap<>();
+        shards.keySet().forEach( location -> {
+            final Set<String> missing = getMissing( location );
+            if ( missing != null && !missing.isEmpty() )
+            {
+                result.put( location, missing );
+            }
+        } );
+
+        return result;
+    }
+
+    /**
+     * @return a snapshot of the unexpired misses for the location, or null if nothing was ever recorded for it.
+     */
+    @Override
+    public Set<String> getMissing( final Location location )
+    {
+        final Map<String, Entry> shard = shards.get( location );
+        if ( shard == null )
+        {
+            return null;
+        }
+
+        final long now = clock.getAsLong();
+        final Set<String> result = new HashSet<>();
+        shard.forEach( ( path, entry ) -> {
+            if ( !entry.isExpired( now ) )
+            {
+                result.add( path );
+            }
+        } );
+
+        return result;
+    }
+
+    public int size()
+    {
+        return size.get();
+    }
+
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    public long getExpirationCount()
+    {
+        return expirations.sum();
+    }
+
+    /**
+     * Shrink the cache to {@link #EVICTION_TARGET} of maxEntries. Only one thread evicts at a time; writers that find
+     * an eviction in progress carry on, so the cache may briefly overshoot its limit.
+     */
+    private void evict()
+    {
+        if ( !evictionLock.tryLock() )
+        {
+            return;
+        }
+
+        try
+        {
+            // writers that found us busy didn't evict; keep going until their additions are covered too.
+            while ( size.get() > maxEntries && evictBatch() > 0 )
+            {
+                logger.debug( "NFC still over its limit after eviction. Size: {}, max: {}", size.get(), maxEntries );
+            }
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of entries removed
+     */
+    private int evictBatch()
+    {
+        final long now = clock.getAsLong();
+        final long[] sample = new long[EVICTION_SAMPLE_SIZE];
+        int seen = 0;
+        int removed = 0;
+
+        // first pass: drop expired entries, and reservoir-sample the access times of everything else.
+        for ( final Map<String, Entry> shard : shards.values() )
+        {
+            for ( final Map.Entry<String, Entry> e : shard.entrySet() )
+            {
+                final Entry entry = e.getValue();
+                if ( entry.isExpired( now ) )
+                {
+                    if ( shard.remove( e.getKey(), entry ) )
+                    {
+                        size.decrementAndGet();
+                        expirations.increment();
+                        removed++;
+                    }
+                }
+                else if ( seen < sample.length )
+                {
+                    sample[seen++] = entry.lastAccess;
+                }
+                else
+                {
+                    final int idx = ThreadLocalRandom.current().nextInt( ++seen );
+                    if ( idx < sample.length )
+                    {
+                        sample[idx] = entry.lastAccess;
+                    }
+                }
+            }
+        }
+
+        final int target = (int) ( maxEntries * EVICTION_TARGET );
+        final int current = size.get();
+        if ( current <= target || seen == 0 )
+        {
+            return removed;
+        }
+
+        // second pass: evict the entries whose last access falls in the oldest (excess / current) fraction.
+        final int sampled = Math.min( seen, sample.length );
+        Arrays.sort( sample, 0, sampled );
+        final int cutoffIdx = Math.min( sampled - 1, (int) ( (long) ( current - target ) * sampled / current ) );
+        final long cutoff = sample[cutoffIdx];
+
+        int excess = current - target;
+        for ( final Map<String, Entry> shard : shards.values() )
+        {
+            for ( final Map.Entry<String, Entry> e : shard.entrySet() )
+            {
+                if ( excess <= 0 )
+                {
+                    break;
+                }
+
+                final Entry entry = e.getValue();
+                if ( entry.lastAccess <= cutoff && shard.remove( e.getKey(), entry ) )
+                {
+                    size.decrementAndGet();
+                    evictions.increment();
+                    excess--;
+                    removed++;
+                }
+            }
+        }
+
+        logger.debug( "NFC eviction finished. Size: {}, max: {}, total evictions: {}", size.get(), maxEntries,
+                      evictions.sum() );
+        return removed;
+    }
+
+    private static final class Entry
+    {
+        private final long expiresAt;
+
+        private volatile long lastAccess;
+
+        private Entry( final long expiresAt, final long lastAccess )
+        {
+            this.expiresAt = expiresAt;
+            this.lastAccess = lastAccess;
+        }
+
+        private boolean isExpired( final long now )
+        {
+            return expiresAt != Long.MAX_VALUE && now - expiresAt >= 0;
+        }
+    }
+
+}
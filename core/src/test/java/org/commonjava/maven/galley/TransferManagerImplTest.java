@@ -26,20 +26,40 @@ import org.commonjava.maven.galley.internal.xfer.ExistenceHandler;
 import org.commonjava.maven.galley.internal.xfer.ListingHandler;
 import org.commonjava.maven.galley.internal.xfer.UploadHandler;
 import org.commonjava.maven.galley.io.NoOpTransferDecorator;
+import org.commonjava.maven.galley.io.SpecialPathConstants;
 import org.commonjava.maven.galley.io.SpecialPathManagerImpl;
 import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.TransferOperation;
 import org.commonjava.maven.galley.nfc.MemoryNotFoundCache;
 import org.commonjava.maven.galley.spi.cache.CacheProvider;
 import org.commonjava.maven.galley.spi.event.FileEventManager;
+import org.commonjava.maven.galley.spi.transport.DownloadJob;
 import org.commonjava.maven.galley.spi.transport.TransportManager;
 import org.commonjava.maven.galley.testing.core.transport.TestTransport;
 import org.commonjava.maven.galley.transport.TransportManagerImpl;
+import org.commonjava.maven.galley.testing.core.transport.job.TestDownload;
+import org.commonjava.maven.galley.testing.core.transport.job.TestExistence;
 import org.junit.Before;
 import org.junit.Rule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
 
 /**
  * Unit tests for the {@link TransferManagerImpl} itself. As far as possible, uses 
@@ -84,6 +104,227 @@ public class TransferManagerImplTest
         mgr = new TransferManagerImpl( transportMgr, cacheProvider, nfc, fileEvents, dh, uh, lh, eh, new SpecialPathManagerImpl(), Executors.newFixedThreadPool( 2 ) );
     }
 
+    @Test
+    public void retrieve_staleCopyIsReplacedWhenChangedUpstream()
+        throws Exception
+    {
+        final ConcreteResource resource = staleResource( "org/foo/bar/maven-metadata.xml", "old" );
+        transport.registerDownload( resource, new TestDownload( "new".getBytes() ) );
+
+        final Transfer result = mgr.retrieve( resource );
+
+        assertThat( read( result ), equalTo( "new" ) );
+        assertThat( result.isStale(), equalTo( false ) );
+    }
+
+    @Test
+    public void retrieve_staleCopyIsKeptWhenNotModifiedUpstream()
+        throws Exception
+    {
+        final ConcreteResource resource = staleResource( "org/foo/bar/maven-metadata.xml", "old" );
+        transport.registerDownload( resource, new TestDownload( "new".getBytes() )
+        {
+            @Override
+            public DownloadJob call()
+            {
+                // what a transport does on a 304 answer to its conditional GET.
+                getTransfer().markRevalidated();
+                return this;
+            }
+        } );
+
+        final Transfer result = mgr.retrieve( resource );
+
+        assertThat( read( result ), equalTo( "old" ) );
+        assertThat( result.isStale(), equalTo( false ) );
+    }
+
+    @Test
+    public void retrieve_staleCopyIsServedWhenRevalidationFails()
+        throws Exception
+    {
+        final ConcreteResource resource = staleResource( "org/foo/bar/maven-metadata.xml", "old" );
+        transport.registerDownload( resource, new TestDownload( new TransferException( "upstream failure" ) ) );
+
+        final Transfer result = mgr.retrieve( resource );
+
+        assertThat( read( result ), equalTo( "old" ) );
+        assertThat( result.isStale(), equalTo( true ) );
+    }
+
+    @Test
+    public void retrieve_failedRevalidationIsNotRetriedRightAway()
+        throws Exception
+    {
+        final ConcreteResource resource = staleResource( "org/foo/bar/maven-metadata.xml", "old" );
+        final AtomicInteger calls = new AtomicInteger();
+        transport.registerDownload( resource, new TestDownload( new TransferException( "upstream failure" ) )
+        {
+            @Override
+            public DownloadJob call()
+            {
+                calls.incrementAndGet();
+                return super.call();
+            }
+        } );
+
+        assertThat( read( mgr.retrieve( resource ) ), equalTo( "old" ) );
+        assertThat( read( mgr.retrieve( resource ) ), equalTo( "old" ) );
+        assertThat( calls.get(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void retrieve_staleCopyIsDroppedWhenGoneUpstream()
+        throws Exception
+    {
+        final ConcreteResource resource = staleResource( "org/foo/bar/maven-metadata.xml", "old" );
+        transport.registerDownload( resource, new TestDownload( "new".getBytes() )
+        {
+            @Override
+            public DownloadJob call()
+            {
+                // what a transport does on a 404: no new content, and no confirmation of the old.
+                return this;
+            }
+        } );
+
+        assertThat( mgr.retrieve( resource ), nullValue() );
+        assertThat( cacheProvider.exists( resource ), equalTo( false ) );
+    }
+
+    @Test
+    public void retrieve_staleCopyIsServedWhileRevalidatingInBackground()
+        throws Exception
+    {
+        final SimpleLocation location = new SimpleLocation( "test", "http://test.com/repo" );
+        location.setAttribute( Location.STALE_WHILE_REVALIDATE_SECONDS, 3600 );
+        final ConcreteResource resource = staleResource( location, "org/foo/bar/maven-metadata.xml", "old" );
+
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final AtomicInteger calls = new AtomicInteger();
+        transport.registerDownload( resource, new TestDownload( "new".getBytes() )
+        {
+            @Override
+            public DownloadJob call()
+            {
+                calls.incrementAndGet();
+                try
+                {
+                    release.await( 10, TimeUnit.SECONDS );
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+
+                return super.call();
+            }
+        } );
+
+        // both callers get the stale copy at once, and share the one refresh running behind them.
+        assertThat( read( mgr.retrieve( resource ) ), equalTo( "old" ) );
+        assertThat( read( mgr.retrieve( resource ) ), equalTo( "old" ) );
+
+        release.countDown();
+
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis( 10 );
+        while ( cacheProvider.getTransfer( resource ).isStale() && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 50 );
+        }
+
+        final Transfer result = mgr.retrieve( resource );
+        assertThat( read( result ), equalTo( "new" ) );
+        assertThat( result.isStale(), equalTo( false ) );
+        assertThat( calls.get(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void retrieve_staleCopyPastItsWindowWaitsForRevalidation()
+        throws Exception
+    {
+        final SimpleLocation location = revalidatingLocation();
+        location.setAttribute( Location.STALE_WHILE_REVALIDATE_SECONDS, 1 );
+        final ConcreteResource resource = staleResource( location, "org/foo/bar/maven-metadata.xml", "old" );
+        assertThat( cacheProvider.getTransfer( resource ).isServableStale(), equalTo( false ) );
+
+        transport.registerDownload( resource, new TestDownload( "new".getBytes() ) );
+
+        assertThat( read( mgr.retrieve( resource ) ), equalTo( "new" ) );
+    }
+
+    @Test
+    public void delete_forgetsThatTheResourceExisted()
+        throws Exception
+    {
+        final ConcreteResource resource =
+                new ConcreteResource( new SimpleLocation( "test", "http://test.com/repo" ), "org/foo/bar/1/bar-1.pom" );
+        transport.registerExistence( resource, new TestExistence( true ) );
+        assertThat( mgr.exists( resource ), equalTo( true ) );
+
+        transport.registerDownload( resource, new TestDownload( "pom".getBytes() ) );
+        assertThat( read( mgr.retrieve( resource ) ), equalTo( "pom" ) );
+        transport.registerExistence( resource, new TestExistence( false ) );
+        mgr.delete( resource );
+
+        assertThat( mgr.exists( resource ), equalTo( false ) );
+    }
+
+    /**
+     * Cache the content at a revalidating location, with HTTP exchange metadata next to it, and age it past the
+     * minimum cache timeout.
+     */
+    private ConcreteResource staleResource( final String path, final String content )
+        throws Exception
+    {
+        return staleResource( revalidatingLocation(), path, content );
+    }
+
+    private ConcreteResource staleResource( final SimpleLocation location, final String path, final String content )
+        throws Exception
+    {
+        location.setAttribute( Location.CACHE_TIMEOUT_SECONDS, Location.MIN_CACHE_TIMEOUT_SECONDS );
+
+        final ConcreteResource resource = new ConcreteResource( location, path );
+        final ConcreteResource meta =
+                new ConcreteResource( location, path + SpecialPathConstants.HTTP_METADATA_EXT );
+
+        write( meta, "{}" );
+        write( resource, content );
+
+        final long aged =
+                System.currentTimeMillis() - TimeUnit.SECONDS.toMillis( Location.MIN_CACHE_TIMEOUT_SECONDS + 60 );
+        assertThat( new File( cacheProvider.getFilePath( resource ) ).setLastModified( aged ), equalTo( true ) );
+        assertThat( cacheProvider.getTransfer( resource ).isStale(), equalTo( true ) );
+
+        return resource;
+    }
+
+    private SimpleLocation revalidatingLocation()
+    {
+        final SimpleLocation location = new SimpleLocation( "test", "http://test.com/repo" );
+        location.setAttribute( Location.CACHE_REVALIDATE, true );
+        return location;
+    }
+
+    private void write( final ConcreteResource resource, final String content )
+        throws Exception
+    {
+        try (OutputStream out = cacheProvider.getTransfer( resource ).openOutputStream( TransferOperation.UPLOAD ))
+        {
+            out.write( content.getBytes() );
+        }
+    }
+
+    private String read( final Transfer transfer )
+        throws Exception
+    {
+        try (InputStream in = transfer.openInputStream())
+        {
+            return TestIOUtils.readFromStream( in );
+        }
+    }
+
     @Override
     protected TransferManager getTransferManagerImpl()
     {
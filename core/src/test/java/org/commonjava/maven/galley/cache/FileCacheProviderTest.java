@@ -15,20 +15,24 @@
  */
 package org.commonjava.maven.galley.cache;
 
+import org.apache.commons.io.IOUtils;
 import org.commonjava.maven.galley.event.NoOpFileEventManager;
 import org.commonjava.maven.galley.io.NoOpTransferDecorator;
 import org.commonjava.maven.galley.io.TransferDecoratorManager;
 import org.commonjava.maven.galley.model.ConcreteResource;
 import org.commonjava.maven.galley.model.Location;
 import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.spi.cache.CacheProvider;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -70,4 +74,120 @@ public class FileCacheProviderTest
         assertThat( provider.exists( resource ), equalTo( true ) );
         assertTrue( file.exists() );
     }
+
+    @Test
+    public void expiredFileIsDeletedSoonAfterFirstSeen()
+                    throws Exception
+    {
+        final Location loc = new SimpleLocation( "http://foo.com" );
+        final ConcreteResource resource = new ConcreteResource( loc, "/path/to/maven-metadata.xml" );
+        final File cacheDir = temp.newFolder( "expiring" );
+
+        final FileCacheProvider writer = newProvider( cacheDir );
+        try (OutputStream out = writer.openOutputStream( resource ))
+        {
+            out.write( "old".getBytes( StandardCharsets.UTF_8 ) );
+        }
+
+        final long aged = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(
+                Location.DEFAULT_CACHE_TIMEOUT_SECONDS + 60 );
+        assertTrue( new File( writer.getFilePath( resource ) ).setLastModified( aged ) );
+
+        // a provider that hasn't seen the file yet, as after a restart. The lookup only queues a background check.
+        final FileCacheProvider reader = newProvider( cacheDir );
+        final Transfer transfer = reader.getTransfer( resource );
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis( 10 );
+        while ( transfer.exists() && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 10 );
+        }
+
+        assertThat( transfer.exists(), equalTo( false ) );
+    }
+
+    @Test
+    public void freshFileIsKept()
+                    throws Exception
+    {
+        final Location loc = new SimpleLocation( "http://foo.com" );
+        final ConcreteResource resource = new ConcreteResource( loc, "/path/to/maven-metadata.xml" );
+        final File cacheDir = temp.newFolder( "fresh" );
+
+        final FileCacheProvider writer = newProvider( cacheDir );
+        try (OutputStream out = writer.openOutputStream( resource ))
+        {
+            out.write( "new".getBytes( StandardCharsets.UTF_8 ) );
+        }
+
+        assertThat( newProvider( cacheDir ).getTransfer( resource ).exists(), equalTo( true ) );
+    }
+
+    @Test
+    public void aliasIsLinkedAndSurvivesRewritesOfTheOriginal()
+                    throws Exception
+    {
+        final ConcreteResource from =
+                        new ConcreteResource( new SimpleLocation( "http://foo.com" ), "/path/to/file-1.jar" );
+        final ConcreteResource to =
+                        new ConcreteResource( new SimpleLocation( "group:public" ), "/path/to/alias-1.jar" );
+
+        final FileCacheProvider provider = newProvider( temp.newFolder( "aliases" ) );
+        write( provider, from, "This is a test" );
+
+        provider.createAlias( from, to );
+        assertThat( read( provider, to ), equalTo( "This is a test" ) );
+        assertThat( provider.getAliasBytesSaved(), equalTo( (long) "This is a test".length() ) );
+
+        write( provider, from, "changed" );
+        assertThat( read( provider, to ), equalTo( "This is a test" ) );
+    }
+
+    @Test
+    public void revalidatingOriginalLeavesLinkedAliasTimeoutAlone()
+                    throws Exception
+    {
+        final ConcreteResource from =
+                        new ConcreteResource( new SimpleLocation( "http://foo.com" ), "/path/to/file-1.jar" );
+        final ConcreteResource to =
+                        new ConcreteResource( new SimpleLocation( "group:public" ), "/path/to/alias-1.jar" );
+
+        final FileCacheProvider provider = newProvider( temp.newFolder( "revalidated-aliases" ) );
+        write( provider, from, "This is a test" );
+        provider.createAlias( from, to );
+
+        final File alias = new File( provider.getFilePath( to ) );
+        final long aged = System.currentTimeMillis() - TimeUnit.DAYS.toMillis( 1 );
+        assertTrue( alias.setLastModified( aged ) );
+
+        provider.markRevalidated( from );
+
+        assertTrue( new File( provider.getFilePath( from ) ).lastModified() > aged );
+        assertThat( alias.lastModified(), equalTo( aged ) );
+        assertThat( read( provider, from ), equalTo( "This is a test" ) );
+        assertThat( read( provider, to ), equalTo( "This is a test" ) );
+    }
+
+    private void write( final CacheProvider provider, final ConcreteResource resource, final String content )
+                    throws Exception
+    {
+        try (OutputStream out = provider.openOutputStream( resource ))
+        {
+            out.write( content.getBytes( StandardCharsets.UTF_8 ) );
+        }
+    }
+
+    private String read( final CacheProvider provider, final ConcreteResource resource )
+                    throws Exception
+    {
+        try (InputStream in = provider.openInputStream( resource ))
+        {
+            return IOUtils.toString( in, StandardCharsets.UTF_8 );
+        }
+    }
+
+    private FileCacheProvider newProvider( final File cacheDir )
+    {
+        return new FileCacheProvider( cacheDir, new MockPathGenerator(), new NoOpFileEventManager(),
+                                      new TransferDecoratorManager( new NoOpTransferDecorator() ), true );
+    }
 }
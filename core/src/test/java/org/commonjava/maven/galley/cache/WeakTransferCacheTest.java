@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.cache;
+
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.io.NoOpTransferDecorator;
+import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class WeakTransferCacheTest
+{
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private final SimpleLocation location = new SimpleLocation( "test", "http://test.com/repo" );
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private FileCacheProvider provider;
+
+    @Before
+    public void setup()
+            throws Exception
+    {
+        provider = new FileCacheProvider( temp.newFolder( "cache" ), new MockPathGenerator(), new NoOpFileEventManager(),
+                                          new TransferDecoratorManager( new NoOpTransferDecorator() ), true );
+    }
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentLookupsShareOneInstance()
+            throws Exception
+    {
+        final ConcreteResource resource = new ConcreteResource( location, "org/foo/bar/1/bar-1.pom" );
+        final CountDownLatch start = new CountDownLatch( 1 );
+
+        final List<Future<Transfer>> results = new ArrayList<>();
+        for ( int i = 0; i < 8; i++ )
+        {
+            results.add( executor.submit( () -> {
+                start.await();
+                return provider.getTransfer( resource );
+            } ) );
+        }
+
+        start.countDown();
+
+        final Transfer first = results.get( 0 ).get( 10, TimeUnit.SECONDS );
+        for ( final Future<Transfer> result : results )
+        {
+            assertThat( result.get( 10, TimeUnit.SECONDS ), sameInstance( first ) );
+        }
+
+        assertThat( provider.getTransfer( resource ), sameInstance( first ) );
+        assertThat( provider.getCachedTransferCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void unreferencedTransfersAreEvicted()
+            throws Exception
+    {
+        final WeakTransferCache cache = new WeakTransferCache();
+        final ConcreteResource held = new ConcreteResource( location, "org/foo/bar/1/bar-1.pom" );
+        final Transfer transfer = provider.getTransfer( held );
+        cache.putIfAbsent( held, transfer );
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            final ConcreteResource resource = new ConcreteResource( location, "org/foo/p" + i + "/1/p" + i + "-1.pom" );
+            cache.putIfAbsent( resource, new Transfer( resource, provider, new NoOpFileEventManager(),
+                                                       new TransferDecoratorManager( new NoOpTransferDecorator() ) ) );
+        }
+
+        // how much gets collected, and when, is up to the JVM: only wait for some of it. Allocating garbage gets a
+        // collection going even where System.gc() is disabled.
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis( 30 );
+        while ( cache.getEvictionCount() == 0 && System.currentTimeMillis() < deadline )
+        {
+            System.gc();
+            final byte[][] garbage = new byte[64][];
+            for ( int i = 0; i < garbage.length; i++ )
+            {
+                garbage[i] = new byte[1024 * 1024];
+            }
+            Thread.sleep( 50 );
+        }
+
+        final int size = cache.size();
+        assertThat( cache.getEvictionCount() > 0, equalTo( true ) );
+        assertThat( size + cache.getEvictionCount(), equalTo( 101L ) );
+        assertThat( cache.get( held ), sameInstance( transfer ) );
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.internal;
+
+import org.commonjava.maven.galley.AsyncTransferManager;
+import org.commonjava.maven.galley.TransferException;
+import org.commonjava.maven.galley.TransferManager;
+import org.commonjava.maven.galley.cache.FileCacheProvider;
+import org.commonjava.maven.galley.cache.MockPathGenerator;
+import org.commonjava.maven.galley.cache.testutil.TestIOUtils;
+import org.commonjava.maven.galley.config.TransportManagerConfig;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.internal.xfer.DownloadHandler;
+import org.commonjava.maven.galley.internal.xfer.ExistenceHandler;
+import org.commonjava.maven.galley.internal.xfer.ListingHandler;
+import org.commonjava.maven.galley.internal.xfer.UploadHandler;
+import org.commonjava.maven.galley.io.NoOpTransferDecorator;
+import org.commonjava.maven.galley.io.SpecialPathManagerImpl;
+import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.ListingResult;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.VirtualResource;
+import org.commonjava.maven.galley.nfc.MemoryNotFoundCache;
+import org.commonjava.maven.galley.spi.cache.CacheProvider;
+import org.commonjava.maven.galley.spi.event.FileEventManager;
+import org.commonjava.maven.galley.spi.transport.TransportManager;
+import org.commonjava.maven.galley.testing.core.transport.TestTransport;
+import org.commonjava.maven.galley.testing.core.transport.job.TestDownload;
+import org.commonjava.maven.galley.testing.core.transport.job.TestExistence;
+import org.commonjava.maven.galley.testing.core.transport.job.TestListing;
+import org.commonjava.maven.galley.transport.TransportManagerImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class AsyncTransferManagerImplTest
+{
+    private static final int TIMEOUT_SECONDS = 10;
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private final Location first = new SimpleLocation( "first", "http://first.com/repo" );
+
+    private final Location second = new SimpleLocation( "second", "http://second.com/repo" );
+
+    private final Location third = new SimpleLocation( "third", "http://third.com/repo" );
+
+    private TestTransport transport;
+
+    private ExecutorService executor;
+
+    private AsyncTransferManager mgr;
+
+    @Before
+    public void setup()
+    {
+        transport = new TestTransport();
+        executor = Executors.newCachedThreadPool();
+
+        final TransportManager transportMgr = new TransportManagerImpl( transport );
+        final CacheProvider cacheProvider =
+                new FileCacheProvider( TestIOUtils.newTempFolder( temp, "cache" ), new MockPathGenerator(),
+                                       new NoOpFileEventManager(),
+                                       new TransferDecoratorManager( new NoOpTransferDecorator() ), true );
+        final MemoryNotFoundCache nfc = new MemoryNotFoundCache();
+        final FileEventManager fileEvents = new NoOpFileEventManager();
+        final TransportManagerConfig config = new TransportManagerConfig();
+
+        final DownloadHandler dh = new DownloadHandler( nfc, config, executor );
+        final UploadHandler uh = new UploadHandler( nfc, config, executor );
+        final ListingHandler lh = new ListingHandler( nfc );
+        final ExistenceHandler eh = new ExistenceHandler( nfc );
+        final SpecialPathManagerImpl specialPathManager = new SpecialPathManagerImpl();
+
+        final TransferManager sync =
+                new TransferManagerImpl( transportMgr, cacheProvider, nfc, fileEvents, dh, uh, lh, eh,
+                                         specialPathManager, executor );
+
+        mgr = new AsyncTransferManagerImpl( sync, transportMgr, cacheProvider, nfc, fileEvents, dh,
+                                            specialPathManager, executor );
+    }
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void retrieveDownloadsThenServesFromCache()
+            throws Exception
+    {
+        final ConcreteResource resource = new ConcreteResource( first, "org/foo/bar/1/bar-1.pom" );
+        transport.registerDownload( resource, new TestDownload( "this is the pom".getBytes() ) );
+
+        final Transfer downloaded = mgr.retrieve( resource ).get( TIMEOUT_SECONDS, TimeUnit.SECONDS );
+        assertThat( read( downloaded ), equalTo( "this is the pom" ) );
+
+        // now cached, so the future should already be complete when it is returned.
+        assertThat( mgr.retrieve( resource ).isDone(), equalTo( true ) );
+    }
+
+    @Test
+    public void retrieveFailureCompletesExceptionally()
+            throws Exception
+    {
+        final ConcreteResource resource = new ConcreteResource( first, "org/foo/bar/1/bar-1.jar" );
+        transport.registerDownload( resource, new TestDownload( new TransferException( "upstream failure" ) ) );
+
+        try
+        {
+            mgr.retrieve( resource ).get( TIMEOUT_SECONDS, TimeUnit.SECONDS );
+            fail( "Failed download should complete the future exceptionally" );
+        }
+        catch ( final ExecutionException e )
+        {
+            assertThat( e.getCause(), instanceOf( TransferException.class ) );
+        }
+
+        assertThat( mgr.retrieve( resource, true ).get( TIMEOUT_SECONDS, TimeUnit.SECONDS ), nullValue() );
+    }
+
+    @Test
+    public void retrieveFirstReturnsFirstExistingHit()
+            throws Exception
+    {
+        final String path = "org/foo/bar/1/bar-1.pom";
+        transport.registerDownload( new ConcreteResource( second, path ), new TestDownload( "second".getBytes() ) );
+        transport.registerDownload( new ConcreteResource( third, path ), new TestDownload( "third".getBytes() ) );
+
+        final Transfer transfer = mgr.retrieveFirst( new VirtualResource( Arrays.asList( first, second, third ), path ) )
+                                     .get( TIMEOUT_SECONDS, TimeUnit.SECONDS );
+
+        assertThat( transfer, notNullValue() );
+        assertThat( transfer.getLocation(), equalTo( second ) );
+        assertThat( read( transfer ), equalTo( "second" ) );
+    }
+
+    @Test
+    public void retrieveFirstMissCompletesWithNull()
+            throws Exception
+    {
+        final VirtualResource virt = new VirtualResource( Arrays.asList( first, second ), "org/foo/missing/1/m.pom" );
+
+        assertThat( mgr.retrieveFirst( virt ).get( TIMEOUT_SECONDS, TimeUnit.SECONDS ), nullValue() );
+    }
+
+    @Test
+    public void existsAndListRunOffTheCallingThread()
+            throws Exception
+    {
+        final ConcreteResource resource = new ConcreteResource( first, "org/foo/bar/1/bar-1.jar" );
+        transport.registerExistence( resource, new TestExistence( true ) );
+
+        final ConcreteResource dir = new ConcreteResource( first, "org/foo/bar/" );
+        transport.registerListing( dir, new TestListing( new ListingResult( dir, new String[] { "1/" } ) ) );
+
+        assertThat( mgr.exists( resource ).get( TIMEOUT_SECONDS, TimeUnit.SECONDS ), equalTo( true ) );
+
+        final ListingResult listing = mgr.list( dir ).get( TIMEOUT_SECONDS, TimeUnit.SECONDS );
+        assertThat( Arrays.asList( listing.getListing() ), equalTo( Arrays.asList( "1/" ) ) );
+    }
+
+    private String read( final Transfer transfer )
+            throws Exception
+    {
+        try (InputStream in = transfer.openInputStream())
+        {
+            return TestIOUtils.readFromStream( in );
+        }
+    }
+}
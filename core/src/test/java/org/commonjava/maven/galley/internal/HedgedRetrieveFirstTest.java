@@ -0,0 +1,289 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.internal;
+
+import org.commonjava.maven.galley.TransferException;
+import org.commonjava.maven.galley.TransferManager;
+import org.commonjava.maven.galley.cache.FileCacheProvider;
+import org.commonjava.maven.galley.cache.MockPathGenerator;
+import org.commonjava.maven.galley.cache.testutil.TestIOUtils;
+import org.commonjava.maven.galley.config.TransportManagerConfig;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.internal.xfer.DownloadHandler;
+import org.commonjava.maven.galley.internal.xfer.ExistenceHandler;
+import org.commonjava.maven.galley.internal.xfer.ListingHandler;
+import org.commonjava.maven.galley.internal.xfer.UploadHandler;
+import org.commonjava.maven.galley.io.NoOpTransferDecorator;
+import org.commonjava.maven.galley.io.SpecialPathManagerImpl;
+import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.VirtualResource;
+import org.commonjava.maven.galley.nfc.MemoryNotFoundCache;
+import org.commonjava.maven.galley.spi.cache.CacheProvider;
+import org.commonjava.maven.galley.testing.core.transport.TestTransport;
+import org.commonjava.maven.galley.testing.core.transport.job.TestDownload;
+import org.commonjava.maven.galley.testing.core.transport.job.TestExistence;
+import org.commonjava.maven.galley.transport.TransportManagerImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HedgedRetrieveFirstTest
+{
+    private static final String PATH = "org/foo/bar/1/bar-1.pom";
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private TestTransport transport;
+
+    private ExecutorService executor;
+
+    private TransportManagerConfig config;
+
+    private TransferManager mgr;
+
+    @Before
+    public void setup()
+    {
+        transport = new TestTransport();
+        executor = Executors.newFixedThreadPool( 4 );
+
+        final CacheProvider cacheProvider =
+                new FileCacheProvider( TestIOUtils.newTempFolder( temp, "cache" ), new MockPathGenerator(),
+                                       new NoOpFileEventManager(),
+                                       new TransferDecoratorManager( new NoOpTransferDecorator() ), true );
+        final MemoryNotFoundCache nfc = new MemoryNotFoundCache();
+
+        config = new TransportManagerConfig();
+        config.setHedgedRetrieveFanout( 3 );
+
+        mgr = new TransferManagerImpl( new TransportManagerImpl( transport ), cacheProvider, nfc,
+                                       new NoOpFileEventManager(), new DownloadHandler( nfc, config, executor ),
+                                       new UploadHandler( nfc, config, executor ), new ListingHandler( nfc ),
+                                       new ExistenceHandler( nfc ), new SpecialPathManagerImpl(), config, executor );
+    }
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void highestPriorityHitWinsOverFastestHit()
+            throws Exception
+    {
+        final List<Location> locations = locations( 3 );
+        final AtomicInteger probes = new AtomicInteger();
+
+        register( locations.get( 0 ), new CountingExistence( false, 0, probes ), null );
+        register( locations.get( 1 ), new CountingExistence( true, 300, probes ), "second" );
+        register( locations.get( 2 ), new CountingExistence( true, 0, probes ), "third" );
+
+        final Transfer transfer = mgr.retrieveFirst( new VirtualResource( locations, PATH ) );
+
+        assertThat( transfer, notNullValue() );
+        assertThat( transfer.getLocation(), equalTo( locations.get( 1 ) ) );
+        assertThat( read( transfer ), equalTo( "second" ) );
+
+        // the third location was probed speculatively while the second was still answering.
+        assertThat( probes.get(), equalTo( 3 ) );
+    }
+
+    @Test
+    public void missEverywhereReturnsNull()
+            throws Exception
+    {
+        final List<Location> locations = locations( 5 );
+        final AtomicInteger probes = new AtomicInteger();
+        for ( final Location location : locations )
+        {
+            register( location, new CountingExistence( false, 10, probes ), null );
+        }
+
+        assertThat( mgr.retrieveFirst( new VirtualResource( locations, PATH ) ), nullValue() );
+        assertThat( probes.get(), equalTo( 5 ) );
+    }
+
+    @Test
+    public void failedProbeIsReportedLikeAFailedRetrieve()
+            throws Exception
+    {
+        final List<Location> locations = locations( 2 );
+        final AtomicInteger probes = new AtomicInteger();
+
+        register( locations.get( 0 ), new CountingExistence( false, 0, probes ), null );
+        register( locations.get( 1 ), new TestExistence( new TransferException( "Upstream is down" ) ), null );
+
+        try
+        {
+            mgr.retrieveFirst( new VirtualResource( locations, PATH ) );
+            fail( "The failure of the last member should have been thrown" );
+        }
+        catch ( final TransferException e )
+        {
+            assertThat( e.getMessage(), equalTo( "Upstream is down" ) );
+        }
+    }
+
+    @Test
+    public void failedProbeStillRetrievesTheMember()
+            throws Exception
+    {
+        final List<Location> locations = locations( 2 );
+        final AtomicInteger probes = new AtomicInteger();
+
+        // a check that breaks, rather than reporting a transport error, leaves the member out of the NFC.
+        register( locations.get( 0 ), new CountingExistence( true, 0, probes )
+        {
+            @Override
+            public Boolean call()
+            {
+                throw new IllegalStateException( "Probe broke" );
+            }
+        }, "first" );
+        register( locations.get( 1 ), new CountingExistence( true, 0, probes ), "second" );
+
+        final Transfer transfer = mgr.retrieveFirst( new VirtualResource( locations, PATH ) );
+
+        assertThat( transfer, notNullValue() );
+        assertThat( read( transfer ), equalTo( "first" ) );
+    }
+
+    @Test
+    public void perLocationLimitCapsSpeculativeProbes()
+            throws Exception
+    {
+        config.setHedgedRetrieveFanout( 6 );
+        config.setHedgedRetrieveLocationLimit( 1 );
+
+        final Location location = new SimpleLocation( "only", "http://only.com/repo" );
+        final AtomicInteger probes = new AtomicInteger();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+
+        final List<ConcreteResource> members = new ArrayList<>();
+        for ( int i = 0; i < 6; i++ )
+        {
+            final ConcreteResource res = new ConcreteResource( location, "org/foo/p" + i + "/1/p" + i + "-1.pom" );
+            transport.registerExistence( res, new CountingExistence( false, 50, probes )
+            {
+                @Override
+                public Boolean call()
+                {
+                    maxActive.accumulateAndGet( active.incrementAndGet(), Math::max );
+                    try
+                    {
+                        return super.call();
+                    }
+                    finally
+                    {
+                        active.decrementAndGet();
+                    }
+                }
+            } );
+            members.add( res );
+        }
+
+        assertThat( mgr.retrieveFirst( new VirtualResource( members ) ), nullValue() );
+        assertThat( probes.get(), equalTo( 6 ) );
+
+        // one speculative probe in the pool, plus the caller checking a skipped member itself.
+        assertTrue( "Too many concurrent probes: " + maxActive.get(), maxActive.get() <= 2 );
+    }
+
+    private List<Location> locations( final int count )
+    {
+        final List<Location> locations = new ArrayList<>();
+        for ( int i = 0; i < count; i++ )
+        {
+            locations.add( new SimpleLocation( "repo" + i, "http://repo" + i + ".com/repo" ) );
+        }
+
+        return locations;
+    }
+
+    private void register( final Location location, final TestExistence existence, final String content )
+    {
+        final ConcreteResource res = new ConcreteResource( location, PATH );
+        transport.registerExistence( res, existence );
+        if ( content != null )
+        {
+            transport.registerDownload( res, new TestDownload( content.getBytes() ) );
+        }
+    }
+
+    private String read( final Transfer transfer )
+            throws Exception
+    {
+        try (InputStream in = transfer.openInputStream())
+        {
+            return TestIOUtils.readFromStream( in );
+        }
+    }
+
+    private static class CountingExistence
+            extends TestExistence
+    {
+        private final long delayMillis;
+
+        private final AtomicInteger probes;
+
+        CountingExistence( final boolean result, final long delayMillis, final AtomicInteger probes )
+        {
+            super( result );
+            this.delayMillis = delayMillis;
+            this.probes = probes;
+        }
+
+        @Override
+        public Boolean call()
+        {
+            probes.incrementAndGet();
+            try
+            {
+                Thread.sleep( delayMillis );
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            return super.call();
+        }
+    }
+}
@@ -0,0 +1,392 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.internal;
+
+import org.commonjava.maven.galley.TransferException;
+import org.commonjava.maven.galley.TransferManager;
+import org.commonjava.maven.galley.cache.FileCacheProvider;
+import org.commonjava.maven.galley.cache.MockPathGenerator;
+import org.commonjava.maven.galley.cache.testutil.TestIOUtils;
+import org.commonjava.maven.galley.config.TransportManagerConfig;
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.internal.xfer.DownloadHandler;
+import org.commonjava.maven.galley.internal.xfer.ExistenceHandler;
+import org.commonjava.maven.galley.internal.xfer.ListingHandler;
+import org.commonjava.maven.galley.internal.xfer.UploadHandler;
+import org.commonjava.maven.galley.io.NoOpTransferDecorator;
+import org.commonjava.maven.galley.io.SpecialPathManagerImpl;
+import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.Resource;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.TransferBatch;
+import org.commonjava.maven.galley.model.TransferBatchListener;
+import org.commonjava.maven.galley.model.VirtualResource;
+import org.commonjava.maven.galley.nfc.MemoryNotFoundCache;
+import org.commonjava.maven.galley.spi.cache.CacheProvider;
+import org.commonjava.maven.galley.spi.transport.DownloadJob;
+import org.commonjava.maven.galley.testing.core.transport.TestTransport;
+import org.commonjava.maven.galley.testing.core.transport.job.TestDownload;
+import org.commonjava.maven.galley.transport.TransportManagerImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedBatchRetrieveTest
+{
+    private static final int TIMEOUT_SECONDS = 10;
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private TestTransport transport;
+
+    private ExecutorService executor;
+
+    private ExecutorService caller;
+
+    private TransportManagerConfig config;
+
+    private TransferManager mgr;
+
+    @Before
+    public void setup()
+    {
+        transport = new TestTransport()
+        {
+            @Override
+            public DownloadJob createDownloadJob( final ConcreteResource resource, final Transfer target,
+                                                  final Map<Transfer, Long> transferSizes, final int timeoutSeconds,
+                                                  final EventMetadata eventMetadata )
+                    throws TransferException
+            {
+                if ( resource.getPath().contains( "explodes" ) )
+                {
+                    throw new IllegalStateException( "transport bug" );
+                }
+
+                return super.createDownloadJob( resource, target, transferSizes, timeoutSeconds, eventMetadata );
+            }
+        };
+        executor = Executors.newFixedThreadPool( 8 );
+        caller = Executors.newSingleThreadExecutor();
+
+        final CacheProvider cacheProvider =
+                new FileCacheProvider( TestIOUtils.newTempFolder( temp, "cache" ), new MockPathGenerator(),
+                                       new NoOpFileEventManager(),
+                                       new TransferDecoratorManager( new NoOpTransferDecorator() ), true );
+        final MemoryNotFoundCache nfc = new MemoryNotFoundCache();
+
+        config = new TransportManagerConfig();
+
+        mgr = new TransferManagerImpl( new TransportManagerImpl( transport ), cacheProvider, nfc,
+                                       new NoOpFileEventManager(), new DownloadHandler( nfc, config, executor ),
+                                       new UploadHandler( nfc, config, executor ), new ListingHandler( nfc ),
+                                       new ExistenceHandler( nfc ), new SpecialPathManagerImpl(), config, executor );
+    }
+
+    @After
+    public void shutdown()
+    {
+        caller.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void listenerSeesFastResultsBeforeSlowOnesFinish()
+            throws Exception
+    {
+        final Location location = new SimpleLocation( "repo", "http://repo.com/repo" );
+        final ConcreteResource slow = new ConcreteResource( location, "org/foo/slow/1/slow-1.pom" );
+        final ConcreteResource fast = new ConcreteResource( location, "org/foo/fast/1/fast-1.pom" );
+
+        final CountDownLatch release = new CountDownLatch( 1 );
+        transport.registerDownload( slow, new GatedDownload( "slow".getBytes(), release, null ) );
+        transport.registerDownload( fast, new TestDownload( "fast".getBytes() ) );
+
+        final CountDownLatch fastSeen = new CountDownLatch( 1 );
+        final RecordingListener listener = new RecordingListener()
+        {
+            @Override
+            public void transferred( final Resource root, final ConcreteResource resource, final Transfer transfer )
+            {
+                super.transferred( root, resource, transfer );
+                if ( resource.equals( fast ) )
+                {
+                    fastSeen.countDown();
+                }
+            }
+        };
+
+        final Future<TransferBatch> result = caller.submit(
+                () -> mgr.batchRetrieve( new TransferBatch( Arrays.asList( slow, fast ) ), new EventMetadata(),
+                                         listener ) );
+
+        assertTrue( "Fast resource was not reported while the slow one was pending",
+                    fastSeen.await( TIMEOUT_SECONDS, TimeUnit.SECONDS ) );
+        assertThat( result.isDone(), equalTo( false ) );
+
+        release.countDown();
+        final TransferBatch batch = result.get( TIMEOUT_SECONDS, TimeUnit.SECONDS );
+
+        assertThat( batch.getTransfers().size(), equalTo( 2 ) );
+        assertThat( listener.transferred.size(), equalTo( 2 ) );
+        assertThat( listener.transferred.get( 1 ), equalTo( slow ) );
+    }
+
+    @Test
+    public void virtualResourcesAdvanceToNextMemberIndependently()
+            throws Exception
+    {
+        final Location first = new SimpleLocation( "first", "http://first.com/repo" );
+        final Location second = new SimpleLocation( "second", "http://second.com/repo" );
+
+        final String foundLater = "org/foo/later/1/later-1.pom";
+        final String foundFirst = "org/foo/first/1/first-1.pom";
+        final String nowhere = "org/foo/nowhere/1/nowhere-1.pom";
+
+        transport.registerDownload( new ConcreteResource( first, foundLater ), new TestDownload( (byte[]) null ) );
+        transport.registerDownload( new ConcreteResource( second, foundLater ),
+                                    new TestDownload( "later".getBytes() ) );
+        transport.registerDownload( new ConcreteResource( first, foundFirst ), new TestDownload( "first".getBytes() ) );
+        transport.registerDownload( new ConcreteResource( first, nowhere ), new TestDownload( (byte[]) null ) );
+        transport.registerDownload( new ConcreteResource( second, nowhere ), new TestDownload( (byte[]) null ) );
+
+        final List<Location> locations = Arrays.asList( first, second );
+        final VirtualResource later = new VirtualResource( locations, foundLater );
+        final VirtualResource early = new VirtualResource( locations, foundFirst );
+        final VirtualResource missing = new VirtualResource( locations, nowhere );
+        final VirtualResource empty = new VirtualResource( Collections.emptyList(), "/path/to/nowhere" );
+
+        final RecordingListener listener = new RecordingListener();
+        final TransferBatch batch =
+                mgr.batchRetrieve( new TransferBatch( Arrays.asList( later, early, missing, empty ) ),
+                                   new EventMetadata(), listener );
+
+        assertThat( batch.getErrors().isEmpty(), equalTo( true ) );
+        assertThat( batch.getTransfers().size(), equalTo( 2 ) );
+        assertThat( batch.getTransfer( new ConcreteResource( second, foundLater ) ), notNullValue() );
+        assertThat( batch.getTransfer( new ConcreteResource( first, foundFirst ) ), notNullValue() );
+
+        assertThat( listener.missing.size(), equalTo( 2 ) );
+        assertTrue( listener.missing.contains( missing ) );
+        assertTrue( listener.missing.contains( empty ) );
+        assertThat( listener.failed.isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void errorsAreRecordedAndReported()
+            throws Exception
+    {
+        final Location first = new SimpleLocation( "first", "http://first.com/repo" );
+        final Location second = new SimpleLocation( "second", "http://second.com/repo" );
+        final String path = "org/foo/broken/1/broken-1.pom";
+
+        final ConcreteResource broken = new ConcreteResource( first, path );
+        final ConcreteResource working = new ConcreteResource( second, path );
+        transport.registerDownload( broken, new TestDownload( new TransferException( "upstream failure" ) ) );
+        transport.registerDownload( working, new TestDownload( "working".getBytes() ) );
+
+        // batchRetrieveAll() doesn't suppress failures, and tries every member on its own.
+        final RecordingListener listener = new RecordingListener();
+        final TransferBatch batch = mgr.batchRetrieveAll( new TransferBatch( Collections.singleton(
+                new VirtualResource( Arrays.asList( first, second ), path ) ) ), new EventMetadata(), listener );
+
+        assertThat( batch.getTransfers().size(), equalTo( 1 ) );
+        assertThat( batch.getTransfer( working ), notNullValue() );
+        assertThat( batch.getError( broken ), notNullValue() );
+        assertThat( listener.failed, equalTo( Collections.singletonList( broken ) ) );
+        assertThat( listener.transferred, equalTo( Collections.singletonList( working ) ) );
+    }
+
+    @Test
+    public void unexpectedErrorIsRecordedBeforeTryingNextMember()
+            throws Exception
+    {
+        final Location first = new SimpleLocation( "first", "http://first.com/repo" );
+        final Location second = new SimpleLocation( "second", "http://second.com/repo" );
+        final String path = "org/foo/explodes/1/explodes-1.pom";
+
+        final ConcreteResource exploding = new ConcreteResource( first, path );
+        final ConcreteResource exploded = new ConcreteResource( second, path );
+
+        final RecordingListener listener = new RecordingListener();
+        final TransferBatch batch = mgr.batchRetrieve( new TransferBatch( Collections.singleton(
+                new VirtualResource( Arrays.asList( first, second ), path ) ) ), new EventMetadata(), listener );
+
+        assertThat( batch.getError( exploding ), notNullValue() );
+        assertThat( batch.getError( exploded ), notNullValue() );
+        assertThat( listener.missing.size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void interruptedBatchReportsUnfinishedResourcesAsFailed()
+            throws Exception
+    {
+        config.setBatchRetrieveLocationWindow( 1 );
+
+        final Location location = new SimpleLocation( "repo", "http://repo.com/repo" );
+        final ConcreteResource running = new ConcreteResource( location, "org/foo/running/1/running-1.pom" );
+        final ConcreteResource queued = new ConcreteResource( location, "org/foo/queued/1/queued-1.pom" );
+
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        transport.registerDownload( running, new GatedDownload( "running".getBytes(), release, started::countDown ) );
+        transport.registerDownload( queued, new GatedDownload( "queued".getBytes(), release, started::countDown ) );
+
+        final RecordingListener listener = new RecordingListener();
+        final Future<TransferBatch> result = caller.submit(
+                () -> mgr.batchRetrieve( new TransferBatch( Arrays.asList( running, queued ) ), new EventMetadata(),
+                                         listener ) );
+
+        assertTrue( "No try was started", started.await( TIMEOUT_SECONDS, TimeUnit.SECONDS ) );
+        caller.shutdownNow();
+
+        final TransferBatch batch = result.get( TIMEOUT_SECONDS, TimeUnit.SECONDS );
+        release.countDown();
+
+        assertThat( listener.failed.size(), equalTo( 2 ) );
+        assertTrue( listener.failed.containsAll( Arrays.asList( running, queued ) ) );
+        assertThat( batch.getError( running ), notNullValue() );
+        assertThat( batch.getError( queued ), notNullValue() );
+        assertThat( listener.transferred.isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void locationWindowCapsTriesInFlight()
+            throws Exception
+    {
+        config.setBatchRetrieveLocationWindow( 2 );
+
+        final Location location = new SimpleLocation( "only", "http://only.com/repo" );
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch( 0 );
+
+        final List<ConcreteResource> resources = new ArrayList<>();
+        for ( int i = 0; i < 6; i++ )
+        {
+            final ConcreteResource res = new ConcreteResource( location, "org/foo/p" + i + "/1/p" + i + "-1.pom" );
+            transport.registerDownload( res, new GatedDownload( ( "p" + i ).getBytes(), release, () -> {
+                maxActive.accumulateAndGet( active.incrementAndGet(), Math::max );
+                try
+                {
+                    Thread.sleep( 50 );
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                active.decrementAndGet();
+            } ) );
+            resources.add( res );
+        }
+
+        final RecordingListener listener = new RecordingListener();
+        final TransferBatch batch =
+                mgr.batchRetrieve( new TransferBatch( resources ), new EventMetadata(), listener );
+
+        assertThat( batch.getTransfers().size(), equalTo( 6 ) );
+        assertThat( listener.transferred.size(), equalTo( 6 ) );
+        assertTrue( "Too many concurrent tries: " + maxActive.get(), maxActive.get() <= 2 );
+    }
+
+    private static class RecordingListener
+            implements TransferBatchListener
+    {
+        private final List<ConcreteResource> transferred = new ArrayList<>();
+
+        private final List<ConcreteResource> failed = new ArrayList<>();
+
+        private final List<Resource> missing = new ArrayList<>();
+
+        @Override
+        public void transferred( final Resource root, final ConcreteResource resource, final Transfer transfer )
+        {
+            transferred.add( resource );
+        }
+
+        @Override
+        public void failed( final Resource root, final ConcreteResource resource, final TransferException error )
+        {
+            failed.add( resource );
+        }
+
+        @Override
+        public void missing( final Resource root )
+        {
+            missing.add( root );
+        }
+    }
+
+    private static final class GatedDownload
+            extends TestDownload
+    {
+        private final CountDownLatch release;
+
+        private final Runnable during;
+
+        GatedDownload( final byte[] data, final CountDownLatch release, final Runnable during )
+        {
+            super( data );
+            this.release = release;
+            this.during = during;
+        }
+
+        @Override
+        public GatedDownload call()
+        {
+            if ( during != null )
+            {
+                during.run();
+            }
+
+            try
+            {
+                release.await( TIMEOUT_SECONDS, TimeUnit.SECONDS );
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            super.call();
+            return this;
+        }
+    }
+}
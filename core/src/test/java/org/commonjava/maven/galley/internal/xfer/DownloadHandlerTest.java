@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.internal.xfer;
+
+import org.commonjava.maven.galley.TransferException;
+import org.commonjava.maven.galley.cache.FileCacheProvider;
+import org.commonjava.maven.galley.cache.MockPathGenerator;
+import org.commonjava.maven.galley.cache.testutil.TestIOUtils;
+import org.commonjava.maven.galley.config.TransportManagerConfig;
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.io.NoOpTransferDecorator;
+import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.nfc.MemoryNotFoundCache;
+import org.commonjava.maven.galley.spi.transport.DownloadJob;
+import org.commonjava.maven.galley.testing.core.transport.TestTransport;
+import org.commonjava.maven.galley.testing.core.transport.job.TestDownload;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class DownloadHandlerTest
+{
+    private static final int TIMEOUT_SECONDS = 10;
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final Location location = new SimpleLocation( "test", "http://test.com/repo" );
+
+    private FileCacheProvider cacheProvider;
+
+    private CountingTransport transport;
+
+    private ExecutorService executor;
+
+    private MemoryNotFoundCache nfc;
+
+    private DownloadHandler handler;
+
+    @Before
+    public void setup()
+    {
+        executor = Executors.newCachedThreadPool();
+        cacheProvider = new FileCacheProvider( TestIOUtils.newTempFolder( temp, "cache" ), new MockPathGenerator(),
+                                               new NoOpFileEventManager(),
+                                               new TransferDecoratorManager( new NoOpTransferDecorator() ), false );
+        transport = new CountingTransport();
+        nfc = new MemoryNotFoundCache();
+        handler = new DownloadHandler( nfc, new TransportManagerConfig(), executor );
+    }
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentRetrievesOfSamePathShareOneDownload()
+            throws Exception
+    {
+        final int threads = 8;
+        final ConcreteResource resource = new ConcreteResource( location, "org/foo/bar/1/bar-1.pom" );
+        final Transfer target = cacheProvider.getTransfer( resource );
+
+        final CountDownLatch release = new CountDownLatch( 1 );
+        transport.registerDownload( resource, new GatedDownload( "this is the pom".getBytes(), release ) );
+
+        final List<Future<Transfer>> results = new ArrayList<>();
+        for ( int i = 0; i < threads; i++ )
+        {
+            results.add( executor.submit(
+                    () -> handler.download( resource, target, TIMEOUT_SECONDS, transport, false,
+                                            new EventMetadata() ) ) );
+        }
+
+        // give every caller a chance to join before the single download is allowed to finish.
+        Thread.sleep( 200 );
+        release.countDown();
+
+        for ( final Future<Transfer> result : results )
+        {
+            final Transfer transfer = result.get( TIMEOUT_SECONDS, TimeUnit.SECONDS );
+            assertThat( transfer, notNullValue() );
+            assertThat( read( transfer ), equalTo( "this is the pom" ) );
+        }
+
+        assertThat( transport.getJobCount( resource ), equalTo( 1 ) );
+    }
+
+    @Test
+    public void slowDownloadDoesNotBlockOtherPaths()
+            throws Exception
+    {
+        final ConcreteResource slow = new ConcreteResource( location, "org/foo/slow/1/slow-1.jar" );
+        final ConcreteResource fast = new ConcreteResource( location, "org/foo/fast/1/fast-1.jar" );
+
+        final CountDownLatch release = new CountDownLatch( 1 );
+        transport.registerDownload( slow, new GatedDownload( "slow".getBytes(), release ) );
+        transport.registerDownload( fast, new TestDownload( "fast".getBytes() ) );
+
+        final Future<Transfer> slowResult = executor.submit(
+                () -> handler.download( slow, cacheProvider.getTransfer( slow ), TIMEOUT_SECONDS, transport, false,
+                                        new EventMetadata() ) );
+
+        final Transfer fastResult =
+                handler.download( fast, cacheProvider.getTransfer( fast ), TIMEOUT_SECONDS, transport, false,
+                                  new EventMetadata() );
+
+        assertThat( read( fastResult ), equalTo( "fast" ) );
+        assertThat( slowResult.isDone(), equalTo( false ) );
+
+        release.countDown();
+        assertThat( read( slowResult.get( TIMEOUT_SECONDS, TimeUnit.SECONDS ) ), equalTo( "slow" ) );
+    }
+
+    @Test
+    public void failedDownloadIsNotReusedByLaterRetrieves()
+            throws Exception
+    {
+        final ConcreteResource resource = new ConcreteResource( location, "org/foo/bar/1/bar-1.jar" );
+        final Transfer target = cacheProvider.getTransfer( resource );
+
+        transport.registerDownload( resource, new TestDownload( new TransferException( "upstream failure" ) ) );
+
+        try
+        {
+            handler.download( resource, target, TIMEOUT_SECONDS, transport, false, new EventMetadata() );
+        }
+        catch ( final TransferException e )
+        {
+            logger.info( "Expected failure: {}", e.getMessage() );
+        }
+
+        transport.registerDownload( resource, new TestDownload( "recovered".getBytes() ) );
+
+        // clear any NFC entry left by the failure above, so the retry has to go back to the transport.
+        nfc.clearMissing( resource );
+
+        final Transfer transfer =
+                handler.download( resource, target, TIMEOUT_SECONDS, transport, false, new EventMetadata() );
+
+        assertThat( read( transfer ), equalTo( "recovered" ) );
+        assertThat( transport.getJobCount( resource ), equalTo( 2 ) );
+    }
+
+    private String read( final Transfer transfer )
+            throws Exception
+    {
+        try (InputStream in = transfer.openInputStream())
+        {
+            return TestIOUtils.readFromStream( in );
+        }
+    }
+
+    private static final class GatedDownload
+            extends TestDownload
+    {
+        private final CountDownLatch release;
+
+        GatedDownload( final byte[] data, final CountDownLatch release )
+        {
+            super( data );
+            this.release = release;
+        }
+
+        @Override
+        public DownloadJob call()
+        {
+            try
+            {
+                release.await( TIMEOUT_SECONDS, TimeUnit.SECONDS );
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            return super.call();
+        }
+    }
+
+    private static final class CountingTransport
+            extends TestTransport
+    {
+        private final Map<ConcreteResource, AtomicInteger> counts = new HashMap<>();
+
+        @Override
+        public DownloadJob createDownloadJob( final ConcreteResource resource, final Transfer target,
+                                              final Map<Transfer, Long> transferSizes, final int timeoutSeconds,
+                                              final EventMetadata eventMetadata )
+                throws TransferException
+        {
+            synchronized ( counts )
+            {
+                counts.computeIfAbsent( resource, r -> new AtomicInteger() ).incrementAndGet();
+            }
+
+            return super.createDownloadJob( resource, target, transferSizes, timeoutSeconds, eventMetadata );
+        }
+
+        int getJobCount( final ConcreteResource resource )
+        {
+            synchronized ( counts )
+            {
+                final AtomicInteger count = counts.get( resource );
+                return count == null ? 0 : count.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.internal.xfer;
+
+import org.commonjava.maven.galley.TransferException;
+import org.commonjava.maven.galley.TransferTimeoutException;
+import org.commonjava.maven.galley.cache.FileCacheProvider;
+import org.commonjava.maven.galley.cache.MockPathGenerator;
+import org.commonjava.maven.galley.cache.testutil.TestIOUtils;
+import org.commonjava.maven.galley.config.TransportManagerConfig;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.io.NoOpTransferDecorator;
+import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.nfc.MemoryNotFoundCache;
+import org.commonjava.maven.galley.testing.core.transport.TestTransport;
+import org.commonjava.maven.galley.testing.core.transport.job.TestExistence;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ExistenceHandlerTest
+{
+    private static final int TIMEOUT_SECONDS = 10;
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private final Location location = new SimpleLocation( "test", "http://test.com/repo" );
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private FileCacheProvider cacheProvider;
+
+    private TestTransport transport;
+
+    private MemoryNotFoundCache nfc;
+
+    private TransportManagerConfig config;
+
+    private ExecutorService executor;
+
+    private ExistenceHandler handler;
+
+    @Before
+    public void setup()
+    {
+        executor = Executors.newCachedThreadPool();
+        cacheProvider = new FileCacheProvider( TestIOUtils.newTempFolder( temp, "cache" ), new MockPathGenerator(),
+                                               new NoOpFileEventManager(),
+                                               new TransferDecoratorManager( new NoOpTransferDecorator() ), false );
+        transport = new TestTransport();
+        nfc = new MemoryNotFoundCache();
+        config = new TransportManagerConfig();
+        handler = new ExistenceHandler( nfc, config, executor, clock::get );
+    }
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentChecksOfSameResourceShareOneJob()
+            throws Exception
+    {
+        final int threads = 8;
+        final ConcreteResource resource = new ConcreteResource( location, "org/foo/bar/1/bar-1.pom" );
+        final Transfer transfer = cacheProvider.getTransfer( resource );
+
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final GatedExistence job = new GatedExistence( release );
+        transport.registerExistence( resource, job );
+
+        final List<Future<Boolean>> results = new ArrayList<>();
+        for ( int i = 0; i < threads; i++ )
+        {
+            results.add( executor.submit(
+                    () -> handler.exists( resource, transfer, TIMEOUT_SECONDS, transport, false ) ) );
+        }
+
+        // give every caller a chance to join before the single check is allowed to finish.
+        Thread.sleep( 200 );
+        release.countDown();
+
+        for ( final Future<Boolean> result : results )
+        {
+            assertThat( result.get( TIMEOUT_SECONDS, TimeUnit.SECONDS ), equalTo( true ) );
+        }
+
+        assertThat( job.getCalls(), equalTo( 1 ) );
+        assertThat( handler.getCheckCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void positiveResultIsCachedUntilItExpires()
+            throws Exception
+    {
+        config.setExistenceCacheSeconds( 30 );
+
+        final ConcreteResource resource = new ConcreteResource( location, "org/foo/bar/1/bar-1.jar" );
+        final Transfer transfer = cacheProvider.getTransfer( resource );
+        transport.registerExistence( resource, new TestExistence( true ) );
+
+        assertThat( handler.exists( resource, transfer, TIMEOUT_SECONDS, transport, false ), equalTo( true ) );
+
+        clock.addAndGet( TimeUnit.SECONDS.toNanos( 29 ) );
+        assertThat( handler.exists( resource, transfer, TIMEOUT_SECONDS, transport, false ), equalTo( true ) );
+        assertThat( handler.getCheckCount(), equalTo( 1L ) );
+        assertThat( handler.getCacheHitCount(), equalTo( 1L ) );
+
+        clock.addAndGet( TimeUnit.SECONDS.toNanos( 2 ) );
+        assertThat( handler.exists( resource, transfer, TIMEOUT_SECONDS, transport, false ), equalTo( true ) );
+        assertThat( handler.getCheckCount(), equalTo( 2L ) );
+    }
+
+    @Test
+    public void missingResourceGoesToNfcNotExistenceCache()
+            throws Exception
+    {
+        final ConcreteResource resource = new ConcreteResource( location, "org/foo/bar/1/bar-1.war" );
+        final Transfer transfer = cacheProvider.getTransfer( resource );
+        transport.registerExistence( resource, new TestExistence( false ) );
+
+        assertThat( handler.exists( resource, transfer, TIMEOUT_SECONDS, transport, false ), equalTo( false ) );
+
+        assertThat( nfc.isMissing( resource ), equalTo( true ) );
+        assertThat( handler.getCachedExistingCount(), equalTo( 0 ) );
+    }
+
+    @Test( expected = TransferTimeoutException.class )
+    public void hungCheckTimesOut()
+            throws Exception
+    {
+        final ConcreteResource resource = new ConcreteResource( location, "org/foo/bar/1/bar-1.zip" );
+        final Transfer transfer = cacheProvider.getTransfer( resource );
+
+        final CountDownLatch release = new CountDownLatch( 1 );
+        transport.registerExistence( resource, new GatedExistence( release ) );
+
+        try
+        {
+            handler.exists( resource, transfer, 1, transport, false );
+        }
+        finally
+        {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void hungCheckIsSuppressedWhenAsked()
+            throws TransferException
+    {
+        final ConcreteResource resource = new ConcreteResource( location, "org/foo/bar/1/bar-1.ear" );
+        final Transfer transfer = cacheProvider.getTransfer( resource );
+
+        final CountDownLatch release = new CountDownLatch( 1 );
+        transport.registerExistence( resource, new GatedExistence( release ) );
+
+        try
+        {
+            assertThat( handler.exists( resource, transfer, 1, transport, true ), equalTo( false ) );
+        }
+        finally
+        {
+            release.countDown();
+        }
+    }
+
+    private static final class GatedExistence
+            extends TestExistence
+    {
+        private final CountDownLatch release;
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        GatedExistence( final CountDownLatch release )
+        {
+            super( true );
+            this.release = release;
+        }
+
+        @Override
+        public Boolean call()
+        {
+            calls.incrementAndGet();
+            try
+            {
+                release.await( TIMEOUT_SECONDS, TimeUnit.SECONDS );
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            return super.call();
+        }
+
+        int getCalls()
+        {
+            return calls.get();
+        }
+    }
+}
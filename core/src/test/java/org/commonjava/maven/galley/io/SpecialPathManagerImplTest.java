@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.io;
+
+import org.commonjava.maven.galley.model.FilePatternMatcher;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.PathPatternMatcher;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.SpecialPathInfo;
+import org.commonjava.maven.galley.model.SpecialPathMatcher;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.commonjava.maven.galley.io.SpecialPathConstants.MVN_SP_PATH_SET;
+import static org.commonjava.maven.galley.io.SpecialPathConstants.NPM_SP_PATH_SET;
+import static org.commonjava.maven.galley.io.SpecialPathConstants.PKG_TYPE_MAVEN;
+import static org.commonjava.maven.galley.io.SpecialPathConstants.PKG_TYPE_NPM;
+import static org.commonjava.maven.galley.io.SpecialPathConstants.STANDARD_SPECIAL_PATHS;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SpecialPathManagerImplTest
+{
+    private static final List<String> PATHS =
+            Arrays.asList( "org/foo/bar/1.0/bar-1.0.jar", "org/foo/bar/1.0/bar-1.0.pom", "org/foo/bar/1.0/bar-1.0.pom.sha1",
+                           "org/foo/bar/1.0/bar-1.0.jar.md5", "org/foo/bar/1.0/bar-1.0.jar.asc",
+                           "org/foo/bar/1.0/bar-1.0.jar.sha256", "org/foo/bar/maven-metadata.xml",
+                           "org/foo/bar/maven-metadata.xml.sha1", "org/foo/bar/maven-metadata.xml.md5",
+                           "archetype-catalog.xml", "archetype-catalog.xml.sha512", "org/foo/bar/1.0/",
+                           "org/foo/bar/maven-metadata.xml/", "org/foo/.listing.txt", "org/foo/bar/.http-metadata.json",
+                           "org/foo/bar/1.0/bar-1.0.jar.http-metadata.json", "jquery/package.json",
+                           "jquery/-/jquery-3.6.0.tgz", "jquery/-/jquery-3.6.0.tgz.sha1", "", "/", "sha1",
+                           "maven-metadata.xml.sha", ".md5" );
+
+    private final Location location = new SimpleLocation( "test", "http://test.com/repo" );
+
+    @Test
+    public void matchesSameRulesAsLinearScan()
+    {
+        final SpecialPathManagerImpl manager = new SpecialPathManagerImpl();
+        final SpecialPathManagerImpl hashed = new SpecialPathManagerImpl( new HashedLocationPathGenerator() );
+
+        for ( final String pkgType : Arrays.asList( PKG_TYPE_MAVEN, PKG_TYPE_NPM, "unknown" ) )
+        {
+            for ( final String path : PATHS )
+            {
+                final SpecialPathInfo expected = linearScan( path, pkgType );
+
+                // twice each, so the memoized result is checked too.
+                for ( int i = 0; i < 2; i++ )
+                {
+                    assertThat( pkgType + ":" + path, manager.getSpecialPathInfo( path, pkgType ),
+                                sameInstance( expected ) );
+                    assertThat( pkgType + ":" + path, manager.getSpecialPathInfo( location, path, pkgType ),
+                                sameInstance( expected ) );
+                    assertThat( pkgType + ":" + path, hashed.getSpecialPathInfo( location, path, pkgType ),
+                                sameInstance( expected ) );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void nullPackageTypeUsesStandardPathsOnly()
+    {
+        final SpecialPathManagerImpl manager = new SpecialPathManagerImpl();
+
+        assertThat( manager.getSpecialPathInfo( "org/foo/.listing.txt", null ),
+                    sameInstance( STANDARD_SPECIAL_PATHS.get( 1 ) ) );
+        assertThat( manager.getSpecialPathInfo( "org/foo/maven-metadata.xml", null ), nullValue() );
+    }
+
+    @Test
+    public void registeredPathIsVisibleAfterCachedMiss()
+    {
+        final SpecialPathManagerImpl manager = new SpecialPathManagerImpl();
+        final String path = "org/foo/bar/1.0/bar-1.0.dat";
+        assertThat( manager.getSpecialPathInfo( location, path, PKG_TYPE_MAVEN ), nullValue() );
+
+        final SpecialPathInfo info = SpecialPathInfo.from( new FilePatternMatcher( ".+\\.dat$" ) ).build();
+        manager.registerSpecialPathInfo( info );
+        assertThat( manager.getSpecialPathInfo( location, path, PKG_TYPE_MAVEN ), sameInstance( info ) );
+
+        manager.deregisterSpecialPathInfo( info );
+        assertThat( manager.getSpecialPathInfo( location, path, PKG_TYPE_MAVEN ), nullValue() );
+    }
+
+    @Test
+    public void directChangesToSharedPathSetAreVisible()
+    {
+        final SpecialPathManagerImpl manager = new SpecialPathManagerImpl();
+        final SpecialPathManagerImpl other = new SpecialPathManagerImpl();
+        final String path = "jquery/-/jquery-3.6.0.tgz";
+        assertThat( manager.getSpecialPathInfo( path, PKG_TYPE_NPM ), nullValue() );
+
+        final SpecialPathInfo info = SpecialPathInfo.from( new PathPatternMatcher( ".+/-/.+\\.tgz" ) ).build();
+        other.registerSpecialPathInfo( info, PKG_TYPE_NPM );
+        try
+        {
+            assertThat( manager.getSpecialPathInfo( path, PKG_TYPE_NPM ), sameInstance( info ) );
+        }
+        finally
+        {
+            NPM_SP_PATH_SET.deregisterSpecialPathInfo( info );
+        }
+
+        assertThat( manager.getSpecialPathInfo( path, PKG_TYPE_NPM ), nullValue() );
+    }
+
+    @Test
+    public void customMatcherSeesLocation()
+    {
+        final SpecialPathManagerImpl manager = new SpecialPathManagerImpl();
+        final Location other = new SimpleLocation( "other", "http://other.com/repo" );
+        final SpecialPathInfo info =
+                SpecialPathInfo.from( new LocationMatcher( location ) ).setMetadata( true ).build();
+        manager.registerSpecialPathInfo( info );
+
+        final String path = "org/foo/bar/1.0/bar-1.0.jar";
+        assertThat( manager.getSpecialPathInfo( location, path, PKG_TYPE_MAVEN ), sameInstance( info ) );
+        assertThat( manager.getSpecialPathInfo( other, path, PKG_TYPE_MAVEN ), nullValue() );
+        assertThat( manager.getSpecialPathInfo( location, path, PKG_TYPE_MAVEN ), sameInstance( info ) );
+    }
+
+    @Test
+    public void firstRegisteredRuleWins()
+    {
+        final SpecialPathManagerImpl manager = new SpecialPathManagerImpl();
+        final SpecialPathInfo first = SpecialPathInfo.from( new FilePatternMatcher( ".*\\.dat" ) ).build();
+        final SpecialPathInfo second = SpecialPathInfo.from( new FilePatternMatcher( "foo\\.dat" ) ).build();
+        manager.registerSpecialPathInfo( first );
+        manager.registerSpecialPathInfo( second );
+
+        assertThat( manager.getSpecialPathInfo( "org/foo.dat" ), sameInstance( first ) );
+    }
+
+    @Test
+    public void resultCacheIsBounded()
+    {
+        final SpecialPathManagerImpl manager = new SpecialPathManagerImpl();
+        for ( int i = 0; i < SpecialPathManagerImpl.MAX_CACHED_RESULTS * 2; i++ )
+        {
+            manager.getSpecialPathInfo( "org/foo/" + i + "/foo-" + i + ".jar", PKG_TYPE_MAVEN );
+        }
+
+        final SpecialPathIndex index = new SpecialPathIndex( STANDARD_SPECIAL_PATHS, 0, null, 10 );
+        for ( int i = 0; i < 25; i++ )
+        {
+            index.lookup( null, "foo-" + i + ".jar", false, null );
+            assertThat( index.getCachedResultCount() <= 10, equalTo( true ) );
+        }
+
+        assertThat( manager.getSpecialPathInfo( "org/foo/maven-metadata.xml", PKG_TYPE_MAVEN ), notNullValue() );
+    }
+
+    @Test
+    public void requiredSuffixOfPatterns()
+    {
+        assertThat( SpecialPathIndex.requiredSuffix( ".*\\.http-metadata\\.json$" ), equalTo( ".http-metadata.json" ) );
+        assertThat( SpecialPathIndex.requiredSuffix( "\\.listing\\.txt" ), equalTo( ".listing.txt" ) );
+        assertThat( SpecialPathIndex.requiredSuffix( ".+(?<!(maven-metadata|archetype-catalog)\\.xml)\\.asc$" ),
+                    equalTo( ".asc" ) );
+        assertThat( SpecialPathIndex.requiredSuffix( "ab+c" ), equalTo( "c" ) );
+        assertThat( SpecialPathIndex.requiredSuffix( "[a-z]\\]x" ), equalTo( "]x" ) );
+        assertThat( SpecialPathIndex.requiredSuffix( "foo\\d+\\.jar" ), equalTo( ".jar" ) );
+        assertThat( SpecialPathIndex.requiredSuffix( "foo\\s\\.jar" ), equalTo( ".jar" ) );
+
+        assertThat( SpecialPathIndex.requiredSuffix( "maven-metadata\\.xml(\\.md5|\\.sha[\\d]+)$" ), nullValue() );
+        assertThat( SpecialPathIndex.requiredSuffix( "foo\\.jar|bar\\.pom" ), nullValue() );
+        assertThat( SpecialPathIndex.requiredSuffix( "(?i)foo\\.jar" ), nullValue() );
+        assertThat( SpecialPathIndex.requiredSuffix( "\\Qfoo.jar\\E" ), nullValue() );
+        assertThat( SpecialPathIndex.requiredSuffix( "foo\\.jar?" ), nullValue() );
+        assertThat( SpecialPathIndex.requiredSuffix( "foo\\d" ), nullValue() );
+        assertThat( SpecialPathIndex.requiredSuffix( "foo.{2}" ), nullValue() );
+        assertThat( SpecialPathIndex.requiredSuffix( "foo\\x2ejar" ), nullValue() );
+        assertThat( SpecialPathIndex.requiredSuffix( "foo\\u002ejar" ), nullValue() );
+        assertThat( SpecialPathIndex.requiredSuffix( "foo\\cJbar" ), nullValue() );
+        assertThat( SpecialPathIndex.requiredSuffix( "foo\\056jar" ), nullValue() );
+        assertThat( SpecialPathIndex.requiredSuffix( "(foo)\\1bar" ), nullValue() );
+        assertThat( SpecialPathIndex.requiredSuffix( "foo\\p{Alpha}bar" ), nullValue() );
+    }
+
+    /**
+     * The matching done before {@link SpecialPathIndex}: every rule in order, standard paths first.
+     */
+    private SpecialPathInfo linearScan( final String path, final String pkgType )
+    {
+        for ( final SpecialPathInfo info : STANDARD_SPECIAL_PATHS )
+        {
+            if ( info.getMatcher().matches( null, path ) )
+            {
+                return info;
+            }
+        }
+
+        final SpecialPathSet set = PKG_TYPE_MAVEN.equals( pkgType ) ? MVN_SP_PATH_SET :
+                PKG_TYPE_NPM.equals( pkgType ) ? NPM_SP_PATH_SET : null;
+        if ( set != null )
+        {
+            for ( final SpecialPathInfo info : set.getSpecialPathInfos() )
+            {
+                if ( info.getMatcher().matches( null, path ) )
+                {
+                    return info;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static final class LocationMatcher
+            implements SpecialPathMatcher
+    {
+        private final Location location;
+
+        LocationMatcher( final Location location )
+        {
+            this.location = location;
+        }
+
+        @Override
+        public boolean matches( final Location location, final String path )
+        {
+            return this.location.equals( location );
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.io.checksum;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.apache.commons.codec.binary.Hex.encodeHexString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ChecksumUpdaterTest
+{
+    private ExecutorService executor;
+
+    @Before
+    public void setup()
+    {
+        executor = Executors.newFixedThreadPool( 4 );
+    }
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void mixedUpdatesMatchPlainDigests()
+            throws Exception
+    {
+        final byte[] data = randomData( 100_000 );
+        final List<AbstractChecksumGenerator> generators = generators( new Md5GeneratorFactory(),
+                                                                       new Sha1GeneratorFactory(),
+                                                                       new Sha256GeneratorFactory() );
+
+        final ChecksumUpdater updater = new ChecksumUpdater( generators, null );
+        updater.update( data[0] );
+        updater.update( data, 1, 9999 );
+        updater.update( ByteBuffer.wrap( data, 10_000, 40_000 ) );
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect( 50_000 );
+        direct.put( data, 50_000, 50_000 ).flip();
+        updater.update( direct );
+        updater.finish();
+
+        assertThat( direct.hasRemaining(), equalTo( false ) );
+        assertThat( updater.isParallel(), equalTo( false ) );
+        assertDigests( generators, data );
+    }
+
+    @Test
+    public void parallelDigestsMatchPlainDigests()
+            throws Exception
+    {
+        final byte[] data = randomData( 5 * 1024 * 1024 + 17 );
+        final List<AbstractChecksumGenerator> generators = generators( new Md5GeneratorFactory(),
+                                                                       new Sha1GeneratorFactory(),
+                                                                       new Sha256GeneratorFactory() );
+
+        final ChecksumUpdater updater = new ChecksumUpdater( generators, executor );
+        final Random random = new Random( 42 );
+        int off = 0;
+        while ( off < data.length )
+        {
+            if ( random.nextInt( 50 ) == 0 )
+            {
+                updater.update( data[off++] );
+                continue;
+            }
+
+            final int len = Math.min( data.length - off, 1 + random.nextInt( 3 * ChecksumUpdater.CHUNK_SIZE ) );
+            updater.update( data, off, len );
+            off += len;
+        }
+
+        updater.finish();
+
+        assertThat( updater.isParallel(), equalTo( true ) );
+        assertDigests( generators, data );
+    }
+
+    @Test
+    public void singleDigestNeverGoesParallel()
+            throws Exception
+    {
+        final byte[] data = randomData( 2 * 1024 * 1024 );
+        final List<AbstractChecksumGenerator> generators = generators( new Sha256GeneratorFactory() );
+
+        final ChecksumUpdater updater = new ChecksumUpdater( generators, executor );
+        updater.update( data, 0, data.length );
+        updater.finish();
+
+        assertThat( updater.isParallel(), equalTo( false ) );
+        assertDigests( generators, data );
+    }
+
+    private void assertDigests( final List<AbstractChecksumGenerator> generators, final byte[] data )
+            throws Exception
+    {
+        for ( final AbstractChecksumGenerator generator : generators )
+        {
+            final MessageDigest md = MessageDigest.getInstance( generator.getDigestType().digestName() );
+            assertThat( generator.getDigestType().name(), generator.getDigestHex(),
+                        equalTo( encodeHexString( md.digest( data ) ) ) );
+        }
+    }
+
+    private List<AbstractChecksumGenerator> generators( final AbstractChecksumGeneratorFactory<?>... factories )
+            throws Exception
+    {
+        final List<AbstractChecksumGenerator> generators = new ArrayList<>();
+        for ( final AbstractChecksumGeneratorFactory<?> factory : factories )
+        {
+            generators.add( factory.createGenerator( null, false, null ) );
+        }
+
+        return generators;
+    }
+
+    private byte[] randomData( final int size )
+    {
+        final byte[] data = new byte[size];
+        new Random( size ).nextBytes( data );
+        return data;
+    }
+}
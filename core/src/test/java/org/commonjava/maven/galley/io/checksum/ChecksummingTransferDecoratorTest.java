@@ -35,9 +35,11 @@ import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
 import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Collections;
@@ -263,4 +265,45 @@ public class ChecksummingTransferDecoratorTest
         }
     }
 
+    @Test
+    public void forcedChecksumIsCalculatedWhenTransferringToChannel()
+            throws Exception
+    {
+        final ChecksummingTransferDecorator decorator =
+                new ChecksummingTransferDecorator( Collections.emptySet(), new SpecialPathManagerImpl(), false, false,
+                                                   metadataConsumer, new Md5GeneratorFactory() );
+
+        fixture.setDecorator( new TransferDecoratorManager( decorator ) );
+        fixture.initMissingComponents();
+        fixture.getCache().startReporting();
+
+        String path = "my-path.txt";
+        final Transfer txfr =
+                fixture.getCache().getTransfer( new ConcreteResource( new SimpleLocation( "test:uri" ), path ) );
+
+        File f = new File( temp.getRoot(), "cache/test:uri" );
+        f = new File( f, path );
+
+        byte[] data = "This is a test with a bunch of data".getBytes();
+        FileUtils.writeByteArrayToFile( f, data );
+
+        assertThat( decorator.needsReadDecoration( txfr, new EventMetadata() ), equalTo( false ) );
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        txfr.transferTo( Channels.newChannel( baos ), false, new EventMetadata() );
+        assertThat( Arrays.equals( baos.toByteArray(), data ), equalTo( true ) );
+        assertThat( metadataConsumer.getMetadata( txfr ), nullValue() );
+
+        EventMetadata forceEventMetadata = new EventMetadata().set( FORCE_CHECKSUM, TRUE );
+        assertThat( decorator.needsReadDecoration( txfr, forceEventMetadata ), equalTo( true ) );
+
+        baos = new ByteArrayOutputStream();
+        txfr.transferTo( Channels.newChannel( baos ), false, forceEventMetadata );
+        assertThat( Arrays.equals( baos.toByteArray(), data ), equalTo( true ) );
+
+        TransferMetadata metadata = metadataConsumer.getMetadata( txfr );
+        assertThat( metadata, notNullValue() );
+        assertThat( metadata.getDigests().get( MD5 ), equalTo( md5Hex( data ) ) );
+    }
+
 }
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.nfc;
+
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CompactNotFoundCacheTest
+{
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private final Location location = new SimpleLocation( "test", "http://test.com/repo" );
+
+    @Test
+    public void addCheckAndClear()
+    {
+        final CompactNotFoundCache nfc = new CompactNotFoundCache();
+        final ConcreteResource resource = new ConcreteResource( location, "org/foo/bar/1/bar-1.pom" );
+
+        assertThat( nfc.isMissing( resource ), equalTo( false ) );
+        nfc.addMissing( resource );
+        assertThat( nfc.isMissing( resource ), equalTo( true ) );
+        assertThat( nfc.isMissing( new ConcreteResource( location, "org/foo/bar/1/bar-1.jar" ) ), equalTo( false ) );
+        assertThat( nfc.getMissing( location ).contains( resource.getPath() ), equalTo( true ) );
+
+        nfc.clearMissing( resource );
+        assertThat( nfc.isMissing( resource ), equalTo( false ) );
+        assertThat( nfc.getMissing( location ).isEmpty(), equalTo( true ) );
+
+        nfc.addMissing( resource );
+        nfc.clearMissing( location );
+        assertThat( nfc.isMissing( resource ), equalTo( false ) );
+        assertThat( nfc.getMissing( location ), nullValue() );
+    }
+
+    @Test
+    public void tableMatchesHashSetThroughGrowthAndRemoval()
+    {
+        final CompactNotFoundCache nfc = new CompactNotFoundCache( 50_000, 16 );
+        final Set<String> oracle = new HashSet<>();
+        final Random random = new Random( 42 );
+
+        for ( int i = 0; i < 100_000; i++ )
+        {
+            final String path = "org/foo/p" + random.nextInt( 20_000 ) + "/1/p-1.jar";
+            final ConcreteResource resource = new ConcreteResource( location, path );
+            if ( random.nextInt( 3 ) == 0 )
+            {
+                nfc.clearMissing( resource );
+                oracle.remove( path );
+            }
+            else
+            {
+                nfc.addMissing( resource );
+                oracle.add( path );
+            }
+        }
+
+        assertThat( nfc.getMissingCount( location ), equalTo( oracle.size() ) );
+        for ( int i = 0; i < 20_000; i++ )
+        {
+            final String path = "org/foo/p" + i + "/1/p-1.jar";
+            assertThat( path, nfc.isMissing( new ConcreteResource( location, path ) ),
+                        equalTo( oracle.contains( path ) ) );
+        }
+    }
+
+    @Test
+    public void snapshotRestoresIntoFreshCache()
+            throws Exception
+    {
+        final CompactNotFoundCache nfc = new CompactNotFoundCache( 1000, 16 );
+        for ( int i = 0; i < 500; i++ )
+        {
+            nfc.addMissing( new ConcreteResource( location, "org/foo/p" + i + ".pom" ) );
+        }
+
+        final Path snapshot = temp.newFolder().toPath().resolve( "nfc.bin" );
+        nfc.snapshot( snapshot );
+
+        final CompactNotFoundCache restored = new CompactNotFoundCache( 1000, 16 );
+        restored.restore( snapshot );
+        assertThat( restored.size(), equalTo( 500L ) );
+
+        // an equal location instance, as a restarted node would build from its own configuration.
+        final Location sameRepo = new SimpleLocation( "test", "http://test.com/repo" );
+        for ( int i = 0; i < 500; i++ )
+        {
+            assertThat( restored.isMissing( new ConcreteResource( sameRepo, "org/foo/p" + i + ".pom" ) ),
+                        equalTo( true ) );
+        }
+
+        assertThat( restored.isMissing( new ConcreteResource( sameRepo, "org/foo/other.pom" ) ), equalTo( false ) );
+        assertThat( restored.getMissingCount( sameRepo ), equalTo( 500 ) );
+    }
+
+    @Test
+    public void distinctPathsGetDistinctFingerprints()
+    {
+        final long[] a = CompactNotFoundCache.hash( "org/foo/bar/1/bar-1.pom" );
+        final long[] b = CompactNotFoundCache.hash( "org/foo/bar/1/bar-1.jar" );
+
+        assertThat( a[0], not( equalTo( b[0] ) ) );
+        assertThat( a[1], not( equalTo( b[1] ) ) );
+    }
+}
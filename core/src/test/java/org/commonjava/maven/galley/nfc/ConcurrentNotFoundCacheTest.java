@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.nfc;
+
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentNotFoundCacheTest
+{
+    private final AtomicLong clock = new AtomicLong();
+
+    private final Location location = new SimpleLocation( "test", "http://test.com/repo" );
+
+    @Test
+    public void addCheckAndClear()
+    {
+        final ConcurrentNotFoundCache nfc = new ConcurrentNotFoundCache( 100, 0, clock::get );
+        final ConcreteResource resource = new ConcreteResource( location, "org/foo/bar/1/bar-1.pom" );
+
+        assertThat( nfc.isMissing( resource ), equalTo( false ) );
+        nfc.addMissing( resource );
+        assertThat( nfc.isMissing( resource ), equalTo( true ) );
+        assertThat( nfc.getMissing( location ).contains( resource.getPath() ), equalTo( true ) );
+
+        nfc.clearMissing( resource );
+        assertThat( nfc.isMissing( resource ), equalTo( false ) );
+
+        nfc.addMissing( resource );
+        nfc.clearMissing( location );
+        assertThat( nfc.getMissing( location ), nullValue() );
+        assertThat( nfc.size(), equalTo( 0 ) );
+
+        assertThat( nfc.getHitCount(), equalTo( 1L ) );
+        assertThat( nfc.getMissCount(), equalTo( 2L ) );
+    }
+
+    @Test
+    public void locationTimeoutOverridesDefault()
+    {
+        final ConcurrentNotFoundCache nfc = new ConcurrentNotFoundCache( 100, 3600, clock::get );
+
+        final Location shortLived = new SimpleLocation( "short", "http://short.com/repo" );
+        shortLived.setAttribute( Location.NFC_TIMEOUT_SECONDS, 10 );
+
+        final ConcreteResource shortMiss = new ConcreteResource( shortLived, "a/b/c.pom" );
+        final ConcreteResource longMiss = new ConcreteResource( location, "a/b/c.pom" );
+        nfc.addMissing( shortMiss );
+        nfc.addMissing( longMiss );
+
+        clock.addAndGet( TimeUnit.SECONDS.toNanos( 11 ) );
+        assertThat( nfc.isMissing( shortMiss ), equalTo( false ) );
+        assertThat( nfc.isMissing( longMiss ), equalTo( true ) );
+        assertThat( nfc.getExpirationCount(), equalTo( 1L ) );
+
+        clock.addAndGet( TimeUnit.SECONDS.toNanos( 3600 ) );
+        assertThat( nfc.getMissing( location ).isEmpty(), equalTo( true ) );
+        assertThat( nfc.isMissing( longMiss ), equalTo( false ) );
+        assertThat( nfc.size(), equalTo( 0 ) );
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondMaxEntries()
+    {
+        final int max = 100;
+        final ConcurrentNotFoundCache nfc = new ConcurrentNotFoundCache( max, 0, clock::get );
+
+        final List<ConcreteResource> resources = new ArrayList<>();
+        for ( int i = 0; i < max; i++ )
+        {
+            final ConcreteResource resource = new ConcreteResource( location, "org/foo/p" + i + ".pom" );
+            clock.incrementAndGet();
+            nfc.addMissing( resource );
+            resources.add( resource );
+        }
+
+        // touch the older half so the newer half becomes the least recently used.
+        for ( int i = 0; i < max / 2; i++ )
+        {
+            clock.incrementAndGet();
+            assertThat( nfc.isMissing( resources.get( i ) ), equalTo( true ) );
+        }
+
+        clock.incrementAndGet();
+        nfc.addMissing( new ConcreteResource( location, "org/foo/overflow.pom" ) );
+
+        assertTrue( "Cache still over its limit: " + nfc.size(), nfc.size() <= max );
+        assertThat( nfc.getEvictionCount() > 0, equalTo( true ) );
+        for ( int i = 0; i < max / 2; i++ )
+        {
+            assertThat( "Recently used entry was evicted: " + i, nfc.isMissing( resources.get( i ) ),
+                        equalTo( true ) );
+        }
+    }
+
+    @Test
+    public void concurrentWritersStayWithinBounds()
+            throws Exception
+    {
+        final int max = 1000;
+        final ConcurrentNotFoundCache nfc = new ConcurrentNotFoundCache( max, 0 );
+        final ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+            for ( int t = 0; t < 8; t++ )
+            {
+                final int thread = t;
+                futures.add( executor.submit( () -> {
+                    for ( int i = 0; i < 5000; i++ )
+                    {
+                        final ConcreteResource resource =
+                                new ConcreteResource( location, "t" + thread + "/p" + i + ".pom" );
+                        nfc.addMissing( resource );
+                        nfc.isMissing( resource );
+                    }
+                } ) );
+            }
+
+            for ( final Future<?> future : futures )
+            {
+                future.get( 30, TimeUnit.SECONDS );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        // writers racing an in-progress eviction may overshoot briefly, but the next eviction brings it back.
+        assertTrue( "Cache grew past its limit: " + nfc.size(), nfc.size() <= max + 8 );
+        assertThat( nfc.size(), equalTo( nfc.getMissing( location ).size() ) );
+    }
+
+    @Test
+    public void clearingWhileWritingKeepsTheSizeExact()
+            throws Exception
+    {
+        final ConcurrentNotFoundCache nfc = new ConcurrentNotFoundCache( 1_000_000, 0 );
+        final ExecutorService executor = Executors.newFixedThreadPool( 5 );
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+            for ( int t = 0; t < 4; t++ )
+            {
+                final int thread = t;
+                futures.add( executor.submit( () -> {
+                    for ( int i = 0; i < 20000; i++ )
+                    {
+                        nfc.addMissing( new ConcreteResource( location, "t" + thread + "/p" + i + ".pom" ) );
+                    }
+                } ) );
+            }
+            futures.add( executor.submit( () -> {
+                for ( int i = 0; i < 2000; i++ )
+                {
+                    nfc.clearMissing( location );
+                }
+            } ) );
+
+            for ( final Future<?> future : futures )
+            {
+                future.get( 30, TimeUnit.SECONDS );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        final Set<String> missing = nfc.getMissing( location );
+        assertThat( nfc.size(), equalTo( missing == null ? 0 : missing.size() ) );
+
+        nfc.clearAllMissing();
+        assertThat( nfc.size(), equalTo( 0 ) );
+    }
+}
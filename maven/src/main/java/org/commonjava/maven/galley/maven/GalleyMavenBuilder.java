@@ -19,6 +19,7 @@ import org.commonjava.maven.galley.GalleyCoreBuilder;
 import org.commonjava.maven.galley.GalleyInitException;
 import org.commonjava.maven.galley.TransferManager;
 import org.commonjava.maven.galley.cache.CacheProviderFactory;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
 import org.commonjava.maven.galley.io.TransferDecoratorManager;
 import org.commonjava.maven.galley.maven.internal.ArtifactManagerImpl;
 import org.commonjava.maven.galley.maven.internal.ArtifactMetadataManagerImpl;
@@ -27,6 +28,7 @@ import org.commonjava.maven.galley.maven.internal.defaults.StandardMavenPluginIm
 import org.commonjava.maven.galley.maven.internal.type.StandardTypeMapper;
 import org.commonjava.maven.galley.maven.internal.version.VersionResolverImpl;
 import org.commonjava.maven.galley.maven.model.view.XPathManager;
+import org.commonjava.maven.galley.maven.parse.DocRefCacheInvalidator;
 import org.commonjava.maven.galley.maven.parse.MavenMetadataReader;
 import org.commonjava.maven.galley.maven.parse.MavenPomReader;
 import org.commonjava.maven.galley.maven.parse.XMLInfrastructure;
@@ -99,6 +101,14 @@ public class GalleyMavenBuilder
     public void initMissingComponents()
             throws GalleyInitException
     {
+        // put parsed-document invalidation in front of whatever events the core components are built with.
+        if ( !( coreBuilder.getFileEvents() instanceof DocRefCacheInvalidator ) )
+        {
+            final FileEventManager events = coreBuilder.getFileEvents();
+            coreBuilder.withFileEvents(
+                    new DocRefCacheInvalidator( events == null ? new NoOpFileEventManager() : events ) );
+        }
+
         coreBuilder.initMissingComponents();
 
         if ( mapper == null )
@@ -117,6 +127,11 @@ public class GalleyMavenBuilder
             xmlInfra = new XMLInfrastructure();
         }
 
+        if ( xpathManager == null )
+        {
+            xpathManager = new XPathManager();
+        }
+
         if ( metaReader == null )
         {
             metaReader = new MavenMetadataReader( xmlInfra, coreBuilder.getLocationExpander(), metadata, xpathManager );
@@ -144,16 +159,15 @@ public class GalleyMavenBuilder
             pluginImplications = new StandardMavenPluginImplications( xmlInfra );
         }
 
-        if ( xpathManager == null )
-        {
-            xpathManager = new XPathManager();
-        }
-
         if ( pomReader == null && artifactManager != null )
         {
             pomReader = new MavenPomReader( xmlInfra, coreBuilder.getLocationExpander(), artifactManager, xpathManager,
                                             pluginDefaults, pluginImplications );
         }
+
+        final DocRefCacheInvalidator invalidator = (DocRefCacheInvalidator) coreBuilder.getFileEvents();
+        invalidator.register( pomReader );
+        invalidator.register( metaReader );
     }
 
     public ArtifactManager getArtifactManager()
@@ -0,0 +1,301 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.internal.version;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.commonjava.atlas.maven.ident.ref.ProjectRef;
+import org.commonjava.atlas.maven.ident.version.SingleVersion;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.util.LocationUtils;
+
+/**
+ * Sorted version lists parsed from maven-metadata.xml, per (project, location). Each entry remembers the metadata files
+ * it was read from, with their modification times and lengths, and is only served while those are unchanged: a file
+ * rewritten by a store or a fresh download, or deleted, drops the entry on the next lookup. Entries also expire once
+ * the oldest of their files is older than the location's {@link Location#METADATA_TIMEOUT_SECONDS}, when the file
+ * itself would be retrieved again. Locations with a timeout below one second aren't cached. Once the cache holds more
+ * than maxEntries lists, one writer drops the expired entries and then the ones closest to expiry, down to
+ * {@link #EVICTION_TARGET} of the limit.
+ */
+public final class MetadataVersionCache
+{
+
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    static final float EVICTION_TARGET = 0.9f;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final int maxEntries;
+
+    private final LongSupplier clock;
+
+    public MetadataVersionCache()
+    {
+        this( DEFAULT_MAX_ENTRIES );
+    }
+
+    public MetadataVersionCache( final int maxEntries )
+    {
+        this( maxEntries, System::currentTimeMillis );
+    }
+
+    MetadataVersionCache( final int maxEntries, final LongSupplier clock )
+    {
+        if ( maxEntries < 1 )
+        {
+            throw new IllegalArgumentException( "maxEntries must be positive: " + maxEntries );
+        }
+
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the sorted versions cached for ref in location, or null if there are none, they've expired, or the
+     * metadata they were read from has changed since.
+     */
+    public SingleVersion[] get( final ProjectRef ref, final Location location )
+    {
+        final Key key = new Key( ref, location );
+        final Entry entry = entries.get( key );
+        if ( entry != null )
+        {
+            if ( entry.expiresAt > clock.getAsLong() && entry.isCurrent() )
+            {
+                hits.increment();
+                return entry.versions;
+            }
+
+            entries.remove( key, entry );
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Cache the given versions, which must already be sorted, for ref in location.
+     *
+     * @param sources the metadata transfers the versions were read from
+     */
+    public void put( final ProjectRef ref, final Location location, final SingleVersion[] versions,
+                     final List<Transfer> sources )
+    {
+        final int timeout = LocationUtils.getMetadataTimeoutSeconds( location );
+        if ( timeout < 1 || sources.isEmpty() )
+        {
+            return;
+        }
+
+        final Source[] stamps = new Source[sources.size()];
+        long oldest = Long.MAX_VALUE;
+        for ( int i = 0; i < stamps.length; i++ )
+        {
+            stamps[i] = new Source( sources.get( i ) );
+            if ( stamps[i].lastModified < 1 )
+            {
+                // gone already, or a cache that doesn't track modification times; nothing to validate against.
+                return;
+            }
+
+            oldest = Math.min( oldest, stamps[i].lastModified );
+        }
+
+        final long expiresAt = oldest + TimeUnit.SECONDS.toMillis( timeout );
+        if ( expiresAt <= clock.getAsLong() )
+        {
+            return;
+        }
+
+        entries.put( new Key( ref, location ), new Entry( versions, stamps, expiresAt ) );
+
+        if ( entries.size() > maxEntries && evictionLock.tryLock() )
+        {
+            try
+            {
+                evict();
+            }
+            finally
+            {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    public void invalidate( final ProjectRef ref, final Location location )
+    {
+        entries.remove( new Key( ref, location ) );
+    }
+
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    private void evict()
+    {
+        final long now = clock.getAsLong();
+        entries.entrySet()
+               .removeIf( e -> e.getValue().expiresAt <= now );
+
+        final int target = (int) ( maxEntries * EVICTION_TARGET );
+        int excess = entries.size() - target;
+        if ( excess <= 0 )
+        {
+            return;
+        }
+
+        final List<Map.Entry<Key, Entry>> byExpiry = new ArrayList<>( entries.entrySet() );
+        byExpiry.sort( Comparator.comparingLong( e -> e.getValue().expiresAt ) );
+        for ( final Map.Entry<Key, Entry> e : byExpiry )
+        {
+            if ( excess-- <= 0 )
+            {
+                break;
+            }
+
+            if ( entries.remove( e.getKey(), e.getValue() ) )
+            {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static final class Key
+    {
+        private final ProjectRef ref;
+
+        private final Location location;
+
+        Key( final ProjectRef ref, final Location location )
+        {
+            this.ref = ref;
+            this.location = location;
+        }
+
+        @Override
+        public boolean equals( final Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( !( o instanceof Key ) )
+            {
+                return false;
+            }
+
+            final Key key = (Key) o;
+            return ref.equals( key.ref ) && location.equals( key.location );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash( ref, location );
+        }
+    }
+
+    private static final class Entry
+    {
+        private final SingleVersion[] versions;
+
+        private final Source[] sources;
+
+        private final long expiresAt;
+
+        Entry( final SingleVersion[] versions, final Source[] sources, final long expiresAt )
+        {
+            this.versions = versions;
+            this.sources = sources;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isCurrent()
+        {
+            for ( final Source source : sources )
+            {
+                if ( !source.isCurrent() )
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static final class Source
+    {
+        private final Transfer transfer;
+
+        private final long lastModified;
+
+        private final long length;
+
+        Source( final Transfer transfer )
+        {
+            this.transfer = transfer;
+            this.lastModified = transfer.lastModified();
+            this.length = transfer.length();
+        }
+
+        boolean isCurrent()
+        {
+            return transfer.lastModified() == lastModified && transfer.length() == length;
+        }
+    }
+}
@@ -16,30 +16,36 @@
 package org.commonjava.maven.galley.maven.internal.version;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
 import org.commonjava.atlas.maven.ident.ref.ArtifactRef;
+import org.commonjava.atlas.maven.ident.ref.ProjectRef;
 import org.commonjava.atlas.maven.ident.ref.ProjectVersionRef;
 import org.commonjava.atlas.maven.ident.util.JoinString;
-import org.commonjava.atlas.maven.ident.util.VersionUtils;
-import org.commonjava.atlas.maven.ident.version.InvalidVersionSpecificationException;
 import org.commonjava.atlas.maven.ident.version.SingleVersion;
 import org.commonjava.atlas.maven.ident.version.VersionSpec;
 import org.commonjava.maven.galley.TransferException;
 import org.commonjava.maven.galley.event.EventMetadata;
 import org.commonjava.maven.galley.maven.GalleyMavenException;
 import org.commonjava.maven.galley.maven.model.ProjectVersionRefLocation;
-import org.commonjava.maven.galley.maven.model.view.meta.MavenMetadataView;
+import org.commonjava.maven.galley.maven.model.meta.MavenMetadataIndex;
 import org.commonjava.maven.galley.maven.parse.MavenMetadataReader;
 import org.commonjava.maven.galley.maven.spi.version.VersionResolver;
 import org.commonjava.maven.galley.maven.version.VersionSelectionStrategy;
 import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.Transfer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,20 +54,34 @@ public class VersionResolverImpl
     implements VersionResolver
 {
 
-    private static final String SNAP_VERSION_XPATH = "/metadata/versioning/snapshotVersions/snapshotVersion[1]/value";
+    private static final SingleVersion[] NO_VERSIONS = new SingleVersion[0];
 
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
     @Inject
     private MavenMetadataReader metadataReader;
 
+    private final MetadataVersionCache versionCache;
+
     protected VersionResolverImpl()
     {
+        versionCache = new MetadataVersionCache();
     }
 
     public VersionResolverImpl( final MavenMetadataReader metadataReader )
+    {
+        this( metadataReader, new MetadataVersionCache() );
+    }
+
+    public VersionResolverImpl( final MavenMetadataReader metadataReader, final MetadataVersionCache versionCache )
     {
         this.metadataReader = metadataReader;
+        this.versionCache = versionCache;
+    }
+
+    public MetadataVersionCache getVersionCache()
+    {
+        return versionCache;
     }
 
     @Override
@@ -227,22 +247,14 @@ public class VersionResolverImpl
                                                                             final EventMetadata eventMetadata )
     {
         final Map<SingleVersion, Location> available = new TreeMap<>();
-        for ( final Location location : locations )
+        try
         {
-            try
-            {
-                final MavenMetadataView metadata =
-                    metadataReader.getMetadata( ref, Collections.singletonList( location ), eventMetadata );
-
-                if ( metadata != null )
-                {
-                    addSnapshotFrom( metadata, location, ref, available );
-                }
-            }
-            catch ( final GalleyMavenException e )
-            {
-                debug( "Failed to resolve/parse metadata for snapshot version of: %s from: %s.", e, ref, location );
-            }
+            metadataReader.getIndexesByLocation( ref, locations, eventMetadata )
+                          .forEach( ( location, indexes ) -> addSnapshotFrom( indexes, location, available ) );
+        }
+        catch ( final GalleyMavenException e )
+        {
+            debug( "Failed to resolve/parse metadata for snapshot version of: %s from: %s.", e, ref, locations );
         }
 
         if ( available.isEmpty() )
@@ -283,13 +295,8 @@ public class VersionResolverImpl
             final Map<SingleVersion, Location> available = new TreeMap<>();
             try
             {
-                final MavenMetadataView metadata =
-                    metadataReader.getMetadata( ref, Collections.singletonList( location ), eventMetadata );
-
-                if ( metadata != null )
-                {
-                    addSnapshotFrom( metadata, location, ref, available );
-                }
+                metadataReader.getIndexesByLocation( ref, Collections.singletonList( location ), eventMetadata )
+                              .forEach( ( l, indexes ) -> addSnapshotFrom( indexes, l, available ) );
             }
             catch ( final GalleyMavenException e )
             {
@@ -314,26 +321,21 @@ public class VersionResolverImpl
         return null;
     }
 
-    private void addSnapshotFrom( final MavenMetadataView metadata, final Location location,
-                                  final ProjectVersionRef ref, final Map<SingleVersion, Location> available )
+    private void addSnapshotFrom( final List<MavenMetadataIndex> indexes, final Location location,
+                                  final Map<SingleVersion, Location> available )
     {
-        final String version = metadata.resolveSingleValue( SNAP_VERSION_XPATH );
-        logger.debug( "Latest snapshot version in metadata is: {}", version );
-
-        if ( version != null )
+        for ( final MavenMetadataIndex index : indexes )
         {
-            try
+            final SingleVersion version = index.getFirstSnapshotVersion();
+            if ( version != null )
             {
-                final SingleVersion ver = VersionUtils.createSingleVersion( version );
-                if ( !available.containsKey( ver ) )
+                logger.debug( "Latest snapshot version in metadata is: {}", version );
+                if ( available.putIfAbsent( version, location ) == null )
                 {
-                    logger.debug( "Found candidate snapshot: {}", ver );
-                    available.put( ver, location );
+                    logger.debug( "Found candidate snapshot: {}", version );
                 }
-            }
-            catch ( final InvalidVersionSpecificationException e )
-            {
-                debug( "Unparsable version spec found in metadata: '%s' for: %s from: %s", e, version, ref, location );
+
+                return;
             }
         }
     }
@@ -353,52 +355,15 @@ public class VersionResolverImpl
                                                                          final VersionSelectionStrategy selectionStrategy,
                                                                          final EventMetadata eventMetadata )
     {
-        final Map<SingleVersion, Location> available = new TreeMap<>();
-        for ( final Location location : locations )
-        {
-            try
-            {
-                final MavenMetadataView metadata =
-                    metadataReader.getMetadata( ref.asProjectRef(), Collections.singletonList( location ),
-                                                eventMetadata );
-
-                if ( metadata != null )
-                {
-                    final List<String> versions = metadata.resolveValues( "/metadata/versioning/versions/version" );
-
-                    if ( versions != null )
-                    {
-                        for ( final String version : versions )
-                        {
-                            try
-                            {
-                                final SingleVersion spec = VersionUtils.createSingleVersion( version );
-                                if ( !available.containsKey( spec ) )
-                                {
-                                    available.put( spec, location );
-                                }
-                            }
-                            catch ( final InvalidVersionSpecificationException e )
-                            {
-                                debug( "Unparsable version spec found in metadata: '%s' for: %s from: %s.", e, version,
-                                       ref, location );
-                            }
-                        }
-                    }
-                }
-            }
-            catch ( final GalleyMavenException e )
-            {
-                debug( "Failed to resolve/parse metadata for variable version of: '%s' from: %s.", e, ref, location );
-            }
-        }
+        final Map<SingleVersion, Location> available =
+            merge( locations, getVersions( ref.asProjectRef(), locations, eventMetadata ) );
 
         if ( !available.isEmpty() )
         {
             final VersionSpec spec = ref.getVersionSpec();
 
+            // merged in version order already
             final List<SingleVersion> versions = new ArrayList<>( available.keySet() );
-            Collections.sort( versions );
             while ( !versions.isEmpty() )
             {
                 final SingleVersion selected = selectionStrategy.select( versions );
@@ -435,49 +400,15 @@ public class VersionResolverImpl
     {
         nextLoc: for ( final Location location : locations )
         {
-            final Map<SingleVersion, Location> available = new TreeMap<>();
-            try
-            {
-                final MavenMetadataView metadata =
-                    metadataReader.getMetadata( ref.asProjectRef(), Collections.singletonList( location ),
-                                                eventMetadata );
-
-                if ( metadata != null )
-                {
-                    final List<String> versions = metadata.resolveValues( "/metadata/versioning/versions/version" );
-
-                    if ( versions != null )
-                    {
-                        for ( final String version : versions )
-                        {
-                            try
-                            {
-                                final SingleVersion spec = VersionUtils.createSingleVersion( version );
-                                if ( !available.containsKey( spec ) )
-                                {
-                                    available.put( spec, location );
-                                }
-                            }
-                            catch ( final InvalidVersionSpecificationException e )
-                            {
-                                debug( "Unparsable version spec found in metadata: '%s' for: %s from: %s.", e, version,
-                                       ref, location );
-                            }
-                        }
-                    }
-                }
-            }
-            catch ( final GalleyMavenException e )
-            {
-                debug( "Failed to resolve/parse metadata for variable version of: '%s' from: %s.", e, ref, location );
-            }
+            final List<Location> single = Collections.singletonList( location );
+            final Map<SingleVersion, Location> available =
+                merge( single, getVersions( ref.asProjectRef(), single, eventMetadata ) );
 
             if ( !available.isEmpty() )
             {
                 final VersionSpec spec = ref.getVersionSpec();
 
                 final List<SingleVersion> versions = new ArrayList<>( available.keySet() );
-                Collections.sort( versions );
                 while ( !versions.isEmpty() )
                 {
                     final SingleVersion selected = selectionStrategy.select( versions );
@@ -498,6 +429,151 @@ public class VersionResolverImpl
         return null;
     }
 
+    /**
+     * Sorted versions listed in the metadata for ref in each location, aligned with locations (empty where there are
+     * none). Lists still in the {@link MetadataVersionCache}, whose metadata files haven't changed, are reused; the rest
+     * are retrieved in one batch, so the downloads run concurrently, and read from the metadata indexes.
+     */
+    private SingleVersion[][] getVersions( final ProjectRef ref, final List<? extends Location> locations,
+                                           final EventMetadata eventMetadata )
+    {
+        final SingleVersion[][] result = new SingleVersion[locations.size()][];
+        final List<Location> missing = new ArrayList<>();
+        for ( int i = 0; i < result.length; i++ )
+        {
+            result[i] = versionCache.get( ref, locations.get( i ) );
+            if ( result[i] == null )
+            {
+                missing.add( locations.get( i ) );
+            }
+        }
+
+        if ( missing.isEmpty() )
+        {
+            return result;
+        }
+
+        Map<Location, List<Transfer>> retrieved = Collections.emptyMap();
+        try
+        {
+            retrieved = metadataReader.getTransfersByLocation( ref, missing, eventMetadata );
+        }
+        catch ( final GalleyMavenException e )
+        {
+            debug( "Failed to resolve/parse metadata for variable version of: '%s' from: %s.", e, ref, missing );
+        }
+
+        for ( int i = 0; i < result.length; i++ )
+        {
+            if ( result[i] != null )
+            {
+                continue;
+            }
+
+            final Location location = locations.get( i );
+            final List<Transfer> transfers = retrieved.get( location );
+            final List<MavenMetadataIndex> indexes =
+                transfers == null ? null : metadataReader.getIndexes( ref, location, transfers, eventMetadata );
+
+            if ( indexes == null )
+            {
+                result[i] = NO_VERSIONS;
+            }
+            else
+            {
+                result[i] = versionsOf( indexes );
+                versionCache.put( ref, location, result[i], transfers );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The versions of a location's metadata. Usually that's a single file, whose (already sorted) array is shared as-is.
+     */
+    private static SingleVersion[] versionsOf( final List<MavenMetadataIndex> indexes )
+    {
+        if ( indexes.size() == 1 )
+        {
+            return indexes.get( 0 ).getVersions();
+        }
+
+        final Set<SingleVersion> versions = new TreeSet<>();
+        indexes.forEach( index -> versions.addAll( Arrays.asList( index.getVersions() ) ) );
+        return versions.toArray( NO_VERSIONS );
+    }
+
+    /**
+     * K-way merge of the sorted per-location version lists into one ordered map. Where several locations list the same
+     * version, the earliest location wins, as it did when locations were read one after another.
+     */
+    static Map<SingleVersion, Location> merge( final List<? extends Location> locations,
+                                               final SingleVersion[][] versions )
+    {
+        final PriorityQueue<Cursor> heads = new PriorityQueue<>();
+        for ( int i = 0; i < versions.length; i++ )
+        {
+            if ( versions[i] != null && versions[i].length > 0 )
+            {
+                heads.add( new Cursor( versions[i], i ) );
+            }
+        }
+
+        final Map<SingleVersion, Location> merged = new LinkedHashMap<>();
+        SingleVersion last = null;
+        while ( !heads.isEmpty() )
+        {
+            final Cursor head = heads.poll();
+            final SingleVersion version = head.current();
+            if ( last == null || last.compareTo( version ) != 0 )
+            {
+                merged.put( version, locations.get( head.source ) );
+                last = version;
+            }
+
+            if ( head.advance() )
+            {
+                heads.add( head );
+            }
+        }
+
+        return merged;
+    }
+
+    private static final class Cursor
+        implements Comparable<Cursor>
+    {
+        private final SingleVersion[] versions;
+
+        private final int source;
+
+        private int pos;
+
+        Cursor( final SingleVersion[] versions, final int source )
+        {
+            this.versions = versions;
+            this.source = source;
+        }
+
+        SingleVersion current()
+        {
+            return versions[pos];
+        }
+
+        boolean advance()
+        {
+            return ++pos < versions.length;
+        }
+
+        @Override
+        public int compareTo( final Cursor other )
+        {
+            final int comp = current().compareTo( other.current() );
+            return comp == 0 ? Integer.compare( source, other.source ) : comp;
+        }
+    }
+
     @SuppressWarnings( "RegExpRedundantEscape" )
     private void debug( final String message, final Throwable e, final Object... params )
     {
@@ -522,45 +598,8 @@ public class VersionResolverImpl
                                                                               final VersionSelectionStrategy selectionStrategy,
                                                                               final EventMetadata eventMetadata )
     {
-        final Map<SingleVersion, Location> available = new TreeMap<>();
-        for ( final Location location : locations )
-        {
-            try
-            {
-                final MavenMetadataView metadata =
-                    metadataReader.getMetadata( ref.asProjectRef(), Collections.singletonList( location ),
-                                                eventMetadata );
-
-                if ( metadata != null )
-                {
-                    final List<String> versions = metadata.resolveValues( "/metadata/versioning/versions/version" );
-
-                    if ( versions != null )
-                    {
-                        for ( final String version : versions )
-                        {
-                            try
-                            {
-                                final SingleVersion spec = VersionUtils.createSingleVersion( version );
-                                if ( !available.containsKey( spec ) )
-                                {
-                                    available.put( spec, location );
-                                }
-                            }
-                            catch ( final InvalidVersionSpecificationException e )
-                            {
-                                debug( "Unparsable version spec found in metadata: '%s' for: %s from: %s.", e, version,
-                                       ref, location );
-                            }
-                        }
-                    }
-                }
-            }
-            catch ( final GalleyMavenException e )
-            {
-                debug( "Failed to resolve/parse metadata for variable version of: '%s' from: %s.", e, ref, location );
-            }
-        }
+        final Map<SingleVersion, Location> available =
+            merge( locations, getVersions( ref.asProjectRef(), locations, eventMetadata ) );
 
         if ( !available.isEmpty() )
         {
@@ -568,8 +607,8 @@ public class VersionResolverImpl
 
             final VersionSpec spec = ref.getVersionSpec();
 
+            // merged in version order already
             final List<SingleVersion> versions = new ArrayList<>( available.keySet() );
-            Collections.sort( versions );
             while ( !versions.isEmpty() )
             {
                 final SingleVersion selected = selectionStrategy.select( versions );
@@ -596,41 +635,24 @@ public class VersionResolverImpl
                                                                                  final EventMetadata eventMetadata )
     {
         final Map<SingleVersion, Location> available = new TreeMap<>();
-        for ( final Location location : locations )
+        try
         {
-            try
-            {
-                final MavenMetadataView metadata =
-                    metadataReader.getMetadata( ref, Collections.singletonList( location ), eventMetadata );
-
-                if ( metadata != null )
+            metadataReader.getIndexesByLocation( ref, locations, eventMetadata ).forEach( ( location, indexes ) -> {
+                final SingleVersion latest = indexes.stream()
+                                                    .map( MavenMetadataIndex::getLatest )
+                                                    .filter( Objects::nonNull )
+                                                    .findFirst()
+                                                    .orElse( null );
+
+                if ( latest != null && latest.isSnapshot() )
                 {
-                    final String latest = metadata.resolveSingleValue( "/metadata/versioning/latest" );
-                    if ( latest != null )
-                    {
-                        try
-                        {
-                            final SingleVersion ver = VersionUtils.createSingleVersion( latest );
-                            if ( ver.isSnapshot() )
-                            {
-                                if ( !available.containsKey( ver ) )
-                                {
-                                    available.put( ver, location );
-                                }
-                            }
-                        }
-                        catch ( final InvalidVersionSpecificationException e )
-                        {
-                            debug( "Unparsable version spec found in metadata: '%s' for: %s from: %s", e, latest, ref,
-                                   location );
-                        }
-                    }
+                    available.putIfAbsent( latest, location );
                 }
-            }
-            catch ( final GalleyMavenException e )
-            {
-                debug( "Failed to resolve/parse metadata for snapshot version of: %s from: %s.", e, ref, location );
-            }
+            } );
+        }
+        catch ( final GalleyMavenException e )
+        {
+            debug( "Failed to resolve/parse metadata for snapshot version of: %s from: %s.", e, ref, locations );
         }
 
         if ( !available.isEmpty() )
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.model.meta;
+
+import org.commonjava.atlas.maven.ident.ref.ProjectRef;
+import org.commonjava.atlas.maven.ident.version.SingleVersion;
+import org.commonjava.maven.galley.model.Location;
+
+/**
+ * Compact, immutable digest of one maven-metadata.xml file, built once per {@link
+ * org.commonjava.maven.galley.model.Transfer} by {@link org.commonjava.maven.galley.maven.parse.MavenMetadataReader}
+ * and shared by every version resolution that reads it. Versions are parsed up front, so resolving against the index
+ * never touches the XML or re-parses a version string.
+ * <br/>
+ * The version arrays are shared, not copied. Callers must not modify them.
+ */
+public final class MavenMetadataIndex
+{
+
+    private static final SingleVersion[] NO_VERSIONS = new SingleVersion[0];
+
+    private final ProjectRef ref;
+
+    private final Location location;
+
+    private final SingleVersion[] versions;
+
+    private final SingleVersion latest;
+
+    private final SingleVersion release;
+
+    private final String lastUpdated;
+
+    private final SingleVersion[] snapshotVersions;
+
+    /**
+     * @param versions The listed versions, sorted and without duplicates
+     * @param snapshotVersions The snapshotVersion values, in document order
+     */
+    public MavenMetadataIndex( final ProjectRef ref, final Location location, final SingleVersion[] versions,
+                               final SingleVersion latest, final SingleVersion release, final String lastUpdated,
+                               final SingleVersion[] snapshotVersions )
+    {
+        this.ref = ref;
+        this.location = location;
+        this.versions = versions == null ? NO_VERSIONS : versions;
+        this.latest = latest;
+        this.release = release;
+        this.lastUpdated = lastUpdated;
+        this.snapshotVersions = snapshotVersions == null ? NO_VERSIONS : snapshotVersions;
+    }
+
+    public ProjectRef getRef()
+    {
+        return ref;
+    }
+
+    /**
+     * The location the metadata was actually read from, which may be a member of a location the caller asked for.
+     */
+    public Location getLocation()
+    {
+        return location;
+    }
+
+    /**
+     * The versions listed in versioning/versions, sorted and without duplicates. Unparsable entries are left out.
+     */
+    public SingleVersion[] getVersions()
+    {
+        return versions;
+    }
+
+    public SingleVersion getLatest()
+    {
+        return latest;
+    }
+
+    public SingleVersion getRelease()
+    {
+        return release;
+    }
+
+    /**
+     * The raw versioning/lastUpdated timestamp (yyyyMMddHHmmss), or null.
+     */
+    public String getLastUpdated()
+    {
+        return lastUpdated;
+    }
+
+    /**
+     * The values of versioning/snapshotVersions/snapshotVersion, in document order.
+     */
+    public SingleVersion[] getSnapshotVersions()
+    {
+        return snapshotVersions;
+    }
+
+    /**
+     * The value of the first snapshotVersion entry, which is the one deployers write for the newest build.
+     */
+    public SingleVersion getFirstSnapshotVersion()
+    {
+        return snapshotVersions.length == 0 ? null : snapshotVersions[0];
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MavenMetadataIndex [" + ref + " from " + location + ": " + versions.length + " versions, latest="
+            + latest + ", release=" + release + "]";
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.model.pom;
+
+import org.commonjava.atlas.maven.ident.DependencyScope;
+import org.commonjava.atlas.maven.ident.ref.ArtifactRef;
+import org.commonjava.atlas.maven.ident.ref.ProjectVersionRef;
+import org.commonjava.atlas.maven.ident.ref.SimpleArtifactRef;
+import org.commonjava.atlas.maven.ident.ref.SimpleProjectVersionRef;
+import org.commonjava.atlas.maven.ident.version.InvalidVersionSpecificationException;
+import org.commonjava.maven.galley.maven.GalleyMavenException;
+import org.commonjava.maven.galley.maven.model.view.OriginInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One <code>dependency</code> declaration (direct, managed or plugin-level) read by
+ * {@link org.commonjava.maven.galley.maven.parse.PomModelReader}. Instances returned from {@link PomModelView}
+ * queries have their expressions resolved and version, scope and exclusions filled in from dependency management,
+ * the same way {@link org.commonjava.maven.galley.maven.model.view.DependencyView} does.
+ */
+public final class PomDependency
+{
+
+    private final String groupId;
+
+    private final String artifactId;
+
+    private final String version;
+
+    private final String type;
+
+    private final String classifier;
+
+    private final String scope;
+
+    private final String optional;
+
+    private final List<PomRef> exclusions;
+
+    private final String profileId;
+
+    private final OriginInfo originInfo;
+
+    public PomDependency( final String groupId, final String artifactId, final String version, final String type,
+                          final String classifier, final String scope, final String optional,
+                          final List<PomRef> exclusions, final String profileId )
+    {
+        this( groupId, artifactId, version, type, classifier, scope, optional, exclusions, profileId,
+              new OriginInfo() );
+    }
+
+    PomDependency( final String groupId, final String artifactId, final String version, final String type,
+                   final String classifier, final String scope, final String optional, final List<PomRef> exclusions,
+                   final String profileId, final OriginInfo originInfo )
+    {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.type = type;
+        this.classifier = classifier;
+        this.scope = scope;
+        this.optional = optional;
+        this.exclusions = exclusions == null ? Collections.emptyList() : Collections.unmodifiableList( exclusions );
+        this.profileId = profileId;
+        this.originInfo = originInfo;
+    }
+
+    public String getGroupId()
+    {
+        return groupId;
+    }
+
+    public String getArtifactId()
+    {
+        return artifactId;
+    }
+
+    public String getVersion()
+    {
+        return version;
+    }
+
+    public String getRawType()
+    {
+        return type;
+    }
+
+    public String getType()
+    {
+        return type == null ? "jar" : type;
+    }
+
+    public String getClassifier()
+    {
+        return classifier;
+    }
+
+    public String getRawScope()
+    {
+        return scope;
+    }
+
+    public DependencyScope getScope()
+    {
+        final DependencyScope s = DependencyScope.getScope( scope );
+        return s == null ? DependencyScope.compile : s;
+    }
+
+    public boolean isOptional()
+    {
+        return Boolean.parseBoolean( optional );
+    }
+
+    /**
+     * True for import-scoped, pom-typed managed dependencies.
+     */
+    public boolean isBom()
+    {
+        return "pom".equals( type ) && "import".equals( scope );
+    }
+
+    public List<PomRef> getExclusions()
+    {
+        return exclusions;
+    }
+
+    /**
+     * The id of the profile this dependency was declared in, or null if it's part of the main POM body.
+     */
+    public String getProfileId()
+    {
+        return profileId;
+    }
+
+    public OriginInfo getOriginInfo()
+    {
+        return originInfo;
+    }
+
+    public ProjectVersionRef asProjectVersionRef()
+        throws GalleyMavenException
+    {
+        try
+        {
+            return new SimpleProjectVersionRef( groupId, artifactId, version );
+        }
+        catch ( final IllegalArgumentException | InvalidVersionSpecificationException e )
+        {
+            throw new GalleyMavenException( "Cannot render ProjectVersionRef: {}:{}:{}. Reason: {}", e, groupId,
+                                            artifactId, version, e.getMessage() );
+        }
+    }
+
+    public ArtifactRef asArtifactRef()
+        throws GalleyMavenException
+    {
+        try
+        {
+            return new SimpleArtifactRef( asProjectVersionRef(), getType(), classifier );
+        }
+        catch ( final IllegalArgumentException | InvalidVersionSpecificationException e )
+        {
+            throw new GalleyMavenException( "Cannot render SimpleArtifactRef: {}:{}:{}:{}{}. Reason: {}", e, groupId,
+                                            artifactId, version, type,
+                                            ( classifier == null ? "" : ":" + classifier ), e.getMessage() );
+        }
+    }
+
+    /**
+     * groupId:artifactId:type:classifier, with the type defaulted to jar. Two declarations with the same key are
+     * the same dependency as far as overriding and dependency management are concerned.
+     */
+    public String getManagementKey()
+    {
+        return groupId + ':' + artifactId + ':' + getType() + ':' + ( classifier == null ? "" : classifier );
+    }
+
+    PomDependency withProfileId( final String profileId )
+    {
+        return new PomDependency( groupId, artifactId, version, type, classifier, scope, optional, exclusions,
+                                  profileId, originInfo );
+    }
+
+    PomDependency resolve( final PomModelView view, final OriginInfo originInfo )
+    {
+        List<PomRef> resolvedExclusions = null;
+        if ( !exclusions.isEmpty() )
+        {
+            resolvedExclusions = new ArrayList<>( exclusions.size() );
+            for ( final PomRef exclusion : exclusions )
+            {
+                resolvedExclusions.add( exclusion.resolve( view, profileId, new OriginInfo( originInfo ) ) );
+            }
+        }
+
+        return new PomDependency( view.resolveExpressions( groupId, profileId ),
+                                  view.resolveExpressions( artifactId, profileId ),
+                                  view.resolveExpressions( version, profileId ),
+                                  view.resolveExpressions( type, profileId ),
+                                  view.resolveExpressions( classifier, profileId ),
+                                  view.resolveExpressions( scope, profileId ),
+                                  view.resolveExpressions( optional, profileId ), resolvedExclusions, profileId,
+                                  originInfo );
+    }
+
+    PomDependency withManagement( final PomDependency managed )
+    {
+        if ( managed == null || ( version != null && scope != null && !exclusions.isEmpty() ) )
+        {
+            return this;
+        }
+
+        return new PomDependency( groupId, artifactId, version == null ? managed.version : version, type, classifier,
+                                  scope == null ? managed.scope : scope, optional,
+                                  exclusions.isEmpty() ? managed.exclusions : exclusions, profileId, originInfo );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "PomDependency [%s:%s:%s:%s%s]%s", groupId, artifactId, version, getType(),
+                              classifier == null ? "" : ":" + classifier,
+                              profileId == null ? "" : " (profile: " + profileId + ")" );
+    }
+
+}
@@ -0,0 +1,439 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.model.pom;
+
+import org.commonjava.atlas.maven.ident.ref.ProjectVersionRef;
+import org.commonjava.atlas.maven.ident.ref.SimpleProjectVersionRef;
+import org.commonjava.maven.galley.maven.parse.GalleyMavenXMLException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+
+/**
+ * Compact, immutable model of a single POM document, built in one streaming pass by
+ * {@link org.commonjava.maven.galley.maven.parse.PomModelReader}. Holds only what relationship discovery needs:
+ * coordinates, parent, modules, properties, dependencies, dependency management, plugins, extensions and
+ * repositories. Profile content is folded into the same lists in document order, tagged with its profile id, and
+ * profile properties are indexed by profile id.
+ * <br/>
+ * Values are raw, exactly as declared. Inheritance, mix-ins and expression resolution are the job of
+ * {@link PomModelView}.
+ */
+public final class PomModel
+{
+
+    private final String source;
+
+    private final String groupId;
+
+    private final String artifactId;
+
+    private final String version;
+
+    private final String packaging;
+
+    private final PomRef parent;
+
+    private final String parentRelativePath;
+
+    private final List<String> modules;
+
+    private final Map<String, String> properties;
+
+    private final List<String> profileIds;
+
+    private final Map<String, Map<String, String>> profileProperties;
+
+    private final List<PomDependency> dependencies;
+
+    private final List<PomDependency> managedDependencies;
+
+    private final List<PomPlugin> buildPlugins;
+
+    private final List<PomPlugin> managedPlugins;
+
+    private final List<PomPlugin> reportPlugins;
+
+    private final List<PomRef> extensions;
+
+    private final List<PomRepository> repositories;
+
+    private final List<PomRepository> pluginRepositories;
+
+    private PomModel( final Builder builder )
+    {
+        this.source = builder.source;
+        this.groupId = builder.groupId;
+        this.artifactId = builder.artifactId;
+        this.version = builder.version;
+        this.packaging = builder.packaging;
+        this.parent = builder.parent;
+        this.parentRelativePath = builder.parentRelativePath;
+        this.modules = freeze( builder.modules );
+        this.properties = freeze( builder.properties );
+        this.profileIds = freeze( builder.profileIds );
+
+        final Map<String, Map<String, String>> pp = new HashMap<>( builder.profileProperties.size() );
+        builder.profileProperties.forEach( ( id, props ) -> pp.put( id, freeze( props ) ) );
+        this.profileProperties = freeze( pp );
+
+        this.dependencies = freeze( builder.dependencies );
+        this.managedDependencies = freeze( builder.managedDependencies );
+        this.buildPlugins = freeze( builder.buildPlugins );
+        this.managedPlugins = freeze( builder.managedPlugins );
+        this.reportPlugins = freeze( builder.reportPlugins );
+        this.extensions = freeze( builder.extensions );
+        this.repositories = freeze( builder.repositories );
+        this.pluginRepositories = freeze( builder.pluginRepositories );
+    }
+
+    private static <T> List<T> freeze( final List<T> list )
+    {
+        return list.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList( new ArrayList<>( list ) );
+    }
+
+    private static <V> Map<String, V> freeze( final Map<String, V> map )
+    {
+        return map.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap( new HashMap<>( map ) );
+    }
+
+    /**
+     * Where this POM was read from, for logging.
+     */
+    public String getSource()
+    {
+        return source;
+    }
+
+    public String getGroupId()
+    {
+        return groupId;
+    }
+
+    public String getArtifactId()
+    {
+        return artifactId;
+    }
+
+    public String getVersion()
+    {
+        return version;
+    }
+
+    public String getPackaging()
+    {
+        return packaging;
+    }
+
+    public PomRef getParent()
+    {
+        return parent;
+    }
+
+    public String getParentRelativePath()
+    {
+        return parentRelativePath;
+    }
+
+    public List<String> getModules()
+    {
+        return modules;
+    }
+
+    /**
+     * Raw values of <code>/project/properties/*</code>, keyed by name.
+     */
+    public Map<String, String> getProperties()
+    {
+        return properties;
+    }
+
+    public List<String> getProfileIds()
+    {
+        return profileIds;
+    }
+
+    /**
+     * Raw values of the given profile's properties, keyed by name. Empty if there is no such profile.
+     */
+    public Map<String, String> getProfileProperties( final String profileId )
+    {
+        final Map<String, String> props = profileProperties.get( profileId );
+        return props == null ? Collections.emptyMap() : props;
+    }
+
+    /**
+     * Non-managed dependencies from the main body and every profile, in document order.
+     */
+    public List<PomDependency> getDependencies()
+    {
+        return dependencies;
+    }
+
+    /**
+     * Managed dependencies (including BOM imports) from the main body and every profile, in document order.
+     */
+    public List<PomDependency> getManagedDependencies()
+    {
+        return managedDependencies;
+    }
+
+    public List<PomPlugin> getBuildPlugins()
+    {
+        return buildPlugins;
+    }
+
+    public List<PomPlugin> getManagedPlugins()
+    {
+        return managedPlugins;
+    }
+
+    /**
+     * Plugins from <code>reporting/plugins</code>.
+     */
+    public List<PomPlugin> getReportPlugins()
+    {
+        return reportPlugins;
+    }
+
+    public List<PomRef> getExtensions()
+    {
+        return extensions;
+    }
+
+    public List<PomRepository> getRepositories()
+    {
+        return repositories;
+    }
+
+    public List<PomRepository> getPluginRepositories()
+    {
+        return pluginRepositories;
+    }
+
+    /**
+     * The declared parent as a {@link ProjectVersionRef}, or null if there is no parent declaration. Expressions
+     * are not resolved, matching {@link org.commonjava.maven.galley.maven.parse.XMLInfrastructure#getParentRef}.
+     */
+    public ProjectVersionRef getParentRef()
+        throws GalleyMavenXMLException
+    {
+        if ( parent == null )
+        {
+            return null;
+        }
+
+        final String gid = parent.getGroupId();
+        final String aid = parent.getArtifactId();
+        final String ver = parent.getVersion();
+        if ( isEmpty( gid ) || isEmpty( aid ) || isEmpty( ver ) )
+        {
+            throw new GalleyMavenXMLException( "Project parent is present but invalid! (g=%s,  a=%s, v=%s)", gid, aid,
+                                               ver );
+        }
+
+        return new SimpleProjectVersionRef( gid, aid, ver );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "PomModel [%s:%s:%s] (from: %s)", groupId, artifactId, version, source );
+    }
+
+    /**
+     * Accumulates one document's content while it's being read. Content for a profile goes into its own builder,
+     * which is then folded in with {@link #addProfile(String, Builder)} once the profile's id is known.
+     */
+    public static final class Builder
+    {
+        private final String source;
+
+        private String groupId;
+
+        private String artifactId;
+
+        private String version;
+
+        private String packaging;
+
+        private PomRef parent;
+
+        private String parentRelativePath;
+
+        private final List<String> modules = new ArrayList<>();
+
+        private final Map<String, String> properties = new LinkedHashMap<>();
+
+        private final List<String> profileIds = new ArrayList<>();
+
+        private final Map<String, Map<String, String>> profileProperties = new HashMap<>();
+
+        private final List<PomDependency> dependencies = new ArrayList<>();
+
+        private final List<PomDependency> managedDependencies = new ArrayList<>();
+
+        private final List<PomPlugin> buildPlugins = new ArrayList<>();
+
+        private final List<PomPlugin> managedPlugins = new ArrayList<>();
+
+        private final List<PomPlugin> reportPlugins = new ArrayList<>();
+
+        private final List<PomRef> extensions = new ArrayList<>();
+
+        private final List<PomRepository> repositories = new ArrayList<>();
+
+        private final List<PomRepository> pluginRepositories = new ArrayList<>();
+
+        public Builder( final String source )
+        {
+            this.source = source;
+        }
+
+        public Builder withGroupId( final String groupId )
+        {
+            this.groupId = groupId;
+            return this;
+        }
+
+        public Builder withArtifactId( final String artifactId )
+        {
+            this.artifactId = artifactId;
+            return this;
+        }
+
+        public Builder withVersion( final String version )
+        {
+            this.version = version;
+            return this;
+        }
+
+        public Builder withPackaging( final String packaging )
+        {
+            this.packaging = packaging;
+            return this;
+        }
+
+        public Builder withParent( final PomRef parent, final String relativePath )
+        {
+            this.parent = parent;
+            this.parentRelativePath = relativePath;
+            return this;
+        }
+
+        public Builder withModule( final String module )
+        {
+            modules.add( module );
+            return this;
+        }
+
+        /**
+         * The first declaration of a property wins, as it does when the DOM views look properties up.
+         */
+        public Builder withProperty( final String name, final String value )
+        {
+            properties.putIfAbsent( name, value );
+            return this;
+        }
+
+        public Builder withDependency( final PomDependency dependency )
+        {
+            dependencies.add( dependency );
+            return this;
+        }
+
+        public Builder withManagedDependency( final PomDependency dependency )
+        {
+            managedDependencies.add( dependency );
+            return this;
+        }
+
+        public Builder withBuildPlugin( final PomPlugin plugin )
+        {
+            buildPlugins.add( plugin );
+            return this;
+        }
+
+        public Builder withManagedPlugin( final PomPlugin plugin )
+        {
+            managedPlugins.add( plugin );
+            return this;
+        }
+
+        public Builder withReportPlugin( final PomPlugin plugin )
+        {
+            reportPlugins.add( plugin );
+            return this;
+        }
+
+        public Builder withExtension( final PomRef extension )
+        {
+            extensions.add( extension );
+            return this;
+        }
+
+        public Builder withRepository( final PomRepository repository )
+        {
+            repositories.add( repository );
+            return this;
+        }
+
+        public Builder withPluginRepository( final PomRepository repository )
+        {
+            pluginRepositories.add( repository );
+            return this;
+        }
+
+        /**
+         * Fold the content of a profile into this builder, tagging each element with the profile's id (which may be
+         * null if the profile doesn't declare one).
+         */
+        public Builder addProfile( final String id, final Builder profile )
+        {
+            // a profile without an id can't be activated by id, so its properties are never looked up.
+            if ( id != null )
+            {
+                profileIds.add( id );
+
+                final Map<String, String> props = profileProperties.computeIfAbsent( id, k -> new LinkedHashMap<>() );
+                profile.properties.forEach( props::putIfAbsent );
+            }
+
+            profile.dependencies.forEach( d -> dependencies.add( d.withProfileId( id ) ) );
+            profile.managedDependencies.forEach( d -> managedDependencies.add( d.withProfileId( id ) ) );
+            profile.buildPlugins.forEach( p -> buildPlugins.add( p.withProfileId( id ) ) );
+            profile.managedPlugins.forEach( p -> managedPlugins.add( p.withProfileId( id ) ) );
+            profile.reportPlugins.forEach( p -> reportPlugins.add( p.withProfileId( id ) ) );
+            extensions.addAll( profile.extensions );
+            profile.repositories.forEach( r -> repositories.add( r.withProfileId( id ) ) );
+            profile.pluginRepositories.forEach( r -> pluginRepositories.add( r.withProfileId( id ) ) );
+
+            return this;
+        }
+
+        public PomModel build()
+        {
+            return new PomModel( this );
+        }
+    }
+
+}
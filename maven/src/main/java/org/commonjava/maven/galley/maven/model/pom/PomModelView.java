@@ -0,0 +1,700 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.model.pom;
+
+import org.commonjava.atlas.maven.ident.ref.ProjectRef;
+import org.commonjava.atlas.maven.ident.ref.ProjectVersionRef;
+import org.commonjava.maven.galley.maven.GalleyMavenException;
+import org.commonjava.maven.galley.maven.model.view.OriginInfo;
+import org.commonjava.maven.galley.maven.spi.defaults.MavenPluginDefaults;
+import org.commonjava.maven.galley.maven.spi.defaults.MavenPluginImplications;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.commonjava.maven.galley.maven.model.view.MavenPomView.ALL_PROFILES;
+
+/**
+ * {@link org.commonjava.maven.galley.maven.model.view.MavenPomView} counterpart that answers the queries needed for
+ * relationship discovery from a stack of {@link PomModel}s instead of DOM documents, without XPath. Properties,
+ * profile properties, dependency management and plugin management are hash indexes, so each query is a single pass
+ * over the relevant model lists.
+ * <br/>
+ * The results follow the same rules as the DOM view: elements from ancestors are marked inherited and elements from
+ * mix-ins (imported BOMs) are marked as such; profile content is included whether or not the profile is active, and
+ * expressions in an element are resolved against the POM plus the element's own profile. Mix-ins contribute to
+ * dependency management and BOMs only, as
+ * {@link org.commonjava.maven.galley.maven.model.view.MavenXmlMixin#DEPENDENCY_MIXIN} does.
+ *
+ * @see org.commonjava.maven.galley.maven.parse.MavenPomReader#readModel
+ */
+public class PomModelView
+{
+
+    private static final String[] NO_PROFILES = {};
+
+    private final ProjectVersionRef ref;
+
+    private final List<PomModel> stack;
+
+    private final MavenPluginDefaults pluginDefaults;
+
+    private final MavenPluginImplications pluginImplications;
+
+    private final Set<String> activeProfileIds;
+
+    private final List<PomModelView> mixins = new CopyOnWriteArrayList<>();
+
+    private final Map<String, String> properties;
+
+    private final Map<String, String> resolvedValues = new ConcurrentHashMap<>();
+
+    private volatile Map<String, PomDependency> managedDependencyIndex;
+
+    private volatile Map<String, PomPlugin> managedPluginIndex;
+
+    /**
+     * @param ref The GAV represented by this view
+     * @param stack The models that make up the inheritance hierarchy, starting with the POM itself
+     * @param pluginDefaults Provides versions and groupId's when a plugin declaration doesn't specify one
+     * @param pluginImplications Provides extra dependencies expected when a given plugin is encountered
+     * @param activeProfileIds Profiles to consider active for {@link #getActiveRepositories()}
+     */
+    public PomModelView( final ProjectVersionRef ref, final List<PomModel> stack,
+                         final MavenPluginDefaults pluginDefaults, final MavenPluginImplications pluginImplications,
+                         final String... activeProfileIds )
+    {
+        if ( stack.isEmpty() )
+        {
+            throw new IllegalArgumentException( "Cannot create a POM view with no POMs!" );
+        }
+
+        this.ref = ref;
+        this.stack = Collections.unmodifiableList( new ArrayList<>( stack ) );
+        this.pluginDefaults = pluginDefaults;
+        this.pluginImplications = pluginImplications;
+        this.activeProfileIds = new HashSet<>( Arrays.asList( activeProfileIds ) );
+
+        final Map<String, String> props = new HashMap<>();
+        for ( final PomModel model : stack )
+        {
+            model.getProperties().forEach( props::putIfAbsent );
+        }
+
+        this.properties = props;
+    }
+
+    public ProjectVersionRef asProjectVersionRef()
+    {
+        return ref;
+    }
+
+    public ProjectVersionRef getRef()
+    {
+        return ref;
+    }
+
+    public List<PomModel> getModelStack()
+    {
+        return stack;
+    }
+
+    public Set<String> getActiveProfileIds()
+    {
+        return activeProfileIds.contains( ALL_PROFILES ) ? getProfileIds() : activeProfileIds;
+    }
+
+    /**
+     * Retrieve id's for all available profiles in the inheritance hierarchy.
+     */
+    public Set<String> getProfileIds()
+    {
+        final Set<String> ids = new LinkedHashSet<>();
+        for ( final PomModel model : stack )
+        {
+            ids.addAll( model.getProfileIds() );
+        }
+
+        return ids;
+    }
+
+    public List<PomModelView> getMixins()
+    {
+        return Collections.unmodifiableList( mixins );
+    }
+
+    /**
+     * Append the given view (normally an imported BOM) for consideration in dependency management.
+     */
+    public void addMixin( final PomModelView mixin )
+    {
+        mixins.add( mixin );
+        managedDependencyIndex = null;
+    }
+
+    public void removeMixin( final PomModelView mixin )
+    {
+        mixins.remove( mixin );
+        managedDependencyIndex = null;
+    }
+
+    /**
+     * Substitute any <code>${...}</code> expressions in the given value, first from the model itself (eg.
+     * <code>project.version</code>), then from the given profiles' properties, then from the properties of the POM
+     * and its ancestry. Expressions that can't be resolved, or that refer back to themselves, are left as-is.
+     */
+    public String resolveExpressions( final String value, final String... profileIds )
+    {
+        if ( value == null || !value.contains( "${" ) )
+        {
+            return value;
+        }
+
+        final String[] profiles = profileIds == null ? NO_PROFILES : profileIds;
+        final String key = profiles.length == 0 ? value : value + '\u0000' + String.join( "\u0000",
+                                                                                          Arrays.asList( profiles ) );
+        String resolved = resolvedValues.get( key );
+        if ( resolved == null )
+        {
+            resolved = interpolate( value, profiles, new HashSet<>() );
+            resolvedValues.put( key, resolved );
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Resolve a single expression (without the <code>${}</code>), or return null if nothing defines it.
+     */
+    public String resolveMavenExpression( final String expression, final String... profileIds )
+    {
+        final Set<String> resolving = new HashSet<>();
+        resolving.add( expression );
+        return lookup( expression, profileIds == null ? NO_PROFILES : profileIds, resolving );
+    }
+
+    private String interpolate( final String value, final String[] profileIds, final Set<String> resolving )
+    {
+        int start = value.indexOf( "${" );
+        if ( start < 0 )
+        {
+            return value;
+        }
+
+        final StringBuilder sb = new StringBuilder( value.length() );
+        int pos = 0;
+        while ( start > -1 )
+        {
+            final int end = value.indexOf( '}', start + 2 );
+            if ( end < 0 )
+            {
+                break;
+            }
+
+            final String expression = value.substring( start + 2, end );
+            String resolved = null;
+            if ( resolving.add( expression ) )
+            {
+                resolved = lookup( expression, profileIds, resolving );
+                resolving.remove( expression );
+            }
+
+            sb.append( value, pos, start ).append( resolved == null ? value.substring( start, end + 1 ) : resolved );
+            pos = end + 1;
+            start = value.indexOf( "${", pos );
+        }
+
+        return sb.append( value, pos, value.length() ).toString();
+    }
+
+    private String lookup( final String expression, final String[] profileIds, final Set<String> resolving )
+    {
+        String raw = modelValue( expression );
+        for ( int i = 0; raw == null && i < profileIds.length; i++ )
+        {
+            if ( profileIds[i] == null )
+            {
+                continue;
+            }
+
+            for ( final PomModel model : stack )
+            {
+                raw = model.getProfileProperties( profileIds[i] ).get( expression );
+                if ( raw != null )
+                {
+                    break;
+                }
+            }
+        }
+
+        if ( raw == null )
+        {
+            raw = properties.get( expression );
+        }
+
+        return raw == null ? null : interpolate( raw, profileIds, resolving );
+    }
+
+    /**
+     * The model paths the DOM view can answer through XPath that matter in practice: coordinates, packaging and
+     * the parent. As there, a bare <code>version</code> means <code>project.version</code>.
+     */
+    private String modelValue( final String expression )
+    {
+        String path = expression;
+        if ( path.startsWith( "project." ) )
+        {
+            path = path.substring( "project.".length() );
+        }
+        else if ( path.startsWith( "pom." ) )
+        {
+            path = path.substring( "pom.".length() );
+        }
+
+        final PomModel local = stack.get( 0 );
+        switch ( path )
+        {
+            case "groupId":
+                for ( final PomModel model : stack )
+                {
+                    if ( model.getGroupId() != null )
+                    {
+                        return model.getGroupId();
+                    }
+                }
+                return null;
+            case "artifactId":
+                return local.getArtifactId();
+            case "version":
+                for ( final PomModel model : stack )
+                {
+                    if ( model.getVersion() != null )
+                    {
+                        return model.getVersion();
+                    }
+                }
+                return null;
+            case "packaging":
+                for ( final PomModel model : stack )
+                {
+                    if ( model.getPackaging() != null )
+                    {
+                        return model.getPackaging();
+                    }
+                }
+                return null;
+            case "parent.groupId":
+                return local.getParent() == null ? null : local.getParent().getGroupId();
+            case "parent.artifactId":
+                return local.getParent() == null ? null : local.getParent().getArtifactId();
+            case "parent.version":
+                return local.getParent() == null ? null : local.getParent().getVersion();
+            case "parent.relativePath":
+                return local.getParentRelativePath();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The parent declaration of the POM itself (never inherited), or null if there isn't one.
+     */
+    public PomRef getParent()
+    {
+        final PomRef parent = stack.get( 0 ).getParent();
+        return parent == null ? null : parent.resolve( this, null, new OriginInfo() );
+    }
+
+    /**
+     * Non-managed dependencies in the main POM body or any profile, across the ancestry. A dependency declared
+     * again further up the ancestry is reported once, from the closest declaration. Missing versions, scopes and
+     * exclusions are filled in from dependency management.
+     */
+    public List<PomDependency> getAllDirectDependencies()
+    {
+        final Map<String, PomDependency> managed = getManagedDependencyIndex();
+        final Map<String, PomDependency> result = new LinkedHashMap<>();
+        for ( int depth = 0; depth < stack.size(); depth++ )
+        {
+            for ( final PomDependency dep : stack.get( depth ).getDependencies() )
+            {
+                final PomDependency resolved = dep.resolve( this, new OriginInfo( depth != 0 ) );
+                final String key = resolved.getManagementKey();
+                if ( !result.containsKey( key ) )
+                {
+                    result.put( key, resolved.withManagement( managed.get( key ) ) );
+                }
+            }
+        }
+
+        return new ArrayList<>( result.values() );
+    }
+
+    /**
+     * Managed dependencies from the ancestry and mix-ins, excluding BOM imports. Overlapping declarations are
+     * reported once, from the first one found.
+     */
+    public List<PomDependency> getAllManagedDependencies()
+    {
+        return new ArrayList<>( getManagedDependencyIndex().values() );
+    }
+
+    /**
+     * Managed dependencies from the ancestry and mix-ins, excluding BOM imports, including overlapping
+     * declarations.
+     */
+    public List<PomDependency> getAllManagedDependenciesUnfiltered()
+    {
+        final List<PomDependency> result = new ArrayList<>();
+        for ( int depth = 0; depth < stack.size(); depth++ )
+        {
+            for ( final PomDependency dep : stack.get( depth ).getManagedDependencies() )
+            {
+                if ( !"import".equals( dep.getRawScope() ) )
+                {
+                    result.add( dep.resolve( this, new OriginInfo( depth != 0 ) ) );
+                }
+            }
+        }
+
+        for ( final PomModelView mixin : mixins )
+        {
+            for ( final PomDependency dep : mixin.getAllManagedDependenciesUnfiltered() )
+            {
+                dep.getOriginInfo().setMixin( true );
+                result.add( dep );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Import-scoped, pom-typed managed dependencies from the ancestry and any mix-ins, in order.
+     */
+    public List<PomDependency> getAllBOMs()
+    {
+        final List<PomDependency> result = new ArrayList<>();
+        for ( int depth = 0; depth < stack.size(); depth++ )
+        {
+            for ( final PomDependency dep : stack.get( depth ).getManagedDependencies() )
+            {
+                if ( dep.isBom() )
+                {
+                    result.add( dep.resolve( this, new OriginInfo( depth != 0 ) ) );
+                }
+            }
+        }
+
+        for ( final PomModelView mixin : mixins )
+        {
+            for ( final PomDependency dep : mixin.getAllBOMs() )
+            {
+                dep.getOriginInfo().setMixin( true );
+                result.add( dep );
+            }
+        }
+
+        return result;
+    }
+
+    private Map<String, PomDependency> getManagedDependencyIndex()
+    {
+        Map<String, PomDependency> index = managedDependencyIndex;
+        if ( index == null )
+        {
+            index = new LinkedHashMap<>();
+            for ( final PomDependency dep : getAllManagedDependenciesUnfiltered() )
+            {
+                index.putIfAbsent( dep.getManagementKey(), dep );
+            }
+
+            index = Collections.unmodifiableMap( index );
+            managedDependencyIndex = index;
+        }
+
+        return index;
+    }
+
+    /**
+     * Non-managed build plugins in the main POM body or any profile, across the ancestry.
+     */
+    public List<PomPlugin> getAllBuildPlugins()
+    {
+        final List<PomPlugin> result = new ArrayList<>();
+        for ( int depth = 0; depth < stack.size(); depth++ )
+        {
+            for ( final PomPlugin plugin : stack.get( depth ).getBuildPlugins() )
+            {
+                result.add( complete( plugin, new OriginInfo( depth != 0 ) ) );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Plugins from <code>build/pluginManagement</code> in the main POM body or any profile, across the ancestry.
+     */
+    public List<PomPlugin> getAllManagedBuildPlugins()
+    {
+        final List<PomPlugin> result = new ArrayList<>();
+        for ( int depth = 0; depth < stack.size(); depth++ )
+        {
+            for ( final PomPlugin plugin : stack.get( depth ).getManagedPlugins() )
+            {
+                result.add( complete( plugin, new OriginInfo( depth != 0 ) ) );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Plugins from <code>reporting/plugins</code> in the main POM body or any profile, across the ancestry.
+     */
+    public List<PomPlugin> getAllReportPlugins()
+    {
+        final List<PomPlugin> result = new ArrayList<>();
+        for ( int depth = 0; depth < stack.size(); depth++ )
+        {
+            for ( final PomPlugin plugin : stack.get( depth ).getReportPlugins() )
+            {
+                result.add( complete( plugin, new OriginInfo( depth != 0 ) ) );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * <code>reportPlugin</code> entries configured on any declaration of maven-site-plugin.
+     */
+    public List<PomPlugin> getAllSiteReportPlugins()
+    {
+        final List<PomPlugin> result = new ArrayList<>();
+        for ( int depth = 0; depth < stack.size(); depth++ )
+        {
+            final PomModel model = stack.get( depth );
+            addSiteReportPlugins( model.getBuildPlugins(), depth, result );
+            addSiteReportPlugins( model.getManagedPlugins(), depth, result );
+            addSiteReportPlugins( model.getReportPlugins(), depth, result );
+        }
+
+        return result;
+    }
+
+    private void addSiteReportPlugins( final List<PomPlugin> plugins, final int depth, final List<PomPlugin> result )
+    {
+        for ( final PomPlugin plugin : plugins )
+        {
+            if ( "maven-site-plugin".equals( plugin.getArtifactId() ) )
+            {
+                for ( final PomPlugin report : plugin.getReportPlugins() )
+                {
+                    result.add( complete( report, new OriginInfo( depth != 0 ) ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Dependencies the given (resolved) plugin is known to pull in without declaring them, from
+     * {@link MavenPluginImplications#getImpliedPluginDependencyRefs(ProjectRef)}. They take the plugin's version.
+     */
+    public List<PomDependency> getImpliedPluginDependencies( final PomPlugin plugin )
+        throws GalleyMavenException
+    {
+        final Set<ProjectRef> implied = pluginImplications.getImpliedPluginDependencyRefs( plugin.asProjectRef() );
+        if ( implied == null || implied.isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<PomDependency> result = new ArrayList<>( implied.size() );
+        for ( final ProjectRef ref : implied )
+        {
+            result.add( new PomDependency( ref.getGroupId(), ref.getArtifactId(), plugin.getVersion(), null, null,
+                                           null, null, null, plugin.getProfileId() ) );
+        }
+
+        return result;
+    }
+
+    /**
+     * Resolve a plugin declaration and fill in its groupId, version and dependencies from plugin management and
+     * the plugin defaults, as {@link org.commonjava.maven.galley.maven.model.view.PluginView} does.
+     */
+    private PomPlugin complete( final PomPlugin raw, final OriginInfo originInfo )
+    {
+        final PomPlugin plugin = raw.resolve( this, originInfo );
+        final String groupId = plugin.getGroupId() == null ?
+                pluginDefaults.getDefaultGroupId( plugin.getArtifactId() ) :
+                plugin.getGroupId();
+
+        final PomPlugin managed = getManagedPluginIndex().get( groupId + ':' + plugin.getArtifactId() );
+
+        String version = plugin.getVersion();
+        if ( version == null && managed != null )
+        {
+            version = managed.getVersion();
+        }
+
+        if ( version == null )
+        {
+            version = pluginDefaults.getDefaultVersion( groupId, plugin.getArtifactId() );
+        }
+
+        final Map<String, PomDependency> depManagement = getManagedDependencyIndex();
+        final List<PomDependency> deps;
+        if ( !raw.getDependencies().isEmpty() )
+        {
+            deps = new ArrayList<>( raw.getDependencies().size() );
+            for ( final PomDependency dep : raw.getDependencies() )
+            {
+                final PomDependency resolved = dep.resolve( this, new OriginInfo( originInfo ) );
+                deps.add( resolved.withManagement( depManagement.get( resolved.getManagementKey() ) ) );
+            }
+        }
+        else if ( managed != null )
+        {
+            deps = new ArrayList<>( managed.getDependencies().size() );
+            for ( final PomDependency dep : managed.getDependencies() )
+            {
+                final PomDependency resolved = dep.resolve( this, new OriginInfo( managed.getOriginInfo() ) );
+                deps.add( resolved.withManagement( depManagement.get( resolved.getManagementKey() ) ) );
+            }
+        }
+        else
+        {
+            deps = Collections.emptyList();
+        }
+
+        return plugin.with( groupId, version, deps );
+    }
+
+    /**
+     * Managed plugins keyed by groupId:artifactId (with the default groupId filled in), first declaration wins.
+     * Their dependencies are left raw; {@link #complete(PomPlugin, OriginInfo)} resolves whichever it uses.
+     */
+    private Map<String, PomPlugin> getManagedPluginIndex()
+    {
+        Map<String, PomPlugin> index = managedPluginIndex;
+        if ( index == null )
+        {
+            index = new HashMap<>();
+            for ( int depth = 0; depth < stack.size(); depth++ )
+            {
+                for ( final PomPlugin raw : stack.get( depth ).getManagedPlugins() )
+                {
+                    final PomPlugin plugin = raw.resolve( this, new OriginInfo( depth != 0 ) );
+                    final String groupId = plugin.getGroupId() == null ?
+                            pluginDefaults.getDefaultGroupId( plugin.getArtifactId() ) :
+                            plugin.getGroupId();
+
+                    index.putIfAbsent( groupId + ':' + plugin.getArtifactId(), plugin );
+                }
+            }
+
+            index = Collections.unmodifiableMap( index );
+            managedPluginIndex = index;
+        }
+
+        return index;
+    }
+
+    /**
+     * Build extensions across the ancestry.
+     */
+    public List<PomRef> getBuildExtensions()
+    {
+        final List<PomRef> result = new ArrayList<>();
+        for ( int depth = 0; depth < stack.size(); depth++ )
+        {
+            for ( final PomRef ext : stack.get( depth ).getExtensions() )
+            {
+                result.add( ext.resolve( this, null, new OriginInfo( depth != 0 ) ) );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * All declared repositories, including those in profiles, across the ancestry.
+     */
+    public List<PomRepository> getAllRepositories()
+    {
+        return resolveRepositories( false, false );
+    }
+
+    /**
+     * Repositories from the active profiles, as
+     * {@link org.commonjava.maven.galley.maven.model.view.MavenPomView#getActiveRepositories()} selects them.
+     */
+    public List<PomRepository> getActiveRepositories()
+    {
+        return resolveRepositories( false, true );
+    }
+
+    public List<PomRepository> getAllPluginRepositories()
+    {
+        return resolveRepositories( true, false );
+    }
+
+    public List<PomRepository> getActivePluginRepositories()
+    {
+        return resolveRepositories( true, true );
+    }
+
+    private List<PomRepository> resolveRepositories( final boolean pluginRepositories, final boolean activeOnly )
+    {
+        final List<PomRepository> result = new ArrayList<>();
+        for ( int depth = 0; depth < stack.size(); depth++ )
+        {
+            final PomModel model = stack.get( depth );
+            for ( final PomRepository repo : pluginRepositories ?
+                    model.getPluginRepositories() :
+                    model.getRepositories() )
+            {
+                if ( !activeOnly || activeProfileIds.contains( ALL_PROFILES ) || activeProfileIds.contains(
+                        repo.getProfileId() ) )
+                {
+                    result.add( repo.resolve( this, new OriginInfo( depth != 0 ) ) );
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "PomModelView [%s] (%d models, %d mix-ins)", ref, stack.size(), mixins.size() );
+    }
+
+}
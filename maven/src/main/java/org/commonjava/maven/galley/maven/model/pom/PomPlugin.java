@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.model.pom;
+
+import org.commonjava.atlas.maven.ident.ref.ProjectRef;
+import org.commonjava.atlas.maven.ident.ref.ProjectVersionRef;
+import org.commonjava.atlas.maven.ident.ref.SimpleProjectRef;
+import org.commonjava.atlas.maven.ident.ref.SimpleProjectVersionRef;
+import org.commonjava.atlas.maven.ident.version.InvalidVersionSpecificationException;
+import org.commonjava.maven.galley.maven.GalleyMavenException;
+import org.commonjava.maven.galley.maven.model.view.OriginInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One <code>plugin</code> (or site-plugin <code>reportPlugin</code>) declaration read by
+ * {@link org.commonjava.maven.galley.maven.parse.PomModelReader}. Instances returned from {@link PomModelView}
+ * queries have their expressions resolved, and groupId, version and dependencies filled in from plugin management
+ * and {@link org.commonjava.maven.galley.maven.spi.defaults.MavenPluginDefaults} the same way
+ * {@link org.commonjava.maven.galley.maven.model.view.PluginView} does.
+ */
+public final class PomPlugin
+{
+
+    private final String groupId;
+
+    private final String artifactId;
+
+    private final String version;
+
+    private final List<PomDependency> dependencies;
+
+    private final List<PomPlugin> reportPlugins;
+
+    private final String profileId;
+
+    private final OriginInfo originInfo;
+
+    public PomPlugin( final String groupId, final String artifactId, final String version,
+                      final List<PomDependency> dependencies, final List<PomPlugin> reportPlugins,
+                      final String profileId )
+    {
+        this( groupId, artifactId, version, dependencies, reportPlugins, profileId, new OriginInfo() );
+    }
+
+    PomPlugin( final String groupId, final String artifactId, final String version,
+               final List<PomDependency> dependencies, final List<PomPlugin> reportPlugins, final String profileId,
+               final OriginInfo originInfo )
+    {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.dependencies =
+                dependencies == null ? Collections.emptyList() : Collections.unmodifiableList( dependencies );
+        this.reportPlugins =
+                reportPlugins == null ? Collections.emptyList() : Collections.unmodifiableList( reportPlugins );
+        this.profileId = profileId;
+        this.originInfo = originInfo;
+    }
+
+    public String getGroupId()
+    {
+        return groupId;
+    }
+
+    public String getArtifactId()
+    {
+        return artifactId;
+    }
+
+    public String getVersion()
+    {
+        return version;
+    }
+
+    public List<PomDependency> getDependencies()
+    {
+        return dependencies;
+    }
+
+    /**
+     * <code>reportPlugin</code> declarations nested anywhere in this plugin's configuration, as used by
+     * maven-site-plugin.
+     */
+    public List<PomPlugin> getReportPlugins()
+    {
+        return reportPlugins;
+    }
+
+    /**
+     * The id of the profile this plugin was declared in, or null if it's part of the main POM body.
+     */
+    public String getProfileId()
+    {
+        return profileId;
+    }
+
+    public OriginInfo getOriginInfo()
+    {
+        return originInfo;
+    }
+
+    public ProjectRef asProjectRef()
+        throws GalleyMavenException
+    {
+        try
+        {
+            return new SimpleProjectRef( groupId, artifactId );
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            throw new GalleyMavenException( "Cannot render ProjectRef: {}:{}. Reason: {}", e, groupId, artifactId,
+                                            e.getMessage() );
+        }
+    }
+
+    public ProjectVersionRef asProjectVersionRef()
+        throws GalleyMavenException
+    {
+        try
+        {
+            return new SimpleProjectVersionRef( groupId, artifactId, version );
+        }
+        catch ( final IllegalArgumentException | InvalidVersionSpecificationException e )
+        {
+            throw new GalleyMavenException( "Cannot render ProjectVersionRef: {}:{}:{}. Reason: {}", e, groupId,
+                                            artifactId, version, e.getMessage() );
+        }
+    }
+
+    PomPlugin withProfileId( final String profileId )
+    {
+        final List<PomDependency> deps = new ArrayList<>( dependencies.size() );
+        for ( final PomDependency dep : dependencies )
+        {
+            deps.add( dep.withProfileId( profileId ) );
+        }
+
+        final List<PomPlugin> reports = new ArrayList<>( reportPlugins.size() );
+        for ( final PomPlugin report : reportPlugins )
+        {
+            reports.add( report.withProfileId( profileId ) );
+        }
+
+        return new PomPlugin( groupId, artifactId, version, deps, reports, profileId, originInfo );
+    }
+
+    /**
+     * Resolve expressions in the coordinates only; dependencies are resolved on their own once it's known whether
+     * they come from this declaration or from plugin management.
+     */
+    PomPlugin resolve( final PomModelView view, final OriginInfo originInfo )
+    {
+        return new PomPlugin( view.resolveExpressions( groupId, profileId ),
+                              view.resolveExpressions( artifactId, profileId ),
+                              view.resolveExpressions( version, profileId ), dependencies, reportPlugins, profileId,
+                              originInfo );
+    }
+
+    PomPlugin with( final String groupId, final String version, final List<PomDependency> dependencies )
+    {
+        return new PomPlugin( groupId, artifactId, version, dependencies, reportPlugins, profileId, originInfo );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "PomPlugin [%s:%s:%s]%s", groupId, artifactId, version,
+                              profileId == null ? "" : " (profile: " + profileId + ")" );
+    }
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.model.pom;
+
+import org.commonjava.atlas.maven.ident.ref.ProjectRef;
+import org.commonjava.atlas.maven.ident.ref.ProjectVersionRef;
+import org.commonjava.atlas.maven.ident.ref.SimpleProjectRef;
+import org.commonjava.atlas.maven.ident.ref.SimpleProjectVersionRef;
+import org.commonjava.atlas.maven.ident.version.InvalidVersionSpecificationException;
+import org.commonjava.maven.galley.maven.GalleyMavenException;
+import org.commonjava.maven.galley.maven.model.view.OriginInfo;
+
+/**
+ * Plain groupId / artifactId / version triple read by {@link org.commonjava.maven.galley.maven.parse.PomModelReader},
+ * used for the parent declaration, build extensions and dependency exclusions. Values are raw until returned from a
+ * {@link PomModelView} query, which resolves any expressions in them.
+ */
+public final class PomRef
+{
+
+    private final String groupId;
+
+    private final String artifactId;
+
+    private final String version;
+
+    private final OriginInfo originInfo;
+
+    public PomRef( final String groupId, final String artifactId, final String version )
+    {
+        this( groupId, artifactId, version, new OriginInfo() );
+    }
+
+    PomRef( final String groupId, final String artifactId, final String version, final OriginInfo originInfo )
+    {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.originInfo = originInfo;
+    }
+
+    public String getGroupId()
+    {
+        return groupId;
+    }
+
+    public String getArtifactId()
+    {
+        return artifactId;
+    }
+
+    public String getVersion()
+    {
+        return version;
+    }
+
+    public OriginInfo getOriginInfo()
+    {
+        return originInfo;
+    }
+
+    public ProjectRef asProjectRef()
+        throws GalleyMavenException
+    {
+        try
+        {
+            return new SimpleProjectRef( groupId, artifactId );
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            throw new GalleyMavenException( "Cannot render ProjectRef: {}:{}. Reason: {}", e, groupId, artifactId,
+                                            e.getMessage() );
+        }
+    }
+
+    public ProjectVersionRef asProjectVersionRef()
+        throws GalleyMavenException
+    {
+        try
+        {
+            return new SimpleProjectVersionRef( groupId, artifactId, version );
+        }
+        catch ( final IllegalArgumentException | InvalidVersionSpecificationException e )
+        {
+            throw new GalleyMavenException( "Cannot render ProjectVersionRef: {}:{}:{}. Reason: {}", e, groupId,
+                                            artifactId, version, e.getMessage() );
+        }
+    }
+
+    PomRef resolve( final PomModelView view, final String profileId, final OriginInfo originInfo )
+    {
+        return new PomRef( view.resolveExpressions( groupId, profileId ),
+                           view.resolveExpressions( artifactId, profileId ),
+                           view.resolveExpressions( version, profileId ), originInfo );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "PomRef [%s:%s:%s]", groupId, artifactId, version );
+    }
+
+}
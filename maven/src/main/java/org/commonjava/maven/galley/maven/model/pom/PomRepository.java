@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.model.pom;
+
+import org.commonjava.maven.galley.maven.model.view.OriginInfo;
+
+/**
+ * One <code>repository</code> or <code>pluginRepository</code> declaration read by
+ * {@link org.commonjava.maven.galley.maven.parse.PomModelReader}, with the same defaults as
+ * {@link org.commonjava.maven.galley.maven.model.view.RepositoryView}.
+ */
+public final class PomRepository
+{
+
+    private final String id;
+
+    private final String name;
+
+    private final String url;
+
+    private final String releasesEnabled;
+
+    private final String snapshotsEnabled;
+
+    private final String profileId;
+
+    private final OriginInfo originInfo;
+
+    public PomRepository( final String id, final String name, final String url, final String releasesEnabled,
+                          final String snapshotsEnabled, final String profileId )
+    {
+        this( id, name, url, releasesEnabled, snapshotsEnabled, profileId, new OriginInfo() );
+    }
+
+    PomRepository( final String id, final String name, final String url, final String releasesEnabled,
+                   final String snapshotsEnabled, final String profileId, final OriginInfo originInfo )
+    {
+        this.id = id;
+        this.name = name;
+        this.url = url;
+        this.releasesEnabled = releasesEnabled;
+        this.snapshotsEnabled = snapshotsEnabled;
+        this.profileId = profileId;
+        this.originInfo = originInfo;
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public String getName()
+    {
+        return name == null ? id : name;
+    }
+
+    public String getUrl()
+    {
+        return url;
+    }
+
+    public boolean isReleasesEnabled()
+    {
+        return releasesEnabled == null || Boolean.parseBoolean( releasesEnabled );
+    }
+
+    public boolean isSnapshotsEnabled()
+    {
+        return Boolean.parseBoolean( snapshotsEnabled );
+    }
+
+    /**
+     * The id of the profile this repository was declared in, or null if it's part of the main POM body.
+     */
+    public String getProfileId()
+    {
+        return profileId;
+    }
+
+    public OriginInfo getOriginInfo()
+    {
+        return originInfo;
+    }
+
+    PomRepository withProfileId( final String profileId )
+    {
+        return new PomRepository( id, name, url, releasesEnabled, snapshotsEnabled, profileId, originInfo );
+    }
+
+    PomRepository resolve( final PomModelView view, final OriginInfo originInfo )
+    {
+        return new PomRepository( view.resolveExpressions( id, profileId ), view.resolveExpressions( name, profileId ),
+                                  view.resolveExpressions( url, profileId ),
+                                  view.resolveExpressions( releasesEnabled, profileId ),
+                                  view.resolveExpressions( snapshotsEnabled, profileId ), profileId, originInfo );
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "PomRepository [%s] (url=%s, id=%s)", getName(), url, id );
+    }
+
+}
@@ -187,7 +187,7 @@ public abstract class AbstractMavenElementView<T extends MavenXmlView<?>>
 
     protected final Node getNode( final String path )
     {
-        Node node = (Node) getCollapsedElementContext().selectSingleNode( path );
+        Node node = XPathManager.selectSingleNode( xmlView.compile( path, true ), getCollapsedElementContext() );
         String textContent = getFirstValueInOverlappingElements( node, elements );
         if ( textContent != null )
         {
@@ -196,10 +196,9 @@ public abstract class AbstractMavenElementView<T extends MavenXmlView<?>>
         return node;
     }
 
-    @SuppressWarnings( "unchecked" )
     protected final List<Node> getNodes( final String path )
     {
-        List<Node> nodes = getCollapsedElementContext().selectNodes( path );
+        List<Node> nodes = XPathManager.selectNodes( xmlView.compile( path, true ), getCollapsedElementContext() );
         for ( Node node : nodes )
         {
             String textContent = getFirstValueInOverlappingElements( node, elements );
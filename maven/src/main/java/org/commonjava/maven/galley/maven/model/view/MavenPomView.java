@@ -15,7 +15,9 @@
  */
 package org.commonjava.maven.galley.maven.model.view;
 
+import org.apache.commons.jxpath.CompiledExpression;
 import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.JXPathException;
 import org.codehaus.plexus.interpolation.InterpolationException;
 import org.codehaus.plexus.interpolation.Interpolator;
 import org.codehaus.plexus.interpolation.PrefixAwareRecursionInterceptor;
@@ -27,7 +29,6 @@ import org.commonjava.maven.galley.maven.GalleyMavenException;
 import org.commonjava.maven.galley.maven.GalleyMavenRuntimeException;
 import org.commonjava.maven.galley.maven.parse.JXPathUtils;
 import org.commonjava.maven.galley.maven.parse.MavenPomReader;
-import org.commonjava.maven.galley.maven.parse.ResolveFunctions;
 import org.commonjava.maven.galley.maven.parse.XMLInfrastructure;
 import org.commonjava.maven.galley.maven.spi.defaults.MavenPluginDefaults;
 import org.commonjava.maven.galley.maven.spi.defaults.MavenPluginImplications;
@@ -36,10 +37,26 @@ import org.w3c.dom.Node;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import static org.commonjava.maven.galley.maven.model.view.XPathManager.ALL_PROPERTIES;
+import static org.commonjava.maven.galley.maven.model.view.XPathManager.BUILD_EXTENSIONS;
+import static org.commonjava.maven.galley.maven.model.view.XPathManager.BUILD_PLUGINS;
+import static org.commonjava.maven.galley.maven.model.view.XPathManager.DIRECT_DEPENDENCIES;
+import static org.commonjava.maven.galley.maven.model.view.XPathManager.MANAGED_PLUGINS;
+import static org.commonjava.maven.galley.maven.model.view.XPathManager.PLUGIN_REPOSITORIES;
+import static org.commonjava.maven.galley.maven.model.view.XPathManager.PROFILE_IDS;
+import static org.commonjava.maven.galley.maven.model.view.XPathManager.PROJECT_ARTIFACT_ID;
+import static org.commonjava.maven.galley.maven.model.view.XPathManager.PROJECT_PARENT;
+import static org.commonjava.maven.galley.maven.model.view.XPathManager.PROJECT_PROPERTIES;
+import static org.commonjava.maven.galley.maven.model.view.XPathManager.REPOSITORIES;
 import static org.commonjava.maven.galley.maven.model.view.XPathManager.V;
 
 /**
@@ -57,7 +74,7 @@ public class MavenPomView
     public static final String ALL_PROFILES = "*";
 
     @SuppressWarnings( "RegExpRedundantEscape" )
-    private static final String EXPRESSION_PATTERN = ".*\\$\\{.+\\}.*";
+    private static final Pattern EXPRESSION_PATTERN = Pattern.compile( ".*\\$\\{.+\\}.*" );
 
     private static final String TEXT_SUFFIX = "/text()";
 
@@ -69,6 +86,16 @@ public class MavenPomView
 
     private final Set<String> activeProfileIds;
 
+    private final Map<String, Optional<String>> resolvedExpressions = new ConcurrentHashMap<>();
+
+    private final Map<String, String> interpolatedValues = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<String, String>> profilePropertyIndex = new ConcurrentHashMap<>();
+
+    private volatile Map<String, String> propertyIndex;
+
+    private final Map<DocRef<ProjectVersionRef>, JXPathContext> resolvingContexts = new ConcurrentHashMap<>();
+
     /**
      * Not really designed for direct construction. See {@link MavenPomReader}.
      *
@@ -90,7 +117,7 @@ public class MavenPomView
                          final String... activeProfileIds )
     {
         // define what xpaths are not inheritable...
-        super( stack, xpath, xml, "/project/parent", "/project/artifactId" );
+        super( stack, xpath, xml, PROJECT_PARENT, PROJECT_ARTIFACT_ID );
 
         this.pluginImplications = pluginImplications;
         this.activeProfileIds = new HashSet<>( Arrays.asList( activeProfileIds ) );
@@ -119,7 +146,7 @@ public class MavenPomView
      */
     public Set<String> getProfileIds()
     {
-        return new HashSet<>( resolveXPathExpressionToAggregatedList( "/profiles/profile/id/text()", false, -1 ) );
+        return new HashSet<>( resolveXPathExpressionToAggregatedList( PROFILE_IDS, false, -1 ) );
     }
 
     public String resolveMavenExpression( final String expression, final String... activeProfileIds )
@@ -127,9 +154,23 @@ public class MavenPomView
         return resolveMavenExpression( expression, null, activeProfileIds );
     }
 
+    /**
+     * Resolve a single expression (without the <code>${}</code>): first as a path into the POM model (eg.
+     * <code>project.version</code>), then as a property of each given profile in turn, and finally as a property of
+     * the POM, its ancestry or mix-ins. Profile and POM properties come from indexes built on first use, and results
+     * that can't depend on the state of the {@link RecursionInterceptor} are memoized, so repeated references to the
+     * same expression are plain lookups.
+     */
     public String resolveMavenExpression( final String expression, final RecursionInterceptor ri,
                                           final String... activeProfileIds )
     {
+        final String key = cacheKey( expression, activeProfileIds );
+        final Optional<String> cached = resolvedExpressions.get( key );
+        if ( cached != null )
+        {
+            return cached.orElse( null );
+        }
+
         String expr = expression.replace( '.', '/' );
         if ( expr.startsWith( "pom" ) )
         {
@@ -150,27 +191,101 @@ public class MavenPomView
 
         for ( int i = 0; value == null && activeProfileIds != null && i < activeProfileIds.length; i++ )
         {
-            final String profileId = activeProfileIds[i];
-            value =
-                resolveXPathExpression( "//profile[id/text()=\"" + profileId + "\"]/properties/" + expression, true, -1,
-                                        ri, activeProfileIds );
+            final String raw = getProfileProperties( String.valueOf( activeProfileIds[i] ) ).get( expression );
+            if ( raw != null )
+            {
+                value = resolveExpressions( raw, ri, activeProfileIds );
+            }
         }
 
         if ( value == null )
         {
-            final List<Node> propertyNodes = resolveXPathToAggregatedNodeList( "/project/properties/*", true, -1 );
-            for ( final Node propertyNode : propertyNodes )
+            value = getPropertyIndex().get( expression );
+        }
+        else if ( containsExpression( value ) )
+        {
+            // interpolation stopped short, possibly because of a cycle the interceptor is tracking; don't remember it.
+            return value;
+        }
+
+        resolvedExpressions.put( key, Optional.ofNullable( value ) );
+        return value;
+    }
+
+    /**
+     * Raw values of <code>/project/properties/*</code> across the ancestry and mix-ins, keyed by name. The first
+     * declaration wins, in the same order {@link #resolveXPathToAggregatedNodeList(String, boolean, int)} visits them.
+     */
+    private Map<String, String> getPropertyIndex()
+    {
+        Map<String, String> index = propertyIndex;
+        if ( index == null )
+        {
+            index = indexProperties( PROJECT_PROPERTIES );
+            propertyIndex = index;
+        }
+
+        return index;
+    }
+
+    private Map<String, String> getProfileProperties( final String profileId )
+    {
+        return profilePropertyIndex.computeIfAbsent( profileId, id -> indexProperties(
+                "//profile[id/text()=\"" + id + "\"]/properties/*" ) );
+    }
+
+    private Map<String, String> indexProperties( final String path )
+    {
+        final Map<String, String> index = new HashMap<>();
+        try
+        {
+            for ( final Node node : resolveXPathToAggregatedNodeList( path, true, -1 ) )
             {
-                if ( expression.equals( propertyNode.getNodeName() ) )
-                {
-                    value = propertyNode.getTextContent()
-                                        .trim();
-                    break;
-                }
+                index.putIfAbsent( node.getNodeName(), node.getTextContent().trim() );
             }
         }
+        catch ( final JXPathException e )
+        {
+            // eg. a profile id that can't be quoted in XPath; nothing could have matched it.
+            logger.debug( "[SKIP XPath] Error indexing properties at '{}': {}", path, e.getMessage() );
+        }
 
-        return value;
+        return index;
+    }
+
+    private static String cacheKey( final String value, final String... activeProfileIds )
+    {
+        if ( activeProfileIds == null || activeProfileIds.length == 0 )
+        {
+            return value;
+        }
+
+        return value + '\u0000' + String.join( "\u0000", activeProfileIds );
+    }
+
+    /**
+     * Drop the property indexes and memoized values; mix-ins change what expressions resolve to.
+     */
+    private void clearResolvedValues()
+    {
+        propertyIndex = null;
+        profilePropertyIndex.clear();
+        resolvedExpressions.clear();
+        interpolatedValues.clear();
+    }
+
+    @Override
+    public void addMixin( final MavenXmlMixin<ProjectVersionRef> mixin )
+    {
+        super.addMixin( mixin );
+        clearResolvedValues();
+    }
+
+    @Override
+    public void removeMixin( final MavenXmlMixin<ProjectVersionRef> mixin )
+    {
+        super.removeMixin( mixin );
+        clearResolvedValues();
     }
 
     /**
@@ -223,8 +338,7 @@ public class MavenPomView
             return null;
         }
 
-        return (String) JXPathUtils.newContext( parent )
-                                   .getValue( "id" );
+        return (String) compile( "id", true ).getValue( JXPathUtils.newContext( parent ) );
     }
 
     /**
@@ -233,10 +347,8 @@ public class MavenPomView
      */
     public List<DependencyView> getAllDirectDependencies()
     {
-        final String xp =
-            "//dependency[not(ancestor::dependencyManagement) and not(ancestor::build) and not(ancestor::reporting)]";
-        //        final String xp = "./project/dependencies/dependency";
-        final List<MavenPomElementView> depNodes = resolveXPathToAggregatedElementViewList( xp, true, -1 );
+        final List<MavenPomElementView> depNodes =
+                resolveXPathToAggregatedElementViewList( DIRECT_DEPENDENCIES, true, -1 );
         final List<DependencyView> depViews = new ArrayList<>( depNodes.size() );
         final Set<DependencyView> seen = new HashSet<>();
         for ( final MavenPomElementView node : depNodes )
@@ -421,6 +533,8 @@ public class MavenPomView
     public MavenPomElementView resolveXPathToElementView( final String path, final boolean cachePath, final int maxDepth )
         throws GalleyMavenRuntimeException
     {
+        final CompiledExpression expression = compile( path, cachePath );
+
         int maxAncestry = maxDepth;
         for ( final String pathPrefix : localOnlyPaths )
         {
@@ -440,17 +554,7 @@ public class MavenPomView
                 break;
             }
 
-            final MavenPomView oldView = ResolveFunctions.getPomView();
-            try
-            {
-                ResolveFunctions.setPomView( this );
-                n = (Element) dr.getDocContext()
-                                .selectSingleNode( path );
-            }
-            finally
-            {
-                ResolveFunctions.setPomView( oldView );
-            }
+            n = (Element) XPathManager.selectSingleNode( expression, getResolvingContext( dr ) );
             //                logger.info( "Value of '{}' at depth: {} is: {}", path, ancestryDepth, result );
 
             if ( n != null )
@@ -485,6 +589,15 @@ public class MavenPomView
         return null;
     }
 
+    /**
+     * Context for the given document with this view bound to the ext:resolve() function, so expressions in a path
+     * are resolved against this POM's inheritance stack rather than whichever view happens to be active on the thread.
+     */
+    private JXPathContext getResolvingContext( final DocRef<ProjectVersionRef> dr )
+    {
+        return resolvingContexts.computeIfAbsent( dr, d -> JXPathUtils.newContext( d.getDoc(), this ) );
+    }
+
     /**
      * Wrap the given DOM element in a {@link DependencyView} instance, to allow convenience methods to query
      * the dependency information.
@@ -527,7 +640,7 @@ public class MavenPomView
      */
     public ParentView getParent()
     {
-        final Element parentEl = (Element) resolveXPathToNode( "/project/parent", true );
+        final Element parentEl = (Element) resolveXPathToNode( PROJECT_PARENT, true );
 
         if ( parentEl != null )
         {
@@ -544,7 +657,7 @@ public class MavenPomView
     public List<ExtensionView> getBuildExtensions()
     {
         final List<MavenPomElementView> list =
-            resolveXPathToAggregatedElementViewList( "/project//build/extensions/extension", true, -1 );
+            resolveXPathToAggregatedElementViewList( BUILD_EXTENSIONS, true, -1 );
         final List<ExtensionView> result = new ArrayList<>( list.size() );
         for ( final MavenPomElementView node : list )
         {
@@ -608,7 +721,7 @@ public class MavenPomView
     public List<PluginView> getAllBuildPlugins()
     {
         final List<MavenPomElementView> list =
-            resolveXPathToAggregatedElementViewList( "/project//build/plugins/plugin", true, -1 );
+            resolveXPathToAggregatedElementViewList( BUILD_PLUGINS, true, -1 );
         final List<PluginView> result = new ArrayList<>( list.size() );
         for ( final MavenPomElementView node : list )
         {
@@ -630,7 +743,7 @@ public class MavenPomView
     public List<PluginView> getAllManagedBuildPlugins()
     {
         final List<MavenPomElementView> list =
-            resolveXPathToAggregatedElementViewList( "/project//pluginManagement/plugins/plugin", true, -1 );
+            resolveXPathToAggregatedElementViewList( MANAGED_PLUGINS, true, -1 );
 
         final List<PluginView> result = new ArrayList<>( list.size() );
         for ( final MavenPomElementView node : list )
@@ -652,7 +765,7 @@ public class MavenPomView
     public List<RepositoryView> getAllRepositories()
     {
         final List<MavenPomElementView> list =
-            resolveXPathToAggregatedElementViewList( "/project//repositories/repository", true, -1 );
+            resolveXPathToAggregatedElementViewList( REPOSITORIES, true, -1 );
 
         final List<RepositoryView> result = new ArrayList<>( list.size() );
         for ( final MavenPomElementView node : list )
@@ -690,7 +803,7 @@ public class MavenPomView
     public List<RepositoryView> getAllPluginRepositories()
     {
         final List<MavenPomElementView> list =
-            resolveXPathToAggregatedElementViewList( "/project//pluginRepositories/pluginRepository", true, -1 );
+            resolveXPathToAggregatedElementViewList( PLUGIN_REPOSITORIES, true, -1 );
 
         final List<RepositoryView> result = new ArrayList<>( list.size() );
         for ( final MavenPomElementView node : list )
@@ -709,7 +822,7 @@ public class MavenPomView
     public List<RepositoryView> getActiveRepositories()
     {
         final List<MavenPomElementView> list =
-            resolveXPathToAggregatedElementViewList( "/project//repositories/repository", true, -1 );
+            resolveXPathToAggregatedElementViewList( REPOSITORIES, true, -1 );
 
         final List<RepositoryView> result = new ArrayList<>( list.size() );
         for ( final MavenPomElementView node : list )
@@ -732,7 +845,7 @@ public class MavenPomView
     public List<RepositoryView> getActivePluginRepositories()
     {
         final List<MavenPomElementView> list =
-            resolveXPathToAggregatedElementViewList( "/project//pluginRepositories/pluginRepository", true, -1 );
+            resolveXPathToAggregatedElementViewList( PLUGIN_REPOSITORIES, true, -1 );
 
         final List<RepositoryView> result = new ArrayList<>( list.size() );
         for ( final MavenPomElementView node : list )
@@ -808,7 +921,7 @@ public class MavenPomView
     public List<PropertiesView> getProperties()
     {
         final List<MavenPomElementView> list =
-            resolveXPathToAggregatedElementViewList( "/project//properties", true, -1 );
+            resolveXPathToAggregatedElementViewList( ALL_PROPERTIES, true, -1 );
         final List<PropertiesView> result = new ArrayList<>( list.size() );
 
         for ( final MavenPomElementView node : list )
@@ -1020,7 +1133,7 @@ public class MavenPomView
      */
     protected boolean containsExpression( final String value )
     {
-        return value != null && value.matches( EXPRESSION_PATTERN );
+        return value != null && EXPRESSION_PATTERN.matcher( value ).matches();
     }
 
     /**
@@ -1044,13 +1157,33 @@ public class MavenPomView
     public String resolveExpressions( final String value, RecursionInterceptor ri,
                                       final String... activeProfileIds )
     {
+        if ( value == null )
+        {
+            return null;
+        }
+
         if ( null == ri )
         {
+            // with a fresh interceptor the result only depends on this view, so it can be reused.
+            final String key = cacheKey( value, activeProfileIds );
+            final String cached = interpolatedValues.get( key );
+            if ( cached != null )
+            {
+                return cached;
+            }
+
             List<String> prefixs = new ArrayList<>();
             prefixs.add( PrefixAwareRecursionInterceptor.DEFAULT_START_TOKEN );
-            ri = new PrefixAwareRecursionInterceptor( prefixs );
+            final String result = interpolate( value, new PrefixAwareRecursionInterceptor( prefixs ), activeProfileIds );
+            interpolatedValues.put( key, result );
+            return result;
         }
 
+        return interpolate( value, ri, activeProfileIds );
+    }
+
+    private String interpolate( final String value, final RecursionInterceptor ri, final String... activeProfileIds )
+    {
         StringSearchInterpolator ssi = new StringSearchInterpolator();
         ssi.addValueSource( new MavenPomViewVS( this, ri, activeProfileIds ) );
         try
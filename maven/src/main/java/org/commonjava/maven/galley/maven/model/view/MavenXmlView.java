@@ -15,6 +15,7 @@
  */
 package org.commonjava.maven.galley.maven.model.view;
 
+import org.apache.commons.jxpath.CompiledExpression;
 import org.apache.commons.jxpath.JXPathContext;
 import org.apache.commons.jxpath.JXPathException;
 import org.apache.commons.jxpath.JXPathInvalidSyntaxException;
@@ -47,7 +48,7 @@ public class MavenXmlView<T>
 
     protected final List<DocRef<T>> stack;
 
-    //    protected final XPathManager xpath;
+    protected final XPathManager xpath;
 
     protected final List<MavenXmlMixin<T>> mixins = new ArrayList<>();
 
@@ -59,7 +60,7 @@ public class MavenXmlView<T>
                          final String... localOnlyPaths )
     {
         this.stack = stack;
-        //        this.xpath = xpath;
+        this.xpath = xpath;
         this.xml = xml;
         this.localOnlyPaths = new HashSet<>( Arrays.asList( localOnlyPaths ) );
     }
@@ -101,9 +102,17 @@ public class MavenXmlView<T>
         throws GalleyMavenRuntimeException
     {
         String result = null;
-        //        try
-        //        {
-        //            final XPathExpression expression = xpath.getXPath( path, cachePath );
+
+        final CompiledExpression expression;
+        try
+        {
+            expression = compile( path, cachePath );
+        }
+        catch ( final JXPathInvalidSyntaxException e )
+        {
+            logger.debug( "[ABORT XPath] Error compiling '{}': {}", path, e.getMessage() );
+            return null;
+        }
 
         int maxAncestry = maxDepth;
         for ( final String pathPrefix : localOnlyPaths )
@@ -127,14 +136,7 @@ public class MavenXmlView<T>
 
             try
             {
-                result = (String) dr.getDocContext()
-                                    .getValue( path );
-            }
-            catch ( final JXPathInvalidSyntaxException e )
-            {
-                logger.debug( "[ABORT XPath] Error resolving '{}' from '{}': {}", path, dr.getSource(),
-                              e.getMessage() );
-                return null;
+                result = (String) expression.getValue( dr.getDocContext() );
             }
             catch ( final JXPathException e )
             {
@@ -190,9 +192,7 @@ public class MavenXmlView<T>
         throws GalleyMavenRuntimeException
     {
         Node result = null;
-        //        try
-        //        {
-        //            final XPathExpression expression = xpath.getXPath( path, cachePath );
+        final CompiledExpression expression = compile( path, cachePath );
 
         int maxAncestry = maxDepth;
         for ( final String pathPrefix : localOnlyPaths )
@@ -214,8 +214,7 @@ public class MavenXmlView<T>
                 break;
             }
 
-            result = (Node) dr.getDocContext()
-                              .selectSingleNode( path );
+            result = XPathManager.selectSingleNode( expression, dr.getDocContext() );
 
             if ( result != null )
             {
@@ -380,17 +379,7 @@ public class MavenXmlView<T>
     protected List<Node> getLocalNodeList( final JXPathContext context, final String path )
         throws GalleyMavenRuntimeException
     {
-        final List<Node> result = new ArrayList<>();
-        final List<?> iter = context.selectNodes( path );
-        if ( iter != null )
-        {
-            for ( final Object obj : iter )
-            {
-                result.add( (Node) obj );
-            }
-        }
-
-        return result;
+        return XPathManager.selectNodes( compile( path, true ), context );
     }
 
     /**
@@ -455,7 +444,7 @@ public class MavenXmlView<T>
     protected synchronized Node resolveXPathToNodeFrom( final JXPathContext context, final String path,
                                                         final boolean cachePath )
     {
-        return (Node) context.selectSingleNode( path );
+        return XPathManager.selectSingleNode( compile( path, cachePath ), context );
     }
 
     /**
@@ -467,17 +456,16 @@ public class MavenXmlView<T>
                                                                final boolean cachePath )
         throws GalleyMavenRuntimeException
     {
-        final List<Node> result = new ArrayList<>();
-        final List<?> iter = context.selectNodes( path );
-        if ( iter != null )
-        {
-            for ( final Object obj : iter )
-            {
-                result.add( (Node) obj );
-            }
-        }
+        return XPathManager.selectNodes( compile( path, cachePath ), context );
+    }
 
-        return result;
+    /**
+     * Retrieve the compiled form of the given XPath expression, from the {@link XPathManager} this view was created
+     * with (if any). If cachePath is true, keep it for reuse by later queries.
+     */
+    protected CompiledExpression compile( final String path, final boolean cachePath )
+    {
+        return xpath == null ? XPathManager.compile( path ) : xpath.getCompiled( path, cachePath );
     }
 
     /**
@@ -15,7 +15,15 @@
  */
 package org.commonjava.maven.galley.maven.model.view;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.xml.namespace.QName;
@@ -26,12 +34,29 @@ import javax.xml.xpath.XPathFactory;
 import javax.xml.xpath.XPathFunction;
 import javax.xml.xpath.XPathFunctionResolver;
 
+import org.apache.commons.jxpath.CompiledExpression;
+import org.apache.commons.jxpath.JXPathContext;
+import org.apache.commons.jxpath.Pointer;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+/**
+ * Compiles and caches the XPath expressions the views evaluate against their documents.
+ * <br/>
+ * The fixed queries used by {@link MavenPomView},
+ * {@link org.commonjava.maven.galley.maven.model.view.meta.MavenMetadataView} and
+ * {@link org.commonjava.maven.galley.maven.model.view.settings.MavenSettingsView} (and their element views) are
+ * compiled once, into a table shared by every instance. Other expressions are compiled on first use and kept in a
+ * per-instance table of up to maxEntries; when that fills up it's simply cleared, since recompiling is cheap next to
+ * the lock JXPath takes around its own expression cache. Compiled expressions are immutable, so lookups and
+ * evaluation need no locking.
+ */
 @ApplicationScoped
 public class XPathManager
 {
 
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
     public static final String G = "groupId";
 
     public static final String A = "artifactId";
@@ -60,51 +85,188 @@ public class XPathManager
 
     public static final String QUOTE = "\"";
 
-    private final XPath xpath;
+    public static final String PROJECT_PARENT = "/project/parent";
+
+    public static final String PROJECT_ARTIFACT_ID = "/project/artifactId";
+
+    public static final String PROJECT_PROPERTIES = "/project/properties/*";
+
+    public static final String PROFILE_IDS = "/profiles/profile/id/text()";
+
+    public static final String DIRECT_DEPENDENCIES =
+            "//dependency[not(ancestor::dependencyManagement) and not(ancestor::build) and not(ancestor::reporting)]";
+
+    public static final String BUILD_EXTENSIONS = "/project//build/extensions/extension";
+
+    public static final String BUILD_PLUGINS = "/project//build/plugins/plugin";
+
+    public static final String MANAGED_PLUGINS = "/project//pluginManagement/plugins/plugin";
+
+    public static final String REPOSITORIES = "/project//repositories/repository";
+
+    public static final String PLUGIN_REPOSITORIES = "/project//pluginRepositories/pluginRepository";
+
+    public static final String ALL_PROPERTIES = "/project//properties";
+
+    public static final String METADATA_VERSIONING = "/metadata/versioning";
+
+    public static final String SETTINGS_ACTIVE_PROFILES = "/settings/activeProfiles/activeProfile/text()";
+
+    public static final String SETTINGS_MIRRORS = "/settings/mirrors";
+
+    public static final String SETTINGS_ACTIVE_PROXY = "/settings/proxies/proxy[active/text() = 'true']";
 
-    //    private final Map<String, WeakReference<XPathExpression>> xpaths = new HashMap<>();
+    private static final Map<String, CompiledExpression> PRECOMPILED =
+            precompile( PROJECT_PARENT, PROJECT_ARTIFACT_ID, PROJECT_PROPERTIES, PROFILE_IDS, DIRECT_DEPENDENCIES,
+                        BUILD_EXTENSIONS, BUILD_PLUGINS, MANAGED_PLUGINS, REPOSITORIES, PLUGIN_REPOSITORIES,
+                        ALL_PROPERTIES, METADATA_VERSIONING, SETTINGS_ACTIVE_PROFILES, SETTINGS_MIRRORS,
+                        SETTINGS_ACTIVE_PROXY,
+                        // relative paths evaluated against element views...
+                        G, A, V, T, C, "scope", "optional", "relativePath", "id", "id/text()", "url/text()",
+                        "name/text()", "releases/enabled/text()", "snapshots/enabled/text()",
+                        "ancestor::dependencyManagement", "ancestor::pluginManagement", "dependencies/dependency",
+                        "exclusions/exclusion", "versions/version", "snapshotVersions/snapshotVersion", "extension",
+                        "updated", "value", "localCopy", "timestamp", "buildNumber" );
+
+    private final Map<String, CompiledExpression> compiled = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final int maxEntries;
+
+    private final ThreadLocal<XPath> xpath = ThreadLocal.withInitial( () -> {
+        final XPath xp = XPathFactory.newInstance()
+                                     .newXPath();
+        xp.setXPathFunctionResolver( new TLFunctionResolver() );
+        return xp;
+    } );
 
     public XPathManager()
     {
-        this.xpath = XPathFactory.newInstance()
-                                 .newXPath();
-        this.xpath.setXPathFunctionResolver( new TLFunctionResolver() );
+        this( DEFAULT_MAX_ENTRIES );
+    }
+
+    public XPathManager( final int maxEntries )
+    {
+        this.maxEntries = maxEntries;
+    }
+
+    public void clear()
+    {
+        compiled.clear();
+    }
+
+    /**
+     * Retrieve the compiled form of the given JXPath expression. Fixed view queries are always served from the shared
+     * precompiled table. Anything else is compiled here, and kept for reuse if cache is true.
+     */
+    public CompiledExpression getCompiled( final String path, final boolean cache )
+    {
+        CompiledExpression expression = PRECOMPILED.get( path );
+        if ( expression == null )
+        {
+            expression = compiled.get( path );
+        }
+
+        if ( expression != null )
+        {
+            hits.increment();
+            return expression;
+        }
+
+        misses.increment();
+        expression = JXPathContext.compile( path );
+        if ( cache )
+        {
+            if ( compiled.size() >= maxEntries )
+            {
+                compiled.clear();
+            }
+
+            compiled.put( path, expression );
+        }
+
+        return expression;
+    }
+
+    /**
+     * Compile the given expression without a manager, using the shared precompiled table if it's a fixed view query.
+     */
+    public static CompiledExpression compile( final String path )
+    {
+        final CompiledExpression expression = PRECOMPILED.get( path );
+        return expression == null ? JXPathContext.compile( path ) : expression;
     }
 
-    public synchronized void clear()
+    /**
+     * Equivalent of {@link JXPathContext#selectSingleNode(String)} for a compiled expression.
+     */
+    public static Node selectSingleNode( final CompiledExpression expression, final JXPathContext context )
     {
-        //        xpaths.clear();
+        final Pointer pointer = expression.getPointer( context, expression.toString() );
+        return pointer == null ? null : (Node) pointer.getNode();
     }
 
+    /**
+     * Equivalent of {@link JXPathContext#selectNodes(String)} for a compiled expression.
+     */
+    public static List<Node> selectNodes( final CompiledExpression expression, final JXPathContext context )
+    {
+        final List<Node> result = new ArrayList<>();
+        for ( final Iterator<?> it = expression.iteratePointers( context ); it.hasNext(); )
+        {
+            result.add( (Node) ( (Pointer) it.next() ).getNode() );
+        }
+
+        return result;
+    }
+
+    public int size()
+    {
+        return compiled.size();
+    }
+
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Compile a JAXP {@link XPathExpression}. JAXP expressions aren't thread-safe, so these are compiled per call with
+     * a per-thread {@link XPath}, and never cached.
+     *
+     * @deprecated The views evaluate JXPath expressions; use {@link #getCompiled(String, boolean)}.
+     */
+    @Deprecated
     public XPathExpression getXPath( final String path, final boolean cache )
         throws XPathExpressionException
     {
-        XPathExpression expression;
-        //        if ( cache )
-        //        {
-        //            synchronized ( this )
-        //            {
-        //                final WeakReference<XPathExpression> ref = xpaths.get( path );
-        //                if ( ref != null )
-        //                {
-        //                    expression = ref.get();
-        //                }
-        //
-        //                if ( expression == null )
-        //                {
-        //                    expression = xpath.compile( path );
-        //                    xpaths.put( path, new WeakReference<XPathExpression>( expression ) );
-        //                }
-        //            }
-        //        }
-        //        else
-        //        {
-        expression = xpath.compile( path );
-        //        }
+        return xpath.get()
+                    .compile( path );
+    }
 
-        return expression;
+    private static Map<String, CompiledExpression> precompile( final String... paths )
+    {
+        final Map<String, CompiledExpression> result = new HashMap<>();
+        Arrays.stream( paths )
+              .forEach( path -> result.put( path, JXPathContext.compile( path ) ) );
+
+        return Collections.unmodifiableMap( result );
     }
 
+    /**
+     * @deprecated ext:resolve() is bound per view in the JXPath contexts now (see
+     * {@link org.commonjava.maven.galley.maven.parse.ResolveFunctions}); this thread-local binding only serves
+     * {@link #getXPath(String, boolean)}.
+     */
+    @Deprecated
     public static final class TLFunctionResolver
         implements XPathFunctionResolver
     {
@@ -37,7 +37,7 @@ public class MavenMetadataView
 
     public VersioningView getVersioning()
     {
-        final Node node = resolveXPathToNode( "/metadata/versioning", true, -1 );
+        final Node node = resolveXPathToNode( XPathManager.METADATA_VERSIONING, true, -1 );
         if ( node != null && node.getNodeType() == Node.ELEMENT_NODE )
         {
             return new VersioningView( this, (Element) node );
@@ -39,12 +39,12 @@ public class MavenSettingsView
 
     public List<String> getActiveProfiles()
     {
-        return resolveValues( "/settings/activeProfiles/activeProfile/text()" );
+        return resolveValues( XPathManager.SETTINGS_ACTIVE_PROFILES );
     }
 
     public List<MirrorView> getMirrors()
     {
-        final List<Node> nodes = resolveXPathToAggregatedNodeList( "/settings/mirrors", true, -1 );
+        final List<Node> nodes = resolveXPathToAggregatedNodeList( XPathManager.SETTINGS_MIRRORS, true, -1 );
         final List<MirrorView> result = new ArrayList<>();
         for ( final Node node : nodes )
         {
@@ -56,7 +56,7 @@ public class MavenSettingsView
 
     public ProxyView getActiveProxy()
     {
-        final Node proxyNode = resolveXPathToNode( "/settings/proxies/proxy[active/text() == 'true']", true, -1 );
+        final Node proxyNode = resolveXPathToNode( XPathManager.SETTINGS_ACTIVE_PROXY, true, -1 );
         if ( proxyNode == null )
         {
             return null;
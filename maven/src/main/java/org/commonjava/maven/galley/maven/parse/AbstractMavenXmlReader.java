@@ -15,24 +15,23 @@
  */
 package org.commonjava.maven.galley.maven.parse;
 
-import java.lang.ref.WeakReference;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
 import org.commonjava.maven.galley.TransferException;
 import org.commonjava.maven.galley.maven.model.view.DocRef;
 import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.spi.transport.LocationExpander;
 
 public abstract class AbstractMavenXmlReader<T>
 {
 
-    private final Map<DocCacheKey<T>, WeakReference<DocRef<T>>> cache = new ConcurrentHashMap<>();
+    private volatile DocRefCache<T> cache = new DocRefCache<>();
 
     @Inject
     protected XMLInfrastructure xml;
@@ -50,123 +49,62 @@ public abstract class AbstractMavenXmlReader<T>
         this.locationExpander = locationExpander;
     }
 
-    protected synchronized void cache( final DocRef<T> dr )
+    public DocRefCache<T> getDocCache()
     {
-        cache.put( new DocCacheKey<>( dr ), new WeakReference<>( dr ) );
+        return cache;
     }
 
-    protected synchronized DocRef<T> getFirstCached( final T ref, final Collection<? extends Location> locations )
+    /**
+     * Replace the parsed-document cache, e.g. to change its weight limit or enable soft-reference overflow. Anything
+     * held by the old cache is dropped.
+     */
+    public void setDocCache( final DocRefCache<T> cache )
+    {
+        this.cache = cache;
+    }
+
+    protected void cache( final DocRef<T> dr )
+    {
+        cache.put( dr );
+    }
+
+    /**
+     * Cache the document, remembering the transfer it was parsed from so it can be invalidated when that transfer
+     * is stored or deleted (see {@link DocRefCacheInvalidator}).
+     */
+    protected void cache( final DocRef<T> dr, final Transfer transfer )
+    {
+        cache.put( dr, transfer == null ? null : transfer.getResource() );
+    }
+
+    protected DocRef<T> getFirstCached( final T ref, final Collection<? extends Location> locations )
         throws TransferException
     {
         for ( final Location location : locationExpander.expand( locations ) )
         {
-            final DocCacheKey<T> key = new DocCacheKey<>( ref, location );
-            final WeakReference<DocRef<T>> reference = cache.get( key );
-            if ( reference != null )
+            final DocRef<T> dr = cache.get( ref, location );
+            if ( dr != null )
             {
-                final DocRef<T> dr = reference.get();
-                if ( dr == null )
-                {
-                    cache.remove( key );
-                }
-                else
-                {
-                    return dr;
-                }
+                return dr;
             }
         }
 
         return null;
     }
 
-    protected synchronized Map<Location, DocRef<T>> getAllCached( final T ref, final List<? extends Location> locations )
+    protected Map<Location, DocRef<T>> getAllCached( final T ref, final List<? extends Location> locations )
     {
         final Map<Location, DocRef<T>> result = new HashMap<>();
         for ( final Location location : locations )
         {
-            final DocCacheKey<T> key = new DocCacheKey<>( ref, location );
-            final WeakReference<DocRef<T>> reference = cache.get( key );
-            if ( reference != null )
+            final DocRef<T> dr = cache.get( ref, location );
+            if ( dr != null )
             {
-                final DocRef<T> dr = reference.get();
-                if ( dr == null )
-                {
-                    cache.remove( key );
-                }
-                else
-                {
-                    result.put( location, dr );
-                }
+                result.put( location, dr );
             }
         }
 
         return result;
     }
 
-    private static final class DocCacheKey<T>
-    {
-        private final T ref;
-
-        private final Object source;
-
-        private DocCacheKey( final T ref, final Location location )
-        {
-            this.ref = ref;
-            this.source = location;
-        }
-
-        public DocCacheKey( final DocRef<T> dr )
-        {
-            this.ref = dr.getRef();
-            this.source = dr.getSource();
-        }
-
-        @Override
-        public int hashCode()
-        {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + ( ( source == null ) ? 0 : source.hashCode() );
-            result = prime * result + ( ( ref == null ) ? 0 : ref.hashCode() );
-            return result;
-        }
-
-        @Override
-        public boolean equals( final Object obj )
-        {
-            if ( this == obj )
-            {
-                return true;
-            }
-            if ( obj == null )
-            {
-                return false;
-            }
-            if ( getClass() != obj.getClass() )
-            {
-                return false;
-            }
-            @SuppressWarnings( "unchecked" )
-            final DocCacheKey<T> other = (DocCacheKey<T>) obj;
-            if ( source == null )
-            {
-                if ( other.source != null )
-                {
-                    return false;
-                }
-            }
-            else if ( !source.equals( other.source ) )
-            {
-                return false;
-            }
-            if ( ref == null )
-            {
-                return other.ref == null;
-            }
-            else
-            {
-                return ref.equals( other.ref );
-            }
-        }
-    }
 }
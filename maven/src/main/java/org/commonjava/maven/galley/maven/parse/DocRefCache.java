@@ -0,0 +1,499 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.parse;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.commonjava.maven.galley.maven.model.view.DocRef;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Bounded cache of parsed {@link DocRef}s, keyed by ref and {@link Location}. Lookups never take a lock.
+ * <p>
+ * Each document is weighed when it's added (see {@link #estimateWeight(Document)}), roughly in bytes of heap. Once
+ * the total passes maxWeight, one writer evicts the least recently used documents down to {@link #EVICTION_TARGET}
+ * of the limit. If softOverflow is enabled, evicted documents are kept behind {@link SoftReference}s until the GC
+ * needs the space, and a hit on one promotes it back into the bounded cache.
+ * <p>
+ * Documents added with the {@link ConcreteResource} they were parsed from can be dropped again when that resource
+ * changes, via {@link #invalidate(ConcreteResource)}. {@link DocRefCacheInvalidator} does this from
+ * {@link org.commonjava.maven.galley.spi.event.FileEventManager} storage and deletion events.
+ */
+public class DocRefCache<T>
+{
+
+    public static final long DEFAULT_MAX_WEIGHT = 64L * 1024 * 1024;
+
+    static final float EVICTION_TARGET = 0.9f;
+
+    // rough per-node heap cost of a Xerces DOM node, plus two bytes per character of text.
+    private static final int NODE_WEIGHT = 96;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final Map<DocCacheKey<T>, Entry<T>> entries = new ConcurrentHashMap<>();
+
+    private final Map<DocCacheKey<T>, SoftEntry<T>> overflow = new ConcurrentHashMap<>();
+
+    private final ReferenceQueue<DocRef<T>> cleared = new ReferenceQueue<>();
+
+    private final Map<ConcreteResource, DocCacheKey<T>> resources = new ConcurrentHashMap<>();
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder softHits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    private final long maxWeight;
+
+    private final boolean softOverflow;
+
+    private final LongSupplier clock;
+
+    public DocRefCache()
+    {
+        this( DEFAULT_MAX_WEIGHT, false );
+    }
+
+    public DocRefCache( final long maxWeight, final boolean softOverflow )
+    {
+        this( maxWeight, softOverflow, System::nanoTime );
+    }
+
+    DocRefCache( final long maxWeight, final boolean softOverflow, final LongSupplier clock )
+    {
+        if ( maxWeight < 1 )
+        {
+            throw new IllegalArgumentException( "maxWeight must be positive: " + maxWeight );
+        }
+
+        this.maxWeight = maxWeight;
+        this.softOverflow = softOverflow;
+        this.clock = clock;
+    }
+
+    public DocRef<T> get( final T ref, final Location location )
+    {
+        final DocCacheKey<T> key = new DocCacheKey<>( ref, location );
+        final Entry<T> entry = entries.get( key );
+        if ( entry != null )
+        {
+            entry.lastAccess = clock.getAsLong();
+            hits.increment();
+            return entry.docRef;
+        }
+
+        if ( softOverflow )
+        {
+            final SoftEntry<T> soft = overflow.get( key );
+            final DocRef<T> dr = soft == null ? null : soft.get();
+            if ( dr != null && overflow.remove( key, soft ) )
+            {
+                softHits.increment();
+                add( key, dr, soft.weight, soft.resource );
+                return dr;
+            }
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    public void put( final DocRef<T> dr )
+    {
+        put( dr, null );
+    }
+
+    /**
+     * Add a document, remembering the resource it was parsed from (if not null) so it can be invalidated when that
+     * resource is stored or deleted.
+     */
+    public void put( final DocRef<T> dr, final ConcreteResource resource )
+    {
+        add( new DocCacheKey<>( dr ), dr, estimateWeight( dr.getDoc() ), resource );
+    }
+
+    public void invalidate( final ConcreteResource resource )
+    {
+        final DocCacheKey<T> key = resources.remove( resource );
+        if ( key == null )
+        {
+            return;
+        }
+
+        final Entry<T> entry = entries.remove( key );
+        if ( entry != null )
+        {
+            weight.addAndGet( -entry.weight );
+        }
+
+        final boolean overflowed = overflow.remove( key ) != null;
+        if ( entry != null || overflowed )
+        {
+            logger.debug( "Invalidated cached document for: {} after change to: {}", key.ref, resource );
+            invalidations.increment();
+        }
+    }
+
+    public void clear()
+    {
+        new ArrayList<>( entries.keySet() ).forEach( key -> {
+            final Entry<T> entry = entries.remove( key );
+            if ( entry != null )
+            {
+                weight.addAndGet( -entry.weight );
+            }
+        } );
+
+        overflow.clear();
+        resources.clear();
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    public int getOverflowSize()
+    {
+        return overflow.size();
+    }
+
+    public long getWeight()
+    {
+        return weight.get();
+    }
+
+    public long getMaxWeight()
+    {
+        return maxWeight;
+    }
+
+    public boolean isSoftOverflow()
+    {
+        return softOverflow;
+    }
+
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    public long getSoftHitCount()
+    {
+        return softHits.sum();
+    }
+
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount()
+    {
+        return invalidations.sum();
+    }
+
+    /**
+     * @return the fraction of lookups answered from the cache (including soft-reference overflow), or 0 if there
+     * haven't been any lookups yet.
+     */
+    public double getHitRate()
+    {
+        final long found = hits.sum() + softHits.sum();
+        final long total = found + misses.sum();
+        return total == 0 ? 0 : (double) found / total;
+    }
+
+    /**
+     * Rough heap cost of a parsed document: a fixed overhead per node, plus the characters of its names, text and
+     * attribute values.
+     */
+    public static long estimateWeight( final Document doc )
+    {
+        if ( doc == null )
+        {
+            return NODE_WEIGHT;
+        }
+
+        long result = 0;
+        Node node = doc;
+        while ( node != null )
+        {
+            result += NODE_WEIGHT + 2L * length( node.getNodeName() ) + 2L * length( node.getNodeValue() );
+
+            final NamedNodeMap attrs = node.getAttributes();
+            if ( attrs != null )
+            {
+                for ( int i = 0; i < attrs.getLength(); i++ )
+                {
+                    final Node attr = attrs.item( i );
+                    result += NODE_WEIGHT + 2L * length( attr.getNodeName() ) + 2L * length( attr.getNodeValue() );
+                }
+            }
+
+            // iterative pre-order walk, so deep documents can't overflow the stack.
+            if ( node.getFirstChild() != null )
+            {
+                node = node.getFirstChild();
+            }
+            else
+            {
+                while ( node != null && node.getNextSibling() == null )
+                {
+                    node = node.getParentNode();
+                }
+
+                if ( node != null )
+                {
+                    node = node.getNextSibling();
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static int length( final String value )
+    {
+        return value == null ? 0 : value.length();
+    }
+
+    private void add( final DocCacheKey<T> key, final DocRef<T> dr, final long docWeight,
+                      final ConcreteResource resource )
+    {
+        final Entry<T> entry = new Entry<>( dr, docWeight, resource, clock.getAsLong() );
+        final Entry<T> old = entries.put( key, entry );
+        weight.addAndGet( docWeight - ( old == null ? 0 : old.weight ) );
+
+        if ( resource != null )
+        {
+            resources.put( resource, key );
+        }
+
+        if ( weight.get() > maxWeight )
+        {
+            evict();
+        }
+    }
+
+    /**
+     * Shrink the cache to {@link #EVICTION_TARGET} of maxWeight. Only one thread evicts at a time; writers that find
+     * an eviction in progress carry on, so the cache may briefly overshoot its limit.
+     */
+    private void evict()
+    {
+        if ( !evictionLock.tryLock() )
+        {
+            return;
+        }
+
+        try
+        {
+            purgeClearedOverflow();
+
+            final long target = (long) ( maxWeight * EVICTION_TARGET );
+            if ( weight.get() <= target )
+            {
+                return;
+            }
+
+            final List<Map.Entry<DocCacheKey<T>, Entry<T>>> candidates = new ArrayList<>( entries.entrySet() );
+            candidates.sort( Comparator.comparingLong( e -> e.getValue().lastAccess ) );
+
+            for ( final Map.Entry<DocCacheKey<T>, Entry<T>> e : candidates )
+            {
+                if ( weight.get() <= target )
+                {
+                    break;
+                }
+
+                final DocCacheKey<T> key = e.getKey();
+                final Entry<T> entry = e.getValue();
+                if ( entries.remove( key, entry ) )
+                {
+                    weight.addAndGet( -entry.weight );
+                    evictions.increment();
+
+                    if ( softOverflow )
+                    {
+                        overflow.put( key, new SoftEntry<>( key, entry, cleared ) );
+                    }
+                    else if ( entry.resource != null )
+                    {
+                        resources.remove( entry.resource, key );
+                    }
+                }
+            }
+
+            logger.debug( "Document cache eviction finished. Weight: {}, max: {}, total evictions: {}", weight.get(),
+                          maxWeight, evictions.sum() );
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    private void purgeClearedOverflow()
+    {
+        Object ref;
+        while ( ( ref = cleared.poll() ) != null )
+        {
+            @SuppressWarnings( "unchecked" )
+            final SoftEntry<T> soft = (SoftEntry<T>) ref;
+            if ( overflow.remove( soft.key, soft ) && soft.resource != null )
+            {
+                resources.remove( soft.resource, soft.key );
+            }
+        }
+    }
+
+    private static final class Entry<T>
+    {
+        private final DocRef<T> docRef;
+
+        private final long weight;
+
+        private final ConcreteResource resource;
+
+        private volatile long lastAccess;
+
+        private Entry( final DocRef<T> docRef, final long weight, final ConcreteResource resource,
+                       final long lastAccess )
+        {
+            this.docRef = docRef;
+            this.weight = weight;
+            this.resource = resource;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static final class SoftEntry<T>
+        extends SoftReference<DocRef<T>>
+    {
+        private final DocCacheKey<T> key;
+
+        private final long weight;
+
+        private final ConcreteResource resource;
+
+        private SoftEntry( final DocCacheKey<T> key, final Entry<T> entry, final ReferenceQueue<DocRef<T>> queue )
+        {
+            super( entry.docRef, queue );
+            this.key = key;
+            this.weight = entry.weight;
+            this.resource = entry.resource;
+        }
+    }
+
+    private static final class DocCacheKey<T>
+    {
+        private final T ref;
+
+        private final Object source;
+
+        private DocCacheKey( final T ref, final Location location )
+        {
+            this.ref = ref;
+            this.source = location;
+        }
+
+        public DocCacheKey( final DocRef<T> dr )
+        {
+            this.ref = dr.getRef();
+            this.source = dr.getSource();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + ( ( source == null ) ? 0 : source.hashCode() );
+            result = prime * result + ( ( ref == null ) ? 0 : ref.hashCode() );
+            return result;
+        }
+
+        @Override
+        public boolean equals( final Object obj )
+        {
+            if ( this == obj )
+            {
+                return true;
+            }
+            if ( obj == null )
+            {
+                return false;
+            }
+            if ( getClass() != obj.getClass() )
+            {
+                return false;
+            }
+            @SuppressWarnings( "unchecked" )
+            final DocCacheKey<T> other = (DocCacheKey<T>) obj;
+            if ( source == null )
+            {
+                if ( other.source != null )
+                {
+                    return false;
+                }
+            }
+            else if ( !source.equals( other.source ) )
+            {
+                return false;
+            }
+            if ( ref == null )
+            {
+                return other.ref == null;
+            }
+            else
+            {
+                return ref.equals( other.ref );
+            }
+        }
+    }
+}
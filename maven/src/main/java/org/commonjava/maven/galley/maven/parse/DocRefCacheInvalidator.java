@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.parse;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.commonjava.maven.galley.event.FileAccessEvent;
+import org.commonjava.maven.galley.event.FileDeletionEvent;
+import org.commonjava.maven.galley.event.FileErrorEvent;
+import org.commonjava.maven.galley.event.FileEvent;
+import org.commonjava.maven.galley.event.FileNotFoundEvent;
+import org.commonjava.maven.galley.event.FileStorageEvent;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.spi.event.FileEventManager;
+
+/**
+ * {@link FileEventManager} decorator that drops cached documents from registered {@link DocRefCache}s when the
+ * {@link Transfer} they were parsed from is stored or deleted, then passes every event on to the delegate.
+ * <br/>
+ * {@link org.commonjava.maven.galley.maven.GalleyMavenBuilder} wires one in front of the configured events and
+ * registers its readers, as does the CDI embedder's {@link FileEventManager} producer. Other CDI environments should
+ * wrap the {@link FileEventManager} they produce the same way and {@link #register(AbstractMavenXmlReader)} the
+ * injected readers. Registering a reader (rather than its cache) is safe with CDI client proxies, since the reader
+ * isn't touched until the first event, and follows {@link AbstractMavenXmlReader#setDocCache(DocRefCache)}.
+ */
+public class DocRefCacheInvalidator
+    implements FileEventManager
+{
+
+    private final List<DocRefCache<?>> caches = new CopyOnWriteArrayList<>();
+
+    private final List<AbstractMavenXmlReader<?>> readers = new CopyOnWriteArrayList<>();
+
+    private final FileEventManager delegate;
+
+    public DocRefCacheInvalidator( final FileEventManager delegate )
+    {
+        this.delegate = delegate;
+    }
+
+    public void register( final DocRefCache<?> cache )
+    {
+        if ( cache != null && !caches.contains( cache ) )
+        {
+            caches.add( cache );
+        }
+    }
+
+    public void register( final AbstractMavenXmlReader<?> reader )
+    {
+        // compare by identity: equals() on a client proxy would already create the reader.
+        if ( reader != null && readers.stream().noneMatch( registered -> registered == reader ) )
+        {
+            readers.add( reader );
+        }
+    }
+
+    public FileEventManager getDelegate()
+    {
+        return delegate;
+    }
+
+    @Override
+    public void fire( final FileNotFoundEvent evt )
+    {
+        delegate.fire( evt );
+    }
+
+    @Override
+    public void fire( final FileStorageEvent evt )
+    {
+        invalidate( evt );
+        delegate.fire( evt );
+    }
+
+    @Override
+    public void fire( final FileAccessEvent evt )
+    {
+        delegate.fire( evt );
+    }
+
+    @Override
+    public void fire( final FileDeletionEvent evt )
+    {
+        invalidate( evt );
+        delegate.fire( evt );
+    }
+
+    @Override
+    public void fire( final FileErrorEvent evt )
+    {
+        delegate.fire( evt );
+    }
+
+    private void invalidate( final FileEvent evt )
+    {
+        final Transfer transfer = evt.getTransfer();
+        if ( transfer != null )
+        {
+            caches.forEach( cache -> cache.invalidate( transfer.getResource() ) );
+            readers.forEach( reader -> reader.getDocCache().invalidate( transfer.getResource() ) );
+        }
+    }
+
+}
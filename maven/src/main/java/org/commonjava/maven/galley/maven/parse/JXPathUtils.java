@@ -15,8 +15,8 @@
  */
 package org.commonjava.maven.galley.maven.parse;
 
-import org.apache.commons.jxpath.ClassFunctions;
 import org.apache.commons.jxpath.JXPathContext;
+import org.commonjava.maven.galley.maven.model.view.MavenPomView;
 import org.w3c.dom.Node;
 
 public final class JXPathUtils
@@ -30,7 +30,17 @@ public final class JXPathUtils
     {
         final JXPathContext ctx = JXPathContext.newContext( node );
         ctx.setLenient( true );
-        ctx.setFunctions( new ClassFunctions( ResolveFunctions.class, "ext" ) );
+
+        return ctx;
+    }
+
+    /**
+     * Create a context that also provides <code>ext:resolve(..)</code>, resolving expressions against the given view.
+     */
+    public static JXPathContext newContext( final Node node, final MavenPomView view )
+    {
+        final JXPathContext ctx = newContext( node );
+        ctx.setFunctions( new ResolveFunctions( view ) );
 
         return ctx;
     }
@@ -16,34 +16,50 @@
 package org.commonjava.maven.galley.maven.parse;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
 import org.commonjava.atlas.maven.ident.ref.ProjectRef;
 import org.commonjava.atlas.maven.ident.util.JoinString;
+import org.commonjava.atlas.maven.ident.util.VersionUtils;
+import org.commonjava.atlas.maven.ident.version.InvalidVersionSpecificationException;
+import org.commonjava.atlas.maven.ident.version.SingleVersion;
 import org.commonjava.maven.galley.TransferException;
 import org.commonjava.maven.galley.event.EventMetadata;
 import org.commonjava.maven.galley.maven.ArtifactMetadataManager;
 import org.commonjava.maven.galley.maven.GalleyMavenException;
+import org.commonjava.maven.galley.maven.model.meta.MavenMetadataIndex;
 import org.commonjava.maven.galley.maven.model.view.DocRef;
 import org.commonjava.maven.galley.maven.model.view.XPathManager;
 import org.commonjava.maven.galley.maven.model.view.meta.MavenMetadataView;
+import org.commonjava.maven.galley.model.ConcreteResource;
 import org.commonjava.maven.galley.model.Location;
 import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.spi.transport.LocationExpander;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 @ApplicationScoped
 public class MavenMetadataReader
     extends AbstractMavenXmlReader<ProjectRef>
 {
 
+    private static final int MAX_INDEX_ENTRIES = 10_000;
+
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
     @Inject
@@ -52,6 +68,12 @@ public class MavenMetadataReader
     @Inject
     private XPathManager xpath;
 
+    private final Map<ConcreteResource, IndexEntry> indexes = new ConcurrentHashMap<>();
+
+    private final LongAdder indexHits = new LongAdder();
+
+    private final LongAdder indexMisses = new LongAdder();
+
     protected MavenMetadataReader()
     {
     }
@@ -150,6 +172,317 @@ public class MavenMetadataReader
         return new MavenMetadataView( docs, xpath, xml );
     }
 
+    /**
+     * Retrieve the metadata for the given ref from all locations in a single batch (so the downloads run concurrently),
+     * and return a separate view per requested location, in the order given. Metadata found in a location's expansion
+     * is attributed to that location. Locations without metadata, or whose metadata can't be parsed, are left out.
+     */
+    public Map<Location, MavenMetadataView> getMetadataByLocation( final ProjectRef ref,
+                                                                   final List<? extends Location> locations,
+                                                                   final EventMetadata eventMetadata )
+        throws GalleyMavenException
+    {
+        final Map<Location, MavenMetadataView> result = new LinkedHashMap<>();
+        nextLoc: for ( final Map.Entry<Location, List<Transfer>> entry : getTransfersByLocation( ref, locations,
+                                                                                                eventMetadata ).entrySet() )
+        {
+            final List<DocRef<ProjectRef>> stack = new ArrayList<>( entry.getValue().size() );
+            for ( final Transfer transfer : entry.getValue() )
+            {
+                try
+                {
+                    stack.add( new DocRef<>( ref, transfer.getLocation(), xml.parse( transfer, eventMetadata ) ) );
+                }
+                catch ( final GalleyMavenXMLException e )
+                {
+                    skipUnparsable( ref, entry.getKey(), transfer, e );
+                    continue nextLoc;
+                }
+            }
+
+            result.put( entry.getKey(), new MavenMetadataView( stack, xpath, xml ) );
+        }
+
+        logger.debug( "Got metadata for: {} from {} of {} locations", ref, result.size(), locations.size() );
+        return result;
+    }
+
+    /**
+     * Like {@link #getMetadataByLocation(ProjectRef, List, EventMetadata)}, but returns the pre-parsed
+     * {@link MavenMetadataIndex} of each metadata file found for a location, in retrieval order. Indexes are cached per
+     * file, and rebuilt when the file changes. Locations whose metadata can't be parsed are left out.
+     */
+    public Map<Location, List<MavenMetadataIndex>> getIndexesByLocation( final ProjectRef ref,
+                                                                         final List<? extends Location> locations,
+                                                                         final EventMetadata eventMetadata )
+        throws GalleyMavenException
+    {
+        final Map<Location, List<MavenMetadataIndex>> result = new LinkedHashMap<>();
+        for ( final Map.Entry<Location, List<Transfer>> entry : getTransfersByLocation( ref, locations,
+                                                                                        eventMetadata ).entrySet() )
+        {
+            final List<MavenMetadataIndex> indexes = getIndexes( ref, entry.getKey(), entry.getValue(), eventMetadata );
+            if ( indexes != null )
+            {
+                result.put( entry.getKey(), indexes );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The {@link MavenMetadataIndex} of each of a location's metadata transfers (see
+     * {@link #getTransfersByLocation(ProjectRef, List, EventMetadata)}), in the same order.
+     *
+     * @return the indexes, or null if any of the transfers can't be parsed
+     */
+    public List<MavenMetadataIndex> getIndexes( final ProjectRef ref, final Location location,
+                                                final List<Transfer> transfers, final EventMetadata eventMetadata )
+    {
+        final List<MavenMetadataIndex> indexes = new ArrayList<>( transfers.size() );
+        for ( final Transfer transfer : transfers )
+        {
+            try
+            {
+                indexes.add( getIndex( ref, transfer, eventMetadata ) );
+            }
+            catch ( final GalleyMavenXMLException e )
+            {
+                skipUnparsable( ref, location, transfer, e );
+                return null;
+            }
+        }
+
+        return indexes;
+    }
+
+    /**
+     * One location's broken metadata mustn't hide the versions the other locations list, so it is left out, as it was
+     * when each location was read on its own.
+     */
+    private void skipUnparsable( final ProjectRef ref, final Location location, final Transfer transfer,
+                                 final GalleyMavenXMLException e )
+    {
+        logger.debug( String.format( "Failed to parse metadata for: %s from: %s (%s). Skipping it.", ref, location,
+                                     transfer ), e );
+    }
+
+    /**
+     * The {@link MavenMetadataIndex} for a retrieved metadata file. The cached index is reused as long as the file's
+     * modification time and length are unchanged; otherwise the file is parsed again.
+     */
+    public MavenMetadataIndex getIndex( final ProjectRef ref, final Transfer transfer,
+                                        final EventMetadata eventMetadata )
+        throws GalleyMavenXMLException
+    {
+        final ConcreteResource resource = transfer.getResource();
+        final long lastModified = transfer.lastModified();
+        final long length = transfer.length();
+
+        final IndexEntry entry = indexes.get( resource );
+        if ( entry != null && entry.lastModified == lastModified && entry.length == length
+            && entry.index.getRef().equals( ref ) )
+        {
+            indexHits.increment();
+            return entry.index;
+        }
+
+        indexMisses.increment();
+        final MavenMetadataIndex index = buildIndex( ref, transfer.getLocation(), xml.parse( transfer, eventMetadata ) );
+        if ( indexes.size() >= MAX_INDEX_ENTRIES )
+        {
+            indexes.clear();
+        }
+
+        indexes.put( resource, new IndexEntry( index, lastModified, length ) );
+        return index;
+    }
+
+    public int getIndexCacheSize()
+    {
+        return indexes.size();
+    }
+
+    public long getIndexHitCount()
+    {
+        return indexHits.sum();
+    }
+
+    public long getIndexMissCount()
+    {
+        return indexMisses.sum();
+    }
+
+    public void clearIndexes()
+    {
+        indexes.clear();
+    }
+
+    /**
+     * Retrieve metadata transfers for ref from all locations in one batch, grouped by the requested location each
+     * belongs to (in the order given). Locations without metadata are left out.
+     */
+    public Map<Location, List<Transfer>> getTransfersByLocation( final ProjectRef ref,
+                                                              final List<? extends Location> locations,
+                                                              final EventMetadata eventMetadata )
+        throws GalleyMavenException
+    {
+        final Map<Location, Location> owners = new HashMap<>();
+        final Map<Location, List<Transfer>> grouped = new LinkedHashMap<>();
+        List<Transfer> transfers;
+        try
+        {
+            for ( final Location location : locations )
+            {
+                grouped.put( location, new ArrayList<>() );
+                owners.putIfAbsent( location, location );
+                for ( final Location expanded : locationExpander.expand( location ) )
+                {
+                    owners.putIfAbsent( expanded, location );
+                }
+            }
+
+            transfers = metadataManager.retrieveAll( locations, ref, eventMetadata );
+        }
+        catch ( final TransferException e )
+        {
+            throw new GalleyMavenException( "Failed to resolve metadata for: {} from: {}. Reason: {}", e, ref,
+                                            locations, e.getMessage() );
+        }
+
+        //noinspection ConstantConditions
+        if ( transfers != null )
+        {
+            for ( final Transfer transfer : transfers )
+            {
+                final Location owner = owners.getOrDefault( transfer.getLocation(), transfer.getLocation() );
+                grouped.computeIfAbsent( owner, l -> new ArrayList<>() )
+                       .add( transfer );
+            }
+        }
+
+        grouped.values()
+               .removeIf( List::isEmpty );
+
+        return grouped;
+    }
+
+    private MavenMetadataIndex buildIndex( final ProjectRef ref, final Location location, final Document doc )
+    {
+        final Element versioning = child( doc.getDocumentElement(), "versioning" );
+        if ( versioning == null )
+        {
+            return new MavenMetadataIndex( ref, location, null, null, null, null, null );
+        }
+
+        final Set<SingleVersion> versions = new TreeSet<>();
+        final List<SingleVersion> snapshotVersions = new ArrayList<>();
+        SingleVersion latest = null;
+        SingleVersion release = null;
+        String lastUpdated = null;
+
+        for ( Node n = versioning.getFirstChild(); n != null; n = n.getNextSibling() )
+        {
+            if ( n.getNodeType() != Node.ELEMENT_NODE )
+            {
+                continue;
+            }
+
+            switch ( name( n ) )
+            {
+                case "latest":
+                    latest = version( ref, location, n );
+                    break;
+                case "release":
+                    release = version( ref, location, n );
+                    break;
+                case "lastUpdated":
+                    lastUpdated = n.getTextContent()
+                                   .trim();
+                    break;
+                case "versions":
+                    for ( Node v = n.getFirstChild(); v != null; v = v.getNextSibling() )
+                    {
+                        if ( v.getNodeType() == Node.ELEMENT_NODE && "version".equals( name( v ) ) )
+                        {
+                            final SingleVersion version = version( ref, location, v );
+                            if ( version != null )
+                            {
+                                versions.add( version );
+                            }
+                        }
+                    }
+                    break;
+                case "snapshotVersions":
+                    for ( Node sv = n.getFirstChild(); sv != null; sv = sv.getNextSibling() )
+                    {
+                        if ( sv.getNodeType() == Node.ELEMENT_NODE && "snapshotVersion".equals( name( sv ) ) )
+                        {
+                            final SingleVersion version = version( ref, location, child( sv, "value" ) );
+                            if ( version != null )
+                            {
+                                snapshotVersions.add( version );
+                            }
+                        }
+                    }
+                    break;
+                default:
+            }
+        }
+
+        return new MavenMetadataIndex( ref, location, versions.toArray( new SingleVersion[0] ), latest, release,
+                                       lastUpdated, snapshotVersions.toArray( new SingleVersion[0] ) );
+    }
+
+    private SingleVersion version( final ProjectRef ref, final Location location, final Node node )
+    {
+        if ( node == null )
+        {
+            return null;
+        }
+
+        final String value = node.getTextContent()
+                                 .trim();
+        if ( value.isEmpty() )
+        {
+            return null;
+        }
+
+        try
+        {
+            return VersionUtils.createSingleVersion( value );
+        }
+        catch ( final InvalidVersionSpecificationException e )
+        {
+            logger.debug( "Unparsable version: '{}' in metadata for: {} from: {}", value, ref, location );
+            return null;
+        }
+    }
+
+    private static Element child( final Node parent, final String name )
+    {
+        if ( parent == null )
+        {
+            return null;
+        }
+
+        for ( Node n = parent.getFirstChild(); n != null; n = n.getNextSibling() )
+        {
+            if ( n.getNodeType() == Node.ELEMENT_NODE && name.equals( name( n ) ) )
+            {
+                return (Element) n;
+            }
+        }
+
+        return null;
+    }
+
+    private static String name( final Node node )
+    {
+        return node.getLocalName() == null ? node.getNodeName() : node.getLocalName();
+    }
+
     public MavenMetadataView readMetadata( final ProjectRef ref, final List<Transfer> transfers )
         throws GalleyMavenException
     {
@@ -186,4 +519,20 @@ public class MavenMetadataReader
         return new MavenMetadataView( docs, xpath, xml );
     }
 
+    private static final class IndexEntry
+    {
+        private final MavenMetadataIndex index;
+
+        private final long lastModified;
+
+        private final long length;
+
+        IndexEntry( final MavenMetadataIndex index, final long lastModified, final long length )
+        {
+            this.index = index;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
 }
@@ -27,6 +27,9 @@ import org.commonjava.maven.galley.TransferException;
 import org.commonjava.maven.galley.event.EventMetadata;
 import org.commonjava.maven.galley.maven.ArtifactManager;
 import org.commonjava.maven.galley.maven.GalleyMavenException;
+import org.commonjava.maven.galley.maven.model.pom.PomDependency;
+import org.commonjava.maven.galley.maven.model.pom.PomModel;
+import org.commonjava.maven.galley.maven.model.pom.PomModelView;
 import org.commonjava.maven.galley.maven.model.view.DependencyView;
 import org.commonjava.maven.galley.maven.model.view.DocRef;
 import org.commonjava.maven.galley.maven.model.view.MavenPomView;
@@ -60,6 +63,9 @@ public class MavenPomReader
     @Inject
     private XPathManager xpath;
 
+    @Inject
+    private PomModelReader modelReader;
+
     protected MavenPomReader()
     {
     }
@@ -72,6 +78,7 @@ public class MavenPomReader
         this.xpath = xpath;
         this.pluginDefaults = pluginDefaults;
         this.pluginImplications = pluginImplications;
+        this.modelReader = new PomModelReader();
     }
 
     public MavenPomView read( final ProjectVersionRef ref, final Transfer pom, final List<? extends Location> locations,
@@ -204,12 +211,11 @@ public class MavenPomReader
             }
 
             final Document doc = xml.parse( transfer, new EventMetadata() );
-            dr = new DocRef<>( ref, transfer.getLocation()
-                                                             .toString(), doc );
+            dr = new DocRef<>( ref, transfer.getLocation(), doc );
 
             if ( cache )
             {
-                cache( dr );
+                cache( dr, transfer );
             }
         }
 
@@ -226,11 +232,11 @@ public class MavenPomReader
         {
             final Document doc = xml.parse( pom, eventMetadata );
             dr = new DocRef<>( ref, pom.getLocation(), doc );
-        }
 
-        if ( cache )
-        {
-            cache( dr );
+            if ( cache )
+            {
+                cache( dr, pom );
+            }
         }
 
         return dr;
@@ -340,6 +346,78 @@ public class MavenPomReader
         return view;
     }
 
+    /**
+     * Streaming alternative to {@link #read(ProjectVersionRef, List, EventMetadata, String...)}: read the POM and
+     * its ancestry with {@link PomModelReader} and return a {@link PomModelView} over the compact models, with
+     * imported BOMs applied as mix-ins. No DOM is built and the result is not cached.
+     */
+    public PomModelView readModel( final ProjectVersionRef ref, final List<? extends Location> locations,
+                                   final String... activeProfileIds )
+        throws GalleyMavenException
+    {
+        return readModel( ref, locations, new EventMetadata(), activeProfileIds );
+    }
+
+    public PomModelView readModel( final ProjectVersionRef ref, final List<? extends Location> locations,
+                                   final EventMetadata eventMetadata, final String... activeProfileIds )
+        throws GalleyMavenException
+    {
+        return readModel( ref, null, locations, eventMetadata, activeProfileIds );
+    }
+
+    /**
+     * Like {@link #readModel(ProjectVersionRef, List, EventMetadata, String...)}, starting from an already-retrieved
+     * POM (if not null) rather than looking it up in the locations.
+     */
+    public PomModelView readModel( final ProjectVersionRef ref, final Transfer pom,
+                                   final List<? extends Location> locations, final EventMetadata eventMetadata,
+                                   final String... activeProfileIds )
+        throws GalleyMavenException
+    {
+        final List<PomModel> stack = new ArrayList<>();
+
+        ProjectVersionRef next = ref;
+        Transfer transfer = pom;
+        do
+        {
+            if ( transfer == null )
+            {
+                try
+                {
+                    transfer = artifacts.retrieveFirst( locations, next.asPomArtifact(), eventMetadata );
+                }
+                catch ( final TransferException e )
+                {
+                    throw new GalleyMavenException( "Failed to retrieve POM for: {}, {} levels deep in ancestry stack of: {}. Reason: {}", e, next,
+                                                    stack.size(), ref, e.getMessage() );
+                }
+
+                if ( transfer == null )
+                {
+                    throw new GalleyMavenException( "Cannot resolve {}, {} levels dep in the ancestry stack of: {}", next, stack.size(), ref );
+                }
+            }
+
+            final PomModel model = modelReader.read( transfer );
+            stack.add( model );
+
+            next = model.getParentRef();
+            transfer = null;
+        }
+        while ( next != null );
+
+        final PomModelView view = new PomModelView( ref, stack, pluginDefaults, pluginImplications, activeProfileIds );
+        for ( final PomDependency bom : view.getAllBOMs() )
+        {
+            final ProjectVersionRef bomRef = bom.asProjectVersionRef();
+            logger.debug( "Found BOM: {} for: {}", bomRef, ref );
+
+            view.addMixin( readModel( bomRef, locations, eventMetadata ) );
+        }
+
+        return view;
+    }
+
     private void assembleImportedInformation( final MavenPomView view, final List<? extends Location> locations )
         throws GalleyMavenException
     {
@@ -0,0 +1,685 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.parse;
+
+import org.commonjava.maven.galley.maven.model.pom.PomDependency;
+import org.commonjava.maven.galley.maven.model.pom.PomModel;
+import org.commonjava.maven.galley.maven.model.pom.PomPlugin;
+import org.commonjava.maven.galley.maven.model.pom.PomRef;
+import org.commonjava.maven.galley.maven.model.pom.PomRepository;
+import org.commonjava.maven.galley.model.Transfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+/**
+ * Streaming alternative to {@link XMLInfrastructure#parse(Transfer)} for POMs. Reads the document once with StAX
+ * and keeps only what {@link PomModel} holds, without buffering the raw XML or building a DOM. Anything else in the
+ * POM (configuration, descriptions, etc.) is skipped as it streams past.
+ * <br/>
+ * Like {@link PomPeek}, this is namespace-agnostic and doesn't validate. Undeclared entity references (which some
+ * old POMs in the wild contain) are dropped rather than failing the parse.
+ */
+@ApplicationScoped
+public class PomModelReader
+{
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final XMLInputFactory inputFactory;
+
+    public PomModelReader()
+    {
+        inputFactory = XMLInputFactory.newFactory();
+        inputFactory.setProperty( XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false );
+        inputFactory.setProperty( XMLInputFactory.IS_VALIDATING, false );
+        inputFactory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+    }
+
+    public PomModel read( final Transfer transfer )
+        throws GalleyMavenXMLException
+    {
+        InputStream stream = null;
+        try
+        {
+            stream = transfer.openInputStream( false );
+            return read( transfer.toString(), stream );
+        }
+        catch ( final IOException e )
+        {
+            throw new GalleyMavenXMLException( "Failed to read: %s. Reason: %s", e, transfer, e.getMessage() );
+        }
+        finally
+        {
+            closeQuietly( stream );
+        }
+    }
+
+    public PomModel read( final Object docSource, final InputStream stream )
+        throws GalleyMavenXMLException
+    {
+        if ( stream == null )
+        {
+            throw new GalleyMavenXMLException( "Cannot parse null input stream from: %s.", docSource );
+        }
+
+        XMLStreamReader xml = null;
+        try
+        {
+            xml = inputFactory.createXMLStreamReader( stream );
+            while ( xml.hasNext() && xml.next() != START_ELEMENT )
+            {
+                // advance to the root element.
+            }
+
+            if ( !xml.isStartElement() || !"project".equals( xml.getLocalName() ) )
+            {
+                throw new GalleyMavenXMLException( "Not a POM: %s. Root element is not <project/>.", docSource );
+            }
+
+            final PomModel.Builder builder = new PomModel.Builder( String.valueOf( docSource ) );
+            readProject( xml, builder );
+
+            logger.trace( "Read model from: {}", docSource );
+            return builder.build();
+        }
+        catch ( final XMLStreamException e )
+        {
+            throw new GalleyMavenXMLException( "Failed to parse: %s. STaX error: %s", e, docSource, e.getMessage() );
+        }
+        finally
+        {
+            if ( xml != null )
+            {
+                try
+                {
+                    xml.close();
+                }
+                catch ( final XMLStreamException e )
+                {
+                    logger.warn( "Failed to close XMLStreamReader: " + e.getMessage(), e );
+                }
+            }
+        }
+    }
+
+    private void readProject( final XMLStreamReader xml, final PomModel.Builder builder )
+        throws XMLStreamException
+    {
+        while ( nextChild( xml ) )
+        {
+            switch ( xml.getLocalName() )
+            {
+                case "groupId":
+                    builder.withGroupId( value( xml ) );
+                    break;
+                case "artifactId":
+                    builder.withArtifactId( value( xml ) );
+                    break;
+                case "version":
+                    builder.withVersion( value( xml ) );
+                    break;
+                case "packaging":
+                    builder.withPackaging( value( xml ) );
+                    break;
+                case "parent":
+                    readParent( xml, builder );
+                    break;
+                case "modules":
+                    while ( nextChild( xml ) )
+                    {
+                        if ( "module".equals( xml.getLocalName() ) )
+                        {
+                            builder.withModule( value( xml ) );
+                        }
+                        else
+                        {
+                            skip( xml );
+                        }
+                    }
+                    break;
+                case "profiles":
+                    while ( nextChild( xml ) )
+                    {
+                        if ( "profile".equals( xml.getLocalName() ) )
+                        {
+                            readProfile( xml, builder );
+                        }
+                        else
+                        {
+                            skip( xml );
+                        }
+                    }
+                    break;
+                default:
+                    readModelBase( xml, builder );
+            }
+        }
+    }
+
+    /**
+     * Handle the elements a profile shares with the main POM body; skip anything else.
+     */
+    private void readModelBase( final XMLStreamReader xml, final PomModel.Builder builder )
+        throws XMLStreamException
+    {
+        switch ( xml.getLocalName() )
+        {
+            case "properties":
+                while ( nextChild( xml ) )
+                {
+                    builder.withProperty( xml.getLocalName(), text( xml ) );
+                }
+                break;
+            case "dependencies":
+                for ( final PomDependency dep : readDependencies( xml ) )
+                {
+                    builder.withDependency( dep );
+                }
+                break;
+            case "dependencyManagement":
+                while ( nextChild( xml ) )
+                {
+                    if ( "dependencies".equals( xml.getLocalName() ) )
+                    {
+                        for ( final PomDependency dep : readDependencies( xml ) )
+                        {
+                            builder.withManagedDependency( dep );
+                        }
+                    }
+                    else
+                    {
+                        skip( xml );
+                    }
+                }
+                break;
+            case "build":
+                readBuild( xml, builder );
+                break;
+            case "reporting":
+                while ( nextChild( xml ) )
+                {
+                    if ( "plugins".equals( xml.getLocalName() ) )
+                    {
+                        for ( final PomPlugin plugin : readPlugins( xml ) )
+                        {
+                            builder.withReportPlugin( plugin );
+                        }
+                    }
+                    else
+                    {
+                        skip( xml );
+                    }
+                }
+                break;
+            case "repositories":
+                for ( final PomRepository repo : readRepositories( xml, "repository" ) )
+                {
+                    builder.withRepository( repo );
+                }
+                break;
+            case "pluginRepositories":
+                for ( final PomRepository repo : readRepositories( xml, "pluginRepository" ) )
+                {
+                    builder.withPluginRepository( repo );
+                }
+                break;
+            default:
+                skip( xml );
+        }
+    }
+
+    private void readParent( final XMLStreamReader xml, final PomModel.Builder builder )
+        throws XMLStreamException
+    {
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        String relativePath = null;
+        while ( nextChild( xml ) )
+        {
+            switch ( xml.getLocalName() )
+            {
+                case "groupId":
+                    groupId = value( xml );
+                    break;
+                case "artifactId":
+                    artifactId = value( xml );
+                    break;
+                case "version":
+                    version = value( xml );
+                    break;
+                case "relativePath":
+                    relativePath = value( xml );
+                    break;
+                default:
+                    skip( xml );
+            }
+        }
+
+        builder.withParent( new PomRef( groupId, artifactId, version ), relativePath );
+    }
+
+    private void readProfile( final XMLStreamReader xml, final PomModel.Builder builder )
+        throws XMLStreamException
+    {
+        // the id isn't guaranteed to come first, so collect the content and tag it once the profile is finished.
+        final PomModel.Builder profile = new PomModel.Builder( null );
+        String id = null;
+        while ( nextChild( xml ) )
+        {
+            if ( "id".equals( xml.getLocalName() ) )
+            {
+                id = value( xml );
+            }
+            else
+            {
+                readModelBase( xml, profile );
+            }
+        }
+
+        builder.addProfile( id, profile );
+    }
+
+    private void readBuild( final XMLStreamReader xml, final PomModel.Builder builder )
+        throws XMLStreamException
+    {
+        while ( nextChild( xml ) )
+        {
+            switch ( xml.getLocalName() )
+            {
+                case "plugins":
+                    for ( final PomPlugin plugin : readPlugins( xml ) )
+                    {
+                        builder.withBuildPlugin( plugin );
+                    }
+                    break;
+                case "pluginManagement":
+                    while ( nextChild( xml ) )
+                    {
+                        if ( "plugins".equals( xml.getLocalName() ) )
+                        {
+                            for ( final PomPlugin plugin : readPlugins( xml ) )
+                            {
+                                builder.withManagedPlugin( plugin );
+                            }
+                        }
+                        else
+                        {
+                            skip( xml );
+                        }
+                    }
+                    break;
+                case "extensions":
+                    while ( nextChild( xml ) )
+                    {
+                        if ( "extension".equals( xml.getLocalName() ) )
+                        {
+                            builder.withExtension( readRef( xml ) );
+                        }
+                        else
+                        {
+                            skip( xml );
+                        }
+                    }
+                    break;
+                default:
+                    skip( xml );
+            }
+        }
+    }
+
+    private List<PomDependency> readDependencies( final XMLStreamReader xml )
+        throws XMLStreamException
+    {
+        final List<PomDependency> result = new ArrayList<>();
+        while ( nextChild( xml ) )
+        {
+            if ( "dependency".equals( xml.getLocalName() ) )
+            {
+                result.add( readDependency( xml ) );
+            }
+            else
+            {
+                skip( xml );
+            }
+        }
+
+        return result;
+    }
+
+    private PomDependency readDependency( final XMLStreamReader xml )
+        throws XMLStreamException
+    {
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        String type = null;
+        String classifier = null;
+        String scope = null;
+        String optional = null;
+        List<PomRef> exclusions = null;
+        while ( nextChild( xml ) )
+        {
+            switch ( xml.getLocalName() )
+            {
+                case "groupId":
+                    groupId = value( xml );
+                    break;
+                case "artifactId":
+                    artifactId = value( xml );
+                    break;
+                case "version":
+                    version = value( xml );
+                    break;
+                case "type":
+                    type = value( xml );
+                    break;
+                case "classifier":
+                    classifier = value( xml );
+                    break;
+                case "scope":
+                    scope = value( xml );
+                    break;
+                case "optional":
+                    optional = value( xml );
+                    break;
+                case "exclusions":
+                    exclusions = new ArrayList<>();
+                    while ( nextChild( xml ) )
+                    {
+                        if ( "exclusion".equals( xml.getLocalName() ) )
+                        {
+                            exclusions.add( readRef( xml ) );
+                        }
+                        else
+                        {
+                            skip( xml );
+                        }
+                    }
+                    break;
+                default:
+                    skip( xml );
+            }
+        }
+
+        return new PomDependency( groupId, artifactId, version, type, classifier, scope, optional, exclusions, null );
+    }
+
+    private List<PomPlugin> readPlugins( final XMLStreamReader xml )
+        throws XMLStreamException
+    {
+        final List<PomPlugin> result = new ArrayList<>();
+        while ( nextChild( xml ) )
+        {
+            if ( "plugin".equals( xml.getLocalName() ) )
+            {
+                result.add( readPlugin( xml ) );
+            }
+            else
+            {
+                skip( xml );
+            }
+        }
+
+        return result;
+    }
+
+    private PomPlugin readPlugin( final XMLStreamReader xml )
+        throws XMLStreamException
+    {
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        List<PomDependency> dependencies = null;
+        final List<PomPlugin> reportPlugins = new ArrayList<>();
+        while ( nextChild( xml ) )
+        {
+            switch ( xml.getLocalName() )
+            {
+                case "groupId":
+                    groupId = value( xml );
+                    break;
+                case "artifactId":
+                    artifactId = value( xml );
+                    break;
+                case "version":
+                    version = value( xml );
+                    break;
+                case "dependencies":
+                    dependencies = readDependencies( xml );
+                    break;
+                case "configuration":
+                    readReportPlugins( xml, reportPlugins );
+                    break;
+                default:
+                    skip( xml );
+            }
+        }
+
+        return new PomPlugin( groupId, artifactId, version, dependencies, reportPlugins, null );
+    }
+
+    /**
+     * Plugin configuration is free-form; the only thing of interest in it is the <code>reportPlugin</code> list
+     * maven-site-plugin accepts, wherever it's nested.
+     */
+    private void readReportPlugins( final XMLStreamReader xml, final List<PomPlugin> reportPlugins )
+        throws XMLStreamException
+    {
+        while ( nextChild( xml ) )
+        {
+            if ( "reportPlugin".equals( xml.getLocalName() ) )
+            {
+                reportPlugins.add( readPlugin( xml ) );
+            }
+            else
+            {
+                readReportPlugins( xml, reportPlugins );
+            }
+        }
+    }
+
+    private List<PomRepository> readRepositories( final XMLStreamReader xml, final String elementName )
+        throws XMLStreamException
+    {
+        final List<PomRepository> result = new ArrayList<>();
+        while ( nextChild( xml ) )
+        {
+            if ( !elementName.equals( xml.getLocalName() ) )
+            {
+                skip( xml );
+                continue;
+            }
+
+            String id = null;
+            String name = null;
+            String url = null;
+            String releases = null;
+            String snapshots = null;
+            while ( nextChild( xml ) )
+            {
+                switch ( xml.getLocalName() )
+                {
+                    case "id":
+                        id = value( xml );
+                        break;
+                    case "name":
+                        name = value( xml );
+                        break;
+                    case "url":
+                        url = value( xml );
+                        break;
+                    case "releases":
+                        releases = readEnabled( xml );
+                        break;
+                    case "snapshots":
+                        snapshots = readEnabled( xml );
+                        break;
+                    default:
+                        skip( xml );
+                }
+            }
+
+            result.add( new PomRepository( id, name, url, releases, snapshots, null ) );
+        }
+
+        return result;
+    }
+
+    private String readEnabled( final XMLStreamReader xml )
+        throws XMLStreamException
+    {
+        String enabled = null;
+        while ( nextChild( xml ) )
+        {
+            if ( "enabled".equals( xml.getLocalName() ) )
+            {
+                enabled = value( xml );
+            }
+            else
+            {
+                skip( xml );
+            }
+        }
+
+        return enabled;
+    }
+
+    private PomRef readRef( final XMLStreamReader xml )
+        throws XMLStreamException
+    {
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        while ( nextChild( xml ) )
+        {
+            switch ( xml.getLocalName() )
+            {
+                case "groupId":
+                    groupId = value( xml );
+                    break;
+                case "artifactId":
+                    artifactId = value( xml );
+                    break;
+                case "version":
+                    version = value( xml );
+                    break;
+                default:
+                    skip( xml );
+            }
+        }
+
+        return new PomRef( groupId, artifactId, version );
+    }
+
+    /**
+     * Move to the next child of the current element. Returns false, positioned on the parent's END_ELEMENT, when
+     * there are no more. Each child must be fully consumed (read or skipped) before calling this again.
+     */
+    private static boolean nextChild( final XMLStreamReader xml )
+        throws XMLStreamException
+    {
+        while ( xml.hasNext() )
+        {
+            final int evt = xml.next();
+            if ( evt == START_ELEMENT )
+            {
+                return true;
+            }
+            else if ( evt == END_ELEMENT )
+            {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    private static void skip( final XMLStreamReader xml )
+        throws XMLStreamException
+    {
+        int depth = 1;
+        while ( depth > 0 && xml.hasNext() )
+        {
+            final int evt = xml.next();
+            if ( evt == START_ELEMENT )
+            {
+                depth++;
+            }
+            else if ( evt == END_ELEMENT )
+            {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * The trimmed text content of the current element (like DOM's getTextContent()), consuming it.
+     */
+    private static String text( final XMLStreamReader xml )
+        throws XMLStreamException
+    {
+        final StringBuilder sb = new StringBuilder();
+        int depth = 1;
+        while ( depth > 0 && xml.hasNext() )
+        {
+            switch ( xml.next() )
+            {
+                case START_ELEMENT:
+                    depth++;
+                    break;
+                case END_ELEMENT:
+                    depth--;
+                    break;
+                case CHARACTERS:
+                case CDATA:
+                case SPACE:
+                    sb.append( xml.getText() );
+                    break;
+                default:
+            }
+        }
+
+        return sb.toString().trim();
+    }
+
+    /**
+     * Same as {@link #text(XMLStreamReader)}, with empty values treated as undeclared.
+     */
+    private static String value( final XMLStreamReader xml )
+        throws XMLStreamException
+    {
+        final String text = text( xml );
+        return text.isEmpty() ? null : text;
+    }
+
+}
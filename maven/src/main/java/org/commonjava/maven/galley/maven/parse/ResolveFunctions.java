@@ -15,37 +15,75 @@
  */
 package org.commonjava.maven.galley.maven.parse;
 
+import java.util.Collections;
+import java.util.Set;
+
+import org.apache.commons.jxpath.ExpressionContext;
+import org.apache.commons.jxpath.Function;
+import org.apache.commons.jxpath.Functions;
+import org.apache.commons.jxpath.util.TypeUtils;
 import org.commonjava.maven.galley.maven.model.view.MavenPomView;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
+/**
+ * JXPath {@link Functions} providing <code>ext:resolve(..)</code>, which resolves Maven expressions in its argument
+ * against one particular {@link MavenPomView}. Each view binds its own instance into the contexts it queries with
+ * (see {@link JXPathUtils#newContext(org.w3c.dom.Node, MavenPomView)}), so there's no thread-local state for pooled
+ * threads to inherit or leak.
+ */
 public class ResolveFunctions
+    implements Functions
 {
 
-    private static final InheritableThreadLocal<MavenPomView> pomView = new InheritableThreadLocal<>();
+    public static final String NAMESPACE = "ext";
+
+    private static final String RESOLVE = "resolve";
 
-    public static void setPomView( final MavenPomView pom )
+    private final Function resolve;
+
+    public ResolveFunctions( final MavenPomView pom )
     {
-        pomView.set( pom );
+        this.resolve = new ResolveFunction( pom );
     }
 
-    public static MavenPomView getPomView()
+    @Override
+    public Set<String> getUsedNamespaces()
     {
-        return pomView.get();
+        return Collections.singleton( NAMESPACE );
     }
 
-    public static String resolve( final String expr )
+    @Override
+    public Function getFunction( final String namespace, final String name, final Object[] parameters )
     {
-        if ( expr == null || expr.trim()
-                                 .length() < 1 )
+        if ( NAMESPACE.equals( namespace ) && RESOLVE.equals( name ) && parameters != null
+                && parameters.length == 1 )
         {
-            return null;
+            return resolve;
         }
 
-        final Logger logger = LoggerFactory.getLogger( ResolveFunctions.class );
+        return null;
+    }
 
-        final MavenPomView pom = getPomView();
+    private static final class ResolveFunction
+        implements Function
+    {
+        private final MavenPomView pom;
 
-        return pom.resolveExpressions( expr );
+        private ResolveFunction( final MavenPomView pom )
+        {
+            this.pom = pom;
+        }
+
+        @Override
+        public Object invoke( final ExpressionContext context, final Object[] parameters )
+        {
+            final String expr = (String) TypeUtils.convert( parameters[0], String.class );
+            if ( expr == null || expr.trim()
+                                     .length() < 1 )
+            {
+                return null;
+            }
+
+            return pom.resolveExpressions( expr );
+        }
     }
 }
@@ -32,6 +32,10 @@ import org.commonjava.atlas.maven.ident.ref.SimpleArtifactRef;
 import org.commonjava.atlas.maven.ident.util.JoinString;
 import org.commonjava.atlas.maven.ident.version.InvalidVersionSpecificationException;
 import org.commonjava.maven.galley.maven.GalleyMavenException;
+import org.commonjava.maven.galley.maven.model.pom.PomDependency;
+import org.commonjava.maven.galley.maven.model.pom.PomModelView;
+import org.commonjava.maven.galley.maven.model.pom.PomPlugin;
+import org.commonjava.maven.galley.maven.model.pom.PomRef;
 import org.commonjava.maven.galley.maven.model.view.DependencyView;
 import org.commonjava.maven.galley.maven.model.view.ExtensionView;
 import org.commonjava.maven.galley.maven.model.view.MavenPomView;
@@ -565,4 +569,257 @@ public class MavenModelProcessor
         }
     }
 
+
+    /**
+     * Same as {@link #readRelationships(MavenPomView, URI, ModelProcessorConfig)}, reading from the compact models
+     * produced by {@link org.commonjava.maven.galley.maven.parse.MavenPomReader#readModel} instead of DOM views.
+     */
+    public EProjectDirectRelationships readRelationships( final PomModelView pomView, final URI source,
+                                                          final ModelProcessorConfig discoveryConfig )
+        throws GalleyMavenException
+    {
+        logger.info( "Reading relationships for: {}\n  (from: {})", pomView.getRef(), source );
+
+        try
+        {
+            final ProjectVersionRef projectRef = pomView.getRef();
+
+            final EProjectDirectRelationships.Builder builder =
+                new EProjectDirectRelationships.Builder( source, projectRef );
+
+            addParentRelationship( source, builder, pomView, projectRef );
+
+            addDependencyRelationships( source, builder, pomView, projectRef,
+                                        discoveryConfig.isIncludeManagedDependencies() );
+
+            if ( discoveryConfig.isIncludeBuildSection() )
+            {
+                addExtensionUsages( source, builder, pomView, projectRef );
+
+                if ( discoveryConfig.isIncludeManagedPlugins() )
+                {
+                    addPlugins( pomView, pomView.getAllManagedBuildPlugins(), projectRef, builder, source, true );
+                }
+
+                addPlugins( pomView, pomView.getAllBuildPlugins(), projectRef, builder, source, false );
+                addPlugins( pomView, pomView.getAllReportPlugins(), projectRef, builder, source, false );
+                addPlugins( pomView, pomView.getAllSiteReportPlugins(), projectRef, builder, source, false );
+            }
+
+            return builder.build();
+        }
+        catch ( final InvalidVersionSpecificationException e )
+        {
+            throw new GalleyMavenException( "Failed to parse version for model: {}. Reason: {}", e, pomView,
+                                            e.getMessage() );
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            throw new GalleyMavenException( "Failed to parse relationships for model: {}. Reason: {}", e, pomView,
+                                            e.getMessage() );
+        }
+    }
+
+    private void addParentRelationship( final URI source, final Builder builder, final PomModelView pomView,
+                                        final ProjectVersionRef projectRef )
+    {
+        try
+        {
+            final PomRef parent = pomView.getParent();
+            if ( parent != null )
+            {
+                final ProjectVersionRef ref = parent.asProjectVersionRef();
+                // force the InvalidVersionSpecificationException.
+                ref.getVersionSpec();
+
+                logger.info( "Adding parent relationship for: {} to : {}", builder.getProjectRef(), ref );
+                builder.withParent( new SimpleParentRelationship( source, builder.getProjectRef(), ref ) );
+            }
+            else
+            {
+                logger.info(
+                        "Adding self-referential parent relationship for: {} to signify project has no parent, but is parsable.",
+                        builder.getProjectRef() );
+                builder.withParent( new SimpleParentRelationship( builder.getProjectRef() ) );
+            }
+        }
+        catch ( final GalleyMavenException | InvalidVersionSpecificationException | InvalidRefException e )
+        {
+            logger.error( String.format( "%s: Parent reference is invalid! Reason: %s. Skipping.", projectRef,
+                                         e.getMessage() ), e );
+        }
+    }
+
+    private void addDependencyRelationships( final URI source, final Builder builder, final PomModelView pomView,
+                                             final ProjectVersionRef projectRef,
+                                             final boolean includeManagedDependencies )
+    {
+        // regardless of whether we're processing managed info, this is STRUCTURAL, so always grab it!
+        final List<PomDependency> boms = pomView.getAllBOMs();
+        for ( int i = 0; i < boms.size(); i++ )
+        {
+            final PomDependency bom = boms.get( i );
+            try
+            {
+                builder.withBoms( new SimpleBomRelationship( source, projectRef, bom.asProjectVersionRef(), i,
+                                                             bom.getOriginInfo().isInherited(),
+                                                             bom.getOriginInfo().isMixin() ) );
+            }
+            catch ( final InvalidRefException | InvalidVersionSpecificationException | GalleyMavenException e )
+            {
+                logger.error( String.format( "%s dependency is invalid! Reason: %s. Skipping:\n\n%s\n\n", projectRef,
+                                             e.getMessage(), bom ), e );
+            }
+        }
+
+        if ( includeManagedDependencies )
+        {
+            addDependencies( pomView.getAllManagedDependencies(), projectRef, builder, source, true );
+        }
+
+        addDependencies( pomView.getAllDirectDependencies(), projectRef, builder, source, false );
+    }
+
+    private void addDependencies( final List<PomDependency> deps, final ProjectVersionRef projectRef,
+                                  final Builder builder, final URI source, final boolean managed )
+    {
+        for ( final PomDependency dep : deps )
+        {
+            try
+            {
+                final URI location = RelationshipUtils.profileLocation( dep.getProfileId() );
+
+                final ArtifactRef artifactRef = dep.asArtifactRef();
+
+                // force the InvalidVersionSpecificationException.
+                artifactRef.getVersionSpec();
+
+                final List<PomRef> exclusions = dep.getExclusions();
+                final ProjectRef[] excludes = new ProjectRef[exclusions.size()];
+                for ( int i = 0; i < excludes.length; i++ )
+                {
+                    excludes[i] = exclusions.get( i ).asProjectRef();
+                }
+
+                builder.withDependencies( new SimpleDependencyRelationship( source, location, projectRef, artifactRef,
+                                                                            dep.getScope(),
+                                                                            builder.getNextDependencyIndex( managed ),
+                                                                            managed,
+                                                                            dep.getOriginInfo().isInherited(),
+                                                                            dep.isOptional(), excludes ) );
+            }
+            catch ( final InvalidRefException | InvalidVersionSpecificationException | GalleyMavenException e )
+            {
+                logger.error( String.format( "%s: dependency is invalid! Reason: %s. Skipping:\n\n%s\n\n",
+                                             projectRef, e.getMessage(), dep ), e );
+            }
+        }
+    }
+
+    private void addExtensionUsages( final URI source, final Builder builder, final PomModelView pomView,
+                                     final ProjectVersionRef projectRef )
+    {
+        for ( final PomRef ext : pomView.getBuildExtensions() )
+        {
+            try
+            {
+                final ProjectVersionRef ref = ext.asProjectVersionRef();
+
+                // force the InvalidVersionSpecificationException.
+                ref.getVersionSpec();
+
+                builder.withExtensions( new SimpleExtensionRelationship( source, projectRef, ref,
+                                                                         builder.getNextExtensionIndex(),
+                                                                         ext.getOriginInfo().isInherited() ) );
+            }
+            catch ( final InvalidRefException | InvalidVersionSpecificationException | GalleyMavenException e )
+            {
+                logger.error( String.format( "%s: Build extension is invalid! Reason: %s. Skipping:\n\n%s\n\n",
+                                             projectRef, e.getMessage(), ext ), e );
+            }
+        }
+    }
+
+    private void addPlugins( final PomModelView pomView, final List<PomPlugin> plugins,
+                             final ProjectVersionRef projectRef, final Builder builder, final URI source,
+                             final boolean managed )
+    {
+        for ( final PomPlugin plugin : plugins )
+        {
+            final ProjectVersionRef pluginRef;
+            try
+            {
+                if ( plugin.getVersion() == null )
+                {
+                    logger.error( "{}: Cannot find a version for plugin: {}. Skipping.", projectRef, plugin );
+                    continue;
+                }
+
+                pluginRef = plugin.asProjectVersionRef();
+
+                // force the InvalidVersionSpecificationException.
+                pluginRef.getVersionSpec();
+
+                final URI location = RelationshipUtils.profileLocation( plugin.getProfileId() );
+
+                final boolean inherited = plugin.getOriginInfo().isInherited();
+                builder.withPlugins( new SimplePluginRelationship( source, location, projectRef, pluginRef,
+                                                                   builder.getNextPluginDependencyIndex( projectRef,
+                                                                                                         managed,
+                                                                                                         inherited ),
+                                                                   managed, inherited ) );
+            }
+            catch ( final InvalidRefException | InvalidVersionSpecificationException | GalleyMavenException e )
+            {
+                logger.error( String.format( "%s: plugin is invalid! Reason: %s. Skipping:\n\n%s\n\n", projectRef,
+                                             e.getMessage(), plugin ), e );
+                continue;
+            }
+
+            addPluginDependencies( plugin.getDependencies(), pluginRef, projectRef, builder, source, managed );
+
+            try
+            {
+                addPluginDependencies( pomView.getImpliedPluginDependencies( plugin ), pluginRef, projectRef, builder,
+                                       source, managed );
+            }
+            catch ( final GalleyMavenException e )
+            {
+                logger.error( String.format( "%s: Cannot retrieve implied plugin dependencies for: %s. Reason: %s",
+                                             projectRef, pluginRef, e.getMessage() ), e );
+            }
+        }
+    }
+
+    private void addPluginDependencies( final List<PomDependency> pluginDependencies,
+                                        final ProjectVersionRef pluginRef, final ProjectVersionRef projectRef,
+                                        final Builder builder, final URI source, final boolean managed )
+    {
+        for ( final PomDependency dep : pluginDependencies )
+        {
+            try
+            {
+                final URI location = RelationshipUtils.profileLocation( dep.getProfileId() );
+
+                final ArtifactRef artifactRef = dep.asArtifactRef();
+
+                // force the InvalidVersionSpecificationException.
+                artifactRef.getVersionSpec();
+
+                final boolean inherited = dep.getOriginInfo().isInherited();
+                builder.withPluginDependencies( new SimplePluginDependencyRelationship( source, location, projectRef,
+                                                                                        pluginRef, artifactRef,
+                                                                                        builder.getNextPluginDependencyIndex(
+                                                                                                pluginRef, managed,
+                                                                                                inherited ),
+                                                                                        managed, inherited ) );
+            }
+            catch ( final InvalidRefException | InvalidVersionSpecificationException | GalleyMavenException e )
+            {
+                logger.error( String.format( "%s: plugin dependency is invalid in: %s! Reason: %s. Skipping:\n\n%s\n\n",
+                                             projectRef, pluginRef, e.getMessage(), dep ), e );
+            }
+        }
+    }
+
 }
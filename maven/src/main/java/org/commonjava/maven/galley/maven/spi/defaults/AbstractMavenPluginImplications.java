@@ -19,6 +19,7 @@ import static org.commonjava.maven.galley.maven.model.view.XPathManager.A;
 import static org.commonjava.maven.galley.maven.model.view.XPathManager.G;
 import static org.commonjava.maven.galley.maven.model.view.XPathManager.V;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -80,6 +81,13 @@ public abstract class AbstractMavenPluginImplications
         return views;
     }
 
+    @Override
+    public Set<ProjectRef> getImpliedPluginDependencyRefs( final ProjectRef plugin )
+    {
+        final Set<ProjectRef> implied = getImpliedRefMap().get( plugin );
+        return implied == null ? Collections.emptySet() : implied;
+    }
+
     protected abstract Map<ProjectRef, Set<ProjectRef>> getImpliedRefMap();
 
 }
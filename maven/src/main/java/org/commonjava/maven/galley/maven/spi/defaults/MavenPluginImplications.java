@@ -15,8 +15,10 @@
  */
 package org.commonjava.maven.galley.maven.spi.defaults;
 
+import java.util.Collections;
 import java.util.Set;
 
+import org.commonjava.atlas.maven.ident.ref.ProjectRef;
 import org.commonjava.maven.galley.maven.GalleyMavenException;
 import org.commonjava.maven.galley.maven.model.view.PluginDependencyView;
 import org.commonjava.maven.galley.maven.model.view.PluginView;
@@ -27,4 +29,13 @@ public interface MavenPluginImplications
     Set<PluginDependencyView> getImpliedPluginDependencies( PluginView pv )
         throws GalleyMavenException;
 
+    /**
+     * The same implications as {@link #getImpliedPluginDependencies(PluginView)}, by plugin coordinate only, for
+     * callers that don't have a DOM-backed {@link PluginView}.
+     */
+    default Set<ProjectRef> getImpliedPluginDependencyRefs( final ProjectRef plugin )
+    {
+        return Collections.emptySet();
+    }
+
 }
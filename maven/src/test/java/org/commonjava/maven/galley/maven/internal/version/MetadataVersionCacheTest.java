@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.internal.version;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.commonjava.atlas.maven.ident.ref.ProjectRef;
+import org.commonjava.atlas.maven.ident.ref.SimpleProjectRef;
+import org.commonjava.atlas.maven.ident.util.VersionUtils;
+import org.commonjava.atlas.maven.ident.version.SingleVersion;
+import org.commonjava.maven.galley.cache.FileCacheProvider;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.io.HashedLocationPathGenerator;
+import org.commonjava.maven.galley.io.NoOpTransferDecorator;
+import org.commonjava.maven.galley.io.TransferDecoratorManager;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MetadataVersionCacheTest
+{
+
+    private static final String PATH = "org/group/artifact/maven-metadata.xml";
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong( System.currentTimeMillis() );
+
+    private final ProjectRef ref = new SimpleProjectRef( "org.group", "artifact" );
+
+    private final SingleVersion[] versions =
+        { VersionUtils.createSingleVersion( "1.0" ), VersionUtils.createSingleVersion( "1.1" ) };
+
+    private FileCacheProvider cacheProvider;
+
+    @Before
+    public void setup()
+        throws Exception
+    {
+        cacheProvider = new FileCacheProvider( temp.newFolder( "cache" ), new HashedLocationPathGenerator(),
+                                               new NoOpFileEventManager(),
+                                               new TransferDecoratorManager( new NoOpTransferDecorator() ) );
+    }
+
+    @After
+    public void shutdown()
+    {
+        cacheProvider.close();
+    }
+
+    @Test
+    public void entryExpiresWithTheMetadataFile()
+        throws Exception
+    {
+        final MetadataVersionCache cache = new MetadataVersionCache( 10, clock::get );
+        final Location location = location( "test", 60 );
+        final List<Transfer> sources = write( location, "<metadata/>" );
+
+        // downloaded half a timeout ago: the entry only has the other half to live.
+        final File file = cacheProvider.getDetachedFile( sources.get( 0 ).getResource() );
+        file.setLastModified( clock.get() - TimeUnit.SECONDS.toMillis( 30 ) );
+
+        assertThat( cache.get( ref, location ), nullValue() );
+        cache.put( ref, location, versions, sources );
+        assertThat( cache.get( ref, location ), sameInstance( versions ) );
+
+        clock.addAndGet( TimeUnit.SECONDS.toMillis( 31 ) );
+        assertThat( cache.get( ref, location ), nullValue() );
+        assertThat( cache.size(), equalTo( 0 ) );
+
+        assertThat( cache.getHitCount(), equalTo( 1L ) );
+        assertThat( cache.getMissCount(), equalTo( 2L ) );
+    }
+
+    @Test
+    public void entryIsDroppedWhenTheMetadataIsRewritten()
+        throws Exception
+    {
+        final MetadataVersionCache cache = new MetadataVersionCache( 10, clock::get );
+        final Location location = location( "test", 60 );
+        final List<Transfer> sources = write( location, "<metadata/>" );
+
+        cache.put( ref, location, versions, sources );
+        write( location, "<metadata><versioning/></metadata>" );
+
+        assertThat( cache.get( ref, location ), nullValue() );
+    }
+
+    @Test
+    public void entryIsDroppedWhenTheMetadataIsDeleted()
+        throws Exception
+    {
+        final MetadataVersionCache cache = new MetadataVersionCache( 10, clock::get );
+        final Location location = location( "test", 60 );
+        final List<Transfer> sources = write( location, "<metadata/>" );
+
+        cache.put( ref, location, versions, sources );
+        sources.get( 0 ).delete();
+
+        assertThat( cache.get( ref, location ), nullValue() );
+    }
+
+    @Test
+    public void locationWithoutMetadataTimeoutIsNotCached()
+        throws Exception
+    {
+        final MetadataVersionCache cache = new MetadataVersionCache( 10, clock::get );
+        final Location location = location( "test", 0 );
+
+        cache.put( ref, location, versions, write( location, "<metadata/>" ) );
+        assertThat( cache.get( ref, location ), nullValue() );
+    }
+
+    @Test
+    public void evictsSoonestToExpireBeyondMaxEntries()
+        throws Exception
+    {
+        final int max = 10;
+        final MetadataVersionCache cache = new MetadataVersionCache( max, clock::get );
+
+        Location longest = null;
+        for ( int i = 0; i <= max; i++ )
+        {
+            longest = location( "test" + i, 100 + i );
+            cache.put( ref, longest, versions, write( longest, "<metadata/>" ) );
+        }
+
+        assertThat( cache.size() <= max, equalTo( true ) );
+        assertThat( cache.getEvictionCount() > 0, equalTo( true ) );
+        assertThat( cache.get( ref, longest ), sameInstance( versions ) );
+    }
+
+    private Location location( final String name, final int metadataTimeoutSeconds )
+    {
+        final Location location = new SimpleLocation( name, "http://test.com/" + name );
+        location.setAttribute( Location.METADATA_TIMEOUT_SECONDS, metadataTimeoutSeconds );
+        return location;
+    }
+
+    private List<Transfer> write( final Location location, final String content )
+        throws Exception
+    {
+        final ConcreteResource resource = new ConcreteResource( location, PATH );
+        FileUtils.writeStringToFile( cacheProvider.getDetachedFile( resource ), content, StandardCharsets.UTF_8 );
+        return Collections.singletonList( cacheProvider.getTransfer( resource ) );
+    }
+
+}
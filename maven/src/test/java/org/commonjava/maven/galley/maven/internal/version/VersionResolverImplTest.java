@@ -19,14 +19,24 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.io.IOUtils;
 import org.commonjava.atlas.maven.ident.ref.ProjectVersionRef;
 import org.commonjava.atlas.maven.ident.ref.SimpleProjectVersionRef;
+import org.commonjava.atlas.maven.ident.util.VersionUtils;
+import org.commonjava.atlas.maven.ident.version.SingleVersion;
 import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.maven.model.ProjectVersionRefLocation;
+import org.commonjava.maven.galley.maven.spi.version.VersionResolver;
 import org.commonjava.maven.galley.maven.testutil.TestFixture;
+import org.commonjava.maven.galley.maven.util.ArtifactPathUtils;
 import org.commonjava.maven.galley.maven.version.LatestVersionSelectionStrategy;
 import org.commonjava.maven.galley.model.ConcreteResource;
 import org.commonjava.maven.galley.model.Location;
@@ -147,4 +157,106 @@ public class VersionResolverImplTest
         assertThat( result.getVersionString(), equalTo( "1.0-20140604.102909-1" ) );
     }
 
+    @Test
+    public void resolveRange_Latest_TwoLocationList_OverlappingVersionLists_LatestVersionStrategy()
+        throws Exception
+    {
+        final ProjectVersionRef ref = new SimpleProjectVersionRef( "org.group3", "artifact", "[1.0,2.0)" );
+        registerRangeMetadata( ref );
+
+        final ProjectVersionRefLocation result =
+            fixture.getVersionResolver()
+                   .resolveLatestVariableVersionLocation( TWO_LOCATIONS, ref, LatestVersionSelectionStrategy.INSTANCE,
+                                                          new EventMetadata() );
+
+        assertThat( result, notNullValue() );
+        assertThat( result.getRef().getVersionString(), equalTo( "1.2" ) );
+        assertThat( result.getLocation(), equalTo( LOCATION2 ) );
+    }
+
+    @Test
+    public void resolveRange_Latest_VersionInBothLocationsIsAttributedToFirst()
+        throws Exception
+    {
+        final ProjectVersionRef ref = new SimpleProjectVersionRef( "org.group3", "artifact", "[1.0,1.1]" );
+        registerRangeMetadata( ref );
+
+        final ProjectVersionRefLocation result =
+            fixture.getVersionResolver()
+                   .resolveLatestVariableVersionLocation( TWO_LOCATIONS, ref, LatestVersionSelectionStrategy.INSTANCE,
+                                                          new EventMetadata() );
+
+        assertThat( result, notNullValue() );
+        assertThat( result.getRef().getVersionString(), equalTo( "1.1" ) );
+        assertThat( result.getLocation(), equalTo( LOCATION ) );
+    }
+
+    @Test
+    public void resolveRange_Latest_SeesRewrittenMetadata()
+        throws Exception
+    {
+        final ProjectVersionRef ref = new SimpleProjectVersionRef( "org.group3", "artifact", "[1.0,2.0)" );
+        registerRangeMetadata( ref );
+
+        final VersionResolver resolver = fixture.getVersionResolver();
+        assertThat( resolver.resolveLatestVariableVersion( TWO_LOCATIONS, ref, LatestVersionSelectionStrategy.INSTANCE,
+                                                           new EventMetadata() ).getVersionString(),
+                    equalTo( "1.2" ) );
+
+        // e.g. a new version deployed to the location, well within its metadata timeout.
+        final String path = ArtifactPathUtils.formatMetadataPath( ref.asProjectRef(), "maven-metadata.xml" );
+        try (InputStream in = Thread.currentThread()
+                                    .getContextClassLoader()
+                                    .getResourceAsStream( ROOT + "range-2-locations/maven-metadata-2-updated.xml" );
+             OutputStream out = fixture.getCache().openOutputStream( new ConcreteResource( LOCATION2, path ) ))
+        {
+            IOUtils.copy( in, out );
+        }
+
+        assertThat( resolver.resolveLatestVariableVersion( TWO_LOCATIONS, ref, LatestVersionSelectionStrategy.INSTANCE,
+                                                           new EventMetadata() ).getVersionString(),
+                    equalTo( "1.5" ) );
+    }
+
+    @Test
+    public void mergeOrdersVersionsAndKeepsFirstLocation()
+    {
+        final SingleVersion[][] versions =
+            { versions( "1.0", "1.1", "2.0" ), versions(), versions( "0.9", "1.1", "3.0" ) };
+        final List<Location> locations = Arrays.asList( LOCATION, new SimpleLocation( "test:empty" ), LOCATION2 );
+
+        final Map<SingleVersion, Location> merged = VersionResolverImpl.merge( locations, versions );
+
+        assertThat( new ArrayList<>( merged.keySet() ),
+                    equalTo( Arrays.asList( versions( "0.9", "1.0", "1.1", "2.0", "3.0" ) ) ) );
+        assertThat( merged.get( VersionUtils.createSingleVersion( "0.9" ) ), equalTo( LOCATION2 ) );
+        assertThat( merged.get( VersionUtils.createSingleVersion( "1.1" ) ), equalTo( LOCATION ) );
+        assertThat( merged.get( VersionUtils.createSingleVersion( "3.0" ) ), equalTo( LOCATION2 ) );
+    }
+
+    private void registerRangeMetadata( final ProjectVersionRef ref )
+        throws Exception
+    {
+        final String path = ArtifactPathUtils.formatMetadataPath( ref.asProjectRef(), "maven-metadata.xml" );
+
+        fixture.getTransport()
+               .registerDownload( new ConcreteResource( LOCATION, path ),
+                                  new TestDownload( ROOT + "range-2-locations/maven-metadata-1.xml" ) );
+
+        fixture.getTransport()
+               .registerDownload( new ConcreteResource( LOCATION2, path ),
+                                  new TestDownload( ROOT + "range-2-locations/maven-metadata-2.xml" ) );
+    }
+
+    private static SingleVersion[] versions( final String... versions )
+    {
+        final SingleVersion[] result = new SingleVersion[versions.length];
+        for ( int i = 0; i < versions.length; i++ )
+        {
+            result[i] = VersionUtils.createSingleVersion( versions[i] );
+        }
+
+        return result;
+    }
+
 }
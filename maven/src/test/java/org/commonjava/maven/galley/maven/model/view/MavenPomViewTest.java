@@ -352,6 +352,57 @@ public class MavenPomViewTest
         assertThat( result.getProperty( "resolve-no-property" ), equalTo( "${i-dont-exist}" ) );
     }
 
+    @Test
+    public void resolvedPropertiesFollowInheritanceAndStayStable() throws Exception
+    {
+        MavenPomView pomView = loadPoms( "pom-with-property.xml", "simple-parent-pom.xml" );
+
+        // the child's another-property shadows the parent's, all the way down the chain.
+        assertThat( pomView.resolveExpressions( "${resolve-fourth-property}" ), equalTo( "2.1" ) );
+        assertThat( pomView.resolveExpressions( "${resolve-fourth-property}" ), equalTo( "2.1" ) );
+        assertThat( pomView.resolveMavenExpression( "another-property" ), equalTo( "2.1" ) );
+        assertThat( pomView.resolveMavenExpression( "i-dont-exist" ), nullValue() );
+        assertThat( pomView.resolveExpressions( "${i-dont-exist}" ), equalTo( "${i-dont-exist}" ) );
+    }
+
+    @Test
+    public void profilePropertyWinsOnlyWhenProfileIsActive() throws Exception
+    {
+        MavenPomView pomView = loadPoms( "pom-with-plugin-version-property-in-profile.xml" );
+
+        assertThat( pomView.resolveExpressions( "${testPluginVersion}" ), equalTo( "1.0" ) );
+        assertThat( pomView.resolveExpressions( "${testPluginVersion}", "test" ), equalTo( "2.0" ) );
+        assertThat( pomView.resolveExpressions( "${testPluginVersion}", "other" ), equalTo( "1.0" ) );
+        assertThat( pomView.resolveExpressions( "${testPluginVersion}" ), equalTo( "1.0" ) );
+    }
+
+    @Test( timeout = 5000 )
+    public void cyclicPropertiesStayUnresolved() throws Exception
+    {
+        MavenPomView pomView = loadPoms( "pom-with-property-cycle.xml" );
+
+        final String first = pomView.resolveExpressions( "${cycle-a}" );
+        assertThat( first.contains( "${" ), equalTo( true ) );
+        assertThat( pomView.resolveExpressions( "${cycle-a}" ), equalTo( first ) );
+        assertThat( pomView.resolveExpressions( "${not-in-cycle}" ), equalTo( "1.0" ) );
+    }
+
+    @Test
+    public void addingMixinUpdatesResolvedProperties() throws Exception
+    {
+        final MavenPomView pomView = loadPoms( "simple-bom.xml" );
+        final MavenPomView mixinView = loadPoms( "simple-parent-pom.xml" );
+
+        assertThat( pomView.resolveMavenExpression( "parent-property" ), nullValue() );
+
+        final MavenXmlMixin<ProjectVersionRef> mixin = new MavenXmlMixin<>( mixinView, "properties" );
+        pomView.addMixin( mixin );
+        assertThat( pomView.resolveMavenExpression( "parent-property" ), equalTo( "999999" ) );
+
+        pomView.removeMixin( mixin );
+        assertThat( pomView.resolveMavenExpression( "parent-property" ), nullValue() );
+    }
+
     @Test
     public void pluginWithManagedPlugins() throws Exception
     {
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.model.view;
+
+import org.apache.commons.jxpath.CompiledExpression;
+import org.commonjava.maven.galley.maven.parse.JXPathUtils;
+import org.commonjava.maven.galley.maven.parse.XMLInfrastructure;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class XPathManagerTest
+{
+
+    private static final String POM = "<project><parent><artifactId>parent</artifactId></parent>"
+        + "<artifactId>child</artifactId><dependencies><dependency><artifactId>a</artifactId></dependency>"
+        + "<dependency><artifactId>b</artifactId></dependency></dependencies></project>";
+
+    @Test
+    public void fixedViewQueriesAreSharedAcrossInstances()
+    {
+        final CompiledExpression first = new XPathManager().getCompiled( XPathManager.PROJECT_PARENT, true );
+        final CompiledExpression second = new XPathManager().getCompiled( XPathManager.PROJECT_PARENT, true );
+
+        assertThat( first, sameInstance( second ) );
+        assertThat( XPathManager.compile( XPathManager.PROJECT_PARENT ), sameInstance( first ) );
+    }
+
+    @Test
+    public void cachedExpressionIsReusedAndUncachedIsNot()
+    {
+        final XPathManager xpath = new XPathManager();
+        final String path = "/project/modules/module";
+
+        final CompiledExpression uncached = xpath.getCompiled( path, false );
+        assertThat( xpath.size(), equalTo( 0 ) );
+
+        final CompiledExpression cached = xpath.getCompiled( path, true );
+        assertThat( cached == uncached, equalTo( false ) );
+        assertThat( xpath.getCompiled( path, true ), sameInstance( cached ) );
+        assertThat( xpath.getHitCount(), equalTo( 1L ) );
+        assertThat( xpath.getMissCount(), equalTo( 2L ) );
+    }
+
+    @Test
+    public void fullTableIsClearedBeforeAdding()
+    {
+        final XPathManager xpath = new XPathManager( 2 );
+        xpath.getCompiled( "/project/a", true );
+        xpath.getCompiled( "/project/b", true );
+        assertThat( xpath.size(), equalTo( 2 ) );
+
+        xpath.getCompiled( "/project/c", true );
+        assertThat( xpath.size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void compiledSelectionMatchesContextSelection()
+        throws Exception
+    {
+        final Document doc =
+            new XMLInfrastructure().parseDocument( "test", new ByteArrayInputStream( POM.getBytes() ) );
+        final XPathManager xpath = new XPathManager();
+
+        final Node parent = XPathManager.selectSingleNode( xpath.getCompiled( XPathManager.PROJECT_PARENT, true ),
+                                                           JXPathUtils.newContext( doc ) );
+        assertThat( parent.getNodeName(), equalTo( "parent" ) );
+
+        final Node missing = XPathManager.selectSingleNode( xpath.getCompiled( "/project/build", true ),
+                                                            JXPathUtils.newContext( doc ) );
+        assertThat( missing, nullValue() );
+
+        final List<Node> deps = XPathManager.selectNodes( xpath.getCompiled( "/project/dependencies/dependency", true ),
+                                                          JXPathUtils.newContext( doc ) );
+        assertThat( deps.size(), equalTo( 2 ) );
+        assertThat( deps.get( 1 ).getTextContent(), equalTo( "b" ) );
+    }
+
+}
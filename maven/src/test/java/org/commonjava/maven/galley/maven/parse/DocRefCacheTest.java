@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.parse;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.event.FileDeletionEvent;
+import org.commonjava.maven.galley.event.FileStorageEvent;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.maven.model.view.DocRef;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.TransferOperation;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+public class DocRefCacheTest
+{
+
+    private final Location location = new SimpleLocation( "test", "http://test.com/repo" );
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void evictLeastRecentlyUsedWhenOverWeight()
+        throws Exception
+    {
+        final DocRef<String> first = docRef( "first" );
+        final DocRef<String> second = docRef( "second" );
+        final DocRef<String> third = docRef( "third" );
+
+        // room for two of the three documents.
+        final long docWeight = DocRefCache.estimateWeight( first.getDoc() );
+        final DocRefCache<String> cache = new DocRefCache<>( docWeight * 5 / 2, false, clock::incrementAndGet );
+
+        cache.put( first );
+        cache.put( second );
+        assertThat( cache.get( "first", location ), sameInstance( first ) );
+
+        cache.put( third );
+
+        assertThat( cache.get( "second", location ), nullValue() );
+        assertThat( cache.get( "first", location ), sameInstance( first ) );
+        assertThat( cache.get( "third", location ), sameInstance( third ) );
+        assertThat( cache.size(), equalTo( 2 ) );
+        assertThat( cache.getEvictionCount(), equalTo( 1L ) );
+        assertThat( cache.getWeight() <= cache.getMaxWeight(), equalTo( true ) );
+    }
+
+    @Test
+    public void promoteEvictedDocumentFromSoftOverflow()
+        throws Exception
+    {
+        final DocRef<String> first = docRef( "first" );
+        final DocRef<String> second = docRef( "second" );
+
+        final long docWeight = DocRefCache.estimateWeight( first.getDoc() );
+        final DocRefCache<String> cache = new DocRefCache<>( docWeight * 3 / 2, true, clock::incrementAndGet );
+
+        cache.put( first );
+        cache.put( second );
+        assertThat( cache.getOverflowSize(), equalTo( 1 ) );
+
+        // we still hold a strong reference, so the GC can't have cleared it.
+        assertThat( cache.get( "first", location ), sameInstance( first ) );
+        assertThat( cache.getSoftHitCount(), equalTo( 1L ) );
+        assertThat( cache.size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void invalidateOnStorageAndDeletionEvents()
+        throws Exception
+    {
+        final DocRefCache<String> cache = new DocRefCache<>();
+        final DocRefCacheInvalidator invalidator = new DocRefCacheInvalidator( new NoOpFileEventManager() );
+        invalidator.register( cache );
+
+        final ConcreteResource stored = new ConcreteResource( location, "org/foo/stored/1/stored-1.pom" );
+        final ConcreteResource deleted = new ConcreteResource( location, "org/foo/deleted/1/deleted-1.pom" );
+
+        cache.put( docRef( "stored" ), stored );
+        cache.put( docRef( "deleted" ), deleted );
+        assertThat( cache.get( "stored", location ), notNullValue() );
+        assertThat( cache.get( "deleted", location ), notNullValue() );
+
+        invalidator.fire( new FileStorageEvent( TransferOperation.DOWNLOAD, transfer( stored ), new EventMetadata() ) );
+        assertThat( cache.get( "stored", location ), nullValue() );
+        assertThat( cache.get( "deleted", location ), notNullValue() );
+
+        invalidator.fire( new FileDeletionEvent( transfer( deleted ), new EventMetadata() ) );
+        assertThat( cache.get( "deleted", location ), nullValue() );
+
+        assertThat( cache.getInvalidationCount(), equalTo( 2L ) );
+        assertThat( cache.getWeight(), equalTo( 0L ) );
+    }
+
+    @Test
+    public void invalidateCurrentCacheOfRegisteredReader()
+        throws Exception
+    {
+        final AbstractMavenXmlReader<String> reader = new AbstractMavenXmlReader<String>()
+        {
+        };
+        final DocRefCacheInvalidator invalidator = new DocRefCacheInvalidator( new NoOpFileEventManager() );
+        invalidator.register( reader );
+
+        // the cache is swapped after registration; the invalidator has to follow it.
+        final DocRefCache<String> cache = new DocRefCache<>();
+        reader.setDocCache( cache );
+
+        final ConcreteResource stored = new ConcreteResource( location, "org/foo/stored/1/stored-1.pom" );
+        cache.put( docRef( "stored" ), stored );
+
+        invalidator.fire( new FileStorageEvent( TransferOperation.DOWNLOAD, transfer( stored ), new EventMetadata() ) );
+        assertThat( cache.get( "stored", location ), nullValue() );
+    }
+
+    @Test
+    public void reportHitRate()
+        throws Exception
+    {
+        final DocRefCache<String> cache = new DocRefCache<>();
+        assertThat( cache.getHitRate(), equalTo( 0.0 ) );
+
+        cache.put( docRef( "first" ) );
+        cache.get( "first", location );
+        cache.get( "first", location );
+        cache.get( "first", location );
+        cache.get( "missing", location );
+
+        assertThat( cache.getHitCount(), equalTo( 3L ) );
+        assertThat( cache.getMissCount(), equalTo( 1L ) );
+        assertThat( cache.getHitRate(), equalTo( 0.75 ) );
+    }
+
+    private Transfer transfer( final ConcreteResource resource )
+    {
+        return new Transfer( resource, null, new NoOpFileEventManager(), null );
+    }
+
+    private DocRef<String> docRef( final String artifactId )
+        throws Exception
+    {
+        final String xml = "<project><groupId>org.foo</groupId><artifactId>" + artifactId
+                        + "</artifactId><version>1</version></project>";
+
+        final Document doc = DocumentBuilderFactory.newInstance()
+                                                   .newDocumentBuilder()
+                                                   .parse( new InputSource( new StringReader( xml ) ) );
+
+        return new DocRef<>( artifactId, location, doc );
+    }
+
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.parse;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.commonjava.atlas.maven.ident.ref.ProjectRef;
+import org.commonjava.atlas.maven.ident.ref.SimpleProjectRef;
+import org.commonjava.atlas.maven.ident.util.VersionUtils;
+import org.commonjava.atlas.maven.ident.version.SingleVersion;
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.maven.model.meta.MavenMetadataIndex;
+import org.commonjava.maven.galley.maven.testutil.TestFixture;
+import org.commonjava.maven.galley.maven.util.ArtifactPathUtils;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.commonjava.maven.galley.testing.core.transport.job.TestDownload;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class MavenMetadataReaderTest
+{
+
+    private static final Location LOCATION = new SimpleLocation( "test:metadata-reader/1" );
+
+    private static final Location LOCATION2 = new SimpleLocation( "test:metadata-reader/2" );
+
+    private static final String ROOT = "version-resolver/range-2-locations/";
+
+    @Rule
+    public final TestFixture fixture = new TestFixture();
+
+    @Test
+    public void indexIsParsedOnceAndSharedUntilMetadataChanges()
+        throws Exception
+    {
+        final ProjectRef ref = new SimpleProjectRef( "org.group3", "artifact" );
+        final String path = ArtifactPathUtils.formatMetadataPath( ref, "maven-metadata.xml" );
+        fixture.getTransport()
+               .registerDownload( new ConcreteResource( LOCATION, path ),
+                                  new TestDownload( ROOT + "maven-metadata-2.xml" ) );
+
+        final MavenMetadataReader reader = fixture.getMetadataReader();
+        final List<? extends Location> locations = Collections.singletonList( LOCATION );
+
+        final MavenMetadataIndex index =
+            reader.getIndexesByLocation( ref, locations, new EventMetadata() ).get( LOCATION ).get( 0 );
+
+        assertThat( index, notNullValue() );
+        assertThat( Arrays.asList( index.getVersions() ), equalTo( Arrays.asList( versions( "1.1", "1.2", "3.0" ) ) ) );
+        assertThat( index.getLatest(), equalTo( VersionUtils.createSingleVersion( "3.0" ) ) );
+        assertThat( index.getRelease(), equalTo( VersionUtils.createSingleVersion( "3.0" ) ) );
+        assertThat( index.getLastUpdated(), equalTo( "20140604101244" ) );
+
+        final MavenMetadataIndex again =
+            reader.getIndexesByLocation( ref, locations, new EventMetadata() ).get( LOCATION ).get( 0 );
+
+        assertThat( again, sameInstance( index ) );
+        assertThat( reader.getIndexMissCount(), equalTo( 1L ) );
+        assertThat( reader.getIndexHitCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void indexesAreGroupedByLocationInRequestOrder()
+        throws Exception
+    {
+        final ProjectRef ref = new SimpleProjectRef( "org.group3", "artifact" );
+        final String path = ArtifactPathUtils.formatMetadataPath( ref, "maven-metadata.xml" );
+        fixture.getTransport()
+               .registerDownload( new ConcreteResource( LOCATION, path ),
+                                  new TestDownload( ROOT + "maven-metadata-1.xml" ) );
+        fixture.getTransport()
+               .registerDownload( new ConcreteResource( LOCATION2, path ),
+                                  new TestDownload( ROOT + "maven-metadata-2.xml" ) );
+
+        final Map<Location, List<MavenMetadataIndex>> indexes =
+            fixture.getMetadataReader()
+                   .getIndexesByLocation( ref, Arrays.asList( LOCATION2, LOCATION ), new EventMetadata() );
+
+        assertThat( Arrays.asList( indexes.keySet().toArray() ), equalTo( Arrays.asList( LOCATION2, LOCATION ) ) );
+        assertThat( indexes.get( LOCATION ).get( 0 ).getLatest(),
+                    equalTo( VersionUtils.createSingleVersion( "2.0" ) ) );
+        assertThat( indexes.get( LOCATION2 ).get( 0 ).getLatest(),
+                    equalTo( VersionUtils.createSingleVersion( "3.0" ) ) );
+    }
+
+    @Test
+    public void unparsableMetadataOnlyDropsItsOwnLocation()
+        throws Exception
+    {
+        final ProjectRef ref = new SimpleProjectRef( "org.group3", "artifact" );
+        final String path = ArtifactPathUtils.formatMetadataPath( ref, "maven-metadata.xml" );
+        fixture.getTransport()
+               .registerDownload( new ConcreteResource( LOCATION, path ),
+                                  new TestDownload( ROOT + "maven-metadata-corrupt.txt" ) );
+        fixture.getTransport()
+               .registerDownload( new ConcreteResource( LOCATION2, path ),
+                                  new TestDownload( ROOT + "maven-metadata-2.xml" ) );
+
+        final Map<Location, List<MavenMetadataIndex>> indexes =
+            fixture.getMetadataReader()
+                   .getIndexesByLocation( ref, Arrays.asList( LOCATION, LOCATION2 ), new EventMetadata() );
+
+        assertThat( Arrays.asList( indexes.keySet().toArray() ), equalTo( Collections.singletonList( LOCATION2 ) ) );
+        assertThat( indexes.get( LOCATION2 ).get( 0 ).getLatest(),
+                    equalTo( VersionUtils.createSingleVersion( "3.0" ) ) );
+    }
+
+    private static SingleVersion[] versions( final String... versions )
+    {
+        final SingleVersion[] result = new SingleVersion[versions.length];
+        for ( int i = 0; i < versions.length; i++ )
+        {
+            result[i] = VersionUtils.createSingleVersion( versions[i] );
+        }
+
+        return result;
+    }
+
+}
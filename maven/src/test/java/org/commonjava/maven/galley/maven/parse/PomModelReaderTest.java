@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.maven.parse;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.commonjava.atlas.maven.ident.ref.ProjectVersionRef;
+import org.commonjava.atlas.maven.ident.ref.SimpleProjectVersionRef;
+import org.commonjava.maven.galley.maven.model.pom.PomDependency;
+import org.commonjava.maven.galley.maven.model.pom.PomModel;
+import org.commonjava.maven.galley.maven.model.pom.PomRepository;
+import org.junit.Test;
+
+public class PomModelReaderTest
+{
+
+    @Test
+    public void readParentRef()
+        throws Exception
+    {
+        final PomModel model = loadModel( "xml/pom-with-parent.xml" );
+        final ProjectVersionRef parentRef = model.getParentRef();
+
+        assertThat( parentRef, notNullValue() );
+        assertThat( parentRef, equalTo( new SimpleProjectVersionRef( "org.foo", "bar-parent", "1.0.0.0" ) ) );
+        assertThat( model.getArtifactId(), equalTo( "bar-project" ) );
+    }
+
+    @Test
+    public void readPOMWithUndeclaredEntity()
+        throws Exception
+    {
+        // same plexus POM as XMLInfrastructureTest, with &oslash; in the developer list.
+        final PomModel model = loadModel( "xml/pom-with-undeclared-entity.xml" );
+
+        assertThat( model.getGroupId(), equalTo( "org.codehaus.plexus" ) );
+        assertThat( model.getArtifactId(), equalTo( "plexus" ) );
+        assertThat( model.getDependencies().size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void readPOMWithoutXMLDeclaration()
+        throws Exception
+    {
+        final PomModel model = loadModel( "xml/pom-without-xml-decl.xml" );
+
+        assertThat( model.getArtifactId(), equalTo( "plexus" ) );
+
+        // distributionManagement repositories aren't resolution repositories.
+        final List<PomRepository> repos = model.getRepositories();
+        assertThat( repos.size(), equalTo( 1 ) );
+        assertThat( repos.get( 0 ).getId(), equalTo( "snapshots" ) );
+        assertThat( repos.get( 0 ).isReleasesEnabled(), equalTo( false ) );
+        assertThat( model.getPluginRepositories().size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void readProfilesAndTagContentWithProfileId()
+        throws Exception
+    {
+        final PomModel model = loadModel( "view/pom/pom-with-profiles-repos.xml" );
+
+        assertThat( model.getProfileIds(),
+                    equalTo( Arrays.asList( "test-profile-without-repo", "test-profile-with-repo" ) ) );
+
+        final List<PomRepository> repos = model.getRepositories();
+        assertThat( repos.size(), equalTo( 2 ) );
+        assertThat( repos.get( 0 ).getId(), equalTo( "main.repository" ) );
+        assertThat( repos.get( 0 ).getProfileId(), nullValue() );
+        assertThat( repos.get( 1 ).getId(), equalTo( "profile.repository" ) );
+        assertThat( repos.get( 1 ).getProfileId(), equalTo( "test-profile-with-repo" ) );
+
+        final List<PomDependency> deps = model.getDependencies();
+        assertThat( deps.size(), equalTo( 2 ) );
+        assertThat( deps.get( 0 ).getProfileId(), equalTo( "test-profile-without-repo" ) );
+        assertThat( deps.get( 1 ).getProfileId(), equalTo( "test-profile-with-repo" ) );
+    }
+
+    @Test
+    public void readBOMImport()
+        throws Exception
+    {
+        final PomModel model = loadModel( "view/pom/pom-with-bom.xml" );
+
+        final List<PomDependency> managed = model.getManagedDependencies();
+        assertThat( managed.size(), equalTo( 1 ) );
+        assertThat( managed.get( 0 ).isBom(), equalTo( true ) );
+        assertThat( managed.get( 0 ).getArtifactId(), equalTo( "simple-bom" ) );
+
+        final List<PomDependency> deps = model.getDependencies();
+        assertThat( deps.size(), equalTo( 1 ) );
+        assertThat( deps.get( 0 ).getVersion(), nullValue() );
+    }
+
+    private PomModel loadModel( final String resource )
+        throws Exception
+    {
+        final InputStream stream = Thread.currentThread()
+                                         .getContextClassLoader()
+                                         .getResourceAsStream( resource );
+
+        return new PomModelReader().read( resource, stream );
+    }
+
+}
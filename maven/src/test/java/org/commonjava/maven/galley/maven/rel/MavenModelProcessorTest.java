@@ -21,6 +21,8 @@ import org.commonjava.atlas.maven.graph.rel.RelationshipType;
 import org.commonjava.atlas.maven.ident.ref.ProjectVersionRef;
 import org.commonjava.atlas.maven.ident.ref.SimpleProjectVersionRef;
 import org.commonjava.atlas.maven.ident.util.JoinString;
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.maven.model.pom.PomModelView;
 import org.commonjava.maven.galley.maven.model.view.DependencyView;
 import org.commonjava.maven.galley.maven.model.view.MavenPomView;
 import org.commonjava.maven.galley.maven.model.view.PluginDependencyView;
@@ -384,4 +386,56 @@ public class MavenModelProcessorTest
         String version = pomView.resolveExpressions( "${commons.lang.value}" );
         assertThat( version, equalTo( "2.5" ) );
     }
+
+    @Test
+    public void modelViewRelationshipsMatchDomView()
+            throws Exception
+    {
+        final URI src = new URI( "http://nowhere.com/path/to/repo" );
+
+        final ProjectVersionRef childRef = new SimpleProjectVersionRef( "org.test", "test-child", "1.0" );
+
+        final LinkedHashMap<ProjectVersionRef, String> lineage = new LinkedHashMap<>();
+        lineage.put( childRef, "child.pom.xml" );
+        lineage.put( new SimpleProjectVersionRef( "org.test", "test-parent", "1.0" ), "parent.pom.xml" );
+
+        final Location location = new SimpleLocation( "test", src.toString(), false, true, true, false, true, false );
+
+        final String base = PROJ_BASE + "dependency-in-managed-parent-plugin/";
+
+        for ( final Entry<ProjectVersionRef, String> entry : lineage.entrySet() )
+        {
+            final ProjectVersionRef ref = entry.getKey();
+            final String filename = entry.getValue();
+
+            final String path = ArtifactPathUtils.formatArtifactPath( ref.asPomArtifact(), fixture.getTypeMapper() );
+
+            fixture.getTransport()
+                   .registerDownload( new ConcreteResource( location, path ), new TestDownload( base + filename ) );
+        }
+
+        final Transfer transfer = fixture.getArtifactManager().retrieve( location, childRef.asPomArtifact() );
+        final List<Location> locations = Collections.singletonList( location );
+
+        final MavenPomView pomView = fixture.getPomReader().read( childRef, transfer, locations );
+        final PomModelView modelView =
+                fixture.getPomReader().readModel( childRef, transfer, locations, new EventMetadata() );
+
+        final ModelProcessorConfig discoveryConfig = new ModelProcessorConfig();
+        discoveryConfig.setIncludeManagedDependencies( true );
+        discoveryConfig.setIncludeBuildSection( true );
+        discoveryConfig.setIncludeManagedPlugins( true );
+
+        final Set<ProjectRelationship<?, ?>> domRels = fixture.getModelProcessor()
+                                                              .readRelationships( pomView, src, discoveryConfig )
+                                                              .getExactAllRelationships();
+
+        final Set<ProjectRelationship<?, ?>> modelRels = fixture.getModelProcessor()
+                                                                .readRelationships( modelView, src, discoveryConfig )
+                                                                .getExactAllRelationships();
+
+        logger.info( "Found {} relationships:\n\n  {}", modelRels.size(), new JoinString( "\n  ", modelRels ) );
+
+        assertThat( modelRels, equalTo( domRels ) );
+    }
 }
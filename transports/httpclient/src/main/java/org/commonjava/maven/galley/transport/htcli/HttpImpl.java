@@ -26,10 +26,13 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.commonjava.maven.galley.GalleyException;
 import org.commonjava.maven.galley.TransferLocationException;
 import org.commonjava.maven.galley.auth.PasswordEntry;
+import org.commonjava.maven.galley.model.Location;
 import org.commonjava.maven.galley.spi.auth.PasswordManager;
 import org.commonjava.maven.galley.transport.htcli.internal.model.WrapperHttpLocation;
+import org.commonjava.maven.galley.transport.htcli.internal.util.HttpClientRegistry;
 import org.commonjava.maven.galley.transport.htcli.internal.util.HttpFactoryPasswordDelegate;
 import org.commonjava.maven.galley.transport.htcli.internal.util.LocationLookup;
+import org.commonjava.maven.galley.transport.htcli.model.HttpClientPoolStats;
 import org.commonjava.maven.galley.transport.htcli.model.HttpLocation;
 import org.commonjava.maven.galley.transport.htcli.util.HttpUtil;
 import org.commonjava.maven.galley.util.LocationUtils;
@@ -44,11 +47,25 @@ import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
 import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 @ApplicationScoped
 public class HttpImpl
         implements Http, Closeable
 {
+    public static final int DEFAULT_MAX_CLIENTS = 256;
+
+    public static final long DEFAULT_CLIENT_IDLE_SECONDS = 300;
+
+    private static final String DEFAULT_CLIENT_NAME = "";
+
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
     private final PasswordManager passwords;
@@ -57,11 +74,23 @@ public class HttpImpl
 
     private final LocationLookup locationLookup;
 
+    private final HttpClientRegistry clients;
+
     public HttpImpl( final PasswordManager passwords )
+    {
+        this( passwords, DEFAULT_MAX_CLIENTS, DEFAULT_CLIENT_IDLE_SECONDS );
+    }
+
+    /**
+     * @param maxClients maximum number of pooled clients (one per location and proxy mode) to keep open
+     * @param clientIdleSeconds how long an unused client is kept before its connections are closed
+     */
+    public HttpImpl( final PasswordManager passwords, final int maxClients, final long clientIdleSeconds )
     {
         this.passwords = passwords;
         this.locationLookup = new LocationLookup();
         this.httpFactory = new HttpFactory( new HttpFactoryPasswordDelegate( passwords, locationLookup ) );
+        this.clients = new HttpClientRegistry( maxClients, clientIdleSeconds, TimeUnit.SECONDS );
     }
 
     @Override
@@ -89,42 +118,16 @@ public class HttpImpl
             {
                 locationLookup.register( location );
 
-                int maxConnections = LocationUtils.getMaxConnections( location );
-                SiteConfigBuilder configBuilder = new SiteConfigBuilder( location.getName(), location.getUri() );
-                configBuilder.withAttributes( location.getAttributes() )
-                             .withKeyCertPem( location.getKeyCertPem() )
-                             .withServerCertPem( location.getServerCertPem() )
-                             .withRequestTimeoutSeconds( LocationUtils.getTimeoutSeconds( location ) )
-                             .withUser( location.getUser() )
-                             .withIgnoreHostnameVerification( location.isIgnoreHostnameVerification() )
-                             .withMaxConnections( maxConnections );
-                if ( doProxy )
-                {
-                    logger.trace( "The location class: {}", location.getClass().getSimpleName() );
-                    configBuilder.withProxyHost( location.getProxyHost() )
-                                 .withProxyPort( location.getProxyPort() )
-                                 .withProxyUser( location.getProxyUser() );
-                    if ( location instanceof WrapperHttpLocation )
-                    {
-                        WrapperHttpLocation wrapper = (WrapperHttpLocation) location;
-                        logger.debug(
-                                "Proxy with the WrapperHttpLocation config: {}, isGlobalProxyAllowHttpJobType: {}",
-                                wrapper, wrapper.isGlobalProxyAllowHttpJobType() );
-                    }
-                }
-
-                if ( location.getTrustType() != null )
-                {
-                    configBuilder.withTrustType( SiteTrustType.getType( location.getTrustType().name() ) );
-                }
-
-                SiteConfig config = configBuilder.build();
-
-                return httpFactory.createClient( config );
+                final int maxConnections = LocationUtils.getMaxConnections( location );
+                return clients.lease( location.getName(), doProxy, () -> getSettingsFingerprint( location, doProxy ),
+                                      maxConnections,
+                                      () -> httpFactory.createClient( getSiteConfig( location, doProxy,
+                                                                                     maxConnections ) ) );
             }
             else
             {
-                return httpFactory.createClient();
+                return clients.lease( DEFAULT_CLIENT_NAME, false, () -> DEFAULT_CLIENT_NAME,
+                                      Location.DEFAULT_MAX_CONNECTIONS, httpFactory::createClient );
             }
         }
         catch ( JHttpCException e )
@@ -133,6 +136,116 @@ public class HttpImpl
         }
     }
 
+    private SiteConfig getSiteConfig( final HttpLocation location, final boolean doProxy, final int maxConnections )
+    {
+        SiteConfigBuilder configBuilder = new SiteConfigBuilder( location.getName(), location.getUri() );
+        configBuilder.withAttributes( location.getAttributes() )
+                     .withKeyCertPem( location.getKeyCertPem() )
+                     .withServerCertPem( location.getServerCertPem() )
+                     .withRequestTimeoutSeconds( LocationUtils.getTimeoutSeconds( location ) )
+                     .withUser( location.getUser() )
+                     .withIgnoreHostnameVerification( location.isIgnoreHostnameVerification() )
+                     .withMaxConnections( maxConnections );
+        if ( doProxy )
+        {
+            logger.trace( "The location class: {}", location.getClass().getSimpleName() );
+            configBuilder.withProxyHost( location.getProxyHost() )
+                         .withProxyPort( location.getProxyPort() )
+                         .withProxyUser( location.getProxyUser() );
+            if ( location instanceof WrapperHttpLocation )
+            {
+                WrapperHttpLocation wrapper = (WrapperHttpLocation) location;
+                logger.debug(
+                        "Proxy with the WrapperHttpLocation config: {}, isGlobalProxyAllowHttpJobType: {}",
+                        wrapper, wrapper.isGlobalProxyAllowHttpJobType() );
+            }
+        }
+
+        if ( location.getTrustType() != null )
+        {
+            configBuilder.withTrustType( SiteTrustType.getType( location.getTrustType().name() ) );
+        }
+
+        return configBuilder.build();
+    }
+
+    /**
+     * Digest of everything {@link #createClient(HttpLocation, boolean)} feeds into the client, through its
+     * {@link SiteConfig} and the password lookups of the {@link HttpFactory}. A pooled client is only reused while
+     * this is unchanged. Only computed when the registry builds a client or rechecks one, and holds no passwords.
+     */
+    private String getSettingsFingerprint( final HttpLocation location, final boolean doProxy )
+    {
+        final String password = location.getUser() == null ?
+                null :
+                passwords.getPassword( new PasswordEntry( location, PasswordEntry.USER_PASSWORD ) );
+
+        final String proxyPassword = !doProxy || location.getProxyUser() == null ?
+                null :
+                passwords.getPassword( new PasswordEntry( location, PasswordEntry.PROXY_PASSWORD ) );
+
+        final String keyPassword = location.getKeyCertPem() == null ?
+                null :
+                passwords.getPassword( new PasswordEntry( location, PasswordEntry.KEY_PASSWORD ) );
+
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-256" );
+        }
+        catch ( final NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-256 is not available", e );
+        }
+
+        for ( final Object setting : Arrays.asList( location.getUri(), location.getKeyCertPem(), keyPassword,
+                                                    location.getServerCertPem(), location.getTrustType(),
+                                                    location.getUser(), password,
+                                                    location.isIgnoreHostnameVerification(),
+                                                    doProxy ? location.getProxyHost() : null,
+                                                    doProxy ? location.getProxyPort() : null,
+                                                    doProxy ? location.getProxyUser() : null, proxyPassword,
+                                                    location.getAttributes() == null ?
+                                                            null :
+                                                            new TreeMap<>( location.getAttributes() ) ) )
+        {
+            // a separator, so adjacent values can't run into each other.
+            digest.update( String.valueOf( setting ).getBytes( StandardCharsets.UTF_8 ) );
+            digest.update( (byte) 0 );
+        }
+
+        return Base64.getEncoder().encodeToString( digest.digest() );
+    }
+
+    /**
+     * Close the pooled clients for the given location, so the next request builds new ones. Clients with requests
+     * in flight are closed once those requests are cleaned up.
+     */
+    public void invalidate( final Location location )
+    {
+        clients.invalidate( location.getName() );
+    }
+
+    public List<HttpClientPoolStats> getPoolStats()
+    {
+        return clients.getStats();
+    }
+
+    public long getClientReuseCount()
+    {
+        return clients.getReuseCount();
+    }
+
+    public long getClientCreationCount()
+    {
+        return clients.getCreationCount();
+    }
+
+    public long getClientEvictionCount()
+    {
+        return clients.getEvictionCount();
+    }
+
     private int getProxyPort( final HttpLocation location )
     {
         int port = location.getProxyPort();
@@ -185,11 +298,13 @@ public class HttpImpl
     public void cleanup( final CloseableHttpClient client, final HttpUriRequest request,
                          final CloseableHttpResponse response )
     {
-        HttpUtil.cleanupResources( client, request, response );
+        // pooled clients stay open; only their connection is handed back by consuming the response.
+        HttpUtil.cleanupResources( clients.release( client ) ? null : client, request, response );
     }
 
     @Override
     public void close()
     {
+        clients.close();
     }
 }
@@ -96,6 +96,11 @@ public abstract class AbstractHttpJob
         }
     }
 
+    protected boolean isSuccessStatus( final int statusCode )
+    {
+        return successStatuses.contains( statusCode );
+    }
+
     public TransferException getError()
     {
         return error;
@@ -125,6 +130,12 @@ public abstract class AbstractHttpJob
                         doProxy = true;
                         logger.debug( "Access with proxy in cache, site: {}", site );
                     }
+                    if ( client != null )
+                    {
+                        // hand back the client from the previous attempt before switching proxy mode.
+                        http.cleanup( client, null, null );
+                        client = null;
+                    }
                     client = http.createClient( location, doProxy );
                     response = client.execute( request, http.createContext( location ) );
 
@@ -139,7 +150,7 @@ public abstract class AbstractHttpJob
                                                              "Server misconfigured or not responding normally for url %s: '%s'",
                                                              url, line );
                     }
-                    else if ( !successStatuses.contains( sc ) )
+                    else if ( !isSuccessStatus( sc ) )
                     {
                         logger.trace( "Detected failure respon se: " + sc );
                         success = TransferResponseUtils.handleUnsuccessfulResponse( request, response, location, url );
@@ -239,6 +250,13 @@ public abstract class AbstractHttpJob
             return;
         }
 
+        // A 304 carries only part of the headers; keep the metadata of the exchange that produced the cached content.
+        if ( response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED )
+        {
+            logger.trace( "Skip to write HTTP exchange metadata for a not-modified response." );
+            return;
+        }
+
         if ( target.getPath().endsWith( ChecksumAlgorithm.MD5.getExtension() ) || target.getPath()
                                                                                         .endsWith( ChecksumAlgorithm.SHA1
                                                                                                                    .getExtension() )
@@ -15,8 +15,11 @@
  */
 package org.commonjava.maven.galley.transport.htcli.internal;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.util.EntityUtils;
 import org.commonjava.maven.galley.TransferContentException;
@@ -28,6 +31,7 @@ import org.commonjava.maven.galley.model.TransferOperation;
 import org.commonjava.maven.galley.spi.proxy.ProxySitesCache;
 import org.commonjava.maven.galley.spi.transport.DownloadJob;
 import org.commonjava.maven.galley.transport.htcli.Http;
+import org.commonjava.maven.galley.transport.htcli.model.HttpExchangeMetadata;
 import org.commonjava.maven.galley.transport.htcli.model.HttpLocation;
 import org.commonjava.maven.galley.transport.htcli.util.HttpUtil;
 
@@ -55,6 +59,8 @@ public final class HttpDownload
 
     private final boolean deleteFilesOnPath;
 
+    private boolean conditional;
+
     public HttpDownload( final String url, final HttpLocation location, final Transfer target,
                          final Map<Transfer, Long> transferSizes, final EventMetadata eventMetadata, final Http http,
                          final ObjectMapper mapper )
@@ -76,7 +82,7 @@ public final class HttpDownload
                          final List<String> egressSites, ProxySitesCache proxySitesCache )
     {
 
-        super( url, location, http, egressSites, proxySitesCache );
+        super( url, location, http, egressSites, proxySitesCache, HttpStatus.SC_OK );
         this.request = new HttpGet( url );
         this.target = target;
         this.transferSizes = transferSizes;
@@ -99,8 +105,14 @@ public final class HttpDownload
         {
             String newName = oldName + ": GET " + url;
             Thread.currentThread().setName( newName );
+            conditional = addValidators();
             ret = executeHttp();
-            if ( ret )
+            if ( ret && conditional && response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED )
+            {
+                logger.debug( "Not modified: {}. Keeping cached copy: {}", url, target );
+                target.markRevalidated();
+            }
+            else if ( ret )
             {
                 transferSizes.put( target, HttpUtil.getContentLength( response ) );
                 writeTarget();
@@ -131,6 +143,16 @@ public final class HttpDownload
         return this;
     }
 
+    /**
+     * 304 only means "keep what you have" when the request asked for it; anything else would write the empty body over
+     * the cached copy.
+     */
+    @Override
+    protected boolean isSuccessStatus( final int statusCode )
+    {
+        return super.isSuccessStatus( statusCode ) || ( conditional && statusCode == HttpStatus.SC_NOT_MODIFIED );
+    }
+
     @Override
     protected ObjectMapper getMetadataObjectMapper()
     {
@@ -155,6 +177,54 @@ public final class HttpDownload
         return target;
     }
 
+    /**
+     * If the target is already cached (it is being revalidated), make the GET conditional on the validators stored
+     * with it in its HTTP exchange metadata.
+     *
+     * @return true if any validator was added to the request
+     */
+    private boolean addValidators()
+    {
+        if ( mapper == null || !target.exists() )
+        {
+            return false;
+        }
+
+        final Transfer metaTxfr = target.getSiblingMeta( HttpExchangeMetadata.FILE_EXTENSION );
+        if ( metaTxfr == null || !metaTxfr.exists() )
+        {
+            return false;
+        }
+
+        try (InputStream in = metaTxfr.openInputStream( false ))
+        {
+            // the stored form also carries the derived header properties (etag, lastModified...), which have no setters.
+            final HttpExchangeMetadata metadata = mapper.readerFor( HttpExchangeMetadata.class )
+                                                        .without( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES )
+                                                        .readValue( in );
+            final String etag = metadata.getETag();
+            final String lastModified = metadata.getLastModified();
+
+            if ( etag != null )
+            {
+                request.addHeader( HttpHeaders.IF_NONE_MATCH, etag );
+            }
+
+            if ( lastModified != null )
+            {
+                request.addHeader( HttpHeaders.IF_MODIFIED_SINCE, lastModified );
+            }
+
+            return etag != null || lastModified != null;
+        }
+        catch ( final IOException e )
+        {
+            logger.warn( "Cannot read HTTP exchange metadata: {}. Falling back to a full GET. Reason: {}", metaTxfr,
+                         e.getMessage() );
+            return false;
+        }
+    }
+
     private void writeTarget()
         throws TransferException
     {
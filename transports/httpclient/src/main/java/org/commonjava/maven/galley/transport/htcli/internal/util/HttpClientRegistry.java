@@ -0,0 +1,501 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.transport.htcli.internal.util;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.commonjava.maven.galley.transport.htcli.model.HttpClientPoolStats;
+import org.commonjava.util.jhttpc.JHttpCException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+/**
+ * Bounded registry of long-lived HTTP clients, keyed by location name and proxy mode. Reusing a client keeps its
+ * connection pool (and with it keep-alive connections and TLS sessions) across requests. Each entry remembers a
+ * fingerprint of the settings it was built from, and leases compare it against the current settings at most once per
+ * recheck interval. When they changed, that lease builds a fresh client and the old one is closed once its in-flight
+ * requests have been released. {@link #invalidate(String)} applies a change right away.
+ * <br/>
+ * Lookups are lock-free. Idle and over-capacity entries are only pruned when a new client is built, so the hit path
+ * never scans the registry.
+ * <br/>
+ * Each lease is its own {@link CloseableHttpClient} handle on the shared client: closing it gives the lease back
+ * rather than closing the shared client, so callers written for per-request clients keep working. Handles that are
+ * neither closed nor released are given back once they are garbage collected.
+ */
+public final class HttpClientRegistry
+        implements Closeable
+{
+    public interface ClientFactory
+    {
+        CloseableHttpClient create()
+                throws JHttpCException;
+    }
+
+    public static final long DEFAULT_SETTINGS_RECHECK_MILLIS = TimeUnit.SECONDS.toMillis( 5 );
+
+    private static final Cleaner ABANDONED_LEASES = Cleaner.create();
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final Map<ClientKey, Entry> entries = new ConcurrentHashMap<>();
+
+    private final int maxClients;
+
+    private final long maxIdleMillis;
+
+    private final long settingsRecheckMillis;
+
+    private final AtomicLong reuses = new AtomicLong();
+
+    private final AtomicLong creations = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    public HttpClientRegistry( final int maxClients, final long maxIdle, final TimeUnit unit )
+    {
+        this( maxClients, maxIdle, unit.convert( DEFAULT_SETTINGS_RECHECK_MILLIS, TimeUnit.MILLISECONDS ), unit );
+    }
+
+    /**
+     * @param settingsRecheck how long a client is reused before its settings are compared with the current ones again
+     */
+    public HttpClientRegistry( final int maxClients, final long maxIdle, final long settingsRecheck,
+                               final TimeUnit unit )
+    {
+        this.maxClients = maxClients;
+        this.maxIdleMillis = unit.toMillis( maxIdle );
+        this.settingsRecheckMillis = unit.toMillis( settingsRecheck );
+    }
+
+    /**
+     * Return the client registered for the given location name and proxy mode, building one with the factory if there
+     * is none or the registered one was built from different settings. The settings fingerprint is only asked for when
+     * a client is built, or when the registered one is due for a recheck. Every lease must be given back via
+     * {@link #release(CloseableHttpClient)}.
+     */
+    public CloseableHttpClient lease( final String name, final boolean proxy, final Supplier<String> settings,
+                                      final int maxConnections, final ClientFactory factory )
+            throws JHttpCException
+    {
+        final ClientKey key = new ClientKey( name, proxy );
+        while ( true )
+        {
+            final Entry current = entries.get( key );
+            String fingerprint = null;
+            if ( current != null )
+            {
+                final long now = System.currentTimeMillis();
+                if ( now - current.checkedAt >= settingsRecheckMillis )
+                {
+                    fingerprint = settings.get();
+                    if ( fingerprint.equals( current.fingerprint ) )
+                    {
+                        current.checkedAt = now;
+                    }
+                }
+
+                if ( fingerprint == null || fingerprint.equals( current.fingerprint ) )
+                {
+                    if ( current.lease() )
+                    {
+                        reuses.incrementAndGet();
+                        return new Lease( current );
+                    }
+
+                    // retired between lookup and lease; drop it and try again.
+                    entries.remove( key, current );
+                    continue;
+                }
+            }
+
+            final Entry created = new Entry( key, fingerprint == null ? settings.get() : fingerprint, maxConnections,
+                                             factory.create() );
+            final boolean installed = current == null ?
+                    entries.putIfAbsent( key, created ) == null :
+                    entries.replace( key, current, created );
+
+            if ( !installed )
+            {
+                // another thread registered a client for this key first.
+                created.discard();
+                continue;
+            }
+
+            creations.incrementAndGet();
+            if ( current != null )
+            {
+                logger.debug( "Settings changed for HTTP client: {}. Retiring the previous client.", key );
+                current.retire();
+            }
+
+            prune( created );
+            return new Lease( created );
+        }
+    }
+
+    /**
+     * Give back a client obtained from {@link #lease(String, boolean, Supplier, int, ClientFactory)}.
+     *
+     * @return false if the client is not a lease from this registry, in which case the caller still owns it, or if
+     * it was given back already.
+     */
+    public boolean release( final CloseableHttpClient client )
+    {
+        if ( !( client instanceof Lease ) || ( (Lease) client ).registry() != this )
+        {
+            return false;
+        }
+
+        return ( (Lease) client ).release();
+    }
+
+    /**
+     * Retire all clients for the given location name, so the next lease builds new ones.
+     */
+    public void invalidate( final String name )
+    {
+        entries.forEach( ( key, entry ) -> {
+            if ( Objects.equals( key.name, name ) && entries.remove( key, entry ) )
+            {
+                evictions.incrementAndGet();
+                entry.retire();
+            }
+        } );
+    }
+
+    public List<HttpClientPoolStats> getStats()
+    {
+        final long now = System.currentTimeMillis();
+        final List<HttpClientPoolStats> stats = new ArrayList<>( entries.size() );
+        entries.values().forEach( entry -> stats.add( entry.stats( now ) ) );
+        return stats;
+    }
+
+    public long getReuseCount()
+    {
+        return reuses.get();
+    }
+
+    public long getCreationCount()
+    {
+        return creations.get();
+    }
+
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    @Override
+    public void close()
+    {
+        entries.forEach( ( key, entry ) -> {
+            if ( entries.remove( key, entry ) )
+            {
+                entry.retire();
+            }
+        } );
+    }
+
+    private void prune( final Entry keep )
+    {
+        final long now = System.currentTimeMillis();
+        entries.forEach( ( key, entry ) -> {
+            if ( entry != keep && entry.isIdle( now, maxIdleMillis ) && entries.remove( key, entry ) )
+            {
+                logger.debug( "Evicting idle HTTP client: {}", key );
+                evictions.incrementAndGet();
+                entry.retire();
+            }
+        } );
+
+        while ( entries.size() > maxClients )
+        {
+            Entry eldest = null;
+            for ( final Entry entry : entries.values() )
+            {
+                if ( entry != keep && ( eldest == null || entry.lastUsed < eldest.lastUsed ) )
+                {
+                    eldest = entry;
+                }
+            }
+
+            if ( eldest == null )
+            {
+                return;
+            }
+
+            if ( entries.remove( eldest.key, eldest ) )
+            {
+                logger.debug( "Evicting least-recently used HTTP client: {}", eldest.key );
+                evictions.incrementAndGet();
+                eldest.retire();
+            }
+        }
+    }
+
+    private static final class ClientKey
+    {
+        private final String name;
+
+        private final boolean proxy;
+
+        private ClientKey( final String name, final boolean proxy )
+        {
+            this.name = name;
+            this.proxy = proxy;
+        }
+
+        @Override
+        public boolean equals( final Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( o == null || getClass() != o.getClass() )
+            {
+                return false;
+            }
+            final ClientKey that = (ClientKey) o;
+            return proxy == that.proxy && Objects.equals( name, that.name );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash( name, proxy );
+        }
+
+        @Override
+        public String toString()
+        {
+            return name + ( proxy ? " (proxied)" : "" );
+        }
+    }
+
+    /**
+     * Gives a lease back to its entry, at most once. Kept apart from the {@link Lease} so the cleaner can run it after
+     * the lease is collected.
+     */
+    private static final class Releaser
+            implements Runnable
+    {
+        private final Entry entry;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Releaser( final Entry entry )
+        {
+            this.entry = entry;
+        }
+
+        private boolean release()
+        {
+            if ( released.compareAndSet( false, true ) )
+            {
+                entry.release();
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public void run()
+        {
+            release();
+        }
+    }
+
+    /**
+     * One caller's handle on a pooled client. Requests go to the pooled client; closing the handle only gives the
+     * lease back.
+     */
+    private final class Lease
+            extends CloseableHttpClient
+    {
+        private final CloseableHttpClient client;
+
+        private final Releaser releaser;
+
+        private final Cleaner.Cleanable cleanable;
+
+        private Lease( final Entry entry )
+        {
+            this.client = entry.client;
+            this.releaser = new Releaser( entry );
+            this.cleanable = ABANDONED_LEASES.register( this, releaser );
+        }
+
+        private HttpClientRegistry registry()
+        {
+            return HttpClientRegistry.this;
+        }
+
+        private boolean release()
+        {
+            final boolean released = releaser.release();
+            cleanable.clean();
+            return released;
+        }
+
+        @Override
+        protected CloseableHttpResponse doExecute( final HttpHost target, final HttpRequest request,
+                                                   final HttpContext context )
+                throws IOException
+        {
+            return client.execute( target, request, context );
+        }
+
+        @Override
+        public void close()
+        {
+            release();
+        }
+
+        @Override
+        @SuppressWarnings( "deprecation" )
+        public HttpParams getParams()
+        {
+            return client.getParams();
+        }
+
+        @Override
+        @SuppressWarnings( "deprecation" )
+        public ClientConnectionManager getConnectionManager()
+        {
+            return client.getConnectionManager();
+        }
+    }
+
+    private final class Entry
+    {
+        private final ClientKey key;
+
+        private final String fingerprint;
+
+        private final int maxConnections;
+
+        private final CloseableHttpClient client;
+
+        private final AtomicInteger leased = new AtomicInteger( 1 );
+
+        private final AtomicLong totalRequests = new AtomicLong( 1 );
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private volatile boolean retired;
+
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private volatile long checkedAt = lastUsed;
+
+        private Entry( final ClientKey key, final String fingerprint, final int maxConnections,
+                       final CloseableHttpClient client )
+        {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.maxConnections = maxConnections;
+            this.client = client;
+        }
+
+        private boolean lease()
+        {
+            leased.incrementAndGet();
+            if ( retired )
+            {
+                release();
+                return false;
+            }
+
+            totalRequests.incrementAndGet();
+            lastUsed = System.currentTimeMillis();
+            return true;
+        }
+
+        private void release()
+        {
+            lastUsed = System.currentTimeMillis();
+            if ( leased.decrementAndGet() == 0 && retired )
+            {
+                closeClient();
+            }
+        }
+
+        private void retire()
+        {
+            retired = true;
+            if ( leased.get() == 0 )
+            {
+                closeClient();
+            }
+        }
+
+        private void discard()
+        {
+            retired = true;
+            release();
+        }
+
+        private boolean isIdle( final long now, final long maxIdleMillis )
+        {
+            return leased.get() == 0 && now - lastUsed > maxIdleMillis;
+        }
+
+        private void closeClient()
+        {
+            if ( closed.compareAndSet( false, true ) )
+            {
+                closeQuietly( client );
+            }
+        }
+
+        private HttpClientPoolStats stats( final long now )
+        {
+            final int inFlight = leased.get();
+            return new HttpClientPoolStats( key.name, key.proxy, maxConnections, inFlight, totalRequests.get(),
+                                            inFlight > 0 ? 0 : now - lastUsed );
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.transport.htcli.model;
+
+/**
+ * Point-in-time usage of one pooled HTTP client, as kept by {@link org.commonjava.maven.galley.transport.htcli.HttpImpl}.
+ * There is one client per location name and proxy mode. Usage is counted in requests, from
+ * {@link org.commonjava.maven.galley.transport.htcli.Http#createClient(HttpLocation, boolean)} until the client is
+ * given back; how the client's own connection pool serves them is not visible here.
+ */
+public final class HttpClientPoolStats
+{
+    private final String locationName;
+
+    private final boolean proxy;
+
+    private final int maxConnections;
+
+    private final int inFlightRequests;
+
+    private final long totalRequests;
+
+    private final long idleMillis;
+
+    public HttpClientPoolStats( final String locationName, final boolean proxy, final int maxConnections,
+                                final int inFlightRequests, final long totalRequests, final long idleMillis )
+    {
+        this.locationName = locationName;
+        this.proxy = proxy;
+        this.maxConnections = maxConnections;
+        this.inFlightRequests = inFlightRequests;
+        this.totalRequests = totalRequests;
+        this.idleMillis = idleMillis;
+    }
+
+    public String getLocationName()
+    {
+        return locationName;
+    }
+
+    public boolean isProxy()
+    {
+        return proxy;
+    }
+
+    /**
+     * @return the per-route connection limit the client was built with.
+     */
+    public int getMaxConnections()
+    {
+        return maxConnections;
+    }
+
+    /**
+     * @return requests holding this client right now, whether executing or waiting for a connection.
+     */
+    public int getInFlightRequests()
+    {
+        return inFlightRequests;
+    }
+
+    /**
+     * @return requests this client has been handed out for since it was built.
+     */
+    public long getTotalRequests()
+    {
+        return totalRequests;
+    }
+
+    /**
+     * @return milliseconds since this client was last leased, or 0 if it is in use.
+     */
+    public long getIdleMillis()
+    {
+        return idleMillis;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "HttpClientPoolStats [location=%s, proxy=%s, maxConnections=%s, inFlight=%s, total=%s, idle=%sms]",
+                              locationName, proxy, maxConnections, inFlightRequests, totalRequests, idleMillis );
+    }
+}
@@ -33,6 +33,8 @@ public class HttpExchangeMetadata
 
     protected static final String LAST_MODIFIED = "LAST-MODIFIED";
 
+    protected static final String ETAG = "ETAG";
+
     protected static final Object CONTENT_LENGTH = "CONTENT-LENGTH";
 
     protected static final Object CONTENT_TYPE = "CONTENT-TYPE";
@@ -63,12 +65,12 @@ public class HttpExchangeMetadata
     {
         for ( final Header header : allHeaders )
         {
-            List<String> values = headerMap.get( header.getName() );
+            final String name = header.getName().toUpperCase();
+            List<String> values = headerMap.get( name );
             if ( values == null )
             {
                 values = new ArrayList<>();
-                headerMap.put( header.getName()
-                                     .toUpperCase(), values );
+                headerMap.put( name, values );
             }
 
             values.add( header.getValue() );
@@ -126,6 +128,17 @@ public class HttpExchangeMetadata
         return values.get( 0 );
     }
 
+    public String getETag()
+    {
+        final List<String> values = responseHeaders.get( ETAG );
+        if ( values == null || values.isEmpty() )
+        {
+            return null;
+        }
+
+        return values.get( 0 );
+    }
+
     public Long getContentLength()
     {
         final List<String> values = responseHeaders.get( CONTENT_LENGTH );
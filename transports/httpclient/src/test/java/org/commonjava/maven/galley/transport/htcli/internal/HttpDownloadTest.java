@@ -20,11 +20,13 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import org.apache.commons.io.IOUtils;
 import org.commonjava.maven.galley.TransferException;
 import org.commonjava.maven.galley.event.EventMetadata;
 import org.commonjava.maven.galley.model.ConcreteResource;
 import org.commonjava.maven.galley.model.Location;
 import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.TransferOperation;
 import org.commonjava.maven.galley.spi.transport.DownloadJob;
 import org.commonjava.maven.galley.transport.htcli.model.HttpExchangeMetadata;
 import org.commonjava.maven.galley.transport.htcli.model.SimpleHttpLocation;
@@ -42,8 +44,14 @@ import org.junit.runner.RunWith;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RunWith( BMUnitRunner.class )
@@ -225,6 +233,93 @@ public class HttpDownloadTest
         assertThat( fixture.getAccessesFor( urlPath ), equalTo( 2 ) );
     }
 
+    @Test
+    public void notModifiedToUnconditionalGetKeepsCachedCopy()
+            throws Exception
+    {
+        final String path = "/path/to/cached-file";
+
+        fixture.getServer().expect( "GET", fixture.formatUrl( path ), new ExpectationHandler()
+        {
+            @Override
+            public void handle( final HttpServletRequest httpServletRequest,
+                                final HttpServletResponse httpServletResponse )
+            {
+                httpServletResponse.setStatus( 304 );
+            }
+        } );
+
+        final String baseUri = fixture.getBaseUri();
+        final SimpleHttpLocation location = new SimpleHttpLocation( "test", baseUri, true, true, true, true, null );
+        final Transfer transfer = fixture.getTransfer( new ConcreteResource( location, path ) );
+        final String url = fixture.formatUrl( path );
+
+        // cached, but without stored validators, so the GET isn't conditional.
+        try (OutputStream out = transfer.openOutputStream( TransferOperation.DOWNLOAD, false ))
+        {
+            IOUtils.write( "cached", out, StandardCharsets.UTF_8 );
+        }
+
+        final HttpDownload dl = new HttpDownload( url, location, transfer, new HashMap<>(), new EventMetadata(),
+                                                  fixture.getHttp(), new ObjectMapper() );
+        dl.call();
+
+        try (InputStream in = transfer.openInputStream( false ))
+        {
+            assertThat( IOUtils.toString( in, StandardCharsets.UTF_8 ), equalTo( "cached" ) );
+        }
+    }
+
+    @Test
+    public void revalidationSendsStoredValidators()
+            throws Exception
+    {
+        final String content = "This is some content";
+        final String etag = "\"abc123\"";
+        final String path = "/path/to/revalidated-file";
+        final List<String> ifNoneMatch = new ArrayList<>();
+
+        fixture.getServer().expect( "GET", fixture.formatUrl( path ), new ExpectationHandler()
+        {
+            @Override
+            public void handle( final HttpServletRequest httpServletRequest,
+                                final HttpServletResponse httpServletResponse )
+                    throws IOException
+            {
+                final String validator = httpServletRequest.getHeader( "If-None-Match" );
+                ifNoneMatch.add( validator );
+                if ( etag.equals( validator ) )
+                {
+                    httpServletResponse.setStatus( 304 );
+                    return;
+                }
+
+                httpServletResponse.setStatus( 200 );
+                httpServletResponse.setHeader( "ETag", etag );
+                httpServletResponse.getWriter().write( content );
+            }
+        } );
+
+        final String baseUri = fixture.getBaseUri();
+        final SimpleHttpLocation location = new SimpleHttpLocation( "test", baseUri, true, true, true, true, null );
+        final Transfer transfer = fixture.getTransfer( new ConcreteResource( location, path ) );
+        final String url = fixture.formatUrl( path );
+
+        new HttpDownload( url, location, transfer, new HashMap<>(), new EventMetadata(), fixture.getHttp(),
+                          new ObjectMapper() ).call();
+
+        final HttpDownload dl = new HttpDownload( url, location, transfer, new HashMap<>(), new EventMetadata(),
+                                                  fixture.getHttp(), new ObjectMapper() );
+        dl.call();
+
+        assertThat( dl.getError(), nullValue() );
+        assertThat( ifNoneMatch, equalTo( Arrays.asList( null, etag ) ) );
+        try (InputStream in = transfer.openInputStream( false ))
+        {
+            assertThat( IOUtils.toString( in, StandardCharsets.UTF_8 ), equalTo( content ) );
+        }
+    }
+
     @Test
     public void simpleRetrieveOfAvailableUrl()
         throws Exception
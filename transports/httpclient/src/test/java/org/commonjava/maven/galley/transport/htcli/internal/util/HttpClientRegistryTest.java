@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2013 Red Hat, Inc. (https://github.com/Commonjava/galley)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.maven.galley.transport.htcli.internal.util;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.commonjava.maven.galley.transport.htcli.model.HttpClientPoolStats;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class HttpClientRegistryTest
+{
+    // settings are rechecked on every lease here, unless a test builds its own registry.
+    private final HttpClientRegistry registry = new HttpClientRegistry( 2, 5, 0, TimeUnit.MINUTES );
+
+    @After
+    public void close()
+    {
+        registry.close();
+    }
+
+    @Test
+    public void sameSettingsReuseClient()
+            throws Exception
+    {
+        final Supplier<String> settings = () -> "http://foo.com/repo";
+
+        final CloseableHttpClient first = registry.lease( "foo", false, settings, 10, HttpClients::createMinimal );
+        final CloseableHttpClient second = registry.lease( "foo", false, settings, 10, HttpClients::createMinimal );
+
+        assertThat( registry.getCreationCount(), equalTo( 1L ) );
+        assertThat( registry.getReuseCount(), equalTo( 1L ) );
+
+        final HttpClientPoolStats stats = registry.getStats().get( 0 );
+        assertThat( stats.getInFlightRequests(), equalTo( 2 ) );
+        assertThat( stats.getTotalRequests(), equalTo( 2L ) );
+
+        assertThat( registry.release( first ), equalTo( true ) );
+        assertThat( registry.release( second ), equalTo( true ) );
+        assertThat( registry.getStats().get( 0 ).getInFlightRequests(), equalTo( 0 ) );
+    }
+
+    @Test
+    public void proxyModeGetsItsOwnClient()
+            throws Exception
+    {
+        final Supplier<String> settings = () -> "http://foo.com/repo";
+
+        registry.lease( "foo", false, settings, 10, HttpClients::createMinimal );
+        registry.lease( "foo", true, settings, 10, HttpClients::createMinimal );
+
+        assertThat( registry.getCreationCount(), equalTo( 2L ) );
+        assertThat( registry.size(), equalTo( 2 ) );
+    }
+
+    @Test
+    public void changedSettingsReplaceClientAfterRelease()
+            throws Exception
+    {
+        final CloseableHttpClient old =
+                registry.lease( "foo", false, () -> "http://foo.com/repo|10", 10,
+                                HttpClients::createMinimal );
+
+        registry.lease( "foo", false, () -> "http://foo.com/repo|20", 20, HttpClients::createMinimal );
+
+        assertThat( registry.getCreationCount(), equalTo( 2L ) );
+        assertThat( registry.size(), equalTo( 1 ) );
+        assertThat( registry.getStats().get( 0 ).getMaxConnections(), equalTo( 20 ) );
+
+        // the retired client is still leased, so releasing it must be recognized, and only once.
+        assertThat( registry.release( old ), equalTo( true ) );
+        assertThat( registry.release( old ), equalTo( false ) );
+    }
+
+    @Test
+    public void settingsAreOnlyRecheckedWhenDue()
+            throws Exception
+    {
+        final AtomicInteger fingerprints = new AtomicInteger();
+        final AtomicReference<String> current = new AtomicReference<>( "v1" );
+        final Supplier<String> settings = () -> {
+            fingerprints.incrementAndGet();
+            return current.get();
+        };
+
+        try (HttpClientRegistry lazy = new HttpClientRegistry( 2, 5, 1, TimeUnit.MINUTES ))
+        {
+            lazy.release( lazy.lease( "foo", false, settings, 10, HttpClients::createMinimal ) );
+            lazy.release( lazy.lease( "foo", false, settings, 10, HttpClients::createMinimal ) );
+            assertThat( fingerprints.get(), equalTo( 1 ) );
+
+            // not due yet: the change goes unnoticed until the location is invalidated.
+            current.set( "v2" );
+            lazy.release( lazy.lease( "foo", false, settings, 10, HttpClients::createMinimal ) );
+            assertThat( lazy.getCreationCount(), equalTo( 1L ) );
+
+            lazy.invalidate( "foo" );
+            lazy.release( lazy.lease( "foo", false, settings, 10, HttpClients::createMinimal ) );
+            assertThat( lazy.getCreationCount(), equalTo( 2L ) );
+            assertThat( fingerprints.get(), equalTo( 2 ) );
+        }
+    }
+
+    @Test
+    public void leastRecentlyUsedClientIsEvictedOverCapacity()
+            throws Exception
+    {
+        final Supplier<String> settings = () -> "";
+
+        registry.release( registry.lease( "a", false, settings, 10, HttpClients::createMinimal ) );
+        Thread.sleep( 5 );
+        registry.release( registry.lease( "b", false, settings, 10, HttpClients::createMinimal ) );
+        Thread.sleep( 5 );
+        registry.release( registry.lease( "c", false, settings, 10, HttpClients::createMinimal ) );
+
+        assertThat( registry.size(), equalTo( 2 ) );
+        assertThat( registry.getEvictionCount(), equalTo( 1L ) );
+        registry.getStats().forEach( s -> assertThat( s.getLocationName(), not( equalTo( "a" ) ) ) );
+    }
+
+    @Test
+    public void invalidateRetiresAllModesForLocation()
+            throws Exception
+    {
+        final Supplier<String> settings = () -> "";
+
+        registry.release( registry.lease( "foo", false, settings, 10, HttpClients::createMinimal ) );
+        registry.release( registry.lease( "foo", true, settings, 10, HttpClients::createMinimal ) );
+
+        registry.invalidate( "foo" );
+
+        assertThat( registry.size(), equalTo( 0 ) );
+        assertThat( registry.getEvictionCount(), equalTo( 2L ) );
+    }
+
+    @Test
+    public void closingALeaseOnlyGivesItBack()
+            throws Exception
+    {
+        final Supplier<String> settings = () -> "";
+        final CloseableHttpClient first = registry.lease( "foo", false, settings, 10, HttpClients::createMinimal );
+        final CloseableHttpClient second = registry.lease( "foo", false, settings, 10, HttpClients::createMinimal );
+
+        // callers written for per-request clients close them when done.
+        first.close();
+        first.close();
+
+        assertThat( registry.getStats().get( 0 ).getInFlightRequests(), equalTo( 1 ) );
+        assertThat( registry.release( first ), equalTo( false ) );
+        assertThat( registry.release( second ), equalTo( true ) );
+
+        registry.release( registry.lease( "foo", false, settings, 10, HttpClients::createMinimal ) );
+        assertThat( registry.getCreationCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void unmanagedClientIsNotReleased()
+    {
+        assertThat( registry.release( HttpClients.createMinimal() ), equalTo( false ) );
+        assertThat( registry.release( null ), equalTo( false ) );
+    }
+}
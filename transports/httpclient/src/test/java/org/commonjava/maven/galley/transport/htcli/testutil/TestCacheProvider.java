@@ -25,7 +25,7 @@ import java.nio.file.Files;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
-import org.commonjava.maven.galley.cache.SimpleLockingSupport;
+import org.commonjava.maven.galley.cache.ReadWriteLockingSupport;
 import org.commonjava.maven.galley.io.TransferDecoratorManager;
 import org.commonjava.maven.galley.model.ConcreteResource;
 import org.commonjava.maven.galley.model.Transfer;
@@ -43,7 +43,7 @@ public class TestCacheProvider
 
     private final TransferDecoratorManager decorator;
 
-    private final SimpleLockingSupport lockingSupport = new SimpleLockingSupport();
+    private final ReadWriteLockingSupport lockingSupport = new ReadWriteLockingSupport();
 
     public TestCacheProvider( final File dir, final FileEventManager events, final TransferDecoratorManager decorator )
     {
@@ -231,49 +231,49 @@ public class TestCacheProvider
     @Override
     public boolean isReadLocked( final ConcreteResource resource )
     {
-        return lockingSupport.isLocked( resource );
+        return lockingSupport.isReadLocked( resource );
     }
 
     @Override
     public boolean isWriteLocked( final ConcreteResource resource )
     {
-        return lockingSupport.isLocked( resource );
+        return lockingSupport.isWriteLocked( resource );
     }
 
     @Override
     public void unlockRead( final ConcreteResource resource )
     {
-        lockingSupport.unlock( resource );
+        lockingSupport.unlockRead( resource );
     }
 
     @Override
     public void unlockWrite( final ConcreteResource resource )
     {
-        lockingSupport.unlock( resource );
+        lockingSupport.unlockWrite( resource );
     }
 
     @Override
     public void lockRead( final ConcreteResource resource )
     {
-        lockingSupport.lock( resource );
+        lockingSupport.lockRead( resource );
     }
 
     @Override
     public void lockWrite( final ConcreteResource resource )
     {
-        lockingSupport.lock( resource );
+        lockingSupport.lockWrite( resource );
     }
 
     @Override
     public void waitForWriteUnlock( final ConcreteResource resource )
     {
-        lockingSupport.waitForUnlock( resource );
+        lockingSupport.waitForWriteUnlock( resource );
     }
 
     @Override
     public void waitForReadUnlock( final ConcreteResource resource )
     {
-        lockingSupport.waitForUnlock( resource );
+        lockingSupport.waitForReadUnlock( resource );
     }
 
     @Override